@@ -222,6 +222,12 @@ public class Connector extends LifecycleMBeanBase  {
      */
     protected int maxParameterCount = 10000;
 
+    /**
+     * Should request parameter names and values only be decoded when they are
+     * requested? {@code false} by default.
+     */
+    protected boolean lazyParameterParsing = false;
+
     /**
      * Maximum size of a POST which will be automatically parsed by the
      * container. 2MB by default.
@@ -488,6 +494,27 @@ public class Connector extends LifecycleMBeanBase  {
     }
 
 
+    /**
+     * @return {@code true} if request parameter names and values are only
+     * decoded when they are requested.
+     */
+    public boolean getLazyParameterParsing() {
+        return lazyParameterParsing;
+    }
+
+
+    /**
+     * Set whether request parameter names and values are only decoded when
+     * they are requested rather than all being decoded when the parameters are
+     * first parsed.
+     *
+     * @param lazyParameterParsing The new setting
+     */
+    public void setLazyParameterParsing(boolean lazyParameterParsing) {
+        this.lazyParameterParsing = lazyParameterParsing;
+    }
+
+
     /**
      * @return the maximum size of a POST which will be automatically
      * parsed by the container.
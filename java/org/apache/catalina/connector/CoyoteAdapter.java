@@ -40,6 +40,7 @@ import org.apache.catalina.util.SessionConfig;
 import org.apache.catalina.util.URLEncoder;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.RequestPhase;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -350,8 +351,10 @@ public class CoyoteAdapter implements Adapter {
                 request.setAsyncSupported(
                         connector.getService().getContainer().getPipeline().isAsyncSupported());
                 // Calling the container
+                long serviceStart = System.nanoTime();
                 connector.getService().getContainer().getPipeline().getFirst().invoke(
                         request, response);
+                req.setPhaseTime(RequestPhase.SERVICE, System.nanoTime() - serviceStart);
             }
             if (request.isAsync()) {
                 async = true;
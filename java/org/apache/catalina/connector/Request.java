@@ -2831,6 +2831,7 @@ public class Request implements HttpServletRequest {
 
         Parameters parameters = coyoteRequest.getParameters();
         parameters.setLimit(getConnector().getMaxParameterCount());
+        parameters.setLazy(getConnector().getLazyParameterParsing());
 
         boolean success = false;
         try {
@@ -3185,6 +3186,7 @@ public class Request implements HttpServletRequest {
         try {
             // Set this every time in case limit has been changed via JMX
             parameters.setLimit(getConnector().getMaxParameterCount());
+            parameters.setLazy(getConnector().getLazyParameterParsing());
 
             // getCharacterEncoding() may have been overridden to search for
             // hidden form field containing request encoding
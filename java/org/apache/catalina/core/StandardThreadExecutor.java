@@ -27,6 +27,7 @@ import org.apache.tomcat.util.threads.ResizableExecutor;
 import org.apache.tomcat.util.threads.TaskQueue;
 import org.apache.tomcat.util.threads.TaskThreadFactory;
 import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.apache.tomcat.util.threads.WorkStealingTaskQueue;
 
 public class StandardThreadExecutor extends LifecycleMBeanBase
         implements Executor, ResizableExecutor {
@@ -92,6 +93,12 @@ public class StandardThreadExecutor extends LifecycleMBeanBase
     protected long threadRenewalDelay =
         org.apache.tomcat.util.threads.Constants.DEFAULT_THREAD_RENEWAL_DELAY;
 
+    /**
+     * Use a queue with per core deques and work stealing rather than a single
+     * shared queue?
+     */
+    protected boolean useWorkStealingQueue = false;
+
     private TaskQueue taskqueue = null;
     // ---------------------------------------------- Constructors
     public StandardThreadExecutor() {
@@ -117,7 +124,11 @@ public class StandardThreadExecutor extends LifecycleMBeanBase
     @Override
     protected void startInternal() throws LifecycleException {
 
-        taskqueue = new TaskQueue(maxQueueSize);
+        if (useWorkStealingQueue) {
+            taskqueue = new WorkStealingTaskQueue(maxQueueSize);
+        } else {
+            taskqueue = new TaskQueue(maxQueueSize);
+        }
         TaskThreadFactory tf = new TaskThreadFactory(namePrefix,daemon,getThreadPriority());
         executor = new ThreadPoolExecutor(getMinSpareThreads(), getMaxThreads(), maxIdleTime, TimeUnit.MILLISECONDS,taskqueue, tf);
         executor.setThreadRenewalDelay(threadRenewalDelay);
@@ -256,6 +267,14 @@ public class StandardThreadExecutor extends LifecycleMBeanBase
         return maxQueueSize;
     }
 
+    public boolean getUseWorkStealingQueue() {
+        return useWorkStealingQueue;
+    }
+
+    public void setUseWorkStealingQueue(boolean useWorkStealingQueue) {
+        this.useWorkStealingQueue = useWorkStealingQueue;
+    }
+
     public long getThreadRenewalDelay() {
         return threadRenewalDelay;
     }
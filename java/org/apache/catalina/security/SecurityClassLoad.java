@@ -163,10 +163,13 @@ public final class SecurityClassLoad {
         loader.loadClass(basePackage + "util.buf.B2CConverter");
         loader.loadClass(basePackage + "util.buf.ByteBufferUtils");
         loader.loadClass(basePackage + "util.buf.C2BConverter");
+        loader.loadClass(basePackage + "util.buf.FrequencySketch");
         loader.loadClass(basePackage + "util.buf.HexUtils");
         loader.loadClass(basePackage + "util.buf.StringCache");
         loader.loadClass(basePackage + "util.buf.StringCache$ByteEntry");
+        loader.loadClass(basePackage + "util.buf.StringCache$Cache");
         loader.loadClass(basePackage + "util.buf.StringCache$CharEntry");
+        loader.loadClass(basePackage + "util.buf.StringCache$Entry");
         loader.loadClass(basePackage + "util.buf.UriUtil");
         // collections
         loader.loadClass(basePackage + "util.collections.CaseInsensitiveKeyMap");
@@ -49,6 +49,7 @@ import org.apache.catalina.connector.Response;
 import org.apache.catalina.util.TLSUtil;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.RequestInfo;
+import org.apache.coyote.RequestPhase;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -123,6 +124,8 @@ import org.apache.tomcat.util.net.IPv6Utils;
  * (see Configuration Reference document for details on supported time patterns)
  * <li><code>%{xxx}T</code> xxx is the unit for the time taken to process the request
  * (see Configuration Reference document for details on supported units)
+ * <li><code>%{xxx}L</code> xxx is the phase of the processing of the request
+ * for which to write the time taken in microseconds
  * </ul>
  *
  * <p>
@@ -1408,6 +1411,28 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         }
     }
 
+    /**
+     * write time taken by a phase of the processing of the request in
+     * microseconds - %{xxx}L
+     */
+    protected static class PhaseTimeElement implements AccessLogElement {
+        private final RequestPhase phase;
+
+        public PhaseTimeElement(RequestPhase phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public void addElement(CharArrayWriter buf, Date date, Request request, Response response, long time) {
+            long phaseTime = request.getCoyoteRequest().getPhaseTime(phase);
+            if (phaseTime == -1) {
+                buf.append('-');
+            } else {
+                buf.append(Long.toString(TimeUnit.NANOSECONDS.toMicros(phaseTime)));
+            }
+        }
+    }
+
     /**
      * write Query string (prepended with a '?' if it exists) - %q
      */
@@ -1792,6 +1817,12 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
             } else {
                 return new ElapsedTimeElement(false, false);
             }
+        case 'L':
+            RequestPhase phase = RequestPhase.fromName(name);
+            if (phase == null) {
+                return new StringElement("???");
+            }
+            return new PhaseTimeElement(phase);
         default:
             return new StringElement("???");
         }
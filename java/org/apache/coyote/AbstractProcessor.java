@@ -503,6 +503,7 @@ public abstract class AbstractProcessor extends AbstractProcessorLight implement
         // Servlet 3.0 asynchronous support
         case ASYNC_START: {
             asyncStateMachine.asyncStart((AsyncContextCallback) param);
+            asyncStarted();
             break;
         }
         case ASYNC_COMPLETE: {
@@ -749,6 +750,16 @@ public abstract class AbstractProcessor extends AbstractProcessorLight implement
     protected abstract void disableSwallowRequest();
 
 
+    /**
+     * Called on the container thread when the current request enters async
+     * mode, before the application is able to use the request and response
+     * from other threads. The default implementation is a NO-OP.
+     */
+    protected void asyncStarted() {
+        // NO-OP
+    }
+
+
     /**
      * Processors that populate request attributes directly (e.g. AJP) should
      * over-ride this method and return {@code false}.
@@ -225,6 +225,12 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
     }
 
 
+    public boolean getUseVirtualThreads() { return endpoint.getUseVirtualThreads(); }
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        endpoint.setUseVirtualThreads(useVirtualThreads);
+    }
+
+
     public int getMaxThreads() { return endpoint.getMaxThreads(); }
     public void setMaxThreads(int maxThreads) {
         endpoint.setMaxThreads(maxThreads);
@@ -236,6 +242,30 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
     }
 
 
+    public int getHandshakeThreads() { return endpoint.getHandshakeThreads(); }
+    public void setHandshakeThreads(int handshakeThreads) {
+        endpoint.setHandshakeThreads(handshakeThreads);
+    }
+
+
+    public int getHandshakeQueueSize() { return endpoint.getHandshakeQueueSize(); }
+    public void setHandshakeQueueSize(int handshakeQueueSize) {
+        endpoint.setHandshakeQueueSize(handshakeQueueSize);
+    }
+
+
+    public long getLoadSheddingTarget() { return endpoint.getLoadSheddingTarget(); }
+    public void setLoadSheddingTarget(long loadSheddingTarget) {
+        endpoint.setLoadSheddingTarget(loadSheddingTarget);
+    }
+
+
+    public long getLoadSheddingInterval() { return endpoint.getLoadSheddingInterval(); }
+    public void setLoadSheddingInterval(long loadSheddingInterval) {
+        endpoint.setLoadSheddingInterval(loadSheddingInterval);
+    }
+
+
     public int getMinSpareThreads() { return endpoint.getMinSpareThreads(); }
     public void setMinSpareThreads(int minSpareThreads) {
         endpoint.setMinSpareThreads(minSpareThreads);
@@ -737,6 +767,7 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
 
         public ConnectionHandler(AbstractProtocol<S> proto) {
             this.proto = proto;
+            global.setAdmissionController(proto.getEndpoint().getAdmissionController());
         }
 
         protected AbstractProtocol<S> getProtocol() {
@@ -940,6 +971,9 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler,
                     // processor. Continue to poll for the next request.
                     wrapper.setCurrentProcessor(null);
                     release(processor);
+                    // Return any pooled buffers while waiting for the next
+                    // request
+                    wrapper.getSocketBufferHandler().release();
                     wrapper.registerReadInterest();
                 } else if (state == SocketState.SENDFILE) {
                     // Sendfile in progress. If it fails, the socket will be
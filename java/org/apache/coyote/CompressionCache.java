@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least recently used cache of compressed response bodies. Bodies are keyed
+ * by the content coding, the ETag and the host, URI and query string of the
+ * request so only successful GET responses that include an ETag are cached.
+ * <p>
+ * The application still generates the response body for a cached response.
+ * The body is compared with the length and SHA-256 digest of the body that
+ * was compressed and, if they match, the cached compressed body is sent rather
+ * than compressing the body again.
+ */
+public class CompressionCache {
+
+    /**
+     * The algorithm used to create the digest of the uncompressed body.
+     */
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final long maxSize;
+    private final long maxEntrySize;
+
+    private final Map<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+
+    /**
+     * @param maxSize The maximum total size of the cached compressed bodies in
+     *                bytes. Individual bodies larger than one sixteenth of
+     *                this are not cached.
+     */
+    public CompressionCache(long maxSize) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxSize / 16;
+    }
+
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+
+    /**
+     * Obtain the key for a response.
+     *
+     * @param request  The request
+     * @param response The response, the headers of which must have been
+     *                     prepared
+     * @param encoding The content coding used to compress the response
+     *
+     * @return The key or <code>null</code> if the response may not be cached
+     */
+    public static String getKey(Request request, Response response, String encoding) {
+        if (request == null || response.getStatus() != 200 || !request.method().equals("GET")) {
+            return null;
+        }
+        String eTag = response.getMimeHeaders().getHeader("ETag");
+        if (eTag == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(encoding);
+        key.append(' ').append(eTag.trim());
+        key.append(' ').append(request.serverName().toString());
+        key.append(' ').append(request.requestURI().toString());
+        if (!request.queryString().isNull()) {
+            key.append('?').append(request.queryString().toString());
+        }
+        return key.toString();
+    }
+
+
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return entry;
+    }
+
+
+    public synchronized void put(String key, Entry entry) {
+        long entrySize = entry.getCompressed().length;
+        if (entrySize > maxEntrySize) {
+            return;
+        }
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            size -= old.getCompressed().length;
+        }
+        size += entrySize;
+        Iterator<Entry> iter = entries.values().iterator();
+        while (size > maxSize && iter.hasNext()) {
+            size -= iter.next().getCompressed().length;
+            iter.remove();
+        }
+    }
+
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+
+    /**
+     * A compressed response body along with the length and the
+     * {@link #DIGEST_ALGORITHM} digest of the uncompressed body.
+     */
+    public static final class Entry {
+
+        private final byte[] compressed;
+        private final long length;
+        private final byte[] digest;
+
+        public Entry(byte[] compressed, long length, byte[] digest) {
+            this.compressed = compressed;
+            this.length = length;
+            this.digest = digest;
+        }
+
+        public byte[] getCompressed() {
+            return compressed;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public byte[] getDigest() {
+            return digest;
+        }
+    }
+}
@@ -18,12 +18,15 @@ package org.apache.coyote;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.apache.juli.logging.Log;
@@ -46,6 +49,25 @@ public class CompressionConfig {
             "text/javascript,application/javascript,application/json,application/xml";
     private String[] compressibleMimeTypes = null;
     private int compressionMinSize = 2048;
+    private String compressionEncoders = GzipContentEncoder.ENCODING;
+    private ContentEncoder[] contentEncoders = new ContentEncoder[] { new GzipContentEncoder() };
+    private int minCompressionLevel = DEFAULT_LEVEL;
+    private int maxCompressionLevel = DEFAULT_LEVEL;
+    private long compressionCacheSize = 0;
+    private CompressionCache compressionCache = null;
+
+    // The level used by GZIPOutputStream
+    private static final int DEFAULT_LEVEL = 6;
+    // The load per processor at or below which the maximum compression level
+    // is used and at or above which the minimum level is used
+    private static final double LOW_LOAD = 0.5;
+    private static final double HIGH_LOAD = 1.0;
+    private static final long LOAD_SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private static final OperatingSystemMXBean operatingSystemMXBean =
+            ManagementFactory.getOperatingSystemMXBean();
+    private static volatile long loadSampleTime = System.nanoTime() - LOAD_SAMPLE_INTERVAL;
+    private static volatile double load = -1;
 
 
     /**
@@ -182,6 +204,157 @@ public class CompressionConfig {
     }
 
 
+    public String getCompressionEncoders() {
+        return compressionEncoders;
+    }
+
+
+    /**
+     * Set the content codings that may be used to compress responses.
+     *
+     * @param compressionEncoders A comma separated list, in order of
+     *                            preference, of <code>gzip</code> and/or the
+     *                            fully qualified class names of
+     *                            {@link ContentEncoder} implementations
+     */
+    public void setCompressionEncoders(String compressionEncoders) {
+        List<ContentEncoder> encoders = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(compressionEncoders, ",");
+        while (tokens.hasMoreTokens()) {
+            String token = tokens.nextToken().trim();
+            if (token.length() == 0) {
+                continue;
+            }
+            if (token.equalsIgnoreCase(GzipContentEncoder.ENCODING)) {
+                encoders.add(new GzipContentEncoder());
+                continue;
+            }
+            try {
+                Class<?> clazz = Class.forName(token);
+                encoders.add((ContentEncoder) clazz.getConstructor().newInstance());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                log.warn(sm.getString("compressionConfig.encoderFail", token), e);
+            }
+        }
+        this.compressionEncoders = compressionEncoders;
+        this.contentEncoders = encoders.toArray(new ContentEncoder[0]);
+    }
+
+
+    public int getMinCompressionLevel() {
+        return minCompressionLevel;
+    }
+
+
+    /**
+     * Set the compression level to use when the system is heavily loaded. If
+     * this is lower than the maximum compression level, the level used will
+     * be adjusted between the two based on the current system load.
+     *
+     * @param minCompressionLevel The compression level in the range 1
+     *                            (fastest) to 9 (best compression)
+     */
+    public void setMinCompressionLevel(int minCompressionLevel) {
+        this.minCompressionLevel = checkLevel(minCompressionLevel);
+    }
+
+
+    public int getMaxCompressionLevel() {
+        return maxCompressionLevel;
+    }
+
+
+    /**
+     * Set the compression level to use when the system is lightly loaded.
+     *
+     * @param maxCompressionLevel The compression level in the range 1
+     *                            (fastest) to 9 (best compression)
+     */
+    public void setMaxCompressionLevel(int maxCompressionLevel) {
+        this.maxCompressionLevel = checkLevel(maxCompressionLevel);
+    }
+
+
+    private static int checkLevel(int level) {
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException(sm.getString("compressionConfig.invalidLevel",
+                    Integer.toString(level)));
+        }
+        return level;
+    }
+
+
+    /**
+     * @return The compression level to use for a response given the current
+     *         system load
+     */
+    public int getCurrentCompressionLevel() {
+        if (minCompressionLevel >= maxCompressionLevel) {
+            return maxCompressionLevel;
+        }
+        long now = System.nanoTime();
+        if (now - loadSampleTime > LOAD_SAMPLE_INTERVAL) {
+            loadSampleTime = now;
+            double loadAverage = operatingSystemMXBean.getSystemLoadAverage();
+            if (loadAverage < 0) {
+                // Not available on this platform
+                load = -1;
+            } else {
+                load = loadAverage / operatingSystemMXBean.getAvailableProcessors();
+            }
+        }
+        return getCompressionLevel(load);
+    }
+
+
+    /*
+     * The level drops linearly from the maximum to the minimum as the load
+     * per processor increases from LOW_LOAD to HIGH_LOAD. The maximum is used
+     * if the load is not known.
+     */
+    int getCompressionLevel(double load) {
+        if (load <= LOW_LOAD) {
+            return maxCompressionLevel;
+        }
+        if (load >= HIGH_LOAD) {
+            return minCompressionLevel;
+        }
+        double fraction = (load - LOW_LOAD) / (HIGH_LOAD - LOW_LOAD);
+        return (int) Math.round(maxCompressionLevel - fraction * (maxCompressionLevel - minCompressionLevel));
+    }
+
+
+    public long getCompressionCacheSize() {
+        return compressionCacheSize;
+    }
+
+
+    /**
+     * Set the size of the cache of compressed response bodies.
+     *
+     * @param compressionCacheSize The maximum total size of the compressed
+     *                             bodies to cache in bytes. Zero or less
+     *                             disables the cache.
+     */
+    public void setCompressionCacheSize(long compressionCacheSize) {
+        this.compressionCacheSize = compressionCacheSize;
+        if (compressionCacheSize > 0) {
+            compressionCache = new CompressionCache(compressionCacheSize);
+        } else {
+            compressionCache = null;
+        }
+    }
+
+
+    /**
+     * @return The cache of compressed response bodies or <code>null</code> if
+     *         caching is disabled
+     */
+    public CompressionCache getCompressionCache() {
+        return compressionCache;
+    }
+
+
     /**
      * Determines if compression should be enabled for the given response and if
      * it is, sets any necessary headers to mark it as such.
@@ -193,9 +366,26 @@ public class CompressionConfig {
      *         otherwise {@code false}
      */
     public boolean useCompression(Request request, Response response) {
+        return getContentEncoder(request, response) != null;
+    }
+
+
+    /**
+     * Determines if compression should be enabled for the given response and if
+     * it is, selects the content coding to use and sets any necessary headers
+     * to mark the response as compressed.
+     *
+     * @param request  The request that triggered the response
+     * @param response The response to consider compressing
+     *
+     * @return The encoder to use to compress the response or {@code null} if
+     *         the response should not be compressed
+     */
+    public ContentEncoder getContentEncoder(Request request, Response response) {
         // Check if compression is enabled
-        if (compressionLevel == 0) {
-            return false;
+        ContentEncoder[] contentEncoders = this.contentEncoders;
+        if (compressionLevel == 0 || contentEncoders.length == 0) {
+            return null;
         }
 
         MimeHeaders responseHeaders = response.getMimeHeaders();
@@ -212,10 +402,15 @@ public class CompressionConfig {
                 // Because we are using StringReader, any exception here is a
                 // Tomcat bug.
                 log.warn(sm.getString("compressionConfig.ContentEncodingParseFail"), e);
-                return false;
+                return null;
             }
             if (tokens.contains("gzip") || tokens.contains("br")) {
-                return false;
+                return null;
+            }
+            for (ContentEncoder contentEncoder : contentEncoders) {
+                if (tokens.contains(contentEncoder.getEncoding())) {
+                    return null;
+                }
             }
         }
 
@@ -224,14 +419,14 @@ public class CompressionConfig {
             // Check if the response is of sufficient length to trigger the compression
             long contentLength = response.getContentLengthLong();
             if (contentLength != -1 && contentLength < compressionMinSize) {
-                return false;
+                return null;
             }
 
             // Check for compatible MIME-TYPE
             String[] compressibleMimeTypes = getCompressibleMimeTypes();
             if (compressibleMimeTypes != null &&
                     !startsWithStringArray(compressibleMimeTypes, response.getContentType())) {
-                return false;
+                return null;
             }
         }
 
@@ -240,37 +435,48 @@ public class CompressionConfig {
         if (eTag != null && !eTag.trim().startsWith("W/")) {
             // Has an ETag that doesn't start with "W/..." so it must be a
             // strong ETag
-            return false;
+            return null;
         }
 
         // If processing reaches this far, the response might be compressed.
         // Therefore, set the Vary header to keep proxies happy
         ResponseUtil.addVaryFieldName(responseHeaders, "accept-encoding");
 
-        // Check if user-agent supports gzip encoding
-        // Only interested in whether gzip encoding is supported. Other
-        // encodings and weights can be ignored.
+        // Select the encoder the user-agent prefers. If the user-agent has no
+        // preference between encoders, the order in which they are configured
+        // is used. Other encodings and weights can be ignored.
+        double[] qualities = new double[contentEncoders.length];
         Enumeration<String> headerValues = request.getMimeHeaders().values("accept-encoding");
-        boolean foundGzip = false;
-        while (!foundGzip && headerValues.hasMoreElements()) {
+        while (headerValues.hasMoreElements()) {
             List<AcceptEncoding> acceptEncodings = null;
             try {
                 acceptEncodings = AcceptEncoding.parse(new StringReader(headerValues.nextElement()));
             } catch (IOException ioe) {
                 // If there is a problem reading the header, disable compression
-                return false;
+                return null;
             }
 
             for (AcceptEncoding acceptEncoding : acceptEncodings) {
-                if ("gzip".equalsIgnoreCase(acceptEncoding.getEncoding())) {
-                    foundGzip = true;
-                    break;
+                for (int i = 0; i < contentEncoders.length; i++) {
+                    if (contentEncoders[i].getEncoding().equalsIgnoreCase(acceptEncoding.getEncoding()) &&
+                            acceptEncoding.getQuality() > qualities[i]) {
+                        qualities[i] = acceptEncoding.getQuality();
+                    }
                 }
             }
         }
 
-        if (!foundGzip) {
-            return false;
+        ContentEncoder contentEncoder = null;
+        double quality = 0;
+        for (int i = 0; i < contentEncoders.length; i++) {
+            if (qualities[i] > quality) {
+                contentEncoder = contentEncoders[i];
+                quality = qualities[i];
+            }
+        }
+
+        if (contentEncoder == null) {
+            return null;
         }
 
         // If force mode, the browser checks are skipped
@@ -282,7 +488,7 @@ public class CompressionConfig {
                 if(userAgentValueMB != null) {
                     String userAgentValue = userAgentValueMB.toString();
                     if (noCompressionUserAgents.matcher(userAgentValue).matches()) {
-                        return false;
+                        return null;
                     }
                 }
             }
@@ -293,9 +499,9 @@ public class CompressionConfig {
         // Compressed content length is unknown so mark it as such.
         response.setContentLength(-1);
         // Configure the content encoding for compressed content
-        responseHeaders.setValue("Content-Encoding").setString("gzip");
+        responseHeaders.setValue("Content-Encoding").setString(contentEncoder.getEncoding());
 
-        return true;
+        return contentEncoder;
     }
 
 
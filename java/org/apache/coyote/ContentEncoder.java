@@ -0,0 +1,59 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A content coding that may be used to compress response bodies. Encoders are
+ * configured via {@link CompressionConfig#setCompressionEncoders(String)} and
+ * are selected using the Accept-Encoding header of the request. This allows
+ * encodings that are not supported by the JRE, such as Brotli (br) or
+ * Zstandard (zstd), to be provided by a third-party library.
+ * <p>
+ * Implementations must be thread-safe and have a public no-argument
+ * constructor.
+ */
+public interface ContentEncoder {
+
+    /**
+     * @return The content coding token for this encoder as used in the
+     *         Accept-Encoding and Content-Encoding headers, e.g.
+     *         <code>gzip</code>
+     */
+    String getEncoding();
+
+
+    /**
+     * Create a stream that encodes the data written to it and writes the
+     * result to the given stream. The stream will be flushed when the response
+     * is flushed and closed once the response is complete. Closing the stream
+     * must not close the given stream.
+     *
+     * @param out   The stream to write the encoded data to
+     * @param level The compression level to use in the range 1 (fastest) to 9
+     *              (best compression) as used by {@link java.util.zip.Deflater}.
+     *              Implementations for other encodings should map this to the
+     *              nearest equivalent setting.
+     *
+     * @return The stream to write the data to encode to
+     *
+     * @throws IOException If the stream could not be created
+     */
+    OutputStream createOutputStream(OutputStream out, int level) throws IOException;
+}
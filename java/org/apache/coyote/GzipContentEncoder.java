@@ -0,0 +1,157 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.tomcat.util.collections.StripedStack;
+import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * The gzip content coding. Apart from the operating system field of the header,
+ * which varies between Java versions, the output is the same as that of
+ * {@link java.util.zip.GZIPOutputStream} but the {@link Deflater} instances,
+ * and the native memory associated with them, are re-used for subsequent
+ * responses rather than being created and destroyed for every response.
+ */
+public class GzipContentEncoder implements ContentEncoder {
+
+    private static final StringManager sm = StringManager.getManager(GzipContentEncoder.class);
+
+    public static final String ENCODING = "gzip";
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    // No flags, modification time or extra flags and an unknown (255)
+    // operating system
+    private static final byte[] HEADER = new byte[] {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    // The same buffer size as GZIPOutputStream
+    private static final int BUFFER_SIZE = 512;
+    private static final int DEFAULT_POOL_SIZE = 200;
+
+    private final SynchronizedStack<Deflater> deflaters;
+
+
+    public GzipContentEncoder() {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+
+    /**
+     * @param poolSize The maximum number of idle {@link Deflater} instances
+     *                 to retain for re-use
+     */
+    public GzipContentEncoder(int poolSize) {
+        deflaters = new StripedStack<>(SynchronizedStack.DEFAULT_SIZE, poolSize);
+    }
+
+
+    @Override
+    public String getEncoding() {
+        return ENCODING;
+    }
+
+
+    @Override
+    public OutputStream createOutputStream(OutputStream out, int level) throws IOException {
+        Deflater deflater = deflaters.pop();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        } else {
+            deflater.setLevel(level);
+        }
+        return new GzipStream(out, deflater);
+    }
+
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.push(deflater)) {
+            deflater.end();
+        }
+    }
+
+
+    private class GzipStream extends DeflaterOutputStream {
+
+        private final CRC32 crc = new CRC32();
+        private boolean finished = false;
+        private boolean closed = false;
+
+        GzipStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, BUFFER_SIZE, true);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                // The Deflater may be in use by another stream
+                throw new IOException(sm.getString("gzipContentEncoder.closed"));
+            }
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                super.flush();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            super.finish();
+            long crcValue = crc.getValue();
+            long size = def.getBytesRead();
+            byte[] trailer = new byte[8];
+            writeInt(trailer, 0, crcValue);
+            writeInt(trailer, 4, size);
+            out.write(trailer);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+            } finally {
+                release(def);
+            }
+        }
+
+        private void writeInt(byte[] b, int offset, long value) {
+            b[offset] = (byte) value;
+            b[offset + 1] = (byte) (value >> 8);
+            b[offset + 2] = (byte) (value >> 16);
+            b[offset + 3] = (byte) (value >> 24);
+        }
+    }
+}
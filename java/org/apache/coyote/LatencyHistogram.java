@@ -0,0 +1,165 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations using log-linear buckets in the style of
+ * HdrHistogram. Each power of two is divided into 32 linear sub-buckets so any
+ * recorded value is reported with an error of less than 1/32 (about 3%) while
+ * the histogram uses a fixed, small amount of memory. Durations of up to
+ * 2<sup>40</sup>ns (about 18 minutes) are recorded with this precision.
+ * Longer durations are recorded in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative values are ignored.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts.incrementAndGet(index(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+
+    public long getCount() {
+        return count.sum();
+    }
+
+
+    /**
+     * @return The mean of the recorded durations in nanoseconds
+     */
+    public long getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : total.sum() / count;
+    }
+
+
+    /**
+     * @return The longest recorded duration in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+
+    /**
+     * Obtain the duration at the given percentile. The result is the highest
+     * value that is equivalent, given the precision of the histogram, to the
+     * recorded value at that percentile.
+     *
+     * @param percentile The percentile in the range 0 to 100
+     *
+     * @return The duration in nanoseconds or zero if no durations have been
+     *         recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = this.count.sum();
+        if (count == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long) Math.ceil(p / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        // Concurrent updates
+        return getMax();
+    }
+
+
+    /**
+     * Provides a one line summary of the histogram with the count, the mean,
+     * the 50th, 90th, 99th and 99.9th percentiles and the maximum.
+     *
+     * @param unit The unit in which to report the durations
+     *
+     * @return The summary
+     */
+    public String getSummary(TimeUnit unit) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("count=").append(getCount());
+        sb.append(", mean=").append(unit.convert(getMean(), TimeUnit.NANOSECONDS));
+        sb.append(", p50=").append(unit.convert(getValueAtPercentile(50), TimeUnit.NANOSECONDS));
+        sb.append(", p90=").append(unit.convert(getValueAtPercentile(90), TimeUnit.NANOSECONDS));
+        sb.append(", p99=").append(unit.convert(getValueAtPercentile(99), TimeUnit.NANOSECONDS));
+        sb.append(", p99.9=").append(unit.convert(getValueAtPercentile(99.9), TimeUnit.NANOSECONDS));
+        sb.append(", max=").append(unit.convert(getMax(), TimeUnit.NANOSECONDS));
+        return sb.toString();
+    }
+
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
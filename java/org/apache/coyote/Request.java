@@ -19,6 +19,7 @@ package org.apache.coyote;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -156,6 +157,9 @@ public final class Request {
     private long bytesRead=0;
     // Time of the request - useful to avoid repeated calls to System.currentTime
     private long startTimeNanos = -1;
+    // Time taken by each phase of the processing of the request in nanoseconds
+    // or -1 if not recorded
+    private final long[] phaseTimes = newPhaseTimes();
     private int available = 0;
 
     private final RequestInfo reqProcessorMX=new RequestInfo(this);
@@ -702,6 +706,52 @@ public final class Request {
         this.startTimeNanos = startTimeNanos;
     }
 
+
+    /**
+     * @param phase The phase of the processing of the request
+     *
+     * @return The time taken by the phase in nanoseconds or -1 if it was not
+     *         recorded
+     */
+    public long getPhaseTime(RequestPhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Record the time taken by a phase of the processing of the request.
+     *
+     * @param phase The phase of the processing of the request
+     * @param nanos The time in nanoseconds. Negative values are ignored.
+     */
+    public void setPhaseTime(RequestPhase phase, long nanos) {
+        if (nanos >= 0) {
+            phaseTimes[phase.ordinal()] = nanos;
+        }
+    }
+
+    /**
+     * Add to the time taken by a phase of the processing of the request. This
+     * is used for phases, such as writing the response, that may happen in
+     * multiple parts.
+     *
+     * @param phase The phase of the processing of the request
+     * @param nanos The time in nanoseconds
+     */
+    public void addPhaseTime(RequestPhase phase, long nanos) {
+        int i = phase.ordinal();
+        if (phaseTimes[i] < 0) {
+            phaseTimes[i] = nanos;
+        } else {
+            phaseTimes[i] += nanos;
+        }
+    }
+
+    private static long[] newPhaseTimes() {
+        long[] result = new long[RequestPhase.values().length];
+        Arrays.fill(result, -1);
+        return result;
+    }
+
     // -------------------- Per-Request "notes" --------------------
 
 
@@ -785,6 +835,7 @@ public final class Request {
         allDataReadEventSent.set(false);
 
         startTimeNanos = -1;
+        Arrays.fill(phaseTimes, -1);
     }
 
     // -------------------- Info  --------------------
@@ -18,14 +18,21 @@ package org.apache.coyote;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.tomcat.util.modeler.BaseModelMBean;
+import org.apache.tomcat.util.net.AdmissionController;
+import org.apache.tomcat.util.res.StringManager;
 
 /** This can be moved to top level ( eventually with a better name ).
  *  It is currently used only as a JMX artifact, to aggregate the data
  *  collected from each RequestProcessor thread.
  */
 public class RequestGroupInfo extends BaseModelMBean {
+
+    private static final StringManager sm = StringManager.getManager(RequestGroupInfo.class);
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
     private final List<RequestInfo> processors = new ArrayList<>();
     private long deadMaxTime = 0;
     private long deadProcessingTime = 0;
@@ -33,6 +40,17 @@ public class RequestGroupInfo extends BaseModelMBean {
     private int deadErrorCount = 0;
     private long deadBytesReceived = 0;
     private long deadBytesSent = 0;
+    private volatile AdmissionController admissionController = null;
+    private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASES.length];
+    {
+        for (int i = 0; i < phaseHistograms.length; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
 
     public synchronized void addRequestProcessor( RequestInfo rp ) {
         processors.add( rp );
@@ -146,6 +164,77 @@ public class RequestGroupInfo extends BaseModelMBean {
         }
     }
 
+    public long getShedCount() {
+        AdmissionController admissionController = this.admissionController;
+        return admissionController == null ? 0 : admissionController.getShedCount();
+    }
+
+    public long getQueueDelayCount() {
+        AdmissionController admissionController = this.admissionController;
+        return admissionController == null ? 0 : admissionController.getQueueDelayCount();
+    }
+
+    public long getQueueDelayTime() {
+        AdmissionController admissionController = this.admissionController;
+        return admissionController == null ? 0 : admissionController.getQueueDelayTime();
+    }
+
+    public long getMaxQueueDelay() {
+        AdmissionController admissionController = this.admissionController;
+        return admissionController == null ? 0 : admissionController.getMaxQueueDelay();
+    }
+
+    public boolean isShedding() {
+        AdmissionController admissionController = this.admissionController;
+        return admissionController != null && admissionController.isShedding();
+    }
+
+    void recordPhaseTimes(Request req) {
+        for (RequestPhase phase : PHASES) {
+            long time = req.getPhaseTime(phase);
+            if (time >= 0) {
+                phaseHistograms[phase.ordinal()].record(time);
+            }
+        }
+    }
+
+    public LatencyHistogram getPhaseHistogram(RequestPhase phase) {
+        return phaseHistograms[phase.ordinal()];
+    }
+
+    /**
+     * Obtain the time taken by a phase of the processing of requests at the
+     * given percentile.
+     *
+     * @param phase      The name of the phase
+     * @param percentile The percentile in the range 0 to 100
+     *
+     * @return The time in microseconds
+     */
+    public long getPhaseLatency(String phase, double percentile) {
+        RequestPhase requestPhase = RequestPhase.fromName(phase);
+        if (requestPhase == null) {
+            throw new IllegalArgumentException(sm.getString("requestGroupInfo.unknownPhase", phase));
+        }
+        return TimeUnit.NANOSECONDS.toMicros(getPhaseHistogram(requestPhase).getValueAtPercentile(percentile));
+    }
+
+    /**
+     * @return A summary, in microseconds, of the times taken by each phase of
+     *         the processing of requests
+     */
+    public String getPhaseLatencies() {
+        StringBuilder sb = new StringBuilder();
+        for (RequestPhase phase : PHASES) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(phase.getName()).append(": ");
+            sb.append(phaseHistograms[phase.ordinal()].getSummary(TimeUnit.MICROSECONDS));
+        }
+        return sb.toString();
+    }
+
     public void resetCounters() {
         this.setBytesReceived(0);
         this.setBytesSent(0);
@@ -153,5 +242,12 @@ public class RequestGroupInfo extends BaseModelMBean {
         this.setProcessingTime(0);
         this.setMaxTime(0);
         this.setErrorCount(0);
+        AdmissionController admissionController = this.admissionController;
+        if (admissionController != null) {
+            admissionController.resetCounters();
+        }
+        for (LatencyHistogram histogram : phaseHistograms) {
+            histogram.reset();
+        }
     }
 }
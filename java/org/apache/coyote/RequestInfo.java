@@ -178,6 +178,9 @@ public class RequestInfo  {
             maxTime = time;
             maxRequestUri = req.requestURI().toString();
         }
+        if (global != null) {
+            global.recordPhaseTimes(req);
+        }
     }
 
     public int getStage() {
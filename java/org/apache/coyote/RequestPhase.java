@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.util.Locale;
+
+/**
+ * The phases of the processing of a request for which the time taken is
+ * recorded. The time for a phase is only recorded if the phase applies to the
+ * request and the protocol supports it.
+ */
+public enum RequestPhase {
+
+    /**
+     * From the connection being accepted to it first being processed by a
+     * container thread. This includes the time the client takes to send the
+     * start of the first request. Only recorded for the first request on a
+     * connection.
+     */
+    ACCEPT,
+
+    /**
+     * From the start to the end of the TLS handshake. Only recorded for the
+     * first request on a connection.
+     */
+    HANDSHAKE,
+
+    /**
+     * The time the processing of the connection waited in the executor queue
+     * for a container thread before the request was read.
+     */
+    QUEUE,
+
+    /**
+     * From the first byte of the request being read to the end of the request
+     * headers.
+     */
+    PARSE,
+
+    /**
+     * The time spent in the container (valves, filters and servlet) for the
+     * initial dispatch of the request.
+     */
+    SERVICE,
+
+    /**
+     * The time spent writing the response to the network.
+     */
+    WRITE;
+
+
+    private static final RequestPhase[] VALUES = values();
+
+    private final String name = name().toLowerCase(Locale.ENGLISH);
+
+
+    /**
+     * @return The name of the phase as used in configuration, e.g.
+     *         <code>queue</code>
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Obtain the phase with the given name.
+     *
+     * @param name The name of the phase, ignoring case
+     *
+     * @return The phase or <code>null</code> if there is no phase with the
+     *         given name
+     */
+    public static RequestPhase fromName(String name) {
+        for (RequestPhase phase : VALUES) {
+            if (phase.name.equalsIgnoreCase(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+}
@@ -34,7 +34,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpUpgradeHandler;
 
 import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.CompressionCache;
 import org.apache.coyote.CompressionConfig;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.Processor;
 import org.apache.coyote.Request;
@@ -97,7 +99,7 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
         ObjectName rgOname = getGlobalRequestProcessorMBeanName();
         if (rgOname != null) {
             Registry registry = Registry.getRegistry(null, null);
-            ObjectName query = new ObjectName(rgOname.getCanonicalName() + ",Upgrade=*");
+            ObjectName query = new ObjectName(rgOname.getCanonicalName() + ",Upgrade=*,*");
             Set<ObjectInstance> upgrades = registry.getMBeanServer().queryMBeans(query, null);
             for (ObjectInstance upgrade : upgrades) {
                 registry.unregisterComponent(upgrade.getObjectName());
@@ -214,6 +216,55 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    private boolean useSwarParser = false;
+    /**
+     * Will complete request lines and header lines that are already present in
+     * the input buffer be parsed directly, scanning header values eight bytes
+     * at a time, before falling back to the standard byte by byte parser?
+     *
+     * @return {@code true} if the alternative parser is used
+     */
+    public boolean getUseSwarParser() { return useSwarParser; }
+    /**
+     * Should complete request lines and header lines that are already present
+     * in the input buffer be parsed directly, scanning header values eight
+     * bytes at a time, before falling back to the standard byte by byte
+     * parser? Lines that are incomplete, folded or contain anything unusual
+     * are always handled by the standard parser so the parsing results are
+     * the same either way.
+     *
+     * @param useSwarParser {@code true} to use the alternative parser
+     */
+    public void setUseSwarParser(boolean useSwarParser) {
+        this.useSwarParser = useSwarParser;
+    }
+
+
+    private boolean batchPipelinedResponses = false;
+    /**
+     * Are responses to pipelined requests accumulated and written to the
+     * network together rather than flushing each response as it completes?
+     *
+     * @return {@code true} if responses to pipelined requests are batched
+     */
+    public boolean getBatchPipelinedResponses() { return batchPipelinedResponses; }
+    /**
+     * Should responses to pipelined requests be accumulated and written to the
+     * network together? If enabled, a response is not flushed when it
+     * completes if the complete head of the next request has already been
+     * received. It will be flushed with a later response, when the socket
+     * write buffer is full or before a request body is read. This reduces the
+     * number of writes for clients that pipeline aggressively at the cost of
+     * delaying a response until the responses to the following pipelined
+     * requests are complete.
+     *
+     * @param batchPipelinedResponses {@code true} to batch responses
+     */
+    public void setBatchPipelinedResponses(boolean batchPipelinedResponses) {
+        this.batchPipelinedResponses = batchPipelinedResponses;
+    }
+
+
     private int maxSavePostSize = 4 * 1024;
     /**
      * Return the maximum size of the post which will be saved during FORM or
@@ -327,6 +378,51 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     public boolean useCompression(Request request, Response response) {
         return compressionConfig.useCompression(request, response);
     }
+    public ContentEncoder getContentEncoder(Request request, Response response) {
+        return compressionConfig.getContentEncoder(request, response);
+    }
+
+
+    public String getCompressionEncoders() {
+        return compressionConfig.getCompressionEncoders();
+    }
+    public void setCompressionEncoders(String compressionEncoders) {
+        compressionConfig.setCompressionEncoders(compressionEncoders);
+    }
+
+
+    public int getMinCompressionLevel() {
+        return compressionConfig.getMinCompressionLevel();
+    }
+    public void setMinCompressionLevel(int minCompressionLevel) {
+        compressionConfig.setMinCompressionLevel(minCompressionLevel);
+    }
+
+
+    public int getMaxCompressionLevel() {
+        return compressionConfig.getMaxCompressionLevel();
+    }
+    public void setMaxCompressionLevel(int maxCompressionLevel) {
+        compressionConfig.setMaxCompressionLevel(maxCompressionLevel);
+    }
+
+
+    public int getCurrentCompressionLevel() {
+        return compressionConfig.getCurrentCompressionLevel();
+    }
+
+
+    public long getCompressionCacheSize() {
+        return compressionConfig.getCompressionCacheSize();
+    }
+    public void setCompressionCacheSize(long compressionCacheSize) {
+        compressionConfig.setCompressionCacheSize(compressionCacheSize);
+    }
+
+
+    public CompressionCache getCompressionCache() {
+        return compressionConfig.getCompressionCache();
+    }
 
 
     private Pattern restrictedUserAgents = null;
@@ -68,6 +68,12 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
 
     private final boolean rejectIllegalHeader;
 
+    /**
+     * Should complete request lines and header lines be parsed directly from
+     * the buffer before falling back to the byte by byte state machine?
+     */
+    private final boolean useSwarParser;
+
     /**
      * State.
      */
@@ -155,6 +161,12 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
 
     public Http11InputBuffer(Request request, int headerBufferSize,
             boolean rejectIllegalHeader, HttpParser httpParser) {
+        this(request, headerBufferSize, rejectIllegalHeader, httpParser, false);
+    }
+
+
+    public Http11InputBuffer(Request request, int headerBufferSize,
+            boolean rejectIllegalHeader, HttpParser httpParser, boolean useSwarParser) {
 
         this.request = request;
         headers = request.getMimeHeaders();
@@ -162,6 +174,7 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
         this.headerBufferSize = headerBufferSize;
         this.rejectIllegalHeader = rejectIllegalHeader;
         this.httpParser = httpParser;
+        this.useSwarParser = useSwarParser;
 
         filterLibrary = new InputFilter[0];
         activeFilters = new InputFilter[0];
@@ -391,6 +404,9 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
             parsingRequestLineStart = byteBuffer.position();
             parsingRequestLinePhase = 2;
         }
+        if (parsingRequestLinePhase == 2 && useSwarParser && parseRequestLineSwar()) {
+            parsingRequestLinePhase = 7;
+        }
         if (parsingRequestLinePhase == 2) {
             //
             // Reading the method name
@@ -658,6 +674,39 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     }
 
 
+    /**
+     * Has the complete head (request line and headers) of another request
+     * already been read into the input buffer? Only meaningful once the
+     * current request has been fully read.
+     *
+     * @return {@code true} if the head of the next request is in the buffer
+     */
+    boolean hasPipelinedRequest() {
+        byte[] buf = byteBuffer.array();
+        int pos = byteBuffer.position();
+        int limit = byteBuffer.limit();
+        // Skip any blank lines before the request line
+        while (pos < limit && (buf[pos] == Constants.CR || buf[pos] == Constants.LF)) {
+            pos++;
+        }
+        if (pos == limit) {
+            return false;
+        }
+        // Look for an empty line
+        while (true) {
+            int lineEnd = SwarScanner.indexOf(buf, pos, limit, Constants.LF);
+            if (lineEnd == -1) {
+                return false;
+            }
+            pos = lineEnd + 1;
+            if (pos < limit && buf[pos] == Constants.LF ||
+                    pos + 1 < limit && buf[pos] == Constants.CR && buf[pos + 1] == Constants.LF) {
+                return true;
+            }
+        }
+    }
+
+
     @Override
     public int available() {
         return available(false);
@@ -837,6 +886,13 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
      */
     private HeaderParseStatus parseHeader() throws IOException {
 
+        if (useSwarParser && headerParsePos == HeaderParsePosition.HEADER_START) {
+            HeaderParseStatus status = parseHeaderSwar();
+            if (status != null) {
+                return status;
+            }
+        }
+
         while (headerParsePos == HeaderParsePosition.HEADER_START) {
 
             // Read new bytes if needed
@@ -1025,6 +1081,166 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler
     }
 
 
+    /**
+     * Parse the request line directly from the buffer. This only handles the
+     * common case of a complete, valid request line with single spaces between
+     * the components. In all other cases nothing is consumed and the caller
+     * falls back to {@link #parseRequestLine(boolean, int, int)} which
+     * handles partial lines, additional whitespace, HTTP/0.9 and reports any
+     * errors.
+     *
+     * @return {@code true} if the request line was parsed, otherwise
+     *         {@code false}
+     */
+    private boolean parseRequestLineSwar() {
+        byte[] buf = byteBuffer.array();
+        int start = byteBuffer.position();
+        int lineEnd = SwarScanner.indexOf(buf, start, byteBuffer.limit(), Constants.LF);
+        if (lineEnd == -1) {
+            return false;
+        }
+
+        int pos = start;
+        while (HttpParser.isToken(buf[pos])) {
+            pos++;
+        }
+        if (pos == start || buf[pos] != Constants.SP) {
+            return false;
+        }
+        int methodEnd = pos++;
+
+        int uriStart = pos;
+        int queryPos = -1;
+        byte b;
+        while ((b = buf[pos]) != Constants.SP) {
+            // CR and LF always fail these checks so the scan can't pass the
+            // end of the line
+            if (b == Constants.QUESTION && queryPos == -1) {
+                queryPos = pos;
+            } else if (queryPos != -1 && !httpParser.isQueryRelaxed(b)) {
+                return false;
+            } else if (httpParser.isNotRequestTargetRelaxed(b)) {
+                return false;
+            }
+            pos++;
+        }
+        if (pos == uriStart) {
+            return false;
+        }
+        int uriEnd = pos++;
+
+        int protocolStart = pos;
+        while (HttpParser.isHttpProtocol(buf[pos])) {
+            pos++;
+        }
+        int protocolEnd = pos;
+        if (protocolEnd == protocolStart) {
+            return false;
+        }
+        if (buf[pos] == Constants.CR) {
+            pos++;
+        }
+        if (pos != lineEnd) {
+            return false;
+        }
+
+        request.method().setBytes(buf, start, methodEnd - start);
+        if (queryPos >= 0) {
+            request.queryString().setBytes(buf, queryPos + 1, uriEnd - queryPos - 1);
+            request.requestURI().setBytes(buf, uriStart, queryPos - uriStart);
+        } else {
+            request.requestURI().setBytes(buf, uriStart, uriEnd - uriStart);
+        }
+        request.protocol().setBytes(buf, protocolStart, protocolEnd - protocolStart);
+        byteBuffer.position(lineEnd + 1);
+        chr = Constants.LF;
+        return true;
+    }
+
+
+    /**
+     * Parse a header line, or the blank line that ends the headers, directly
+     * from the buffer. The header value is scanned eight bytes at a time for
+     * the end of line. This only handles complete, valid lines that are not
+     * folded and have no HT or other control characters in the value. In all
+     * other cases nothing is consumed (the header name may have been converted
+     * to lower case) and {@code null} is returned so the caller falls back to
+     * the byte by byte parser.
+     *
+     * @return The parse status or {@code null} if the line could not be parsed
+     */
+    private HeaderParseStatus parseHeaderSwar() {
+        byte[] buf = byteBuffer.array();
+        int pos = byteBuffer.position();
+        int limit = byteBuffer.limit();
+        if (pos >= limit) {
+            return null;
+        }
+
+        byte b = buf[pos];
+        if (b == Constants.LF) {
+            byteBuffer.position(pos + 1);
+            chr = Constants.LF;
+            return HeaderParseStatus.DONE;
+        } else if (b == Constants.CR) {
+            if (pos + 1 < limit && buf[pos + 1] == Constants.LF) {
+                byteBuffer.position(pos + 2);
+                chr = Constants.LF;
+                return HeaderParseStatus.DONE;
+            }
+            return null;
+        }
+
+        int nameStart = pos;
+        while (true) {
+            if (pos >= limit) {
+                return null;
+            }
+            b = buf[pos];
+            if (b == Constants.COLON) {
+                break;
+            } else if (!HttpParser.isToken(b)) {
+                return null;
+            }
+            if ((b >= Constants.A) && (b <= Constants.Z)) {
+                buf[pos] = (byte) (b - Constants.LC_OFFSET);
+            }
+            pos++;
+        }
+        int nameEnd = pos++;
+
+        while (pos < limit && buf[pos] == Constants.SP) {
+            pos++;
+        }
+        int valueStart = pos;
+        int valueEnd = SwarScanner.indexOfControl(buf, pos, limit);
+        if (valueEnd == -1) {
+            return null;
+        }
+        pos = valueEnd;
+        if (buf[pos] == Constants.CR) {
+            pos++;
+        }
+        // The byte after the line is required to check for a folded line
+        if (pos + 1 >= limit || buf[pos] != Constants.LF) {
+            return null;
+        }
+        pos++;
+        if (buf[pos] == Constants.SP || buf[pos] == Constants.HT) {
+            return null;
+        }
+
+        while (valueEnd > valueStart && buf[valueEnd - 1] == Constants.SP) {
+            valueEnd--;
+        }
+        headers.addValue(buf, nameStart, nameEnd - nameStart).setBytes(
+                buf, valueStart, valueEnd - valueStart);
+        byteBuffer.position(pos);
+        chr = Constants.LF;
+        return HeaderParseStatus.HAVE_MORE_HEADERS;
+    }
+
+
     private HeaderParseStatus skipLine() throws IOException {
         headerParsePos = HeaderParsePosition.HEADER_SKIPLINE;
         boolean eol = false;
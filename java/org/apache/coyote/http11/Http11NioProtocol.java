@@ -62,6 +62,14 @@ public class Http11NioProtocol extends AbstractHttp11JsseProtocol<NioChannel> {
       return ((NioEndpoint)getEndpoint()).getPollerThreadPriority();
     }
 
+    public void setPollerThreadCount(int pollerThreadCount) {
+        ((NioEndpoint)getEndpoint()).setPollerThreadCount(pollerThreadCount);
+    }
+
+    public int getPollerThreadCount() {
+        return ((NioEndpoint)getEndpoint()).getPollerThreadCount();
+    }
+
 
     // ----------------------------------------------------- JMX related methods
 
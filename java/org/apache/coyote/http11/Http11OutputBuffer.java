@@ -22,6 +22,8 @@ import java.util.Arrays;
 
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.CloseNowException;
+import org.apache.coyote.Request;
+import org.apache.coyote.RequestPhase;
 import org.apache.coyote.Response;
 import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
@@ -97,6 +99,24 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     protected SocketWrapperBase<?> socketWrapper;
 
 
+    /**
+     * Should the flush at the end of the current response be skipped?
+     */
+    private boolean deferEndFlush = false;
+
+
+    /**
+     * Has the flush at the end of a response been skipped?
+     */
+    private boolean flushPending = false;
+
+
+    /**
+     * Pre-serialized header lines. <code>null</code> if disabled.
+     */
+    private ResponseHeaderCache headerCache = new ResponseHeaderCache();
+
+
     /**
      * Bytes written to client for the current request
      */
@@ -256,6 +276,7 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
      */
     public void recycle() {
         nextRequest();
+        flushPending = false;
         socketWrapper = null;
     }
 
@@ -279,6 +300,38 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
         ackSent = false;
         responseFinished = false;
         byteCount = 0;
+        deferEndFlush = false;
+    }
+
+
+    /**
+     * Skip the flush of the socket at the end of the current response so it
+     * is written with later responses. {@link #flushPending()} must be called
+     * if no more responses will be written.
+     *
+     * @param deferEndFlush {@code true} to skip the flush
+     */
+    void setDeferEndFlush(boolean deferEndFlush) {
+        this.deferEndFlush = deferEndFlush;
+    }
+
+
+    boolean isFlushPending() {
+        return flushPending;
+    }
+
+
+    /**
+     * Flush any responses for which the flush at the end of the response was
+     * skipped.
+     *
+     * @throws IOException If an error occurs writing to the socket
+     */
+    void flushPending() throws IOException {
+        if (flushPending) {
+            flushPending = false;
+            socketWrapper.flush(true);
+        }
     }
 
 
@@ -315,7 +368,9 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
             try {
                 SocketWrapperBase<?> socketWrapper = this.socketWrapper;
                 if (socketWrapper != null) {
+                    long start = System.nanoTime();
                     socketWrapper.write(isBlocking(), headerBuffer);
+                    addWriteTime(start);
                 } else {
                     throw new CloseNowException(sm.getString("iob.failedwrite"));
                 }
@@ -330,12 +385,20 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
      * Send the response status line.
      */
     public void sendStatus() {
+        int status = response.getStatus();
+        if (headerCache != null) {
+            byte[] statusLine = ResponseHeaderCache.getStatusLine(status);
+            if (statusLine != null) {
+                writeLine(statusLine, 3);
+                return;
+            }
+        }
+
         // Write protocol name
         write(Constants.HTTP_11_BYTES);
         headerBuffer.put(Constants.SP);
 
         // Write status code
-        int status = response.getStatus();
         switch (status) {
         case 200:
             write(Constants._200_BYTES);
@@ -367,6 +430,32 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
      * @param value Header value
      */
     public void sendHeader(MessageBytes name, MessageBytes value) {
+        if (headerCache != null && isCacheable(name) && isCacheable(value)) {
+            String nameString = name.getString();
+            String valueString = value.getString();
+            int hash = ResponseHeaderCache.hash(nameString, valueString);
+            byte[] line = headerCache.getHeaderLine(nameString, valueString, hash);
+            if (line != null) {
+                writeLine(line, 2);
+                return;
+            }
+            if (headerCache.miss(hash)) {
+                int start = headerBuffer.position();
+                writeHeader(name, value);
+                int length = headerBuffer.position() - start;
+                if (length <= ResponseHeaderCache.MAX_LINE_LENGTH) {
+                    int offset = headerBuffer.arrayOffset() + start;
+                    headerCache.putHeaderLine(nameString, valueString, hash,
+                            Arrays.copyOfRange(headerBuffer.array(), offset, offset + length));
+                }
+                return;
+            }
+        }
+        writeHeader(name, value);
+    }
+
+
+    private void writeHeader(MessageBytes name, MessageBytes value) {
         write(name);
         headerBuffer.put(Constants.COLON).put(Constants.SP);
         write(value);
@@ -374,6 +463,34 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     }
 
 
+    /*
+     * Only Strings that will be converted to bytes using the default
+     * ISO-8859-1 encoding are cached so the cached line is always the same as
+     * the line write(MessageBytes) would produce.
+     */
+    private static boolean isCacheable(MessageBytes mb) {
+        return mb.getType() == MessageBytes.T_STR && mb.getByteChunk().isNull() &&
+                mb.getCharset() == ByteChunk.DEFAULT_CHARSET;
+    }
+
+
+    /**
+     * Enable or disable the use of pre-serialized status and header lines.
+     * Intended for testing.
+     *
+     * @param enabled <code>true</code> to use the cache
+     */
+    void setHeaderCacheEnabled(boolean enabled) {
+        if (enabled) {
+            if (headerCache == null) {
+                headerCache = new ResponseHeaderCache();
+            }
+        } else {
+            headerCache = null;
+        }
+    }
+
+
     /**
      * End the header block.
      */
@@ -443,6 +560,18 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     }
 
 
+    /*
+     * Writes a pre-serialized line. The final bytes of the line would have
+     * been put directly into the buffer, using the space reserved by
+     * checkLengthBeforeWrite(), if the line had been written in parts so
+     * exclude them from the check to give exactly the same limit.
+     */
+    private void writeLine(byte[] line, int reserved) {
+        checkLengthBeforeWrite(line.length - reserved);
+        headerBuffer.put(line);
+    }
+
+
     /**
      * This method will write the specified integer to the output stream. This
      * method is meant to be used to write the response header.
@@ -486,7 +615,18 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
      * @throws IOException Error writing data
      */
     protected boolean flushBuffer(boolean block) throws IOException  {
-        return socketWrapper.flush(block);
+        long start = System.nanoTime();
+        boolean result = socketWrapper.flush(block);
+        addWriteTime(start);
+        return result;
+    }
+
+
+    private void addWriteTime(long start) {
+        Request request = response.getRequest();
+        if (request != null) {
+            request.addPhaseTime(RequestPhase.WRITE, System.nanoTime() - start);
+        }
     }
 
 
@@ -544,7 +684,9 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
                 int len = chunk.remaining();
                 SocketWrapperBase<?> socketWrapper = Http11OutputBuffer.this.socketWrapper;
                 if (socketWrapper != null) {
+                    long start = System.nanoTime();
                     socketWrapper.write(isBlocking(), chunk);
+                    addWriteTime(start);
                 } else {
                     throw new CloseNowException(sm.getString("iob.failedwrite"));
                 }
@@ -565,12 +707,21 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
 
         @Override
         public void end() throws IOException {
-            socketWrapper.flush(true);
+            if (deferEndFlush) {
+                flushPending = true;
+            } else {
+                flushPending = false;
+                long start = System.nanoTime();
+                socketWrapper.flush(true);
+                addWriteTime(start);
+            }
         }
 
         @Override
         public void flush() throws IOException {
+            long start = System.nanoTime();
             socketWrapper.flush(isBlocking());
+            addWriteTime(start);
         }
     }
 }
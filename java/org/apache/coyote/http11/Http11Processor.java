@@ -30,10 +30,12 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.RequestInfo;
+import org.apache.coyote.RequestPhase;
 import org.apache.coyote.UpgradeProtocol;
 import org.apache.coyote.UpgradeToken;
 import org.apache.coyote.http11.filters.BufferedInputFilter;
@@ -136,6 +138,15 @@ public class Http11Processor extends AbstractProcessor {
     private boolean contentDelimitation = true;
 
 
+    /**
+     * May the flush at the end of the current response be skipped if the next
+     * pipelined request has already been received? Only set while the service
+     * loop is processing a request so responses completed by other threads are
+     * always flushed.
+     */
+    private volatile boolean batchResponse = false;
+
+
     /**
      * Instance of the new protocol to use after the HTTP connection has been
      * upgraded.
@@ -157,7 +168,7 @@ public class Http11Processor extends AbstractProcessor {
                 protocol.getRelaxedQueryChars());
 
         inputBuffer = new Http11InputBuffer(request, protocol.getMaxHttpHeaderSize(),
-                protocol.getRejectIllegalHeader(), httpParser);
+                protocol.getRejectIllegalHeader(), httpParser, protocol.getUseSwarParser());
         request.setInputBuffer(inputBuffer);
 
         outputBuffer = new Http11OutputBuffer(response, protocol.getMaxHttpHeaderSize());
@@ -269,6 +280,7 @@ public class Http11Processor extends AbstractProcessor {
                 if (!inputBuffer.parseRequestLine(keptAlive, protocol.getConnectionTimeout(),
                         protocol.getKeepAliveTimeout())) {
                     if (inputBuffer.getParsingRequestLinePhase() == -1) {
+                        flushPendingResponses();
                         return SocketState.UPGRADING;
                     } else if (handleIncompleteRequestLineRead()) {
                         break;
@@ -299,6 +311,7 @@ public class Http11Processor extends AbstractProcessor {
                     if (!protocol.getDisableUploadTimeout()) {
                         socketWrapper.setReadTimeout(protocol.getConnectionUploadTimeout());
                     }
+                    recordPhaseTimes();
                 }
             } catch (IOException e) {
                 if (log.isDebugEnabled()) {
@@ -367,6 +380,18 @@ public class Http11Processor extends AbstractProcessor {
                 }
             }
 
+            // Reject the request if the endpoint is overloaded
+            boolean shed = false;
+            if (getErrorState().isIoAllowed() && socketWrapper.shedRequest()) {
+                shed = true;
+                // 503 - Service Unavailable
+                response.setStatus(503);
+                setErrorState(ErrorState.CLOSE_CLEAN, null);
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("http11processor.request.shed", socketWrapper));
+                }
+            }
+
             int maxKeepAliveRequests = protocol.getMaxKeepAliveRequests();
             if (maxKeepAliveRequests == 1) {
                 keepAlive = false;
@@ -375,10 +400,19 @@ public class Http11Processor extends AbstractProcessor {
                 keepAlive = false;
             }
 
+            // The client may wait for earlier responses before sending the
+            // request body
+            if (outputBuffer.isFlushPending() && hasRequestBody()) {
+                flushPendingResponses();
+            }
+
             // Process the request in the adapter
-            if (getErrorState().isIoAllowed()) {
+            if (shed) {
+                getAdapter().log(request, response, 0);
+            } else if (getErrorState().isIoAllowed()) {
                 try {
                     rp.setStage(org.apache.coyote.Constants.STAGE_SERVICE);
+                    batchResponse = protocol.getBatchPipelinedResponses();
                     getAdapter().service(request, response);
                     // Handle when the response was committed before a serious
                     // error occurred.  Throwing a ServletException should both
@@ -421,6 +455,7 @@ public class Http11Processor extends AbstractProcessor {
                 // endRequest() in that case.
                 endRequest();
             }
+            batchResponse = false;
             rp.setStage(org.apache.coyote.Constants.STAGE_ENDOUTPUT);
 
             // If there was an error, make sure the request is counted as
@@ -453,6 +488,12 @@ public class Http11Processor extends AbstractProcessor {
 
         rp.setStage(org.apache.coyote.Constants.STAGE_ENDED);
 
+        // Write any batched responses to pipelined requests. They are complete
+        // so they are written even if the connection is about to be closed
+        // because of an error. Batched responses are always written before a
+        // request enters async mode so none are pending here if it has.
+        flushPendingResponses();
+
         if (getErrorState().isError() || (protocol.isPaused() && !isAsync())) {
             return SocketState.CLOSED;
         } else if (isAsync()) {
@@ -879,9 +920,9 @@ public class Http11Processor extends AbstractProcessor {
         }
 
         // Check for compression
-        boolean useCompression = false;
+        ContentEncoder contentEncoder = null;
         if (entityBody && sendfileData == null) {
-            useCompression = protocol.useCompression(request, response);
+            contentEncoder = protocol.getContentEncoder(request, response);
         }
 
         MimeHeaders headers = response.getMimeHeaders();
@@ -921,8 +962,11 @@ public class Http11Processor extends AbstractProcessor {
             }
         }
 
-        if (useCompression) {
-            outputBuffer.addActiveFilter(outputFilters[Constants.GZIP_FILTER]);
+        if (contentEncoder != null) {
+            GzipOutputFilter compressionFilter = (GzipOutputFilter) outputFilters[Constants.GZIP_FILTER];
+            compressionFilter.setContentEncoder(contentEncoder, protocol.getCurrentCompressionLevel());
+            compressionFilter.setCompressionCache(protocol.getCompressionCache());
+            outputBuffer.addActiveFilter(compressionFilter);
         }
 
         // Add date header unless application has already set one (e.g. in a
@@ -1095,12 +1139,52 @@ public class Http11Processor extends AbstractProcessor {
     }
 
 
+    /*
+     * Called once the request headers have been read to record the time taken
+     * by the phases up to that point.
+     */
+    private void recordPhaseTimes() {
+        request.setPhaseTime(RequestPhase.ACCEPT, socketWrapper.takeAcceptTime());
+        request.setPhaseTime(RequestPhase.HANDSHAKE, socketWrapper.takeHandshakeTime());
+        request.setPhaseTime(RequestPhase.QUEUE, socketWrapper.takeQueueTime());
+        request.setPhaseTime(RequestPhase.PARSE, System.nanoTime() - request.getStartTimeNanos());
+    }
+
+
+    private boolean hasRequestBody() {
+        MimeHeaders headers = request.getMimeHeaders();
+        return headers.getValue("content-length") != null || headers.getValue("transfer-encoding") != null;
+    }
+
+
+    private void flushPendingResponses() {
+        if (!outputBuffer.isFlushPending()) {
+            return;
+        }
+        try {
+            outputBuffer.flushPending();
+        } catch (IOException e) {
+            setErrorState(ErrorState.CLOSE_CONNECTION_NOW, e);
+        }
+    }
+
+
+    @Override
+    protected void asyncStarted() {
+        // Once the request is async the application may write from other
+        // threads so this is the last opportunity for the container thread to
+        // write batched responses.
+        flushPendingResponses();
+    }
+
+
     @Override
     protected SocketState dispatchEndRequest() {
         if (!keepAlive || protocol.isPaused()) {
             return SocketState.CLOSED;
         } else {
             endRequest();
+            flushPendingResponses();
             inputBuffer.nextRequest();
             outputBuffer.nextRequest();
             if (socketWrapper.isReadPending()) {
@@ -1154,6 +1238,7 @@ public class Http11Processor extends AbstractProcessor {
         }
         if (getErrorState().isIoAllowed()) {
             try {
+                outputBuffer.setDeferEndFlush(batchResponse);
                 action(ActionCode.COMMIT, null);
                 outputBuffer.end();
             } catch (IOException e) {
@@ -1164,15 +1249,37 @@ public class Http11Processor extends AbstractProcessor {
                 log.error(sm.getString("http11processor.response.finish"), t);
             }
         }
+        // Any request body has now been swallowed so the input buffer is
+        // positioned at the start of the next pipelined request, if any
+        if (outputBuffer.isFlushPending() && !canDeferFlush()) {
+            flushPendingResponses();
+        }
     }
 
 
     @Override
     protected final void finishResponse() throws IOException {
+        // Whether the flush may be skipped can't be determined until the
+        // request body has been swallowed. endRequest() flushes the response
+        // if required.
+        outputBuffer.setDeferEndFlush(batchResponse);
         outputBuffer.end();
     }
 
 
+    /*
+     * The flush at the end of a response may be skipped if the response is
+     * complete, the connection will be kept alive and the next request has
+     * already been received. The response will be flushed with a later
+     * response or, if processing of the connection stops before then, by the
+     * service loop. Only valid once the request body has been swallowed.
+     */
+    private boolean canDeferFlush() {
+        return !isAsync() && keepAlive && !getErrorState().isError() && sendfileData == null &&
+                !protocol.isPaused() && inputBuffer.hasPipelinedRequest();
+    }
+
+
     @Override
     protected final void ack(ContinueResponseTiming continueResponseTiming) {
         // Only try and send the ACK for ALWAYS or if the timing of the request
@@ -0,0 +1,139 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds pre-serialized parts of the HTTP/1.1 response head so they can be
+ * written with a single bulk copy.
+ * <p>
+ * The status lines for the status codes 100 to 599 are created once and
+ * shared. Complete header lines (name, separator, value and CRLF) are cached
+ * per output buffer so no synchronization is required. A header line is keyed
+ * by the name and value Strings and is only cached the second time it is seen
+ * in a row for its set, so header values that are unique to a response (e.g.
+ * ETag or Set-Cookie) do not cause additional garbage. Header values that are
+ * the same for many responses - such as the Date header (FastHttpDateFormat
+ * returns the same String for a second), the Server header, common content
+ * types and the constant headers added by filters - are written from the
+ * cache.
+ */
+final class ResponseHeaderCache {
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+    private static final byte[][] STATUS_LINES = new byte[MAX_STATUS - MIN_STATUS + 1][];
+
+    static {
+        for (int status = MIN_STATUS; status <= MAX_STATUS; status++) {
+            // The reason phrase is optional but the space before it is not.
+            STATUS_LINES[status - MIN_STATUS] = (Constants.HTTP_11 + " " + status + " " +
+                    Constants.CRLF).getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    // Header lines longer than this are not cached to limit the memory used
+    // per processor
+    static final int MAX_LINE_LENGTH = 1024;
+
+    private static final int WAYS = 2;
+    private static final int SETS = 32;
+
+    private final String[] names = new String[SETS * WAYS];
+    private final String[] values = new String[SETS * WAYS];
+    private final byte[][] lines = new byte[SETS * WAYS][];
+    // Per set: the hash of the last header that was not cached and the way
+    // to replace next
+    private final int[] candidates = new int[SETS];
+    private final int[] victims = new int[SETS];
+
+
+    /**
+     * @param status The HTTP status code
+     * @return The serialized status line including the trailing CRLF or
+     *         <code>null</code> if the status code is outside the range of
+     *         the cache
+     */
+    static byte[] getStatusLine(int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return null;
+        }
+        return STATUS_LINES[status - MIN_STATUS];
+    }
+
+
+    /**
+     * @param name  The header name
+     * @param value The header value
+     * @param hash  The hash of the header from {@link #hash(String, String)}
+     *
+     * @return The cached serialized header line or <code>null</code> if it is
+     *         not cached
+     */
+    byte[] getHeaderLine(String name, String value, int hash) {
+        int first = set(hash) * WAYS;
+        for (int i = first; i < first + WAYS; i++) {
+            byte[] line = lines[i];
+            if (line != null && values[i].equals(value) && names[i].equals(name)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Records that a header line was not found in the cache.
+     *
+     * @param hash The hash of the header from {@link #hash(String, String)}
+     *
+     * @return <code>true</code> if the header line should be added to the
+     *         cache with {@link #putHeaderLine(String, String, int, byte[])}
+     */
+    boolean miss(int hash) {
+        int set = set(hash);
+        if (candidates[set] == hash) {
+            return true;
+        }
+        candidates[set] = hash;
+        return false;
+    }
+
+
+    void putHeaderLine(String name, String value, int hash, byte[] line) {
+        int set = set(hash);
+        int i = set * WAYS + victims[set];
+        victims[set] = (victims[set] + 1) % WAYS;
+        names[i] = name;
+        values[i] = value;
+        lines[i] = line;
+    }
+
+
+    static int hash(String name, String value) {
+        int h = name.hashCode() * 31 + value.hashCode();
+        // Avoid the initial value of candidates
+        return h == 0 ? 1 : h;
+    }
+
+
+    private static int set(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (SETS - 1);
+    }
+}
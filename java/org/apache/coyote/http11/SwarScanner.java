@@ -0,0 +1,135 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Scans byte arrays eight bytes at a time (SIMD within a register) for the
+ * bytes that are significant when parsing HTTP/1.1 headers. The bytes are read
+ * as little-endian longs so the first matching byte in the array is the least
+ * significant matching byte in the long. The bit tricks used are exact, i.e.
+ * they never report a byte that does not match, so the position of the first
+ * match can be obtained with {@link Long#numberOfTrailingZeros(long)}.
+ */
+final class SwarScanner {
+
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ONES = 0x0101010101010101L;
+
+    private static final long DEL = 0x7F * ONES;
+    // Adding this to the low 7 bits of a byte sets the high bit if the byte
+    // is 0x20 (SP) or greater
+    private static final long SP_THRESHOLD = (0x80 - 0x20) * ONES;
+
+
+    private SwarScanner() {
+        // Hide default constructor
+    }
+
+
+    /**
+     * Find the first byte in the given range that is a control character as
+     * defined by RFC 7230, i.e. less than 0x20 or equal to 0x7F. This includes
+     * the CR and LF that terminate a line and HT.
+     *
+     * @param buf   The bytes to scan
+     * @param start The first byte to scan
+     * @param end   The byte after the last byte to scan
+     *
+     * @return The index of the first control character or -1 if there is no
+     *         control character in the range
+     */
+    static int indexOfControl(byte[] buf, int start, int end) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            long word = (long) LONG_LE.get(buf, pos);
+            long mask = controlMask(word);
+            if (mask != 0) {
+                return pos + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+            pos += 8;
+        }
+        while (pos < end) {
+            int b = buf[pos] & 0xFF;
+            if (b < 0x20 || b == 0x7F) {
+                return pos;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Find the first occurrence of a byte in the given range.
+     *
+     * @param buf   The bytes to scan
+     * @param start The first byte to scan
+     * @param end   The byte after the last byte to scan
+     * @param b     The byte to look for
+     *
+     * @return The index of the first occurrence or -1 if the byte does not
+     *         appear in the range
+     */
+    static int indexOf(byte[] buf, int start, int end, byte b) {
+        long pattern = (b & 0xFFL) * ONES;
+        int pos = start;
+        while (pos + 8 <= end) {
+            long word = (long) LONG_LE.get(buf, pos);
+            long mask = zeroMask(word ^ pattern);
+            if (mask != 0) {
+                return pos + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+            pos += 8;
+        }
+        while (pos < end) {
+            if (buf[pos] == b) {
+                return pos;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+
+    /*
+     * High bit set in each byte of the result where the corresponding byte of
+     * the input is zero.
+     */
+    private static long zeroMask(long word) {
+        long t = (word & LOW_7_BITS) + LOW_7_BITS;
+        return ~(t | word | LOW_7_BITS);
+    }
+
+
+    /*
+     * High bit set in each byte of the result where the corresponding byte of
+     * the input is less than 0x20 or is 0x7F. Bytes with the high bit set
+     * (obs-text) are never flagged.
+     */
+    private static long controlMask(long word) {
+        long lessThanSpace = ~(((word & LOW_7_BITS) + SP_THRESHOLD) | word) & HIGH_BITS;
+        return lessThanSpace | zeroMask(word ^ DEL);
+    }
+}
@@ -16,11 +16,19 @@
  */
 package org.apache.coyote.http11.filters;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.ContentEncoder;
+import org.apache.coyote.GzipContentEncoder;
 import org.apache.coyote.Response;
 import org.apache.coyote.http11.HttpOutputBuffer;
 import org.apache.coyote.http11.OutputFilter;
@@ -28,7 +36,14 @@ import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 
 /**
- * Gzip output filter.
+ * Compression output filter. The response is compressed with gzip unless a
+ * different {@link ContentEncoder} is configured.
+ * <p>
+ * If a {@link CompressionCache} is configured and the response may be cached,
+ * either the compressed body is added to the cache or, if it is already
+ * cached, the body written by the application is held and, if it is the same
+ * as the body that was cached, the cached compressed body is written instead.
+ * Flushes are deferred until the end of the response in the latter case.
  *
  * @author Remy Maucherat
  */
@@ -48,7 +63,41 @@ public class GzipOutputFilter implements OutputFilter {
     /**
      * Compression output stream.
      */
-    protected GZIPOutputStream compressionStream = null;
+    protected OutputStream compressionStream = null;
+
+
+    /**
+     * The encoder used to create the compression output stream. If
+     * <code>null</code>, {@link GZIPOutputStream} is used.
+     */
+    protected ContentEncoder contentEncoder = null;
+
+
+    /**
+     * The compression level passed to the encoder.
+     */
+    protected int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+
+    /**
+     * Cache of compressed bodies. <code>null</code> if not used.
+     */
+    protected CompressionCache compressionCache = null;
+
+
+    private Response response;
+    private String cacheKey = null;
+    // Data needed to add the compressed body to the cache
+    private ByteArrayOutputStream cacheCapture = null;
+    // Cached compressed body that may be used for this response
+    private CompressionCache.Entry cacheEntry = null;
+    // Body written by the application while a cached body is being used
+    private ByteArrayOutputStream cacheHeld = null;
+    private MessageDigest digest = null;
+    private long length = 0;
+    // Output of the compression stream is discarded while it is closed on
+    // recycle
+    private boolean discard = false;
 
 
     /**
@@ -61,22 +110,108 @@ public class GzipOutputFilter implements OutputFilter {
 
     @Override
     public int doWrite(ByteBuffer chunk) throws IOException {
-        if (compressionStream == null) {
-            compressionStream = new GZIPOutputStream(fakeOutputStream, true);
+        if (compressionStream == null && cacheEntry == null) {
+            start();
         }
         int len = chunk.remaining();
         if (chunk.hasArray()) {
-            compressionStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+            write(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
             chunk.position(chunk.position() + len);
         } else {
             byte[] bytes = new byte[len];
-            chunk.put(bytes);
-            compressionStream.write(bytes, 0, len);
+            chunk.get(bytes);
+            write(bytes, 0, len);
         }
         return len;
     }
 
 
+    /**
+     * Set the encoder to use to compress the response.
+     *
+     * @param contentEncoder The encoder
+     * @param level          The compression level
+     */
+    public void setContentEncoder(ContentEncoder contentEncoder, int level) {
+        this.contentEncoder = contentEncoder;
+        this.compressionLevel = level;
+    }
+
+
+    public void setCompressionCache(CompressionCache compressionCache) {
+        this.compressionCache = compressionCache;
+    }
+
+
+    private void start() throws IOException {
+        if (compressionCache != null) {
+            String encoding = contentEncoder == null ? GzipContentEncoder.ENCODING : contentEncoder.getEncoding();
+            cacheKey = CompressionCache.getKey(response.getRequest(), response, encoding);
+            if (cacheKey != null) {
+                cacheEntry = compressionCache.get(cacheKey);
+                if (cacheEntry != null) {
+                    cacheHeld = new ByteArrayOutputStream((int) Math.min(cacheEntry.getLength(), 8192));
+                    return;
+                }
+                cacheCapture = new ByteArrayOutputStream();
+            }
+        }
+        startCompression();
+    }
+
+
+    private MessageDigest getDigest() {
+        if (digest == null) {
+            try {
+                digest = MessageDigest.getInstance(CompressionCache.DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+        return digest;
+    }
+
+
+    private void startCompression() throws IOException {
+        if (contentEncoder == null) {
+            compressionStream = new GZIPOutputStream(fakeOutputStream, true);
+        } else {
+            compressionStream = contentEncoder.createOutputStream(fakeOutputStream, compressionLevel);
+        }
+    }
+
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (cacheCapture != null || cacheEntry != null) {
+            getDigest().update(b, off, len);
+            length += len;
+        }
+        if (cacheEntry != null) {
+            cacheHeld.write(b, off, len);
+            if (length > cacheEntry.getLength()) {
+                stopUsingCache();
+            }
+        } else {
+            compressionStream.write(b, off, len);
+        }
+    }
+
+
+    /*
+     * The body is not the same as the cached body. Compress the body that has
+     * been held and replace the cached body once the response is complete.
+     */
+    private void stopUsingCache() throws IOException {
+        byte[] held = cacheHeld.toByteArray();
+        cacheEntry = null;
+        cacheHeld = null;
+        cacheCapture = new ByteArrayOutputStream();
+        startCompression();
+        compressionStream.write(held);
+    }
+
+
     @Override
     public long getBytesWritten() {
         return buffer.getBytesWritten();
@@ -90,7 +225,7 @@ public class GzipOutputFilter implements OutputFilter {
      */
     @Override
     public void flush() throws IOException {
-        if (compressionStream != null) {
+        if (compressionStream != null && cacheEntry == null) {
             try {
                 if (log.isDebugEnabled()) {
                     log.debug("Flushing the compression stream!");
@@ -108,7 +243,7 @@ public class GzipOutputFilter implements OutputFilter {
 
     @Override
     public void setResponse(Response response) {
-        // NOOP: No need for parameters from response in this filter
+        this.response = response;
     }
 
 
@@ -120,11 +255,26 @@ public class GzipOutputFilter implements OutputFilter {
 
     @Override
     public void end() throws IOException {
-        if (compressionStream == null) {
-            compressionStream = new GZIPOutputStream(fakeOutputStream, true);
+        if (compressionStream == null && cacheEntry == null) {
+            start();
+        }
+        if (cacheEntry != null) {
+            if (length == cacheEntry.getLength() &&
+                    MessageDigest.isEqual(getDigest().digest(), cacheEntry.getDigest())) {
+                buffer.doWrite(ByteBuffer.wrap(cacheEntry.getCompressed()));
+                buffer.end();
+                return;
+            }
+            stopUsingCache();
+        }
+        if (compressionStream instanceof DeflaterOutputStream) {
+            ((DeflaterOutputStream) compressionStream).finish();
         }
-        compressionStream.finish();
         compressionStream.close();
+        if (cacheCapture != null) {
+            compressionCache.put(cacheKey,
+                    new CompressionCache.Entry(cacheCapture.toByteArray(), length, getDigest().digest()));
+        }
         buffer.end();
     }
 
@@ -134,8 +284,32 @@ public class GzipOutputFilter implements OutputFilter {
      */
     @Override
     public void recycle() {
-        // Set compression stream to null
-        compressionStream = null;
+        if (compressionStream != null) {
+            // Closing the stream releases the resources, such as a Deflater,
+            // used by the encoder. It has no effect if the response was
+            // completed. Otherwise, the remaining output is discarded.
+            discard = true;
+            try {
+                compressionStream.close();
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Ignored exception while closing gzip filter", e);
+                }
+            } finally {
+                discard = false;
+            }
+            compressionStream = null;
+        }
+        contentEncoder = null;
+        compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        cacheKey = null;
+        cacheCapture = null;
+        cacheEntry = null;
+        cacheHeld = null;
+        if (digest != null) {
+            digest.reset();
+        }
+        length = 0;
     }
 
 
@@ -150,13 +324,32 @@ public class GzipOutputFilter implements OutputFilter {
             throws IOException {
             // Shouldn't get used for good performance, but is needed for
             // compatibility with Sun JDK 1.4.0
+            if (discard) {
+                return;
+            }
             outputChunk.put(0, (byte) (b & 0xff));
             buffer.doWrite(outputChunk);
+            capture(outputChunk.array(), 0, 1);
         }
         @Override
         public void write(byte[] b, int off, int len)
             throws IOException {
+            if (discard) {
+                return;
+            }
             buffer.doWrite(ByteBuffer.wrap(b, off, len));
+            capture(b, off, len);
+        }
+        private void capture(byte[] b, int off, int len) {
+            ByteArrayOutputStream cacheCapture = GzipOutputFilter.this.cacheCapture;
+            if (cacheCapture != null) {
+                if (cacheCapture.size() + len > compressionCache.getMaxEntrySize()) {
+                    // Too big to cache
+                    GzipOutputFilter.this.cacheCapture = null;
+                } else {
+                    cacheCapture.write(b, off, len);
+                }
+            }
         }
         @Override
         public void flush() throws IOException {/*NOOP*/}
@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.coyote.http2.Http2UpgradeHandler.BacklogTracker;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Allocates the connection flow control window using the RFC 9218 extensible
+ * priorities provided by the client. Streams with a lower urgency are always
+ * served before streams with a higher urgency. Within an urgency level,
+ * non-incremental streams are served one at a time in stream order and then
+ * incremental streams share the remaining allocation equally, round-robin.
+ */
+class ExtensiblePriorityStreamScheduler implements StreamScheduler {
+
+    private static final Log log = LogFactory.getLog(ExtensiblePriorityStreamScheduler.class);
+    private static final StringManager sm = StringManager.getManager(ExtensiblePriorityStreamScheduler.class);
+
+    private static final Comparator<Stream> PRIORITY_ORDER = Comparator.comparingInt(Stream::getUrgency)
+            .thenComparing(Stream::getIncremental).thenComparingInt(Stream::getIdAsInt);
+
+
+    @Override
+    public int allocate(AbstractStream connection, Map<AbstractStream,BacklogTracker> backlog, int increment) {
+        List<Stream> streams = new ArrayList<>();
+        Iterator<Entry<AbstractStream,BacklogTracker>> entries = backlog.entrySet().iterator();
+        while (entries.hasNext()) {
+            Entry<AbstractStream,BacklogTracker> entry = entries.next();
+            BacklogTracker tracker = entry.getValue();
+            if (tracker.getRemainingReservation() > 0) {
+                if (entry.getKey() instanceof Stream) {
+                    streams.add((Stream) entry.getKey());
+                }
+            } else if (tracker.getUnusedAllocation() == 0 && !tracker.isNotifyInProgress()) {
+                // Either an ancestor added for the priority tree or a stream
+                // that has used all of its allocation. Neither are required.
+                entries.remove();
+            }
+        }
+        streams.sort(PRIORITY_ORDER);
+
+        int leftToAllocate = increment;
+        int i = 0;
+        while (leftToAllocate > 0 && i < streams.size()) {
+            Stream stream = streams.get(i);
+            if (stream.getIncremental()) {
+                // All the remaining streams with this urgency are incremental
+                int end = i + 1;
+                while (end < streams.size() && streams.get(end).getUrgency() == stream.getUrgency()) {
+                    end++;
+                }
+                leftToAllocate = allocateIncremental(connection, backlog, streams.subList(i, end), leftToAllocate);
+                i = end;
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("upgradeHandler.allocate.debug", connection.getConnectionId(),
+                            stream.getIdAsString(), Integer.toString(leftToAllocate)));
+                }
+                leftToAllocate = backlog.get(stream).allocate(leftToAllocate);
+                i++;
+            }
+        }
+        return leftToAllocate;
+    }
+
+
+    private int allocateIncremental(AbstractStream connection, Map<AbstractStream,BacklogTracker> backlog,
+            List<Stream> streams, int allocation) {
+        List<Stream> recipients = new ArrayList<>(streams);
+        int leftToAllocate = allocation;
+        while (leftToAllocate > 0 && recipients.size() > 0) {
+            int available = leftToAllocate;
+            int recipientCount = recipients.size();
+            Iterator<Stream> iter = recipients.iterator();
+            while (iter.hasNext() && leftToAllocate > 0) {
+                Stream recipient = iter.next();
+                int share = available / recipientCount;
+                if (share == 0) {
+                    // Avoid rounding issues triggering an infinite loop
+                    share = 1;
+                }
+                share = Math.min(share, leftToAllocate);
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("upgradeHandler.allocate.debug", connection.getConnectionId(),
+                            recipient.getIdAsString(), Integer.toString(share)));
+                }
+                int remainder = backlog.get(recipient).allocate(share);
+                // Remove recipients that receive their full allocation so that
+                // they are excluded from the next allocation round.
+                if (remainder > 0) {
+                    iter.remove();
+                }
+                leftToAllocate -= (share - remainder);
+            }
+        }
+        return leftToAllocate;
+    }
+}
@@ -32,6 +32,7 @@ enum FrameType {
     GOAWAY        (7,    true, false, (x) -> x >= 8,     false),
     WINDOW_UPDATE (8,    true,  true, (x) -> x == 4,      true),
     CONTINUATION  (9,   false,  true, null,               true),
+    PRIORITY_UPDATE (16, true, false, (x) -> x >= 4,      true),
     UNKNOWN       (256,  true,  true, null,              false);
 
     private static final StringManager sm = StringManager.getManager(FrameType.class);
@@ -107,6 +108,8 @@ enum FrameType {
             return WINDOW_UPDATE;
         case 9:
             return CONTINUATION;
+        case 16:
+            return PRIORITY_UPDATE;
         default:
             return UNKNOWN;
         }
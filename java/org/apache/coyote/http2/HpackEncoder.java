@@ -19,9 +19,11 @@ package org.apache.coyote.http2;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -78,6 +80,21 @@ class HpackEncoder {
 
     private static final Map<String, TableEntry[]> ENCODING_STATIC_TABLE;
 
+    /*
+     * Header values that appear in a large proportion of responses. Their
+     * Huffman encoded form is calculated once rather than for every response.
+     */
+    private static final String[] COMMON_VALUES = new String[] {
+            "application/javascript", "application/json", "application/octet-stream",
+            "application/xml", "image/jpeg", "image/png", "image/svg+xml", "text/css",
+            "text/html", "text/html;charset=UTF-8", "text/javascript", "text/plain",
+            "text/plain;charset=UTF-8", "text/xml", "Accept-Encoding", "chunked",
+            "max-age=0", "max-age=31536000", "max-age=31536000;includeSubDomains",
+            "no-cache", "no-store", "private", "public", "nosniff", "SAMEORIGIN",
+            "1; mode=block", "no-referrer", "same-origin", "strict-origin-when-cross-origin",
+            "keep-alive", "close"};
+    private static final Map<String, byte[]> PRE_ENCODED_VALUES;
+
     private final Deque<TableEntry> evictionQueue = new ArrayDeque<>();
     private final Map<String, List<TableEntry>> dynamicTable = new HashMap<>(); //TODO: use a custom data structure to reduce allocations
 
@@ -96,6 +113,22 @@ class HpackEncoder {
             }
         }
         ENCODING_STATIC_TABLE = Collections.unmodifiableMap(map);
+
+        Map<String, byte[]> preEncoded = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (String value : COMMON_VALUES) {
+            // The header name is not used by the default header function
+            if (DEFAULT_HEADER_FUNCTION.shouldUseHuffman("", value)) {
+                buffer.clear();
+                if (HPackHuffman.encode(buffer, value, false)) {
+                    buffer.flip();
+                    byte[] encoded = new byte[buffer.remaining()];
+                    buffer.get(encoded);
+                    preEncoded.put(value, encoded);
+                }
+            }
+        }
+        PRE_ENCODED_VALUES = Collections.unmodifiableMap(preEncoded);
     }
 
     /**
@@ -108,10 +141,52 @@ class HpackEncoder {
      */
     private int currentTableSize;
 
+    /**
+     * Incremented every time the content of the dynamic table changes and
+     * therefore every time the index of an entry may have changed.
+     */
+    private int tableVersion;
+
+    /**
+     * Cache of encoded blocks of indexed header fields. {@code null} if
+     * caching is disabled.
+     */
+    private final Map<BlockKey, CachedBlock> blockCache;
+
+    /**
+     * The most recent encoded value of each header that is not indexed. These
+     * (e.g. date) often change less frequently than every response.
+     */
+    private final Map<String, CachedValue> valueCache;
+
     private final HpackHeaderFunction hpackHeaderFunction;
 
     HpackEncoder() {
+        this(0);
+    }
+
+    /**
+     * Create an encoder.
+     *
+     * @param blockCacheSize The maximum number of encoded header blocks to
+     *                       cache. If zero or less, header blocks will not be
+     *                       cached.
+     */
+    HpackEncoder(final int blockCacheSize) {
         this.hpackHeaderFunction = DEFAULT_HEADER_FUNCTION;
+        if (blockCacheSize > 0) {
+            blockCache = new LinkedHashMap<BlockKey, CachedBlock>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<BlockKey, CachedBlock> eldest) {
+                    return size() > blockCacheSize;
+                }
+            };
+            valueCache = new HashMap<>();
+        } else {
+            blockCache = null;
+            valueCache = null;
+        }
     }
 
     /**
@@ -123,6 +198,12 @@ class HpackEncoder {
      * @return The state of the encoding process
      */
     State encode(MimeHeaders headers, ByteBuffer target) {
+        if (headersIterator == -1 && blockCache != null) {
+            handleTableSizeChange(target);
+            if (encodeUsingCache(headers, target)) {
+                return State.COMPLETE;
+            }
+        }
         int it = headersIterator;
         if (headersIterator == -1) {
             handleTableSizeChange(target);
@@ -163,42 +244,7 @@ class HpackEncoder {
                         this.headersIterator = it;
                         return State.UNDERFLOW;
                     }
-                    // Only index if it will fit
-                    boolean canIndex = hpackHeaderFunction.shouldUseIndexing(headerName, val) &&
-                            (headerName.length() + val.length() + 32) < maxTableSize;
-                    if (tableEntry == null && canIndex) {
-                        //add the entry to the dynamic table
-                        target.put((byte) (1 << 6));
-                        writeHuffmanEncodableName(target, headerName);
-                        writeHuffmanEncodableValue(target, headerName, val);
-                        addToDynamicTable(headerName, val);
-                    } else if (tableEntry == null) {
-                        //literal never indexed
-                        target.put((byte) (1 << 4));
-                        writeHuffmanEncodableName(target, headerName);
-                        writeHuffmanEncodableValue(target, headerName, val);
-                    } else {
-                        //so we know something is already in the table
-                        if (val.equals(tableEntry.value)) {
-                            //the whole thing is in the table
-                            target.put((byte) (1 << 7));
-                            Hpack.encodeInteger(target, tableEntry.getPosition(), 7);
-                        } else {
-                            if (canIndex) {
-                                //add the entry to the dynamic table
-                                target.put((byte) (1 << 6));
-                                Hpack.encodeInteger(target, tableEntry.getPosition(), 6);
-                                writeHuffmanEncodableValue(target, headerName, val);
-                                addToDynamicTable(headerName, val);
-
-                            } else {
-                                target.put((byte) (1 << 4));
-                                Hpack.encodeInteger(target, tableEntry.getPosition(), 4);
-                                writeHuffmanEncodableValue(target, headerName, val);
-                            }
-                        }
-                    }
-
+                    encodeField(target, headerName, val, tableEntry);
             }
             if (++it == currentHeaders.size() && firstPass) {
                 firstPass = false;
@@ -210,6 +256,144 @@ class HpackEncoder {
         return State.COMPLETE;
     }
 
+    /*
+     * Encodes the fields in the same order as encode() but caches the encoded
+     * form of the indexable fields and re-uses it for as long as the dynamic
+     * table is unchanged. Fields that are never indexed are encoded for every
+     * response between the cached segments. Returns false if the headers could
+     * not be encoded this way, in which case nothing will have been written to
+     * the target.
+     */
+    private boolean encodeUsingCache(MimeHeaders headers, ByteBuffer target) {
+        int size = headers.size();
+        // Name and value pairs. The value of a field that is never indexed is
+        // null as it is not part of the cached segments.
+        String[] fields = new String[size * 2];
+        String[] notIndexedValues = new String[size];
+        int fieldCount = 0;
+        int notIndexedCount = 0;
+        int required = 0;
+
+        // Pseudo headers first
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                String headerName = headers.getName(i).toString().toLowerCase(Locale.US);
+                if ((headerName.charAt(0) == ':') != (pass == 0)) {
+                    continue;
+                }
+                String val = headers.getValue(i).toString();
+                required += 11 + headerName.length() + 1 + val.length();
+                fields[fieldCount++] = headerName;
+                if (hpackHeaderFunction.shouldUseIndexing(headerName, val) &&
+                        (headerName.length() + val.length() + 32) < maxTableSize) {
+                    fields[fieldCount++] = val;
+                } else {
+                    fields[fieldCount++] = null;
+                    notIndexedValues[notIndexedCount++] = val;
+                }
+            }
+        }
+
+        if (target.remaining() < required) {
+            return false;
+        }
+
+        BlockKey key = new BlockKey(fields);
+        CachedBlock cachedBlock = blockCache.get(key);
+        if (cachedBlock != null && cachedBlock.tableVersion == tableVersion) {
+            byte[][] segments = cachedBlock.segments;
+            int notIndexed = 0;
+            target.put(segments[0]);
+            for (int i = 0; i < fieldCount; i += 2) {
+                if (fields[i + 1] == null) {
+                    encodeNotIndexed(target, fields[i], notIndexedValues[notIndexed++]);
+                    target.put(segments[notIndexed]);
+                }
+            }
+        } else {
+            int version = tableVersion;
+            byte[][] segments = new byte[notIndexedCount + 1][];
+            int notIndexed = 0;
+            int start = target.position();
+            for (int i = 0; i < fieldCount; i += 2) {
+                if (fields[i + 1] == null) {
+                    segments[notIndexed] = copy(target, start);
+                    encodeNotIndexed(target, fields[i], notIndexedValues[notIndexed++]);
+                    start = target.position();
+                } else {
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("hpackEncoder.encodeHeader", fields[i], fields[i + 1]));
+                    }
+                    encodeField(target, fields[i], fields[i + 1], findInTable(fields[i], fields[i + 1]));
+                }
+            }
+            segments[notIndexed] = copy(target, start);
+            // Only cache the segments if they didn't change the table (i.e.
+            // every indexable field was a reference to an existing entry) as
+            // only then will identical segments have the same effect
+            if (version == tableVersion) {
+                blockCache.put(key, new CachedBlock(segments, version));
+            }
+        }
+        return true;
+    }
+
+    private void encodeNotIndexed(ByteBuffer target, String headerName, String val) {
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("hpackEncoder.encodeHeader", headerName, val));
+        }
+        encodeField(target, headerName, val, findInTable(headerName, val));
+    }
+
+    /*
+     * Copies the bytes written to the target since the given position.
+     */
+    private static byte[] copy(ByteBuffer target, int start) {
+        byte[] result = new byte[target.position() - start];
+        ByteBuffer copy = target.duplicate();
+        copy.position(start);
+        copy.get(result);
+        return result;
+    }
+
+    private void encodeField(ByteBuffer target, String headerName, String val, TableEntry tableEntry) {
+        // Only index if it will fit
+        boolean canIndex = hpackHeaderFunction.shouldUseIndexing(headerName, val) &&
+                (headerName.length() + val.length() + 32) < maxTableSize;
+        if (tableEntry == null && canIndex) {
+            //add the entry to the dynamic table
+            target.put((byte) (1 << 6));
+            writeHuffmanEncodableName(target, headerName);
+            writeHuffmanEncodableValue(target, headerName, val);
+            addToDynamicTable(headerName, val);
+        } else if (tableEntry == null) {
+            //literal never indexed
+            target.put((byte) (1 << 4));
+            writeHuffmanEncodableName(target, headerName);
+            writeHuffmanEncodableValue(target, headerName, val);
+        } else {
+            //so we know something is already in the table
+            if (val.equals(tableEntry.value)) {
+                //the whole thing is in the table
+                target.put((byte) (1 << 7));
+                Hpack.encodeInteger(target, tableEntry.getPosition(), 7);
+            } else {
+                if (canIndex) {
+                    //add the entry to the dynamic table
+                    target.put((byte) (1 << 6));
+                    Hpack.encodeInteger(target, tableEntry.getPosition(), 6);
+                    writeHuffmanEncodableValue(target, headerName, val);
+                    addToDynamicTable(headerName, val);
+
+                } else {
+                    target.put((byte) (1 << 4));
+                    Hpack.encodeInteger(target, tableEntry.getPosition(), 4);
+                    writeHuffmanEncodableValue(target, headerName, val);
+                }
+            }
+        }
+    }
+
     private void writeHuffmanEncodableName(ByteBuffer target, String headerName) {
         if (hpackHeaderFunction.shouldUseHuffman(headerName)) {
             if(HPackHuffman.encode(target, headerName, true)) {
@@ -226,7 +410,23 @@ class HpackEncoder {
 
     private void writeHuffmanEncodableValue(ByteBuffer target, String headerName, String val) {
         if (hpackHeaderFunction.shouldUseHuffman(headerName, val)) {
-            if (!HPackHuffman.encode(target, val, false)) {
+            byte[] encoded = PRE_ENCODED_VALUES.get(val);
+            if (encoded == null && valueCache != null) {
+                CachedValue cachedValue = valueCache.get(headerName);
+                if (cachedValue != null && cachedValue.value.equals(val)) {
+                    encoded = cachedValue.encoded;
+                }
+            }
+            if (encoded != null && target.remaining() >= encoded.length) {
+                target.put(encoded);
+                return;
+            }
+            int start = target.position();
+            if (HPackHuffman.encode(target, val, false)) {
+                if (valueCache != null && !hpackHeaderFunction.shouldUseIndexing(headerName, val)) {
+                    valueCache.put(headerName, new CachedValue(val, copy(target, start)));
+                }
+            } else {
                 writeValueString(target, val);
             }
         } else {
@@ -251,6 +451,7 @@ class HpackEncoder {
         }
         existing.add(d);
         evictionQueue.add(d);
+        tableVersion++;
         currentTableSize += d.getSize();
         runEvictionIfRequired();
         if (entryPositionCounter == Integer.MAX_VALUE) {
@@ -280,6 +481,7 @@ class HpackEncoder {
                 return;
             }
             currentTableSize -= next.size;
+            tableVersion++;
             List<TableEntry> list = dynamicTable.get(next.name);
             list.remove(next);
             if (list.isEmpty()) {
@@ -331,6 +533,7 @@ class HpackEncoder {
         target.put((byte) (1 << 5));
         Hpack.encodeInteger(target, newMaxHeaderSize, 5);
         maxTableSize = newMaxHeaderSize;
+        tableVersion++;
         runEvictionIfRequired();
         newMaxHeaderSize = -1;
         minNewMaxHeaderSize = -1;
@@ -380,6 +583,53 @@ class HpackEncoder {
         }
     }
 
+    private static class BlockKey {
+        private final String[] fields;
+        private final int hashCode;
+
+        private BlockKey(String[] fields) {
+            this.fields = fields;
+            this.hashCode = Arrays.hashCode(fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) obj;
+            return hashCode == other.hashCode && Arrays.equals(fields, other.fields);
+        }
+    }
+
+    private static class CachedBlock {
+        private final byte[][] segments;
+        private final int tableVersion;
+
+        private CachedBlock(byte[][] segments, int tableVersion) {
+            this.segments = segments;
+            this.tableVersion = tableVersion;
+        }
+    }
+
+    private static class CachedValue {
+        private final String value;
+        private final byte[] encoded;
+
+        private CachedValue(String value, byte[] encoded) {
+            this.value = value;
+            this.encoded = encoded;
+        }
+    }
+
     private interface HpackHeaderFunction {
         boolean shouldUseIndexing(String header, String value);
 
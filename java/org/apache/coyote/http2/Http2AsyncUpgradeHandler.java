@@ -22,7 +22,9 @@ import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -46,6 +48,9 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     private final Object headerWriteLock = new Object();
     private final AtomicReference<Throwable> error = new AtomicReference<>();
     private final AtomicReference<IOException> applicationIOE = new AtomicReference<>();
+    // Stream writes waiting to be coalesced. Also used to guard writeInProgress
+    private final Deque<CoalescedWrite> writeQueue = new ArrayDeque<>();
+    private boolean writeInProgress = false;
 
     public Http2AsyncUpgradeHandler(Http2Protocol protocol, Adapter adapter,
             Request coyoteRequest) {
@@ -175,16 +180,30 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     @Override
     void writeHeaders(Stream stream, int pushedStreamId, MimeHeaders mimeHeaders,
             boolean endOfStream, int payloadSize) throws IOException {
+        CoalescedWrite coalescedWrite = null;
         synchronized (headerWriteLock) {
             AsyncHeaderFrameBuffers headerFrameBuffers = (AsyncHeaderFrameBuffers)
                     doWriteHeaders(stream, pushedStreamId, mimeHeaders, endOfStream, payloadSize);
-            if (headerFrameBuffers != null) {
+            if (headerFrameBuffers != null && writeCoalescing) {
+                // Queuing the frames while holding headerWriteLock is enough to
+                // ensure they are written in the order they were generated
+                coalescedWrite = queueWrite(headerFrameBuffers.bufs.size() / 2, true,
+                        headerFrameBuffers.bufs.toArray(BYTEBUFFER_ARRAY));
+            } else if (headerFrameBuffers != null) {
+                long bytes = 0;
+                for (ByteBuffer buf : headerFrameBuffers.bufs) {
+                    bytes += buf.remaining();
+                }
+                framesWritten(headerFrameBuffers.bufs.size() / 2, bytes);
                 socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
                         TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
                         applicationErrorCompletion, headerFrameBuffers.bufs.toArray(BYTEBUFFER_ARRAY));
                 handleAsyncException();
             }
         }
+        if (coalescedWrite != null) {
+            completeWrite(coalescedWrite);
+        }
         if (endOfStream) {
             stream.sentEndOfStream();
         }
@@ -219,9 +238,16 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
             ByteUtil.set31Bits(header, 5, stream.getIdAsInt());
             int orgLimit = data.limit();
             data.limit(data.position() + len);
-            socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(),
-                    TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
-                    applicationErrorCompletion, ByteBuffer.wrap(header), data);
+            if (writeCoalescing) {
+                // Blocks until the data has been written so the caller may
+                // re-use the buffer
+                completeWrite(queueWrite(1, true, ByteBuffer.wrap(header), data));
+            } else {
+                framesWritten(1, header.length + len);
+                socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(),
+                        TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
+                        applicationErrorCompletion, ByteBuffer.wrap(header), data);
+            }
             data.limit(orgLimit);
             handleAsyncException();
         }
@@ -254,16 +280,27 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
                 frame2[3] = FrameType.WINDOW_UPDATE.getIdByte();
                 ByteUtil.set31Bits(frame2, 9, streamIncrement);
                 ByteUtil.set31Bits(frame2, 5, stream.getIdAsInt());
-                socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
-                        TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE, errorCompletion,
-                        ByteBuffer.wrap(frame), ByteBuffer.wrap(frame2));
+                if (writeCoalescing) {
+                    completeWrite(queueWrite(2, applicationInitiated, ByteBuffer.wrap(frame),
+                            ByteBuffer.wrap(frame2)));
+                } else {
+                    framesWritten(2, frame.length + frame2.length);
+                    socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
+                            TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE, errorCompletion,
+                            ByteBuffer.wrap(frame), ByteBuffer.wrap(frame2));
+                }
                 neetToWriteConnectionUpdate = false;
             }
         }
         if (neetToWriteConnectionUpdate) {
-            socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
-                    TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE, errorCompletion,
-                    ByteBuffer.wrap(frame));
+            if (writeCoalescing) {
+                completeWrite(queueWrite(1, applicationInitiated, ByteBuffer.wrap(frame)));
+            } else {
+                framesWritten(1, frame.length);
+                socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
+                        TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE, errorCompletion,
+                        ByteBuffer.wrap(frame));
+            }
         }
         handleAsyncException();
     }
@@ -285,6 +322,106 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     }
 
 
+    /*
+     * Each group of frames is passed to the network with a single gathering
+     * write.
+     */
+    private void framesWritten(int frameCount, long bytes) {
+        protocol.getWriteStatistics().framesWritten(frameCount, bytes);
+        socketWritten(bytes);
+    }
+
+
+    /*
+     * Write coalescing. Rather than each stream performing its own gathering
+     * write, stream writes are queued. One of the writing threads takes all
+     * the queued writes and passes them to the network with a single gathering
+     * write while the other threads wait. When that write completes, if there
+     * are further queued writes, one of the waiting threads does the same.
+     * Since the socket only permits one write at a time, writes that queue
+     * while another write is in progress would otherwise have to wait anyway.
+     */
+    private CoalescedWrite queueWrite(int frameCount, boolean applicationInitiated,
+            ByteBuffer... buffers) {
+        CoalescedWrite coalescedWrite = new CoalescedWrite(frameCount, applicationInitiated, buffers);
+        synchronized (writeQueue) {
+            writeQueue.add(coalescedWrite);
+        }
+        return coalescedWrite;
+    }
+
+
+    private void completeWrite(CoalescedWrite coalescedWrite) throws IOException {
+        List<CoalescedWrite> batch;
+        synchronized (writeQueue) {
+            while (writeInProgress && !coalescedWrite.done) {
+                try {
+                    writeQueue.wait();
+                } catch (InterruptedException e) {
+                    // Ignore. The thread writing this frame will always notify.
+                }
+            }
+            if (coalescedWrite.done) {
+                batch = null;
+            } else {
+                writeInProgress = true;
+                batch = new ArrayList<>(writeQueue);
+                writeQueue.clear();
+            }
+        }
+
+        if (batch != null) {
+            BatchCompletion completion = new BatchCompletion();
+            try {
+                List<ByteBuffer> buffers = new ArrayList<>();
+                int frameCount = 0;
+                long bytes = 0;
+                for (CoalescedWrite write : batch) {
+                    frameCount += write.frameCount;
+                    for (ByteBuffer buffer : write.buffers) {
+                        bytes += buffer.remaining();
+                        buffers.add(buffer);
+                    }
+                }
+                Http2WriteStatistics writeStatistics = protocol.getWriteStatistics();
+                writeStatistics.framesWritten(frameCount, bytes);
+                writeStatistics.writesCoalesced(batch.size() - 1);
+                socketWritten(bytes);
+                socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(),
+                        TimeUnit.MILLISECONDS, null, SocketWrapperBase.COMPLETE_WRITE,
+                        completion, buffers.toArray(BYTEBUFFER_ARRAY));
+            } catch (RuntimeException e) {
+                completion.failed(e, null);
+                throw e;
+            } finally {
+                synchronized (writeQueue) {
+                    for (CoalescedWrite write : batch) {
+                        write.error = completion.error;
+                        write.done = true;
+                    }
+                    writeInProgress = false;
+                    writeQueue.notifyAll();
+                }
+            }
+        }
+
+        Throwable t = coalescedWrite.error;
+        if (t != null) {
+            IOException ioe;
+            if (t instanceof IOException) {
+                ioe = (IOException) t;
+            } else {
+                ioe = new IOException(t);
+            }
+            if (coalescedWrite.applicationInitiated) {
+                handleAppInitiatedIOException(ioe);
+            } else {
+                throw ioe;
+            }
+        }
+    }
+
+
     private void handleAsyncException() throws IOException {
         IOException ioe = applicationIOE.getAndSet(null);
         if (ioe != null) {
@@ -305,29 +442,96 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     protected SendfileState processSendfile(SendfileData sendfile) {
         if (sendfile != null) {
             try {
-                try (FileChannel channel = FileChannel.open(sendfile.path, StandardOpenOption.READ)) {
-                    sendfile.mappedBuffer = channel.map(MapMode.READ_ONLY, sendfile.pos, sendfile.end - sendfile.pos);
-                }
-                // Reserve as much as possible right away
-                int reservation = (sendfile.end - sendfile.pos > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) (sendfile.end - sendfile.pos);
-                sendfile.streamReservation  = sendfile.stream.reserveWindowSize(reservation, true);
-                sendfile.connectionReservation = reserveWindowSize(sendfile.stream, sendfile.streamReservation, true);
+                writeSendfile(sendfile, new SendfileCompletionHandler());
             } catch (IOException e) {
                 return SendfileState.ERROR;
             }
+            return SendfileState.PENDING;
+        } else {
+            return SendfileState.DONE;
+        }
+    }
+
+
+    /*
+     * Writes are often completed inline, in which case the completion handler
+     * hands control back to this loop rather than starting the next write
+     * itself. This keeps the stack depth constant regardless of the number of
+     * writes required for the file.
+     */
+    private void writeSendfile(SendfileData sendfile, SendfileCompletionHandler handler)
+            throws IOException {
+        boolean writeCompleted;
+        do {
+            // Reserve as much as possible right away
+            reserveSendfileWindow(sendfile);
+            synchronized (sendfile) {
+                sendfile.writeInProgress = true;
+                sendfile.writeCompleted = false;
+            }
+            boolean written = false;
+            try {
+                written = writeSendfileFrames(sendfile, handler);
+            } finally {
+                synchronized (sendfile) {
+                    sendfile.writeInProgress = false;
+                    writeCompleted = written && sendfile.writeCompleted;
+                }
+            }
+        } while (writeCompleted);
+    }
 
-            if (log.isDebugEnabled()) {
-                log.debug(sm.getString("upgradeHandler.sendfile.reservation", connectionId, sendfile.stream.getIdAsString(),
-                        Integer.valueOf(sendfile.connectionReservation), Integer.valueOf(sendfile.streamReservation)));
+
+    private void reserveSendfileWindow(SendfileData sendfile) throws IOException {
+        if (sendfile.connectionReservation == 0) {
+            if (sendfile.streamReservation == 0) {
+                int reservation = (sendfile.end - sendfile.pos > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) (sendfile.end - sendfile.pos);
+                sendfile.streamReservation = sendfile.stream.reserveWindowSize(reservation, true);
+            }
+            sendfile.connectionReservation = reserveWindowSize(sendfile.stream, sendfile.streamReservation, true);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("upgradeHandler.sendfile.reservation", connectionId, sendfile.stream.getIdAsString(),
+                    Integer.valueOf(sendfile.connectionReservation), Integer.valueOf(sendfile.streamReservation)));
+        }
+    }
+
+
+    /*
+     * Maps the next segment of the file, if necessary, and then writes as many
+     * DATA frames as the current flow control reservation, the maximum frame
+     * size and the maximum sendfile write size allow with a single gathering
+     * write. The frame payloads are slices of the mapped file so the file
+     * content is never copied. Returns true if the write was started and
+     * there may be more to write once it completes.
+     */
+    private boolean writeSendfileFrames(SendfileData sendfile, SendfileCompletionHandler handler)
+            throws IOException {
+        if (sendfile.mappedBuffer == null || !sendfile.mappedBuffer.hasRemaining()) {
+            long size = Long.min(sendfile.end - sendfile.pos, protocol.getSendfileMaxMappedSize());
+            try (FileChannel channel = FileChannel.open(sendfile.path, StandardOpenOption.READ)) {
+                sendfile.mappedBuffer = channel.map(MapMode.READ_ONLY, sendfile.pos, size);
             }
+        }
 
-            // connectionReservation will always be smaller than or the same as
-            // streamReservation
-            int frameSize = Integer.min(getMaxFrameSize(), sendfile.connectionReservation);
-            boolean finished = (frameSize == sendfile.left) && sendfile.stream.getCoyoteResponse().getTrailerFields() == null;
+        // connectionReservation will always be smaller than or the same as
+        // streamReservation
+        int available = Integer.min(sendfile.connectionReservation, sendfile.mappedBuffer.remaining());
+        available = Integer.min(available, protocol.getSendfileMaxWriteSize());
+        int maxFrameSize = getMaxFrameSize();
+        int frameCount = (available + maxFrameSize - 1) / maxFrameSize;
+        ByteBuffer[] buffers = new ByteBuffer[frameCount * 2];
+        long bytes = 9L * frameCount + available;
 
-            // Need to check this now since sending end of stream will change this.
-            boolean writeable = sendfile.stream.canWrite();
+        // Need to check this now since sending end of stream will change this.
+        boolean writeable = sendfile.stream.canWrite();
+        long left = sendfile.left;
+        for (int i = 0; i < frameCount; i++) {
+            int frameSize = Integer.min(maxFrameSize, available);
+            available -= frameSize;
+            left -= frameSize;
+            boolean finished = (left == 0) && sendfile.stream.getCoyoteResponse().getTrailerFields() == null;
             byte[] header = new byte[9];
             ByteUtil.setThreeBytes(header, 0, frameSize);
             header[3] = FrameType.DATA.getIdByte();
@@ -338,32 +542,35 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
                     setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
                 }
             }
-            if (writeable) {
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("upgradeHandler.writeBody", connectionId, sendfile.stream.getIdAsString(),
-                            Integer.toString(frameSize), Boolean.valueOf(finished)));
-                }
-                ByteUtil.set31Bits(header, 5, sendfile.stream.getIdAsInt());
-                sendfile.mappedBuffer.limit(sendfile.mappedBuffer.position() + frameSize);
-                socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
-                        TimeUnit.MILLISECONDS, sendfile, SocketWrapperBase.COMPLETE_WRITE_WITH_COMPLETION,
-                        new SendfileCompletionHandler(), ByteBuffer.wrap(header), sendfile.mappedBuffer);
-                try {
-                    handleAsyncException();
-                } catch (IOException e) {
-                    return SendfileState.ERROR;
-                }
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("upgradeHandler.writeBody", connectionId, sendfile.stream.getIdAsString(),
+                        Integer.toString(frameSize), Boolean.valueOf(finished)));
             }
-            return SendfileState.PENDING;
-        } else {
-            return SendfileState.DONE;
+            ByteUtil.set31Bits(header, 5, sendfile.stream.getIdAsInt());
+            buffers[i * 2] = ByteBuffer.wrap(header);
+            ByteBuffer payload = sendfile.mappedBuffer.duplicate();
+            payload.limit(payload.position() + frameSize);
+            buffers[i * 2 + 1] = payload;
+            sendfile.mappedBuffer.position(payload.limit());
         }
+
+        if (writeable) {
+            sendfile.frameCount = frameCount;
+            framesWritten(frameCount, bytes);
+            socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
+                    TimeUnit.MILLISECONDS, sendfile, SocketWrapperBase.COMPLETE_WRITE_WITH_COMPLETION,
+                    handler, buffers);
+            handleAsyncException();
+            return true;
+        }
+        return false;
     }
 
+
     protected class SendfileCompletionHandler implements CompletionHandler<Long, SendfileData> {
         @Override
         public void completed(Long nBytes, SendfileData sendfile) {
-            long bytesWritten = nBytes.longValue() - 9;
+            long bytesWritten = nBytes.longValue() - 9 * sendfile.frameCount;
             sendfile.left -= bytesWritten;
             if (sendfile.left == 0) {
                 try {
@@ -376,56 +583,17 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
             sendfile.streamReservation -= bytesWritten;
             sendfile.connectionReservation -= bytesWritten;
             sendfile.pos += bytesWritten;
-            try {
-                if (sendfile.connectionReservation == 0) {
-                    if (sendfile.streamReservation == 0) {
-                        int reservation = (sendfile.end - sendfile.pos > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) (sendfile.end - sendfile.pos);
-                        sendfile.streamReservation = sendfile.stream.reserveWindowSize(reservation, true);
-                    }
-                    sendfile.connectionReservation = reserveWindowSize(sendfile.stream, sendfile.streamReservation, true);
+            synchronized (sendfile) {
+                if (sendfile.writeInProgress) {
+                    // Completed inline. writeSendfile() will continue.
+                    sendfile.writeCompleted = true;
+                    return;
                 }
-            } catch (IOException e) {
-                failed (e, sendfile);
-                return;
             }
-
-            if (log.isDebugEnabled()) {
-                log.debug(sm.getString("upgradeHandler.sendfile.reservation", connectionId, sendfile.stream.getIdAsString(),
-                        Integer.valueOf(sendfile.connectionReservation), Integer.valueOf(sendfile.streamReservation)));
-            }
-
-            // connectionReservation will always be smaller than or the same as
-            // streamReservation
-            int frameSize = Integer.min(getMaxFrameSize(), sendfile.connectionReservation);
-            boolean finished = (frameSize == sendfile.left) && sendfile.stream.getCoyoteResponse().getTrailerFields() == null;
-
-            // Need to check this now since sending end of stream will change this.
-            boolean writeable = sendfile.stream.canWrite();
-            byte[] header = new byte[9];
-            ByteUtil.setThreeBytes(header, 0, frameSize);
-            header[3] = FrameType.DATA.getIdByte();
-            if (finished) {
-                header[4] = FLAG_END_OF_STREAM;
-                sendfile.stream.sentEndOfStream();
-                if (!sendfile.stream.isActive()) {
-                    setConnectionTimeoutForStreamCount(activeRemoteStreamCount.decrementAndGet());
-                }
-            }
-            if (writeable) {
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("upgradeHandler.writeBody", connectionId, sendfile.stream.getIdAsString(),
-                            Integer.toString(frameSize), Boolean.valueOf(finished)));
-                }
-                ByteUtil.set31Bits(header, 5, sendfile.stream.getIdAsInt());
-                sendfile.mappedBuffer.limit(sendfile.mappedBuffer.position() + frameSize);
-                socketWrapper.write(BlockingMode.SEMI_BLOCK, protocol.getWriteTimeout(),
-                        TimeUnit.MILLISECONDS, sendfile, SocketWrapperBase.COMPLETE_WRITE_WITH_COMPLETION,
-                        this, ByteBuffer.wrap(header), sendfile.mappedBuffer);
-                try {
-                    handleAsyncException();
-                } catch (IOException e) {
-                    failed(e, sendfile);
-                }
+            try {
+                writeSendfile(sendfile, this);
+            } catch (IOException e) {
+                failed(e, sendfile);
             }
         }
 
@@ -472,6 +640,38 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     }
 
 
+    private static class CoalescedWrite {
+
+        private final int frameCount;
+        private final boolean applicationInitiated;
+        private final ByteBuffer[] buffers;
+        // Guarded by writeQueue
+        private boolean done = false;
+        private Throwable error = null;
+
+        CoalescedWrite(int frameCount, boolean applicationInitiated, ByteBuffer[] buffers) {
+            this.frameCount = frameCount;
+            this.applicationInitiated = applicationInitiated;
+            this.buffers = buffers;
+        }
+    }
+
+
+    private static class BatchCompletion implements CompletionHandler<Long, Void> {
+
+        private volatile Throwable error = null;
+
+        @Override
+        public void completed(Long result, Void attachment) {
+        }
+
+        @Override
+        public void failed(Throwable t, Void attachment) {
+            error = t;
+        }
+    }
+
+
     private static class AsyncHeaderFrameBuffers implements HeaderFrameBuffers {
 
         int payloadSize;
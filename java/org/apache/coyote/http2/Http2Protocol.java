@@ -23,6 +23,8 @@ import javax.management.ObjectName;
 
 import org.apache.coyote.AbstractProtocol;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.Processor;
 import org.apache.coyote.Request;
@@ -63,6 +65,11 @@ public class Http2Protocol implements UpgradeProtocol {
     static final int DEFAULT_OVERHEAD_CONTINUATION_THRESHOLD = 1024;
     static final int DEFAULT_OVERHEAD_DATA_THRESHOLD = 1024;
     static final int DEFAULT_OVERHEAD_WINDOW_UPDATE_THRESHOLD = 1024;
+    static final int DEFAULT_SENDFILE_MAX_MAPPED_SIZE = 64 * 1024 * 1024;
+    static final int DEFAULT_SENDFILE_MAX_WRITE_SIZE = 256 * 1024;
+
+    static final String STREAM_SCHEDULER_RFC7540 = "rfc7540";
+    static final String STREAM_SCHEDULER_RFC9218 = "rfc9218";
 
     private static final String HTTP_UPGRADE_NAME = "h2c";
     private static final String ALPN_NAME = "h2";
@@ -92,10 +99,17 @@ public class Http2Protocol implements UpgradeProtocol {
 
     private boolean initiatePingDisabled = false;
     private boolean useSendfile = true;
+    private int sendfileMaxMappedSize = DEFAULT_SENDFILE_MAX_MAPPED_SIZE;
+    private int sendfileMaxWriteSize = DEFAULT_SENDFILE_MAX_WRITE_SIZE;
+    private int hpackBlockCacheSize = 0;
+    private String streamScheduler = STREAM_SCHEDULER_RFC7540;
+    private StreamScheduler streamSchedulerInstance = new PriorityTreeStreamScheduler();
+    private boolean writeCoalescing = false;
     // Reference to HTTP/1.1 protocol that this instance is configured under
     private AbstractHttp11Protocol<?> http11Protocol = null;
 
     private RequestGroupInfo global = new RequestGroupInfo();
+    private final Http2WriteStatistics writeStatistics = new Http2WriteStatistics();
 
     @Override
     public String getHttpUpgradeName(boolean isSSLEnabled) {
@@ -247,6 +261,80 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    public int getSendfileMaxMappedSize() {
+        return sendfileMaxMappedSize;
+    }
+
+
+    public void setSendfileMaxMappedSize(int sendfileMaxMappedSize) {
+        if (sendfileMaxMappedSize < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("http2Protocol.invalidSendfileSize", Integer.toString(sendfileMaxMappedSize)));
+        }
+        this.sendfileMaxMappedSize = sendfileMaxMappedSize;
+    }
+
+
+    public int getSendfileMaxWriteSize() {
+        return sendfileMaxWriteSize;
+    }
+
+
+    public void setSendfileMaxWriteSize(int sendfileMaxWriteSize) {
+        if (sendfileMaxWriteSize < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("http2Protocol.invalidSendfileSize", Integer.toString(sendfileMaxWriteSize)));
+        }
+        this.sendfileMaxWriteSize = sendfileMaxWriteSize;
+    }
+
+
+    public int getHpackBlockCacheSize() {
+        return hpackBlockCacheSize;
+    }
+
+
+    public void setHpackBlockCacheSize(int hpackBlockCacheSize) {
+        this.hpackBlockCacheSize = hpackBlockCacheSize;
+    }
+
+
+    public String getStreamScheduler() {
+        return streamScheduler;
+    }
+
+
+    public void setStreamScheduler(String streamScheduler) {
+        switch (streamScheduler) {
+            case STREAM_SCHEDULER_RFC7540:
+                streamSchedulerInstance = new PriorityTreeStreamScheduler();
+                break;
+            case STREAM_SCHEDULER_RFC9218:
+                streamSchedulerInstance = new ExtensiblePriorityStreamScheduler();
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        sm.getString("http2Protocol.invalidStreamScheduler", streamScheduler));
+        }
+        this.streamScheduler = streamScheduler;
+    }
+
+
+    StreamScheduler getStreamSchedulerInstance() {
+        return streamSchedulerInstance;
+    }
+
+
+    public boolean getWriteCoalescing() {
+        return writeCoalescing;
+    }
+
+
+    public void setWriteCoalescing(boolean writeCoalescing) {
+        this.writeCoalescing = writeCoalescing;
+    }
+
+
     boolean isTrailerHeaderAllowed(String headerName) {
         return http11Protocol.isTrailerHeaderAllowed(headerName);
     }
@@ -337,6 +425,21 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    public ContentEncoder getContentEncoder(Request request, Response response) {
+        return http11Protocol.getContentEncoder(request, response);
+    }
+
+
+    public int getCurrentCompressionLevel() {
+        return http11Protocol.getCurrentCompressionLevel();
+    }
+
+
+    public CompressionCache getCompressionCache() {
+        return http11Protocol.getCompressionCache();
+    }
+
+
     public ContinueResponseTiming getContinueResponseTimingInternal() {
         return http11Protocol.getContinueResponseTimingInternal();
     }
@@ -356,6 +459,8 @@ public class Http2Protocol implements UpgradeProtocol {
             // This can be null when running the testsuite
             if (oname != null) {
                 Registry.getRegistry(null, null).registerComponent(global, oname, null);
+                Registry.getRegistry(null, null).registerComponent(writeStatistics,
+                        new ObjectName(oname.getCanonicalName() + ",name=WriteStatistics"), null);
             }
         } catch (Exception e) {
             log.warn(sm.getString("http2Protocol.jmxRegistration.fail"), e);
@@ -375,4 +480,9 @@ public class Http2Protocol implements UpgradeProtocol {
     public RequestGroupInfo getGlobal() {
         return global;
     }
+
+
+    public Http2WriteStatistics getWriteStatistics() {
+        return writeStatistics;
+    }
 }
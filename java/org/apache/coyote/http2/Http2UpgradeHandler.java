@@ -49,6 +49,7 @@ import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.codec.binary.Base64;
 import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.SSLSupport;
 import org.apache.tomcat.util.net.SendfileState;
@@ -134,6 +135,12 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     private volatile int newStreamsSinceLastPrune = 0;
     private final Map<AbstractStream, BacklogTracker> backLogStreams = new ConcurrentHashMap<>();
     private long backLogSize = 0;
+    private final StreamScheduler streamScheduler;
+    // Write coalescing. flushScheduled and unflushedBytes are guarded by the
+    // socketWrapper lock.
+    protected final boolean writeCoalescing;
+    private boolean flushScheduled = false;
+    private long unflushedBytes = 0;
     // The time at which the connection will timeout unless data arrives before
     // then. -1 means no timeout.
     private volatile long connectionTimeout = -1;
@@ -153,6 +160,8 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         this.protocol = protocol;
         this.adapter = adapter;
         this.connectionId = Integer.toString(connectionIdGenerator.getAndIncrement());
+        this.streamScheduler = protocol.getStreamSchedulerInstance();
+        this.writeCoalescing = protocol.getWriteCoalescing();
 
         // Defaults to -10 * the count factor.
         // i.e. when the connection opens, 10 'overhead' frames in a row will
@@ -658,6 +667,11 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         // This ensures the Stream processing thread has control of the socket.
         synchronized (socketWrapper) {
             doWriteHeaders(stream, pushedStreamId, mimeHeaders, endOfStream, payloadSize);
+            try {
+                endStreamWrite();
+            } catch (IOException ioe) {
+                handleAppInitiatedIOException(ioe);
+            }
         }
         stream.sentHeaders();
         if (endOfStream) {
@@ -744,7 +758,7 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
     protected HpackEncoder getHpackEncoder() {
         if (hpackEncoder == null) {
-            hpackEncoder = new HpackEncoder();
+            hpackEncoder = new HpackEncoder(protocol.getHpackBlockCacheSize());
         }
         // Ensure latest agreed table size is used
         hpackEncoder.setMaxTableSize(remoteSettings.getHeaderTableSize());
@@ -776,12 +790,13 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             ByteUtil.set31Bits(header, 5, stream.getIdAsInt());
             synchronized (socketWrapper) {
                 try {
+                    frameWritten(header.length + len);
                     socketWrapper.write(true, header, 0, header.length);
                     int orgLimit = data.limit();
                     data.limit(data.position() + len);
                     socketWrapper.write(true, data);
                     data.limit(orgLimit);
-                    socketWrapper.flush(true);
+                    endStreamWrite();
                 } catch (IOException ioe) {
                     handleAppInitiatedIOException(ioe);
                 }
@@ -822,6 +837,7 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             ByteUtil.setThreeBytes(frame, 0,  4);
             frame[3] = FrameType.WINDOW_UPDATE.getIdByte();
             ByteUtil.set31Bits(frame, 9, increment);
+            frameWritten(frame.length);
             socketWrapper.write(true, frame, 0, frame.length);
             boolean needFlush = true;
             // No need to send update from closed stream
@@ -836,8 +852,9 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                     ByteUtil.set31Bits(frame, 5, stream.getIdAsInt());
                     ByteUtil.set31Bits(frame, 9, streamIncrement);
                     try {
+                        frameWritten(frame.length);
                         socketWrapper.write(true, frame, 0, frame.length);
-                        socketWrapper.flush(true);
+                        endStreamWrite();
                         needFlush = false;
                     } catch (IOException ioe) {
                         if (applicationInitiated) {
@@ -849,14 +866,61 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                 }
             }
             if (needFlush) {
-                socketWrapper.flush(true);
+                endStreamWrite();
             }
         }
     }
 
 
+    /*
+     * HEADERS, DATA and WINDOW_UPDATE frames are written to the socket write
+     * buffer by the threads processing the streams. Without write coalescing,
+     * each thread then flushes its own frames. With write coalescing, the
+     * first thread to write schedules a flush with the Poller and the frames
+     * written by all threads before the Poller processes the write event are
+     * sent with a single network write by processWrites().
+     *
+     * Must be called holding the socketWrapper lock.
+     */
+    private void frameWritten(int bytes) {
+        unflushedBytes += bytes;
+        protocol.getWriteStatistics().framesWritten(1, bytes);
+    }
+
+
+    /*
+     * Must be called holding the socketWrapper lock.
+     */
+    private void endStreamWrite() throws IOException {
+        if (unflushedBytes == 0) {
+            // Nothing was written (e.g. the stream had been reset)
+            return;
+        }
+        if (!writeCoalescing) {
+            socketWritten(unflushedBytes);
+            unflushedBytes = 0;
+            socketWrapper.flush(true);
+        } else if (flushScheduled) {
+            protocol.getWriteStatistics().writesCoalesced(1);
+        } else {
+            flushScheduled = true;
+            socketWrapper.registerWriteInterest();
+        }
+    }
+
+
+    protected void socketWritten(long bytes) {
+        protocol.getWriteStatistics().socketWrite(bytes, sslSupport != null);
+    }
+
+
     protected void processWrites() throws IOException {
         synchronized (socketWrapper) {
+            flushScheduled = false;
+            if (unflushedBytes > 0) {
+                socketWritten(unflushedBytes);
+                unflushedBytes = 0;
+            }
             if (socketWrapper.flush(false)) {
                 socketWrapper.registerWriteInterest();
             } else {
@@ -872,6 +936,9 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         // Need to be holding the stream lock so releaseBacklog() can't notify
         // this thread until after this thread enters wait()
         int allocation = 0;
+        // Fixed by the first wait so repeated wake-ups can't extend the total
+        // wait beyond the write timeout
+        long waitDeadline = -1;
         synchronized (stream) {
             do {
                 synchronized (this) {
@@ -880,7 +947,9 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                                 stream.getConnectionId(), stream.getIdAsString()), Http2Error.STREAM_CLOSED);
                     }
                     long windowSize = getWindowSize();
-                    if (windowSize < 1 || backLogSize > 0) {
+                    // A stream that is still in the backlog must use its
+                    // allocation, even if the rest of the backlog has cleared
+                    if (windowSize < 1 || backLogSize > 0 || backLogStreams.containsKey(stream)) {
                         // Has this stream been granted an allocation
                         BacklogTracker tracker = backLogStreams.get(stream);
                         if (tracker == null) {
@@ -924,7 +993,17 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                             // request is for a stream, use the connection
                             // timeout
                             long writeTimeout = protocol.getWriteTimeout();
-                            stream.waitForConnectionAllocation(writeTimeout);
+                            long waitTimeout = writeTimeout;
+                            if (writeTimeout > 0) {
+                                long now = System.currentTimeMillis();
+                                if (waitDeadline == -1) {
+                                    waitDeadline = now + writeTimeout;
+                                }
+                                waitTimeout = waitDeadline - now;
+                            }
+                            if (writeTimeout < 1 || waitTimeout > 0) {
+                                stream.waitForConnectionAllocation(waitTimeout);
+                            }
                             // Has this stream been granted an allocation
                             // Note: If the stream in not in this Map then the
                             //       requested write has been fully allocated
@@ -936,7 +1015,13 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                             if (tracker != null && tracker.getUnusedAllocation() == 0) {
                                 String msg;
                                 Http2Error error;
-                                if (stream.isActive()) {
+                                if (stream.isActive() && (writeTimeout < 0 ||
+                                        (writeTimeout > 0 && System.currentTimeMillis() < waitDeadline))) {
+                                    // Woken by a notification for an earlier
+                                    // release of the backlog that this stream
+                                    // had already exited. Wait again.
+                                    continue;
+                                } else if (stream.isActive()) {
                                     if (log.isDebugEnabled()) {
                                         log.debug(sm.getString("upgradeHandler.noAllocation",
                                                 connectionId, stream.getIdAsString()));
@@ -1037,14 +1122,19 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             backLogStreams.clear();
             backLogSize = 0;
         } else {
-            int leftToAllocate = increment;
-            while (leftToAllocate > 0) {
-                leftToAllocate = allocate(this, leftToAllocate);
+            int unallocated = streamScheduler.allocate(this, backLogStreams, increment);
+            if (unallocated > 0) {
+                // Every reservation in the backlog has been fully allocated
+                backLogSize = 0;
+            } else {
+                // Only reduce the backlog by the new allocation. Allocations
+                // from previous increments may not have been used yet and have
+                // already been deducted.
+                backLogSize -= increment;
             }
             for (Entry<AbstractStream,BacklogTracker> entry : backLogStreams.entrySet()) {
                 int allocation = entry.getValue().getUnusedAllocation();
                 if (allocation > 0) {
-                    backLogSize -= allocation;
                     if (!entry.getValue().isNotifyInProgress()) {
                         result.add(entry.getKey());
                         entry.getValue().startNotify();
@@ -1056,77 +1146,6 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
-    private int allocate(AbstractStream stream, int allocation) {
-        if (log.isDebugEnabled()) {
-            log.debug(sm.getString("upgradeHandler.allocate.debug", getConnectionId(),
-                    stream.getIdAsString(), Integer.toString(allocation)));
-        }
-        // Allocate to the specified stream
-        BacklogTracker tracker = backLogStreams.get(stream);
-
-        int leftToAllocate = tracker.allocate(allocation);
-
-        if (leftToAllocate == 0) {
-            return 0;
-        }
-
-        if (log.isDebugEnabled()) {
-            log.debug(sm.getString("upgradeHandler.allocate.left",
-                    getConnectionId(), stream.getIdAsString(), Integer.toString(leftToAllocate)));
-        }
-
-        // Recipients are children of the current stream that are in the
-        // backlog.
-        Set<AbstractStream> recipients = new HashSet<>(stream.getChildStreams());
-        recipients.retainAll(backLogStreams.keySet());
-
-        // Loop until we run out of allocation or recipients
-        while (leftToAllocate > 0) {
-            if (recipients.size() == 0) {
-                if (tracker.getUnusedAllocation() == 0) {
-                    backLogStreams.remove(stream);
-                }
-                return leftToAllocate;
-            }
-
-            int totalWeight = 0;
-            for (AbstractStream recipient : recipients) {
-                if (log.isDebugEnabled()) {
-                    log.debug(sm.getString("upgradeHandler.allocate.recipient",
-                            getConnectionId(), stream.getIdAsString(), recipient.getIdAsString(),
-                            Integer.toString(recipient.getWeight())));
-                }
-                totalWeight += recipient.getWeight();
-            }
-
-            // Use an Iterator so fully allocated children/recipients can be
-            // removed.
-            Iterator<AbstractStream> iter = recipients.iterator();
-            int allocated = 0;
-            while (iter.hasNext()) {
-                AbstractStream recipient = iter.next();
-                int share = leftToAllocate * recipient.getWeight() / totalWeight;
-                if (share == 0) {
-                    // This is to avoid rounding issues triggering an infinite
-                    // loop. It will cause a very slight over allocation but
-                    // HTTP/2 should cope with that.
-                    share = 1;
-                }
-                int remainder = allocate(recipient, share);
-                // Remove recipients that receive their full allocation so that
-                // they are excluded from the next allocation round.
-                if (remainder > 0) {
-                    iter.remove();
-                }
-                allocated += (share - remainder);
-            }
-            leftToAllocate -= allocated;
-        }
-
-        return 0;
-    }
-
-
     private Stream getStream(int streamId) {
         Integer key = Integer.valueOf(streamId);
         AbstractStream result = streams.get(key);
@@ -1660,6 +1679,18 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
+    @Override
+    public void priorityUpdate(int prioritizedStreamID, Priority p) throws Http2Exception {
+        increaseOverheadCount(FrameType.PRIORITY_UPDATE);
+        AbstractNonZeroStream abstractNonZeroStream = getAbstractNonZeroStream(prioritizedStreamID);
+        // Updates for streams that have not yet been opened, or that have
+        // already been closed, are ignored
+        if (abstractNonZeroStream instanceof Stream) {
+            ((Stream) abstractNonZeroStream).setPriority(p);
+        }
+    }
+
+
     @Override
     public void headersContinue(int payloadSize, boolean endOfHeaders) {
         // Generally, continuation frames don't impact the overhead count but if
@@ -2014,10 +2045,12 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
         @Override
         public void endFrame() throws IOException {
+            // The frames are flushed by writeHeaders() once all of them have
+            // been written
             try {
+                frameWritten(header.length + payload.remaining());
                 socketWrapper.write(true, header, 0, header.length);
                 socketWrapper.write(true, payload);
-                socketWrapper.flush(true);
             } catch (IOException ioe) {
                 handleAppInitiatedIOException(ioe);
             }
@@ -2046,7 +2079,7 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
-    private static class BacklogTracker {
+    static class BacklogTracker {
 
         private int remainingReservation;
         private int unusedAllocation;
@@ -2106,7 +2139,7 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             notifyInProgress = true;
         }
 
-        private int allocate(int allocation) {
+        int allocate(int allocation) {
             if (remainingReservation >= allocation) {
                 remainingReservation -= allocation;
                 unusedAllocation += allocation;
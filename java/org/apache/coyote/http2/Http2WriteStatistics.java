@@ -0,0 +1,125 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics for the frames written by all the HTTP/2 connections of an
+ * {@link Http2Protocol}. Registered with JMX alongside the global request
+ * statistics for the upgrade protocol.
+ */
+public class Http2WriteStatistics {
+
+    // TLS limits the plain text in a single record to 2^14 bytes
+    private static final int MAX_TLS_RECORD_PAYLOAD = 16 * 1024;
+
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong socketWrites = new AtomicLong();
+    private final AtomicLong coalescedWrites = new AtomicLong();
+    private final AtomicLong tlsRecords = new AtomicLong();
+
+
+    void framesWritten(int frames, long bytes) {
+        framesWritten.addAndGet(frames);
+        bytesWritten.addAndGet(bytes);
+    }
+
+
+    /*
+     * Stream writes that were sent to the network as part of the network write
+     * for another stream.
+     */
+    void writesCoalesced(int count) {
+        coalescedWrites.addAndGet(count);
+    }
+
+
+    void socketWrite(long bytes, boolean secure) {
+        socketWrites.incrementAndGet();
+        if (secure && bytes > 0) {
+            tlsRecords.addAndGet((bytes + MAX_TLS_RECORD_PAYLOAD - 1) / MAX_TLS_RECORD_PAYLOAD);
+        }
+    }
+
+
+    /**
+     * @return the number of HEADERS, CONTINUATION, PUSH_PROMISE, DATA and
+     *         WINDOW_UPDATE frames written
+     */
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+
+    /**
+     * @return the total size, including frame headers, of the frames counted
+     *         by {@link #getFramesWritten()}
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+
+    /**
+     * @return the number of times the frames counted by
+     *         {@link #getFramesWritten()} were passed to the network
+     */
+    public long getSocketWrites() {
+        return socketWrites.get();
+    }
+
+
+    /**
+     * @return the number of times the frames written by a stream were sent to
+     *         the network as part of the network write for another stream
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites.get();
+    }
+
+
+    /**
+     * @return the minimum number of TLS records needed for the socket writes
+     *         counted by {@link #getSocketWrites()}. Always zero for h2c.
+     */
+    public long getTlsRecords() {
+        return tlsRecords.get();
+    }
+
+
+    /**
+     * @return the mean number of frames written per socket write
+     */
+    public double getFramesPerSocketWrite() {
+        long writes = socketWrites.get();
+        if (writes == 0) {
+            return 0;
+        }
+        return (double) framesWritten.get() / writes;
+    }
+
+
+    public void reset() {
+        framesWritten.set(0);
+        bytesWritten.set(0);
+        socketWrites.set(0);
+        coalescedWrites.set(0);
+        tlsRecords.set(0);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.coyote.http2.Http2UpgradeHandler.BacklogTracker;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Allocates the connection flow control window using the RFC 7540 priority
+ * tree. Each stream's share is passed to its children in proportion to their
+ * weights.
+ */
+class PriorityTreeStreamScheduler implements StreamScheduler {
+
+    private static final Log log = LogFactory.getLog(PriorityTreeStreamScheduler.class);
+    private static final StringManager sm = StringManager.getManager(PriorityTreeStreamScheduler.class);
+
+
+    @Override
+    public int allocate(AbstractStream connection, Map<AbstractStream,BacklogTracker> backlog, int increment) {
+        int leftToAllocate = increment;
+        // The connection is removed from the backlog once nothing is waiting
+        while (leftToAllocate > 0 && backlog.containsKey(connection)) {
+            int remaining = allocate(connection, backlog, connection, leftToAllocate);
+            if (remaining == leftToAllocate) {
+                break;
+            }
+            leftToAllocate = remaining;
+        }
+        return leftToAllocate;
+    }
+
+
+    private int allocate(AbstractStream connection, Map<AbstractStream,BacklogTracker> backLogStreams,
+            AbstractStream stream, int allocation) {
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("upgradeHandler.allocate.debug", connection.getConnectionId(),
+                    stream.getIdAsString(), Integer.toString(allocation)));
+        }
+        // Allocate to the specified stream
+        BacklogTracker tracker = backLogStreams.get(stream);
+
+        int leftToAllocate = tracker.allocate(allocation);
+
+        if (leftToAllocate == 0) {
+            return 0;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("upgradeHandler.allocate.left",
+                    connection.getConnectionId(), stream.getIdAsString(), Integer.toString(leftToAllocate)));
+        }
+
+        // Recipients are children of the current stream that are in the
+        // backlog.
+        Set<AbstractStream> recipients = new HashSet<>(stream.getChildStreams());
+        recipients.retainAll(backLogStreams.keySet());
+
+        // Loop until we run out of allocation or recipients
+        while (leftToAllocate > 0) {
+            if (recipients.size() == 0) {
+                if (tracker.getUnusedAllocation() == 0) {
+                    backLogStreams.remove(stream);
+                }
+                return leftToAllocate;
+            }
+
+            int totalWeight = 0;
+            for (AbstractStream recipient : recipients) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("upgradeHandler.allocate.recipient",
+                            connection.getConnectionId(), stream.getIdAsString(), recipient.getIdAsString(),
+                            Integer.toString(recipient.getWeight())));
+                }
+                totalWeight += recipient.getWeight();
+            }
+
+            // Use an Iterator so fully allocated children/recipients can be
+            // removed.
+            Iterator<AbstractStream> iter = recipients.iterator();
+            int allocated = 0;
+            while (iter.hasNext()) {
+                AbstractStream recipient = iter.next();
+                int share = leftToAllocate * recipient.getWeight() / totalWeight;
+                if (share == 0) {
+                    // This is to avoid rounding issues triggering an infinite
+                    // loop. It will cause a very slight over allocation but
+                    // HTTP/2 should cope with that.
+                    share = 1;
+                }
+                int remainder = allocate(connection, backLogStreams, recipient, share);
+                // Remove recipients that receive their full allocation so that
+                // they are excluded from the next allocation round.
+                if (remainder > 0) {
+                    iter.remove();
+                }
+                allocated += (share - remainder);
+            }
+            leftToAllocate -= allocated;
+        }
+
+        return 0;
+    }
+}
@@ -24,7 +24,13 @@ class SendfileData {
     Stream stream;
     // Note: a mapped buffer is a special construct with an underlying file
     // that doesn't need to be closed
+    // The current segment of the file. Large files are mapped in segments.
     MappedByteBuffer mappedBuffer;
+    // The number of DATA frames in the write currently in progress
+    int frameCount;
+    // Used to detect writes that complete inline
+    boolean writeInProgress;
+    boolean writeCompleted;
     long left;
     int streamReservation;
     int connectionReservation;
@@ -41,6 +41,7 @@ import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.http.parser.Host;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.net.ApplicationBufferHandler;
 import org.apache.tomcat.util.net.WriteBuffer;
 import org.apache.tomcat.util.res.StringManager;
@@ -85,6 +86,10 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     private Object pendingWindowUpdateForStreamLock = new Object();
     private int pendingWindowUpdateForStream = 0;
 
+    // RFC 9218 extensible priorities
+    private volatile int urgency = Priority.DEFAULT_URGENCY;
+    private volatile boolean incremental = Priority.DEFAULT_INCREMENTAL;
+
 
     Stream(Integer identifier, Http2UpgradeHandler handler) {
         this(identifier, handler, null);
@@ -454,10 +459,30 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         if (cookieHeader != null) {
             coyoteRequest.getMimeHeaders().addValue("cookie").setString(cookieHeader.toString());
         }
+        MessageBytes priorityHeader = coyoteRequest.getMimeHeaders().getValue("priority");
+        if (priorityHeader != null) {
+            setPriority(Priority.parsePriority(priorityHeader.toString()));
+        }
         return headerState == HEADER_STATE_REGULAR || headerState == HEADER_STATE_PSEUDO;
     }
 
 
+    final int getUrgency() {
+        return urgency;
+    }
+
+
+    final boolean getIncremental() {
+        return incremental;
+    }
+
+
+    final void setPriority(Priority priority) {
+        urgency = priority.getUrgency();
+        incremental = priority.getIncremental();
+    }
+
+
     final void writeHeaders() throws IOException {
         boolean endOfStream = streamOutputBuffer.hasNoBody() &&
                 coyoteResponse.getTrailerFields() == null;
@@ -24,6 +24,7 @@ import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
 import org.apache.coyote.ContainerThreadMarker;
+import org.apache.coyote.ContentEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
@@ -170,11 +171,16 @@ class StreamProcessor extends AbstractProcessor {
         // Compression can't be used with sendfile
         // Need to check for compression (and set headers appropriately) before
         // adding headers below
-        if (noSendfile && protocol != null &&
-                protocol.useCompression(coyoteRequest, coyoteResponse)) {
-            // Enable compression. Headers will have been set. Need to configure
-            // output filter at this point.
-            stream.addOutputFilter(new GzipOutputFilter());
+        if (noSendfile && protocol != null) {
+            ContentEncoder contentEncoder = protocol.getContentEncoder(coyoteRequest, coyoteResponse);
+            if (contentEncoder != null) {
+                // Enable compression. Headers will have been set. Need to
+                // configure output filter at this point.
+                GzipOutputFilter compressionFilter = new GzipOutputFilter();
+                compressionFilter.setContentEncoder(contentEncoder, protocol.getCurrentCompressionLevel());
+                compressionFilter.setCompressionCache(protocol.getCompressionCache());
+                stream.addOutputFilter(compressionFilter);
+            }
         }
 
         // Check to see if a response body is present
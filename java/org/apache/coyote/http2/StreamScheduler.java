@@ -0,0 +1,45 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.Map;
+
+import org.apache.coyote.http2.Http2UpgradeHandler.BacklogTracker;
+
+/**
+ * Distributes capacity in the connection flow control window between the
+ * streams that are waiting for it. Implementations are only used when there is
+ * insufficient capacity to satisfy every waiting stream.
+ */
+interface StreamScheduler {
+
+    /**
+     * Allocate the given increment in the connection flow control window
+     * between the streams in the backlog.
+     *
+     * @param connection The connection (stream zero)
+     * @param backlog    The streams waiting for an allocation. The total of the
+     *                       outstanding reservations will be at least the size
+     *                       of the increment. Implementations may remove
+     *                       streams that require no further allocation.
+     * @param increment  The capacity to allocate
+     *
+     * @return The capacity that could not be allocated because every stream in
+     *         the backlog has received its full reservation
+     */
+    int allocate(AbstractStream connection, Map<AbstractStream,BacklogTracker> backlog, int increment);
+}
@@ -69,7 +69,7 @@ public class Asn1Writer {
             do {
                 lengthSize++;
             }
-            while ((dataSize >> (lengthSize * 8)) > 0);
+            while ((dataSize >> ((lengthSize - 1) * 8)) > 0);
         }
 
         // 1 for tag + lengthSize + dataSize
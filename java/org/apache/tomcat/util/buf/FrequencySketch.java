@@ -0,0 +1,132 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.buf;
+
+/**
+ * A count-min sketch with four bit counters used to estimate how often a
+ * value, identified by its hash, has been seen recently. Once the number of
+ * recorded occurrences reaches the sample size all the counters are halved so
+ * that the estimates favour recent history (the aging step of TinyLFU).
+ * <p>
+ * Updates are not atomic. Concurrent updates may occasionally lose an
+ * increment or be partially overwritten by a reset. That only makes an
+ * estimate slightly less accurate which is acceptable for a cache admission
+ * policy and avoids any locking or contention.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int blockMask;
+    private final int sampleSize;
+    private int size;
+
+
+    /**
+     * @param maximumSize The maximum number of entries in the cache that uses
+     *                    this sketch
+     * @param sampleSize  The number of occurrences to record before the
+     *                    counters are halved
+     */
+    FrequencySketch(int maximumSize, int sampleSize) {
+        // Each long holds 16 counters. Size the table so there are roughly as
+        // many counters as occurrences in a sample to limit collisions.
+        int length = Math.max(maximumSize, sampleSize / 16);
+        length = Integer.highestOneBit(Math.max(length, 16) - 1) << 1;
+        table = new long[length];
+        blockMask = (length - 1) & ~(DEPTH - 1);
+        this.sampleSize = Math.max(sampleSize, 1);
+    }
+
+
+    /**
+     * @param hash The hash of the value
+     * @return The estimated number of times the value has been seen, capped
+     *         at 15
+     */
+    int frequency(int hash) {
+        int block = block(hash);
+        int counterHash = counterHash(hash);
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int count = (int) ((table[block + i] >>> offset(counterHash, i)) & 0xF);
+            if (count < frequency) {
+                frequency = count;
+            }
+        }
+        return frequency;
+    }
+
+
+    /**
+     * Record an occurrence of the value.
+     *
+     * @param hash The hash of the value
+     */
+    void increment(int hash) {
+        int block = block(hash);
+        int counterHash = counterHash(hash);
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int offset = offset(counterHash, i);
+            long value = table[block + i];
+            if (((value >>> offset) & 0xF) < MAX_COUNT) {
+                table[block + i] = value + (1L << offset);
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = size >>> 1;
+    }
+
+
+    /*
+     * The counters for a value are in a block of one long per row so that
+     * they are all on the same cache line. The block is selected by one hash
+     * and the counter within each long by a second.
+     */
+    private int block(int hash) {
+        int h = hash * 0x7FEB352D;
+        return (h ^ (h >>> 15)) & blockMask;
+    }
+
+
+    private static int counterHash(int hash) {
+        int h = hash * 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+
+    private static int offset(int counterHash, int i) {
+        // One of the 16 four bit counters in the long
+        return ((counterHash >>> (i << 2)) & 0xF) << 2;
+    }
+}
@@ -16,45 +16,50 @@
  */
 package org.apache.tomcat.util.buf;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-
-import org.apache.juli.logging.Log;
-import org.apache.juli.logging.LogFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class implements a String cache for ByteChunk and CharChunk.
+ * <p>
+ * Each cache is a fixed size, set associative hash table keyed directly on
+ * the contents of the chunk so a look up that hits does not allocate. Reads
+ * and updates are lock-free. A candidate that finds its set full is only
+ * admitted if it has been seen more often recently than the least frequently
+ * seen entry in that set (TinyLFU), as estimated by a {@link FrequencySketch}.
+ * This keeps the frequently used URIs, header values and parameter names in
+ * the cache while one-off values pass through without displacing them.
  *
  * @author Remy Maucherat
  */
 public class StringCache {
 
 
-    private static final Log log = LogFactory.getLog(StringCache.class);
-
-
     // ------------------------------------------------------- Static Variables
 
 
     /**
      * Enabled ?
      */
-    protected static boolean byteEnabled = ("true".equals(System.getProperty(
+    protected static volatile boolean byteEnabled = ("true".equals(System.getProperty(
             "tomcat.util.buf.StringCache.byte.enabled", "false")));
 
 
-    protected static boolean charEnabled = ("true".equals(System.getProperty(
+    protected static volatile boolean charEnabled = ("true".equals(System.getProperty(
             "tomcat.util.buf.StringCache.char.enabled", "false")));
 
 
-    protected static int trainThreshold = Integer.parseInt(System.getProperty(
+    protected static volatile int trainThreshold = Integer.parseInt(System.getProperty(
             "tomcat.util.buf.StringCache.trainThreshold", "20000"));
 
 
-    protected static int cacheSize = Integer.parseInt(System.getProperty(
+    protected static volatile int cacheSize = Integer.parseInt(System.getProperty(
             "tomcat.util.buf.StringCache.cacheSize", "200"));
 
 
@@ -63,53 +68,118 @@ public class StringCache {
                     "tomcat.util.buf.StringCache.maxStringSize", "128"));
 
 
-   /**
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+
+    /**
+     * The number of entries in each set of the hash table.
+     */
+    private static final int WAYS = 4;
+
+
+    /**
+     * Cache for byte chunk.
+     */
+    private static volatile Cache byteCache = byteEnabled ? new Cache() : null;
+
+
+    /**
+     * Cache for char chunk.
+     */
+    private static volatile Cache charCache = charEnabled ? new Cache() : null;
+
+
+    /**
+     * Miss count. The access count is the sum of the hit and miss counts so
+     * only one counter has to be updated for each access.
+     */
+    private static final LongAdder misses = new LongAdder();
+
+
+    /**
+     * Hit count.
+     */
+    private static final LongAdder hits = new LongAdder();
+
+
+    /**
+     * Eviction count.
+     */
+    private static final LongAdder evictions = new LongAdder();
+
+
+    /**
      * Statistics hash map for byte chunk.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
-    protected static final HashMap<ByteEntry,int[]> bcStats =
-            new HashMap<>(cacheSize);
+    @Deprecated
+    protected static final HashMap<ByteEntry,int[]> bcStats = new HashMap<>();
 
 
     /**
      * toString count for byte chunk.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static int bcCount = 0;
 
 
     /**
      * Cache for byte chunk.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static volatile ByteEntry[] bcCache = null;
 
 
     /**
      * Statistics hash map for char chunk.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
-    protected static final HashMap<CharEntry,int[]> ccStats =
-            new HashMap<>(cacheSize);
+    @Deprecated
+    protected static final HashMap<CharEntry,int[]> ccStats = new HashMap<>();
 
 
     /**
      * toString count for char chunk.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static int ccCount = 0;
 
 
     /**
      * Cache for char chunk.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static volatile CharEntry[] ccCache = null;
 
 
     /**
      * Access count.
+     *
+     * @deprecated Unused. Use {@link #getAccessCountLong()}.
+     *             Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static int accessCount = 0;
 
 
     /**
      * Hit count.
+     *
+     * @deprecated Unused. Use {@link #getHitCountLong()}.
+     *             Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static int hitCount = 0;
 
 
@@ -125,10 +195,15 @@ public class StringCache {
 
 
     /**
+     * Set the maximum number of entries in each cache. The size is rounded up
+     * to a power of two. Changing the size discards the current contents of
+     * the caches.
+     *
      * @param cacheSize The cacheSize to set.
      */
     public void setCacheSize(int cacheSize) {
         StringCache.cacheSize = cacheSize;
+        reset();
     }
 
 
@@ -145,6 +220,13 @@ public class StringCache {
      */
     public void setByteEnabled(boolean byteEnabled) {
         StringCache.byteEnabled = byteEnabled;
+        if (byteEnabled) {
+            if (byteCache == null) {
+                byteCache = new Cache();
+            }
+        } else {
+            byteCache = null;
+        }
     }
 
 
@@ -161,10 +243,21 @@ public class StringCache {
      */
     public void setCharEnabled(boolean charEnabled) {
         StringCache.charEnabled = charEnabled;
+        if (charEnabled) {
+            if (charCache == null) {
+                charCache = new Cache();
+            }
+        } else {
+            charCache = null;
+        }
     }
 
 
     /**
+     * The number of look ups recorded by the frequency sketch of each cache
+     * after which the recorded frequencies are halved so that the admission
+     * policy favours recently used Strings.
+     *
      * @return Returns the trainThreshold.
      */
     public int getTrainThreshold() {
@@ -173,26 +266,97 @@ public class StringCache {
 
 
     /**
+     * Set the sample size of the frequency sketches. Changing the value
+     * discards the current contents of the caches.
+     *
      * @param trainThreshold The trainThreshold to set.
      */
     public void setTrainThreshold(int trainThreshold) {
         StringCache.trainThreshold = trainThreshold;
+        reset();
     }
 
 
     /**
      * @return Returns the accessCount.
+     *
+     * @deprecated The count may exceed the range of an int.
+     *             Use {@link #getAccessCountLong()}.
+     *             Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     public int getAccessCount() {
-        return accessCount;
+        return (int) Math.min(getAccessCountLong(), Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * @return Returns the number of look ups in the caches.
+     */
+    public long getAccessCountLong() {
+        return hits.sum() + misses.sum();
     }
 
 
     /**
      * @return Returns the hitCount.
+     *
+     * @deprecated The count may exceed the range of an int.
+     *             Use {@link #getHitCountLong()}.
+     *             Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     public int getHitCount() {
-        return hitCount;
+        return (int) Math.min(getHitCountLong(), Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * @return Returns the number of look ups that found a cached String.
+     */
+    public long getHitCountLong() {
+        return hits.sum();
+    }
+
+
+    /**
+     * @return The ratio of hits to accesses or zero if there have been no
+     *         accesses.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long accesses = hitCount + misses.sum();
+        if (accesses == 0) {
+            return 0;
+        }
+        return (double) hitCount / accesses;
+    }
+
+
+    /**
+     * @return The number of cached Strings that have been replaced by a more
+     *         frequently used String.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+
+    /**
+     * @return The number of Strings currently in the ByteChunk cache.
+     */
+    public int getByteEntryCount() {
+        Cache cache = byteCache;
+        return cache == null ? 0 : cache.count();
+    }
+
+
+    /**
+     * @return The number of Strings currently in the CharChunk cache.
+     */
+    public int getCharEntryCount() {
+        Cache cache = charCache;
+        return cache == null ? 0 : cache.count();
     }
 
 
@@ -200,248 +364,71 @@ public class StringCache {
 
 
     public void reset() {
-        hitCount = 0;
-        accessCount = 0;
-        synchronized (bcStats) {
-            bcCache = null;
-            bcCount = 0;
-        }
-        synchronized (ccStats) {
-            ccCache = null;
-            ccCount = 0;
-        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        byteCache = byteEnabled ? new Cache() : null;
+        charCache = charEnabled ? new Cache() : null;
     }
 
 
     public static String toString(ByteChunk bc) {
+        Cache cache = byteCache;
+        int length = bc.getLength();
+        if (cache == null || length >= maxStringSize) {
+            return bc.toStringInternal();
+        }
 
-        // If the cache is null, then either caching is disabled, or we're
-        // still training
-        if (bcCache == null) {
-            String value = bc.toStringInternal();
-            if (byteEnabled && (value.length() < maxStringSize)) {
-                // If training, everything is synced
-                synchronized (bcStats) {
-                    // If the cache has been generated on a previous invocation
-                    // while waiting for the lock, just return the toString
-                    // value we just calculated
-                    if (bcCache != null) {
-                        return value;
-                    }
-                    // Two cases: either we just exceeded the train count, in
-                    // which case the cache must be created, or we just update
-                    // the count for the string
-                    if (bcCount > trainThreshold) {
-                        long t1 = System.currentTimeMillis();
-                        // Sort the entries according to occurrence
-                        TreeMap<Integer,ArrayList<ByteEntry>> tempMap =
-                                new TreeMap<>();
-                        for (Entry<ByteEntry,int[]> item : bcStats.entrySet()) {
-                            ByteEntry entry = item.getKey();
-                            int[] countA = item.getValue();
-                            Integer count = Integer.valueOf(countA[0]);
-                            // Add to the list for that count
-                            ArrayList<ByteEntry> list = tempMap.get(count);
-                            if (list == null) {
-                                // Create list
-                                list = new ArrayList<>();
-                                tempMap.put(count, list);
-                            }
-                            list.add(entry);
-                        }
-                        // Allocate array of the right size
-                        int size = bcStats.size();
-                        if (size > cacheSize) {
-                            size = cacheSize;
-                        }
-                        ByteEntry[] tempbcCache = new ByteEntry[size];
-                        // Fill it up using an alphabetical order
-                        // and a dumb insert sort
-                        ByteChunk tempChunk = new ByteChunk();
-                        int n = 0;
-                        while (n < size) {
-                            Object key = tempMap.lastKey();
-                            ArrayList<ByteEntry> list = tempMap.get(key);
-                            for (int i = 0; i < list.size() && n < size; i++) {
-                                ByteEntry entry = list.get(i);
-                                tempChunk.setBytes(entry.name, 0,
-                                        entry.name.length);
-                                int insertPos = findClosest(tempChunk,
-                                        tempbcCache, n);
-                                if (insertPos == n) {
-                                    tempbcCache[n + 1] = entry;
-                                } else {
-                                    System.arraycopy(tempbcCache, insertPos + 1,
-                                            tempbcCache, insertPos + 2,
-                                            n - insertPos - 1);
-                                    tempbcCache[insertPos + 1] = entry;
-                                }
-                                n++;
-                            }
-                            tempMap.remove(key);
-                        }
-                        bcCount = 0;
-                        bcStats.clear();
-                        bcCache = tempbcCache;
-                        if (log.isDebugEnabled()) {
-                            long t2 = System.currentTimeMillis();
-                            log.debug("ByteCache generation time: " +
-                                    (t2 - t1) + "ms");
-                        }
-                    } else {
-                        bcCount++;
-                        // Allocate new ByteEntry for the lookup
-                        ByteEntry entry = new ByteEntry();
-                        entry.value = value;
-                        int[] count = bcStats.get(entry);
-                        if (count == null) {
-                            int end = bc.getEnd();
-                            int start = bc.getStart();
-                            // Create byte array and copy bytes
-                            entry.name = new byte[bc.getLength()];
-                            System.arraycopy(bc.getBuffer(), start, entry.name,
-                                    0, end - start);
-                            // Set encoding
-                            entry.charset = bc.getCharset();
-                            // Initialize occurrence count to one
-                            count = new int[1];
-                            count[0] = 1;
-                            // Set in the stats hash map
-                            bcStats.put(entry, count);
-                        } else {
-                            count[0] = count[0] + 1;
-                        }
-                    }
-                }
-            }
+        byte[] buf = bc.getBuffer();
+        int start = bc.getStart();
+        int end = bc.getEnd();
+        int hash = hash(buf, start, end);
+
+        cache.sketch.increment(hash);
+        int set = cache.set(hash);
+        String value = find(cache, set, hash, bc);
+        if (value != null) {
+            hits.increment();
             return value;
-        } else {
-            accessCount++;
-            // Find the corresponding String
-            String result = find(bc);
-            if (result == null) {
-                return bc.toStringInternal();
-            }
-            // Note: We don't care about safety for the stats
-            hitCount++;
-            return result;
         }
 
+        misses.increment();
+        value = bc.toStringInternal();
+        int slot = cache.admit(set, hash);
+        if (slot >= 0) {
+            cache.put(slot, new ByteEntry(hash, Arrays.copyOfRange(buf, start, end), bc.getCharset(), value));
+        }
+        return value;
     }
 
 
     public static String toString(CharChunk cc) {
+        Cache cache = charCache;
+        int length = cc.getLength();
+        if (cache == null || length >= maxStringSize) {
+            return cc.toStringInternal();
+        }
 
-        // If the cache is null, then either caching is disabled, or we're
-        // still training
-        if (ccCache == null) {
-            String value = cc.toStringInternal();
-            if (charEnabled && (value.length() < maxStringSize)) {
-                // If training, everything is synced
-                synchronized (ccStats) {
-                    // If the cache has been generated on a previous invocation
-                    // while waiting for the lock, just return the toString
-                    // value we just calculated
-                    if (ccCache != null) {
-                        return value;
-                    }
-                    // Two cases: either we just exceeded the train count, in
-                    // which case the cache must be created, or we just update
-                    // the count for the string
-                    if (ccCount > trainThreshold) {
-                        long t1 = System.currentTimeMillis();
-                        // Sort the entries according to occurrence
-                        TreeMap<Integer,ArrayList<CharEntry>> tempMap =
-                                new TreeMap<>();
-                        for (Entry<CharEntry,int[]> item : ccStats.entrySet()) {
-                            CharEntry entry = item.getKey();
-                            int[] countA = item.getValue();
-                            Integer count = Integer.valueOf(countA[0]);
-                            // Add to the list for that count
-                            ArrayList<CharEntry> list = tempMap.get(count);
-                            if (list == null) {
-                                // Create list
-                                list = new ArrayList<>();
-                                tempMap.put(count, list);
-                            }
-                            list.add(entry);
-                        }
-                        // Allocate array of the right size
-                        int size = ccStats.size();
-                        if (size > cacheSize) {
-                            size = cacheSize;
-                        }
-                        CharEntry[] tempccCache = new CharEntry[size];
-                        // Fill it up using an alphabetical order
-                        // and a dumb insert sort
-                        CharChunk tempChunk = new CharChunk();
-                        int n = 0;
-                        while (n < size) {
-                            Object key = tempMap.lastKey();
-                            ArrayList<CharEntry> list = tempMap.get(key);
-                            for (int i = 0; i < list.size() && n < size; i++) {
-                                CharEntry entry = list.get(i);
-                                tempChunk.setChars(entry.name, 0,
-                                        entry.name.length);
-                                int insertPos = findClosest(tempChunk,
-                                        tempccCache, n);
-                                if (insertPos == n) {
-                                    tempccCache[n + 1] = entry;
-                                } else {
-                                    System.arraycopy(tempccCache, insertPos + 1,
-                                            tempccCache, insertPos + 2,
-                                            n - insertPos - 1);
-                                    tempccCache[insertPos + 1] = entry;
-                                }
-                                n++;
-                            }
-                            tempMap.remove(key);
-                        }
-                        ccCount = 0;
-                        ccStats.clear();
-                        ccCache = tempccCache;
-                        if (log.isDebugEnabled()) {
-                            long t2 = System.currentTimeMillis();
-                            log.debug("CharCache generation time: " +
-                                    (t2 - t1) + "ms");
-                        }
-                    } else {
-                        ccCount++;
-                        // Allocate new CharEntry for the lookup
-                        CharEntry entry = new CharEntry();
-                        entry.value = value;
-                        int[] count = ccStats.get(entry);
-                        if (count == null) {
-                            int end = cc.getEnd();
-                            int start = cc.getStart();
-                            // Create char array and copy chars
-                            entry.name = new char[cc.getLength()];
-                            System.arraycopy(cc.getBuffer(), start, entry.name,
-                                    0, end - start);
-                            // Initialize occurrence count to one
-                            count = new int[1];
-                            count[0] = 1;
-                            // Set in the stats hash map
-                            ccStats.put(entry, count);
-                        } else {
-                            count[0] = count[0] + 1;
-                        }
-                    }
-                }
-            }
+        char[] buf = cc.getBuffer();
+        int start = cc.getStart();
+        int end = cc.getEnd();
+        int hash = hash(buf, start, end);
+
+        cache.sketch.increment(hash);
+        int set = cache.set(hash);
+        String value = find(cache, set, hash, cc);
+        if (value != null) {
+            hits.increment();
             return value;
-        } else {
-            accessCount++;
-            // Find the corresponding String
-            String result = find(cc);
-            if (result == null) {
-                return cc.toStringInternal();
-            }
-            // Note: We don't care about safety for the stats
-            hitCount++;
-            return result;
         }
 
+        misses.increment();
+        value = cc.toStringInternal();
+        int slot = cache.admit(set, hash);
+        if (slot >= 0) {
+            cache.put(slot, new CharEntry(hash, Arrays.copyOfRange(buf, start, end), value));
+        }
+        return value;
     }
 
 
@@ -453,33 +440,14 @@ public class StringCache {
      * @param name The name to compare
      * @param compareTo The compared to data
      * @return -1, 0 or +1 if inferior, equal, or superior to the String.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static final int compare(ByteChunk name, byte[] compareTo) {
-        int result = 0;
-
-        byte[] b = name.getBuffer();
-        int start = name.getStart();
-        int end = name.getEnd();
-        int len = compareTo.length;
-
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            if (b[i + start] > compareTo[i]) {
-                result = 1;
-            } else if (b[i + start] < compareTo[i]) {
-                result = -1;
-            }
-        }
-        if (result == 0) {
-            if (compareTo.length > (end - start)) {
-                result = -1;
-            } else if (compareTo.length < (end - start)) {
-                result = 1;
-            }
-        }
-        return result;
+        int result = Arrays.compare(name.getBuffer(), name.getStart(), name.getEnd(),
+                compareTo, 0, compareTo.length);
+        return Integer.signum(result);
     }
 
 
@@ -487,16 +455,19 @@ public class StringCache {
      * Find an entry given its name in the cache and return the associated
      * String.
      * @param name The name to find
-     * @return the corresponding value
+     * @return the corresponding value or {@code null} if the name is not
+     *         cached
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static final String find(ByteChunk name) {
-        int pos = findClosest(name, bcCache, bcCache.length);
-        if ((pos < 0) || (compare(name, bcCache[pos].name) != 0)
-                || !(name.getCharset().equals(bcCache[pos].charset))) {
+        Cache cache = byteCache;
+        if (cache == null) {
             return null;
-        } else {
-            return bcCache[pos].value;
         }
+        int hash = hash(name.getBuffer(), name.getStart(), name.getEnd());
+        return find(cache, cache.set(hash), hash, name);
     }
 
 
@@ -508,46 +479,23 @@ public class StringCache {
      * @param array The array in which to look
      * @param len The effective length of the array
      * @return the position of the best match
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
-    protected static final int findClosest(ByteChunk name, ByteEntry[] array,
-            int len) {
-
+    @Deprecated
+    protected static final int findClosest(ByteChunk name, ByteEntry[] array, int len) {
         int a = 0;
         int b = len - 1;
-
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
-        }
-
-        if (compare(name, array[0].name) < 0) {
-            return -1;
-        }
-        if (b == 0) {
-            return 0;
-        }
-
-        int i = 0;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compare(name, array[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
+        // Binary search for the last entry less than or equal to the name
+        while (a <= b) {
+            int i = (a + b) >>> 1;
+            if (compare(name, array[i].name) < 0) {
+                b = i - 1;
             } else {
-                b = i;
-            }
-            if ((b - a) == 1) {
-                int result2 = compare(name, array[b].name);
-                if (result2 < 0) {
-                    return a;
-                } else {
-                    return b;
-                }
+                a = i + 1;
             }
         }
-
+        return b;
     }
 
 
@@ -556,33 +504,14 @@ public class StringCache {
      * @param name The name to compare
      * @param compareTo The compared to data
      * @return -1, 0 or +1 if inferior, equal, or superior to the String.
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static final int compare(CharChunk name, char[] compareTo) {
-        int result = 0;
-
-        char[] c = name.getBuffer();
-        int start = name.getStart();
-        int end = name.getEnd();
-        int len = compareTo.length;
-
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            if (c[i + start] > compareTo[i]) {
-                result = 1;
-            } else if (c[i + start] < compareTo[i]) {
-                result = -1;
-            }
-        }
-        if (result == 0) {
-            if (compareTo.length > (end - start)) {
-                result = -1;
-            } else if (compareTo.length < (end - start)) {
-                result = 1;
-            }
-        }
-        return result;
+        int result = Arrays.compare(name.getBuffer(), name.getStart(), name.getEnd(),
+                compareTo, 0, compareTo.length);
+        return Integer.signum(result);
     }
 
 
@@ -590,15 +519,19 @@ public class StringCache {
      * Find an entry given its name in the cache and return the associated
      * String.
      * @param name The name to find
-     * @return the corresponding value
+     * @return the corresponding value or {@code null} if the name is not
+     *         cached
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
+    @Deprecated
     protected static final String find(CharChunk name) {
-        int pos = findClosest(name, ccCache, ccCache.length);
-        if ((pos < 0) || (compare(name, ccCache[pos].name) != 0)) {
+        Cache cache = charCache;
+        if (cache == null) {
             return null;
-        } else {
-            return ccCache[pos].value;
         }
+        int hash = hash(name.getBuffer(), name.getStart(), name.getEnd());
+        return find(cache, cache.set(hash), hash, name);
     }
 
 
@@ -610,101 +543,223 @@ public class StringCache {
      * @param array The array in which to look
      * @param len The effective length of the array
      * @return the position of the best match
+     *
+     * @deprecated Unused. Will be removed in Tomcat 11 onwards
      */
-    protected static final int findClosest(CharChunk name, CharEntry[] array,
-            int len) {
-
+    @Deprecated
+    protected static final int findClosest(CharChunk name, CharEntry[] array, int len) {
         int a = 0;
         int b = len - 1;
-
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
+        // Binary search for the last entry less than or equal to the name
+        while (a <= b) {
+            int i = (a + b) >>> 1;
+            if (compare(name, array[i].name) < 0) {
+                b = i - 1;
+            } else {
+                a = i + 1;
+            }
         }
+        return b;
+    }
 
-        if (compare(name, array[0].name) < 0 ) {
-            return -1;
-        }
-        if (b == 0) {
-            return 0;
-        }
 
-        int i = 0;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compare(name, array[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
-            } else {
-                b = i;
+    // ------------------------------------------------------- Private Methods
+
+
+    private static String find(Cache cache, int set, int hash, ByteChunk bc) {
+        for (int i = set; i < set + WAYS; i++) {
+            Entry entry = cache.entries.get(i);
+            if (entry != null && entry.hash == hash && entry instanceof ByteEntry) {
+                ByteEntry byteEntry = (ByteEntry) entry;
+                if (byteEntry.charset.equals(bc.getCharset()) && Arrays.equals(byteEntry.name, 0,
+                        byteEntry.name.length, bc.getBuffer(), bc.getStart(), bc.getEnd())) {
+                    return entry.value;
+                }
             }
-            if ((b - a) == 1) {
-                int result2 = compare(name, array[b].name);
-                if (result2 < 0) {
-                    return a;
-                } else {
-                    return b;
+        }
+        return null;
+    }
+
+
+    private static String find(Cache cache, int set, int hash, CharChunk cc) {
+        for (int i = set; i < set + WAYS; i++) {
+            Entry entry = cache.entries.get(i);
+            if (entry != null && entry.hash == hash && entry instanceof CharEntry) {
+                CharEntry charEntry = (CharEntry) entry;
+                if (Arrays.equals(charEntry.name, 0, charEntry.name.length,
+                        cc.getBuffer(), cc.getStart(), cc.getEnd())) {
+                    return entry.value;
                 }
             }
         }
+        return null;
+    }
 
+
+    /*
+     * Hashes eight bytes at a time as a simple byte by byte hash is limited by
+     * the latency of the multiplication for every byte and was a significant
+     * part of the cost of a cache hit.
+     */
+    private static int hash(byte[] buf, int start, int end) {
+        long h = end - start;
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            h = (h + (long) LONG_LE.get(buf, i)) * 0x9E3779B97F4A7C15L;
+        }
+        long tail = 0;
+        for (; i < end; i++) {
+            tail = (tail << 8) | (buf[i] & 0xFF);
+        }
+        h = (h + tail) * 0x9E3779B97F4A7C15L;
+        // Mix the high bits, which depend on every byte, into the low bits
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return (int) (h ^ (h >>> 33));
     }
 
 
-    // -------------------------------------------------- ByteEntry Inner Class
+    /*
+     * Hashes four chars (eight bytes) at a time for the same reason.
+     */
+    private static int hash(char[] buf, int start, int end) {
+        long h = end - start;
+        int i = start;
+        for (; i + 4 <= end; i += 4) {
+            long word = buf[i] | (long) buf[i + 1] << 16 | (long) buf[i + 2] << 32 | (long) buf[i + 3] << 48;
+            h = (h + word) * 0x9E3779B97F4A7C15L;
+        }
+        long tail = 0;
+        for (; i < end; i++) {
+            tail = (tail << 16) | buf[i];
+        }
+        h = (h + tail) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return (int) (h ^ (h >>> 33));
+    }
 
 
-    private static class ByteEntry {
+    // ------------------------------------------------------ Cache Inner Class
 
-        private byte[] name = null;
-        private Charset charset = null;
-        private String value = null;
 
-        @Override
-        public String toString() {
-            return value;
+    private static class Cache {
+
+        private final AtomicReferenceArray<Entry> entries;
+        private final int setMask;
+        private final FrequencySketch sketch;
+
+        Cache() {
+            int size = Math.max(cacheSize, WAYS);
+            int capacity = Integer.highestOneBit(size - 1) << 1;
+            entries = new AtomicReferenceArray<>(capacity);
+            setMask = (capacity - 1) & ~(WAYS - 1);
+            sketch = new FrequencySketch(capacity, trainThreshold);
         }
-        @Override
-        public int hashCode() {
-            return value.hashCode();
+
+        /*
+         * Index of the first entry in the set for the given hash.
+         */
+        int set(int hash) {
+            int h = hash * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & setMask;
         }
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof ByteEntry) {
-                return value.equals(((ByteEntry) obj).value);
+
+        /*
+         * Returns the index of a free entry in the set or, if the set is full,
+         * the index of the least used entry if the candidate has been used
+         * more often. Otherwise returns -1 and the candidate is not cached.
+         */
+        int admit(int set, int hash) {
+            int victimIndex = -1;
+            int victimFrequency = Integer.MAX_VALUE;
+            for (int i = set; i < set + WAYS; i++) {
+                Entry entry = entries.get(i);
+                if (entry == null) {
+                    return i;
+                }
+                int frequency = sketch.frequency(entry.hash);
+                if (frequency < victimFrequency) {
+                    victimIndex = i;
+                    victimFrequency = frequency;
+                }
             }
-            return false;
+            if (sketch.frequency(hash) > victimFrequency) {
+                return victimIndex;
+            }
+            return -1;
         }
 
+        /*
+         * Losing a race with another thread is ignored as the candidate will
+         * be offered again the next time it is used.
+         */
+        void put(int index, Entry candidate) {
+            Entry current = entries.get(index);
+            if (entries.compareAndSet(index, current, candidate) && current != null) {
+                evictions.increment();
+            }
+        }
+
+        int count() {
+            int count = 0;
+            for (int i = 0; i < entries.length(); i++) {
+                if (entries.get(i) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
     }
 
 
-    // -------------------------------------------------- CharEntry Inner Class
+    // ------------------------------------------------------ Entry Inner Class
+
 
+    private abstract static class Entry {
 
-    private static class CharEntry {
+        private final int hash;
+        private final String value;
 
-        private char[] name = null;
-        private String value = null;
+        Entry(int hash, String value) {
+            this.hash = hash;
+            this.value = value;
+        }
 
         @Override
         public String toString() {
             return value;
         }
-        @Override
-        public int hashCode() {
-            return value.hashCode();
-        }
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof CharEntry) {
-                return value.equals(((CharEntry) obj).value);
-            }
-            return false;
+    }
+
+
+    // -------------------------------------------------- ByteEntry Inner Class
+
+
+    private static class ByteEntry extends Entry {
+
+        private final byte[] name;
+        private final Charset charset;
+
+        ByteEntry(int hash, byte[] name, Charset charset, String value) {
+            super(hash, value);
+            this.name = name;
+            this.charset = charset;
         }
+    }
+
 
+    // -------------------------------------------------- CharEntry Inner Class
+
+
+    private static class CharEntry extends Entry {
+
+        private final char[] name;
+
+        CharEntry(int hash, char[] name, String value) {
+            super(hash, value);
+            this.name = name;
+        }
     }
 
 
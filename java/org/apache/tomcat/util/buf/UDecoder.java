@@ -98,6 +98,33 @@ public final class UDecoder {
     }
 
 
+    /**
+     * Checks, without modifying them, that the given bytes can be URL decoded
+     * as part of a query string. If this method does not throw an exception
+     * then {@link #convert(ByteChunk, boolean)} will not throw an exception
+     * for the same bytes when {@code query} is {@code true}.
+     *
+     * @param buff  The URL encoded bytes
+     * @param start The index of the first byte to check
+     * @param end   The index after the last byte to check
+     *
+     * @throws IOException Invalid %xx URL encoding
+     */
+    public static void checkQuery(byte[] buff, int start, int end) throws IOException {
+        for (int j = start; j < end; j++) {
+            if (buff[j] == '%') {
+                if (j + 2 >= end) {
+                    throw EXCEPTION_EOF;
+                }
+                if (!isHexDigit(buff[j + 1]) || !isHexDigit(buff[j + 2])) {
+                    throw EXCEPTION_NOT_HEX_DIGIT;
+                }
+                j += 2;
+            }
+        }
+    }
+
+
     private void convert(ByteChunk mb, boolean query, EncodedSolidusHandling encodedSolidusHandling) throws IOException {
 
         int start=mb.getOffset();
@@ -0,0 +1,194 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free alternative to {@link SynchronizedStack} for caches of re-usable
+ * objects that are shared by many threads. Objects are held in a number of
+ * stripes of fixed size slots and each thread is mapped to a stripe based on
+ * its ID so that threads rarely contend for the same slots. Pushes that find
+ * the stripe of the current thread full go to a shared, synchronized overflow
+ * stack. Pops check the stripe of the current thread, then the overflow stack.
+ * Both operations only look at the other stripes when that fails.
+ * <p>
+ * Unlike {@link SynchronizedStack}, objects are not returned in LIFO order.
+ *
+ * @param <T> The type of object managed by this stack
+ */
+public class StripedStack<T> extends SynchronizedStack<T> {
+
+    public static final int DEFAULT_STRIPE_SIZE = 16;
+    private static final int MAX_STRIPES = 64;
+
+    private final int stripeCount;
+    private final int stripeSize;
+    private final AtomicReferenceArray<Object> slots;
+
+
+    public StripedStack() {
+        this(DEFAULT_SIZE, -1);
+    }
+
+    public StripedStack(int size, int limit) {
+        this(size, limit, defaultStripeCount(), DEFAULT_STRIPE_SIZE);
+    }
+
+    /**
+     * Create a stack.
+     *
+     * @param size          The initial size of the overflow stack
+     * @param limit         The maximum number of objects held by this stack
+     *                          including the stripes or -1 for no limit
+     * @param stripeCount   The maximum number of stripes. This will be rounded
+     *                          down to a power of two and may be reduced
+     *                          further so that the limit is not exceeded
+     * @param stripeSize    The maximum number of objects in each stripe
+     */
+    public StripedStack(int size, int limit, int stripeCount, int stripeSize) {
+        super(size, overflowLimit(limit, stripeCount, stripeSize));
+        this.stripeCount = actualStripeCount(limit, stripeCount, stripeSize);
+        this.stripeSize = actualStripeSize(limit, this.stripeCount, stripeSize);
+        slots = new AtomicReferenceArray<>(this.stripeCount * this.stripeSize);
+    }
+
+
+    @Override
+    public boolean push(T obj) {
+        if (stripeSize == 0) {
+            return super.push(obj);
+        }
+        int start = stripeStart();
+        if (pushStripe(start, obj) || super.push(obj)) {
+            return true;
+        }
+        // Use the free slots of the other stripes before giving up
+        int length = slots.length();
+        for (int i = 1; i < stripeCount; i++) {
+            if (pushStripe((start + i * stripeSize) % length, obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T pop() {
+        if (stripeSize == 0) {
+            return super.pop();
+        }
+        int start = stripeStart();
+        Object result = popStripe(start);
+        if (result != null) {
+            return (T) result;
+        }
+        result = super.pop();
+        if (result != null) {
+            return (T) result;
+        }
+        // Steal from the other stripes rather than allocate a new object
+        int length = slots.length();
+        for (int i = 1; i < stripeCount; i++) {
+            result = popStripe((start + i * stripeSize) % length);
+            if (result != null) {
+                return (T) result;
+            }
+        }
+        return null;
+    }
+
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        super.clear();
+    }
+
+
+    private boolean pushStripe(int start, Object obj) {
+        for (int i = start; i < start + stripeSize; i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private Object popStripe(int start) {
+        for (int i = start; i < start + stripeSize; i++) {
+            if (slots.get(i) != null) {
+                Object result = slots.getAndSet(i, null);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    private int stripeStart() {
+        // Thread IDs are allocated sequentially so the low bits spread threads
+        // evenly across the stripes
+        int h = (int) Thread.currentThread().getId();
+        return (h & (stripeCount - 1)) * stripeSize;
+    }
+
+
+    private static int defaultStripeCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+
+    private static int actualStripeCount(int limit, int stripeCount, int stripeSize) {
+        if (limit == 0 || stripeSize < 1) {
+            return 1;
+        }
+        int count = Math.min(Math.max(stripeCount, 1), MAX_STRIPES);
+        if (limit > 0) {
+            count = Math.min(count, limit);
+        }
+        // Round down to a power of two
+        return Integer.highestOneBit(count);
+    }
+
+
+    private static int actualStripeSize(int limit, int stripeCount, int stripeSize) {
+        if (limit == 0 || stripeSize < 1) {
+            return 0;
+        }
+        if (limit > 0) {
+            return Math.min(stripeSize, limit / stripeCount);
+        }
+        return stripeSize;
+    }
+
+
+    private static int overflowLimit(int limit, int stripeCount, int stripeSize) {
+        if (limit < 1) {
+            return limit;
+        }
+        int count = actualStripeCount(limit, stripeCount, stripeSize);
+        return limit - count * actualStripeSize(limit, count, stripeSize);
+    }
+}
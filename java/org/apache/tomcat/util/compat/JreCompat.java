@@ -32,6 +32,7 @@ public class JreCompat {
     private static final JreCompat instance;
     private static final boolean graalAvailable;
     private static final boolean jre16Available;
+    private static final boolean jre21Available;
     private static final StringManager sm = StringManager.getManager(JreCompat.class);
 
     static {
@@ -48,12 +49,18 @@ public class JreCompat {
 
         // This is Tomcat 10.1.x with a minimum Java version of Java 11.
         // Look for the highest supported JVM first
-        if (Jre16Compat.isSupported()) {
+        if (Jre21Compat.isSupported()) {
+            instance = new Jre21Compat();
+            jre16Available = true;
+            jre21Available = true;
+        } else if (Jre16Compat.isSupported()) {
             instance = new Jre16Compat();
             jre16Available = true;
+            jre21Available = false;
         } else {
             instance = new JreCompat();
             jre16Available = false;
+            jre21Available = false;
         }
     }
 
@@ -73,6 +80,11 @@ public class JreCompat {
     }
 
 
+    public static boolean isJre21Available() {
+        return jre21Available;
+    }
+
+
     // Java 11 implementations of Java 16 methods
 
     /**
@@ -101,4 +113,27 @@ public class JreCompat {
     public SocketChannel openUnixDomainSocketChannel() {
         throw new UnsupportedOperationException(sm.getString("jreCompat.noUnixDomainSocket"));
     }
+
+
+    // Java 11 implementations of Java 21 methods
+
+    /**
+     * Create a thread builder for virtual threads.
+     * @param name Name prefix for the virtual threads created by the builder
+     * @return the thread builder
+     */
+    public Object createVirtualThreadBuilder(String name) {
+        throw new UnsupportedOperationException(sm.getString("jreCompat.noVirtualThreads"));
+    }
+
+
+    /**
+     * Create a thread with the given thread builder and use it to execute the
+     * given runnable.
+     * @param threadBuilder The thread builder to use to create a thread
+     * @param command The command to run
+     */
+    public void threadBuilderStart(Object threadBuilder, Runnable command) {
+        throw new UnsupportedOperationException(sm.getString("jreCompat.noVirtualThreads"));
+    }
 }
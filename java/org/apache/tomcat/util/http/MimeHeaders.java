@@ -19,6 +19,7 @@ package org.apache.tomcat.util.http;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Enumeration;
 
 import org.apache.tomcat.util.buf.MessageBytes;
@@ -55,11 +56,13 @@ import org.apache.tomcat.util.res.StringManager;
    Apache seems to be using a similar method for storing and manipulating
    headers.
 
+   The names of well known headers are resolved to an ID when the header is
+   added so look ups of those headers compare IDs rather than names. Header
+   names must therefore only be set via the methods of this class.
+
    Future enhancements:
    - hash the headers the first time a header is requested ( i.e. if the
    servlet needs direct access to headers).
-   - scan "common" values ( length, cookies, etc ) during the parse
-   ( addHeader hook )
 
 */
 
@@ -80,7 +83,6 @@ import org.apache.tomcat.util.res.StringManager;
  *  XXX one-buffer parsing - for http ( other protocols don't need that )
  *  XXX remove unused methods
  *  XXX External enumerations, with 0 GC.
- *  XXX use HeaderName ID
  *
  *
  * @author dac@eng.sun.com
@@ -113,6 +115,14 @@ public class MimeHeaders {
      */
     private int limit = -1;
 
+    /**
+     * The index of the first header with each well known header ID, or -1 if
+     * there is no such header. Removing a header invalidates the index which
+     * is then rebuilt the next time it is required.
+     */
+    private final int[] firstIndex = WellKnownHeaders.createIndex();
+    private boolean firstIndexValid = true;
+
     /**
      * Creates a new MimeHeaders object using a default buffer size.
      */
@@ -146,8 +156,20 @@ public class MimeHeaders {
      * Clears all header fields.
      */
     public void clear() {
-        for (int i = 0; i < count; i++) {
-            headers[i].recycle();
+        if (firstIndexValid) {
+            for (int i = 0; i < count; i++) {
+                int id = headers[i].getId();
+                if (id != WellKnownHeaders.UNKNOWN) {
+                    firstIndex[id] = -1;
+                }
+                headers[i].recycle();
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                headers[i].recycle();
+            }
+            Arrays.fill(firstIndex, -1);
+            firstIndexValid = true;
         }
         count = 0;
     }
@@ -179,6 +201,7 @@ public class MimeHeaders {
             MimeHeaderField mhf = createHeader();
             mhf.getName().duplicate(source.getName(i));
             mhf.getValue().duplicate(source.getValue(i));
+            setId(mhf, source.headers[i].getId());
         }
     }
 
@@ -217,21 +240,54 @@ public class MimeHeaders {
      * @return the header index
      */
     public int findHeader( String name, int starting ) {
-        // We can use a hash - but it's not clear how much
-        // benefit you can get - there is an  overhead
-        // and the number of headers is small (4-5 ?)
-        // Another problem is that we'll pay the overhead
-        // of constructing the hashtable
+        return findHeader(name, WellKnownHeaders.lookup(name), starting);
+    }
 
-        // A custom search tree may be better
+    int findHeader(String name, int id, int starting) {
+        if (id != WellKnownHeaders.UNKNOWN) {
+            if (!firstIndexValid) {
+                rebuildIndex();
+            }
+            int first = firstIndex[id];
+            if (first == -1) {
+                return -1;
+            }
+            for (int i = Math.max(first, starting); i < count; i++) {
+                if (headers[i].getId() == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
         for (int i = starting; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
+            if (headers[i].matches(name, id)) {
                 return i;
             }
         }
         return -1;
     }
 
+    private void rebuildIndex() {
+        Arrays.fill(firstIndex, -1);
+        for (int i = count - 1; i >= 0; i--) {
+            int id = headers[i].getId();
+            if (id != WellKnownHeaders.UNKNOWN) {
+                firstIndex[id] = i;
+            }
+        }
+        firstIndexValid = true;
+    }
+
+    /*
+     * Must be called for the header that has just been created.
+     */
+    private void setId(MimeHeaderField mh, int id) {
+        mh.setId(id);
+        if (id != WellKnownHeaders.UNKNOWN && firstIndex[id] == -1) {
+            firstIndex[id] = count - 1;
+        }
+    }
+
     // -------------------- --------------------
 
     /**
@@ -288,6 +344,7 @@ public class MimeHeaders {
     public MessageBytes addValue( String name ) {
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        setId(mh, WellKnownHeaders.lookup(name));
         return mh.getValue();
     }
 
@@ -303,6 +360,7 @@ public class MimeHeaders {
     public MessageBytes addValue(byte b[], int startN, int len) {
         MimeHeaderField mhf=createHeader();
         mhf.getName().setBytes(b, startN, len);
+        setId(mhf, WellKnownHeaders.lookup(b, startN, len));
         return mhf.getValue();
     }
 
@@ -313,10 +371,11 @@ public class MimeHeaders {
      * @return the message bytes container for the value
      */
     public MessageBytes setValue( String name ) {
+        int id = WellKnownHeaders.lookup(name);
         for ( int i = 0; i < count; i++ ) {
-            if(headers[i].getName().equalsIgnoreCase(name)) {
+            if(headers[i].matches(name, id)) {
                 for ( int j=i+1; j < count; j++ ) {
-                    if(headers[j].getName().equalsIgnoreCase(name)) {
+                    if(headers[j].matches(name, id)) {
                         removeHeader(j--);
                     }
                 }
@@ -325,6 +384,7 @@ public class MimeHeaders {
         }
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        setId(mh, id);
         return mh.getValue();
     }
 
@@ -337,12 +397,8 @@ public class MimeHeaders {
      * @return the value
      */
     public MessageBytes getValue(String name) {
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                return headers[i].getValue();
-            }
-        }
-        return null;
+        int i = findHeader(name, WellKnownHeaders.lookup(name), 0);
+        return i == -1 ? null : headers[i].getValue();
     }
 
     /**
@@ -355,8 +411,9 @@ public class MimeHeaders {
      */
     public MessageBytes getUniqueValue(String name) {
         MessageBytes result = null;
+        int id = WellKnownHeaders.lookup(name);
         for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
+            if (headers[i].matches(name, id)) {
                 if (result == null) {
                     result = headers[i].getValue();
                 } else {
@@ -384,8 +441,9 @@ public class MimeHeaders {
         // XXX
         // warning: rather sticky code; heavily tuned
 
+        int id = WellKnownHeaders.lookup(name);
         for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
+            if (headers[i].matches(name, id)) {
                 removeHeader(i--);
             }
         }
@@ -405,6 +463,7 @@ public class MimeHeaders {
         // Clear the header to remove
         MimeHeaderField mh = headers[idx];
         mh.recycle();
+        firstIndexValid = false;
 
         // Move the remaining headers
         System.arraycopy(headers, idx + 1, headers, idx, count - idx -1);
@@ -481,9 +540,11 @@ class ValuesEnumerator implements Enumeration<String> {
     private MessageBytes next;
     private final MimeHeaders headers;
     private final String name;
+    private final int id;
 
     ValuesEnumerator(MimeHeaders headers, String name) {
         this.name=name;
+        this.id = WellKnownHeaders.lookup(name);
         this.headers=headers;
         pos=0;
         size = headers.size();
@@ -492,12 +553,12 @@ class ValuesEnumerator implements Enumeration<String> {
 
     private void findNext() {
         next=null;
-        for(; pos< size; pos++ ) {
-            MessageBytes n1=headers.getName( pos );
-            if( n1.equalsIgnoreCase( name )) {
-                next=headers.getValue( pos );
-                break;
-            }
+        int found = headers.findHeader(name, id, pos);
+        if (found >= 0 && found < size) {
+            next = headers.getValue(found);
+            pos = found;
+        } else {
+            pos = size;
         }
         pos++;
     }
@@ -519,6 +580,7 @@ class MimeHeaderField {
 
     private final MessageBytes nameB = MessageBytes.newInstance();
     private final MessageBytes valueB = MessageBytes.newInstance();
+    private int id = WellKnownHeaders.UNKNOWN;
 
     /**
      * Creates a new, uninitialized header field.
@@ -530,6 +592,7 @@ class MimeHeaderField {
     public void recycle() {
         nameB.recycle();
         valueB.recycle();
+        id = WellKnownHeaders.UNKNOWN;
     }
 
     public MessageBytes getName() {
@@ -539,4 +602,29 @@ class MimeHeaderField {
     public MessageBytes getValue() {
         return valueB;
     }
+
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Does this header have the given name? If the name is a well known header
+     * the IDs are compared. Otherwise the names are compared, ignoring case,
+     * unless this header is a well known header in which case it can't match.
+     *
+     * @param name The header name
+     * @param id   The ID for the header name
+     *
+     * @return {@code true} if this header has the given name
+     */
+    boolean matches(String name, int id) {
+        if (id != WellKnownHeaders.UNKNOWN) {
+            return this.id == id;
+        }
+        return this.id == WellKnownHeaders.UNKNOWN && nameB.equalsIgnoreCase(name);
+    }
 }
@@ -0,0 +1,332 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.UDecoder;
+
+/**
+ * Holds the parameters of a request for {@link Parameters} when lazy parsing
+ * is enabled. Rather than decoding every name and value to a String up front,
+ * the positions of the URL encoded names and values in the original query
+ * string and request body buffers are recorded and names and values are only
+ * decoded when they are requested. The buffers must not be modified or reused
+ * until the index is recycled.
+ * <p>
+ * Names and values are decoded in place in the original buffers (as they are
+ * for eager parsing) and the resulting Strings retained, so each is decoded at
+ * most once. Parameters added as Strings are held in the same ordered list so
+ * the order of parameters is the same as for eager parsing.
+ * <p>
+ * The URL encoding of indexed names and values must have been validated
+ * before they are added so decoding cannot fail.
+ */
+final class ParameterIndex {
+
+    private static final int FLAG_DECODE_NAME = 1;
+    private static final int FLAG_DECODE_VALUE = 2;
+    private static final int SOURCE_SHIFT = 2;
+    private static final int NO_SOURCE = -1;
+
+    private byte[][] sources = new byte[2][];
+    private Charset[] sourceCharsets = new Charset[2];
+    private int sourceCount = 0;
+
+    // Per parameter: name start, name end, value start (-1 if none), value end
+    private int[] positions = new int[16 * 4];
+    // Per parameter: source index shifted left by SOURCE_SHIFT plus flags
+    private int[] flags = new int[16];
+    // Decoded names and values. Only created once something is decoded.
+    private String[] names = null;
+    private String[] values = null;
+    private int size = 0;
+
+    private final ByteChunk tmp = new ByteChunk();
+    private UDecoder urlDec;
+
+
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Register a buffer that contains URL encoded parameters.
+     *
+     * @param bytes   The buffer
+     * @param charset The character set to use to decode names and values
+     *
+     * @return The index of the buffer to pass to
+     *         {@link #add(int, int, int, int, int, boolean, boolean)}
+     */
+    int addSource(byte[] bytes, Charset charset) {
+        if (sourceCount == sources.length) {
+            sources = Arrays.copyOf(sources, sourceCount * 2);
+            sourceCharsets = Arrays.copyOf(sourceCharsets, sourceCount * 2);
+        }
+        sources[sourceCount] = bytes;
+        sourceCharsets[sourceCount] = charset;
+        return sourceCount++;
+    }
+
+
+    void add(int source, int nameStart, int nameEnd, int valueStart, int valueEnd,
+            boolean decodeName, boolean decodeValue) {
+        ensureCapacity();
+        int pos = size * 4;
+        positions[pos] = nameStart;
+        positions[pos + 1] = nameEnd;
+        positions[pos + 2] = valueStart;
+        positions[pos + 3] = valueEnd;
+        int f = source << SOURCE_SHIFT;
+        if (decodeName) {
+            f |= FLAG_DECODE_NAME;
+        }
+        if (decodeValue) {
+            f |= FLAG_DECODE_VALUE;
+        }
+        flags[size] = f;
+        size++;
+    }
+
+
+    void add(String name, String value) {
+        ensureCapacity();
+        ensureStrings();
+        flags[size] = NO_SOURCE << SOURCE_SHIFT;
+        names[size] = name;
+        values[size] = value;
+        size++;
+    }
+
+
+    String getValue(String name) {
+        boolean ascii = isAscii(name);
+        for (int i = 0; i < size; i++) {
+            if (nameEquals(i, name, ascii)) {
+                return getValue(i);
+            }
+        }
+        return null;
+    }
+
+
+    String[] getValues(String name) {
+        boolean ascii = isAscii(name);
+        List<String> result = null;
+        for (int i = 0; i < size; i++) {
+            if (nameEquals(i, name, ascii)) {
+                if (result == null) {
+                    result = new ArrayList<>(1);
+                }
+                result.add(getValue(i));
+            }
+        }
+        if (result == null) {
+            return null;
+        }
+        return result.toArray(new String[0]);
+    }
+
+
+    /**
+     * @return The distinct parameter names in the order they first appear.
+     *         Only the names are decoded.
+     */
+    Set<String> getNames() {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            result.add(getName(i));
+        }
+        return result;
+    }
+
+
+    String getName(int i) {
+        ensureStrings();
+        String name = names[i];
+        if (name == null && flags[i] >> SOURCE_SHIFT != NO_SOURCE) {
+            int pos = i * 4;
+            name = decode(i, positions[pos], positions[pos + 1], FLAG_DECODE_NAME);
+            names[i] = name;
+        }
+        return name;
+    }
+
+
+    String getValue(int i) {
+        ensureStrings();
+        String value = values[i];
+        if (value == null && flags[i] >> SOURCE_SHIFT != NO_SOURCE) {
+            int pos = i * 4;
+            if (positions[pos + 2] < 0) {
+                value = "";
+            } else {
+                value = decode(i, positions[pos + 2], positions[pos + 3], FLAG_DECODE_VALUE);
+            }
+            values[i] = value;
+        }
+        return value;
+    }
+
+
+    void recycle() {
+        Arrays.fill(sources, 0, sourceCount, null);
+        Arrays.fill(sourceCharsets, 0, sourceCount, null);
+        sourceCount = 0;
+        if (names != null) {
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+        }
+        size = 0;
+    }
+
+
+    private void ensureCapacity() {
+        if (size == flags.length) {
+            int newLength = size * 2;
+            positions = Arrays.copyOf(positions, newLength * 4);
+            flags = Arrays.copyOf(flags, newLength);
+            if (names != null) {
+                names = Arrays.copyOf(names, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+        }
+    }
+
+
+    private void ensureStrings() {
+        if (names == null) {
+            names = new String[flags.length];
+            values = new String[flags.length];
+        }
+    }
+
+
+    /*
+     * If the name has not been decoded yet, US-ASCII names are compared with
+     * the URL encoded bytes directly for the character sets where a decoded
+     * String can only contain a US-ASCII character if the corresponding byte
+     * was that US-ASCII character. Otherwise the name is decoded.
+     */
+    private boolean nameEquals(int i, String name, boolean ascii) {
+        String decoded = names == null ? null : names[i];
+        if (decoded != null) {
+            return decoded.equals(name);
+        }
+        int source = flags[i] >> SOURCE_SHIFT;
+        if (source == NO_SOURCE) {
+            return false;
+        }
+        if (ascii && isAsciiCompatible(sourceCharsets[source])) {
+            int pos = i * 4;
+            return asciiEquals(sources[source], positions[pos], positions[pos + 1],
+                    (flags[i] & FLAG_DECODE_NAME) != 0, name);
+        }
+        return getName(i).equals(name);
+    }
+
+
+    private String decode(int i, int start, int end, int decodeFlag) {
+        int source = flags[i] >> SOURCE_SHIFT;
+        tmp.setBytes(sources[source], start, end - start);
+        if ((flags[i] & decodeFlag) != 0) {
+            if (urlDec == null) {
+                urlDec = new UDecoder();
+            }
+            try {
+                urlDec.convert(tmp, true);
+            } catch (IOException e) {
+                // Can't happen as the encoding was validated before the
+                // parameter was added to the index
+                throw new IllegalStateException(e);
+            }
+        }
+        tmp.setCharset(sourceCharsets[source]);
+        String result = tmp.toString();
+        tmp.recycle();
+        return result;
+    }
+
+
+    private static boolean asciiEquals(byte[] bytes, int start, int end, boolean decode,
+            String name) {
+        int length = name.length();
+        if (!decode) {
+            if (end - start != length) {
+                return false;
+            }
+            for (int j = 0; j < length; j++) {
+                if (bytes[start + j] != name.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int k = 0;
+        for (int j = start; j < end; j++) {
+            int b = bytes[j];
+            if (b == '+') {
+                b = ' ';
+            } else if (b == '%') {
+                b = (hexValue(bytes[j + 1]) << 4) + hexValue(bytes[j + 2]);
+                j += 2;
+            }
+            if (k == length || b != name.charAt(k)) {
+                return false;
+            }
+            k++;
+        }
+        return k == length;
+    }
+
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        } else {
+            return b - 'A' + 10;
+        }
+    }
+
+
+    private static boolean isAscii(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset) ||
+                StandardCharsets.US_ASCII.equals(charset);
+    }
+}
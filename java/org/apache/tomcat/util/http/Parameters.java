@@ -51,7 +51,9 @@ public final class Parameters {
 
     private final Map<String,ArrayList<String>> paramHashValues =
             new LinkedHashMap<>();
+    private final ParameterIndex paramIndex = new ParameterIndex();
     private boolean didQueryParameters=false;
+    private boolean lazy = false;
 
     private MessageBytes queryMB;
 
@@ -82,6 +84,27 @@ public final class Parameters {
         this.limit = limit;
     }
 
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Should parameters be parsed lazily? If {@code true}, parsing the query
+     * string and request body only records the position of each parameter and
+     * validates its URL encoding. Names and values are only decoded when they
+     * are requested. The byte arrays passed to
+     * {@link #processParameters(byte[], int, int)} must not be modified until
+     * this object is recycled. Changes are ignored once parameters have been
+     * processed or added until this object is recycled.
+     *
+     * @param lazy {@code true} to parse parameters lazily
+     */
+    public void setLazy(boolean lazy) {
+        if (parameterCount == 0) {
+            this.lazy = lazy;
+        }
+    }
+
     public Charset getCharset() {
         return charset;
     }
@@ -128,6 +151,7 @@ public final class Parameters {
     public void recycle() {
         parameterCount = 0;
         paramHashValues.clear();
+        paramIndex.recycle();
         didQueryParameters = false;
         charset = DEFAULT_BODY_CHARSET;
         decodedQuery.recycle();
@@ -141,6 +165,9 @@ public final class Parameters {
 
     public String[] getParameterValues(String name) {
         handleQueryParameters();
+        if (lazy) {
+            return paramIndex.getValues(name);
+        }
         // no "facade"
         ArrayList<String> values = paramHashValues.get(name);
         if (values == null) {
@@ -151,11 +178,17 @@ public final class Parameters {
 
     public Enumeration<String> getParameterNames() {
         handleQueryParameters();
+        if (lazy) {
+            return Collections.enumeration(paramIndex.getNames());
+        }
         return Collections.enumeration(paramHashValues.keySet());
     }
 
     public String getParameter(String name ) {
         handleQueryParameters();
+        if (lazy) {
+            return paramIndex.getValue(name);
+        }
         ArrayList<String> values = paramHashValues.get(name);
         if (values != null) {
             if(values.size() == 0) {
@@ -201,13 +234,11 @@ public final class Parameters {
             return;
         }
 
-        parameterCount ++;
-        if (limit > -1 && parameterCount > limit) {
-            // Processing this parameter will push us over the limit. ISE is
-            // what Request.parseParts() uses for requests that are too big
-            setParseFailedReason(FailReason.TOO_MANY_PARAMETERS);
-            throw new IllegalStateException(sm.getString(
-                    "parameters.maxCountFail", Integer.valueOf(limit)));
+        checkLimit();
+
+        if (lazy) {
+            paramIndex.add(key, value);
+            return;
         }
 
         ArrayList<String> values = paramHashValues.get(key);
@@ -218,6 +249,17 @@ public final class Parameters {
         values.add(value);
     }
 
+    private void checkLimit() throws IllegalStateException {
+        parameterCount ++;
+        if (limit > -1 && parameterCount > limit) {
+            // Processing this parameter will push us over the limit. ISE is
+            // what Request.parseParts() uses for requests that are too big
+            setParseFailedReason(FailReason.TOO_MANY_PARAMETERS);
+            throw new IllegalStateException(sm.getString(
+                    "parameters.maxCountFail", Integer.valueOf(limit)));
+        }
+    }
+
     public void setURLDecoder( UDecoder u ) {
         urlDec=u;
     }
@@ -245,6 +287,10 @@ public final class Parameters {
         }
 
         int decodeFailCount = 0;
+        int source = -1;
+        if (lazy) {
+            source = paramIndex.addSource(bytes, charset);
+        }
 
         int pos = start;
         int end = start + len;
@@ -377,46 +423,49 @@ public final class Parameters {
             }
 
             try {
-                String name;
-                String value;
-
-                if (decodeName) {
-                    urlDecode(tmpName);
-                }
-                tmpName.setCharset(charset);
-                name = tmpName.toString();
-
-                if (valueStart >= 0) {
+                if (lazy) {
+                    // Only validate the encoding so decoding on demand can't
+                    // fail
+                    if (decodeName) {
+                        UDecoder.checkQuery(bytes, nameStart, nameEnd);
+                    }
                     if (decodeValue) {
-                        urlDecode(tmpValue);
+                        UDecoder.checkQuery(bytes, valueStart, valueEnd);
                     }
-                    tmpValue.setCharset(charset);
-                    value = tmpValue.toString();
+                    try {
+                        checkLimit();
+                    } catch (IllegalStateException ise) {
+                        logMaxParameterCount(ise);
+                        break;
+                    }
+                    paramIndex.add(source, nameStart, nameEnd, valueStart, valueEnd,
+                            decodeName, decodeValue);
                 } else {
-                    value = "";
-                }
+                    String name;
+                    String value;
 
-                try {
-                    addParameter(name, value);
-                } catch (IllegalStateException ise) {
-                    // Hitting limit stops processing further params but does
-                    // not cause request to fail.
-                    UserDataHelper.Mode logMode = maxParamCountLog.getNextMode();
-                    if (logMode != null) {
-                        String message = ise.getMessage();
-                        switch (logMode) {
-                            case INFO_THEN_DEBUG:
-                                message += sm.getString(
-                                        "parameters.maxCountFail.fallToDebug");
-                                //$FALL-THROUGH$
-                            case INFO:
-                                log.info(message);
-                                break;
-                            case DEBUG:
-                                log.debug(message);
+                    if (decodeName) {
+                        urlDecode(tmpName);
+                    }
+                    tmpName.setCharset(charset);
+                    name = tmpName.toString();
+
+                    if (valueStart >= 0) {
+                        if (decodeValue) {
+                            urlDecode(tmpValue);
                         }
+                        tmpValue.setCharset(charset);
+                        value = tmpValue.toString();
+                    } else {
+                        value = "";
+                    }
+
+                    try {
+                        addParameter(name, value);
+                    } catch (IllegalStateException ise) {
+                        logMaxParameterCount(ise);
+                        break;
                     }
-                    break;
                 }
             } catch (IOException e) {
                 setParseFailedReason(FailReason.URL_DECODING);
@@ -475,6 +524,26 @@ public final class Parameters {
         }
     }
 
+    private void logMaxParameterCount(IllegalStateException ise) {
+        // Hitting limit stops processing further params but does
+        // not cause request to fail.
+        UserDataHelper.Mode logMode = maxParamCountLog.getNextMode();
+        if (logMode != null) {
+            String message = ise.getMessage();
+            switch (logMode) {
+                case INFO_THEN_DEBUG:
+                    message += sm.getString(
+                            "parameters.maxCountFail.fallToDebug");
+                    //$FALL-THROUGH$
+                case INFO:
+                    log.info(message);
+                    break;
+                case DEBUG:
+                    log.debug(message);
+            }
+        }
+    }
+
     private void urlDecode(ByteChunk bc)
         throws IOException {
         if( urlDec==null ) {
@@ -501,6 +570,14 @@ public final class Parameters {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
+        if (lazy) {
+            for (String name : paramIndex.getNames()) {
+                sb.append(name).append('=');
+                StringUtils.join(paramIndex.getValues(name), ',', sb);
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
         for (Map.Entry<String, ArrayList<String>> e : paramHashValues.entrySet()) {
             sb.append(e.getKey()).append('=');
             StringUtils.join(e.getValue(), ',', sb);
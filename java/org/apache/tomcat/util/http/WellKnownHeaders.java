@@ -0,0 +1,212 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tomcat.util.buf.Ascii;
+
+/**
+ * Maps the names of commonly used HTTP headers to a small integer ID so that
+ * {@link MimeHeaders} can resolve the name once, when the header is added,
+ * and then find headers by comparing IDs rather than by case-insensitive
+ * comparison of the names.
+ */
+final class WellKnownHeaders {
+
+    static final int UNKNOWN = -1;
+
+    private static final String[] NAMES = new String[] {
+            "accept",
+            "accept-charset",
+            "accept-encoding",
+            "accept-language",
+            "authorization",
+            "cache-control",
+            "connection",
+            "content-encoding",
+            "content-language",
+            "content-length",
+            "content-type",
+            "cookie",
+            "date",
+            "etag",
+            "expect",
+            "forwarded",
+            "host",
+            "if-match",
+            "if-modified-since",
+            "if-none-match",
+            "if-range",
+            "if-unmodified-since",
+            "keep-alive",
+            "last-modified",
+            "location",
+            "origin",
+            "pragma",
+            "priority",
+            "range",
+            "referer",
+            "server",
+            "set-cookie",
+            "te",
+            "trailer",
+            "transfer-encoding",
+            "upgrade",
+            "user-agent",
+            "vary",
+            "via",
+            "x-forwarded-for",
+            "x-forwarded-host",
+            "x-forwarded-proto",
+    };
+
+    /*
+     * Names (as lower case bytes) and IDs indexed by name length. There are
+     * only ever a handful of names of any one length.
+     */
+    private static final byte[][][] NAMES_BY_LENGTH;
+    private static final int[][] IDS_BY_LENGTH;
+
+    /*
+     * Lookups by String are usually made with constants so the lower case and
+     * the usual capitalised forms of the names are mapped directly.
+     */
+    private static final Map<String,Integer> IDS_BY_STRING = new HashMap<>();
+
+    static {
+        int maxLength = 0;
+        for (String name : NAMES) {
+            maxLength = Math.max(maxLength, name.length());
+        }
+        List<List<Integer>> byLength = new ArrayList<>();
+        for (int i = 0; i <= maxLength; i++) {
+            byLength.add(new ArrayList<>());
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            byLength.get(NAMES[i].length()).add(Integer.valueOf(i));
+            IDS_BY_STRING.put(NAMES[i], Integer.valueOf(i));
+            IDS_BY_STRING.put(capitalise(NAMES[i]), Integer.valueOf(i));
+        }
+        NAMES_BY_LENGTH = new byte[maxLength + 1][][];
+        IDS_BY_LENGTH = new int[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            List<Integer> ids = byLength.get(length);
+            NAMES_BY_LENGTH[length] = new byte[ids.size()][];
+            IDS_BY_LENGTH[length] = new int[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                int id = ids.get(i).intValue();
+                NAMES_BY_LENGTH[length][i] = NAMES[id].getBytes(StandardCharsets.ISO_8859_1);
+                IDS_BY_LENGTH[length][i] = id;
+            }
+        }
+    }
+
+
+    private WellKnownHeaders() {
+        // Hide default constructor
+    }
+
+
+    /**
+     * @return A new array with an element for each ID, initialised to -1
+     */
+    static int[] createIndex() {
+        int[] index = new int[NAMES.length];
+        Arrays.fill(index, -1);
+        return index;
+    }
+
+
+    /**
+     * Look up the ID for a header name.
+     *
+     * @param name The header name in any case
+     * @return The ID or {@link #UNKNOWN}
+     */
+    static int lookup(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        Integer id = IDS_BY_STRING.get(name);
+        if (id != null) {
+            return id.intValue();
+        }
+        int length = name.length();
+        if (length >= NAMES_BY_LENGTH.length) {
+            return UNKNOWN;
+        }
+        byte[][] candidates = NAMES_BY_LENGTH[length];
+        for (int i = 0; i < candidates.length; i++) {
+            byte[] candidate = candidates[i];
+            int j = 0;
+            char c;
+            while (j < length && (c = name.charAt(j)) < 0x80 && candidate[j] == Ascii.toLower(c)) {
+                j++;
+            }
+            if (j == length) {
+                return IDS_BY_LENGTH[length][i];
+            }
+        }
+        return UNKNOWN;
+    }
+
+
+    /**
+     * Look up the ID for a header name.
+     *
+     * @param b      The buffer containing the header name in any case
+     * @param start  The start of the name
+     * @param length The length of the name
+     * @return The ID or {@link #UNKNOWN}
+     */
+    static int lookup(byte[] b, int start, int length) {
+        if (b == null || length >= NAMES_BY_LENGTH.length) {
+            return UNKNOWN;
+        }
+        byte[][] candidates = NAMES_BY_LENGTH[length];
+        for (int i = 0; i < candidates.length; i++) {
+            byte[] candidate = candidates[i];
+            int j = 0;
+            byte c;
+            while (j < length && ((c = b[start + j]) == candidate[j] || Ascii.toLower(c) == candidate[j])) {
+                j++;
+            }
+            if (j == length) {
+                return IDS_BY_LENGTH[length][i];
+            }
+        }
+        return UNKNOWN;
+    }
+
+
+    private static String capitalise(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean upper = true;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(upper ? Character.toUpperCase(c) : c);
+            upper = c == '-';
+        }
+        return sb.toString();
+    }
+}
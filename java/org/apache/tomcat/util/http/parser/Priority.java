@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+/**
+ * HTTP priority header parser as per RFC 9218.
+ */
+public class Priority {
+
+    public static final int DEFAULT_URGENCY = 3;
+    public static final boolean DEFAULT_INCREMENTAL = false;
+
+    // Explicitly set the defaults as per RFC 9218
+    private int urgency = DEFAULT_URGENCY;
+    private boolean incremental = DEFAULT_INCREMENTAL;
+
+
+    public Priority() {
+        // Default constructor is NO-OP.
+    }
+
+
+    public int getUrgency() {
+        return urgency;
+    }
+
+
+    public void setUrgency(int urgency) {
+        this.urgency = urgency;
+    }
+
+
+    public boolean getIncremental() {
+        return incremental;
+    }
+
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+
+    /**
+     * Parses an HTTP header value into a Priority object. The header value is
+     * a structured field dictionary. Members other than urgency (u) and
+     * incremental (i) are ignored, as are members with invalid values, as
+     * required by RFC 9218.
+     *
+     * @param input The header value to parse
+     *
+     * @return The resulting Priority object
+     */
+    public static Priority parsePriority(String input) {
+        Priority result = new Priority();
+        if (input == null) {
+            return result;
+        }
+
+        int len = input.length();
+        int pos = 0;
+        while (pos < len) {
+            // Find the end of this member, ignoring any commas in strings
+            int end = pos;
+            boolean quoted = false;
+            while (end < len) {
+                char c = input.charAt(end);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == '\\' && quoted) {
+                    end++;
+                } else if (c == ',' && !quoted) {
+                    break;
+                }
+                end++;
+            }
+            parseMember(input.substring(pos, Math.min(end, len)), result);
+            pos = end + 1;
+        }
+        return result;
+    }
+
+
+    private static void parseMember(String member, Priority result) {
+        member = member.trim();
+        // Parameters are not used by any of the members of interest
+        int paramStart = member.indexOf(';');
+        if (paramStart > -1) {
+            member = member.substring(0, paramStart);
+        }
+        String key;
+        String value;
+        int equals = member.indexOf('=');
+        if (equals == -1) {
+            key = member;
+            value = null;
+        } else {
+            key = member.substring(0, equals);
+            value = member.substring(equals + 1);
+        }
+
+        switch (key) {
+            case "u": {
+                if (value != null && value.length() == 1) {
+                    int urgency = value.charAt(0) - '0';
+                    if (urgency >= 0 && urgency <= 7) {
+                        result.setUrgency(urgency);
+                    }
+                }
+                break;
+            }
+            case "i": {
+                if (value == null || "?1".equals(value)) {
+                    result.setIncremental(true);
+                } else if ("?0".equals(value)) {
+                    result.setIncremental(false);
+                }
+                break;
+            }
+            default: {
+                // Ignore
+            }
+        }
+    }
+}
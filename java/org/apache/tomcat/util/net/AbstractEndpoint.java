@@ -37,6 +37,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -44,7 +45,9 @@ import javax.management.ObjectName;
 import org.apache.juli.logging.Log;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.IntrospectionUtils;
+import org.apache.tomcat.util.collections.StripedStack;
 import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.compat.JreCompat;
 import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.net.Acceptor.AcceptorState;
 import org.apache.tomcat.util.res.StringManager;
@@ -53,6 +56,7 @@ import org.apache.tomcat.util.threads.ResizableExecutor;
 import org.apache.tomcat.util.threads.TaskQueue;
 import org.apache.tomcat.util.threads.TaskThreadFactory;
 import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
 
 /**
  * @param <S> The type used by the socket wrapper associated with this endpoint.
@@ -373,6 +377,10 @@ public abstract class AbstractEndpoint<S,U> {
      *                      released
      */
     protected void releaseSSLContext(SSLHostConfig sslHostConfig) {
+        SessionTicketKeyManager sessionTicketKeyManager = sslHostConfig.getSessionTicketKeyManager();
+        if (sessionTicketKeyManager != null) {
+            sessionTicketKeyManager.stop();
+        }
         for (SSLHostConfigCertificate certificate : sslHostConfig.getCertificates()) {
             if (certificate.getSslContext() != null) {
                 SSLContext sslContext = certificate.getSslContext();
@@ -452,6 +460,27 @@ public abstract class AbstractEndpoint<S,U> {
     }
 
 
+    /**
+     * Decides, based on the time tasks wait in the executor queue, when new
+     * requests should be shed.
+     */
+    private final AdmissionController admissionController = new AdmissionController();
+
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    public long getLoadSheddingTarget() { return admissionController.getTarget(); }
+    public void setLoadSheddingTarget(long loadSheddingTarget) {
+        admissionController.setTarget(loadSheddingTarget);
+    }
+
+    public long getLoadSheddingInterval() { return admissionController.getInterval(); }
+    public void setLoadSheddingInterval(long loadSheddingInterval) {
+        admissionController.setInterval(loadSheddingInterval);
+    }
+
+
     /**
      * Acceptor thread count.
      */
@@ -518,6 +547,65 @@ public abstract class AbstractEndpoint<S,U> {
     public Executor getExecutor() { return executor; }
 
 
+    /**
+     * Use virtual threads for the internal executor. Virtual threads require
+     * Java 21 or later and are ignored if an external executor is configured.
+     */
+    private boolean useVirtualThreads = false;
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+    public boolean getUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+
+    /**
+     * The number of threads dedicated to TLS handshakes. If greater than zero,
+     * new TLS connections are handshaken on a separate, bounded executor so
+     * that a burst of new connections does not delay the processing of
+     * requests on established connections. If zero or less, the handshakes
+     * are performed on the main executor.
+     */
+    private int handshakeThreads = 0;
+    public void setHandshakeThreads(int handshakeThreads) {
+        this.handshakeThreads = handshakeThreads;
+    }
+    public int getHandshakeThreads() { return handshakeThreads; }
+
+    /**
+     * The maximum number of connections waiting for a handshake thread. Once
+     * this is reached new TLS connections are closed.
+     */
+    private int handshakeQueueSize = 1024;
+    public void setHandshakeQueueSize(int handshakeQueueSize) {
+        this.handshakeQueueSize = handshakeQueueSize;
+    }
+    public int getHandshakeQueueSize() { return handshakeQueueSize; }
+
+    private volatile ThreadPoolExecutor handshakeExecutor = null;
+    private final LongAdder handshakeRejectedCount = new LongAdder();
+
+    public int getHandshakeActiveCount() {
+        ThreadPoolExecutor handshakeExecutor = this.handshakeExecutor;
+        return handshakeExecutor == null ? -1 : handshakeExecutor.getActiveCount();
+    }
+
+    public int getHandshakeQueueLength() {
+        ThreadPoolExecutor handshakeExecutor = this.handshakeExecutor;
+        return handshakeExecutor == null ? -1 : handshakeExecutor.getQueue().size();
+    }
+
+    public long getHandshakeCompletedCount() {
+        ThreadPoolExecutor handshakeExecutor = this.handshakeExecutor;
+        return handshakeExecutor == null ? -1 : handshakeExecutor.getCompletedTaskCount();
+    }
+
+    public long getHandshakeRejectedCount() {
+        return handshakeRejectedCount.sum();
+    }
+
+
     /**
      * External Executor based thread pool for utility tasks.
      */
@@ -904,6 +992,9 @@ public abstract class AbstractEndpoint<S,U> {
         if (executor != null) {
             if (executor instanceof ThreadPoolExecutor) {
                 return ((ThreadPoolExecutor) executor).getPoolSize();
+            } else if (executor instanceof VirtualThreadExecutor) {
+                // One virtual thread per task
+                return ((VirtualThreadExecutor) executor).getActiveCount();
             } else if (executor instanceof ResizableExecutor) {
                 return ((ResizableExecutor) executor).getPoolSize();
             } else {
@@ -924,6 +1015,8 @@ public abstract class AbstractEndpoint<S,U> {
         if (executor != null) {
             if (executor instanceof ThreadPoolExecutor) {
                 return ((ThreadPoolExecutor) executor).getActiveCount();
+            } else if (executor instanceof VirtualThreadExecutor) {
+                return ((VirtualThreadExecutor) executor).getActiveCount();
             } else if (executor instanceof ResizableExecutor) {
                 return ((ResizableExecutor) executor).getActiveCount();
             } else {
@@ -934,6 +1027,23 @@ public abstract class AbstractEndpoint<S,U> {
         }
     }
 
+    /**
+     * Create a cache for re-usable objects such as processors, events or
+     * channels.
+     *
+     * @param <T>   The type of object held by the cache
+     * @param limit The maximum number of objects to cache or -1 for unlimited
+     *
+     * @return the new cache
+     */
+    protected <T> SynchronizedStack<T> createCache(int limit) {
+        if (socketProperties.getStripedCaches()) {
+            return new StripedStack<>(SynchronizedStack.DEFAULT_SIZE, limit);
+        } else {
+            return new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE, limit);
+        }
+    }
+
     public boolean isRunning() {
         return running;
     }
@@ -945,12 +1055,52 @@ public abstract class AbstractEndpoint<S,U> {
 
     public void createExecutor() {
         internalExecutor = true;
+        if (getUseVirtualThreads()) {
+            if (JreCompat.isJre21Available()) {
+                executor = new VirtualThreadExecutor(getName() + "-virt-");
+                return;
+            }
+            getLog().warn(sm.getString("endpoint.warn.noVirtualThreads", getName()));
+        }
         TaskQueue taskqueue = new TaskQueue();
         TaskThreadFactory tf = new TaskThreadFactory(getName() + "-exec-", daemon, getThreadPriority());
         executor = new ThreadPoolExecutor(getMinSpareThreads(), getMaxThreads(), 60, TimeUnit.SECONDS,taskqueue, tf);
         taskqueue.setParent( (ThreadPoolExecutor) executor);
     }
 
+    /**
+     * Create the executor for TLS handshakes if TLS is enabled and handshakes
+     * are configured to use dedicated threads.
+     */
+    public void createHandshakeExecutor() {
+        if (!isSSLEnabled() || handshakeThreads <= 0) {
+            return;
+        }
+        TaskQueue taskqueue = new TaskQueue(handshakeQueueSize);
+        TaskThreadFactory tf = new TaskThreadFactory(getName() + "-handshake-", daemon, getThreadPriority());
+        ThreadPoolExecutor handshakeExecutor = new ThreadPoolExecutor(handshakeThreads, handshakeThreads,
+                60, TimeUnit.SECONDS, taskqueue, tf);
+        taskqueue.setParent(handshakeExecutor);
+        this.handshakeExecutor = handshakeExecutor;
+    }
+
+    public void shutdownHandshakeExecutor() {
+        ThreadPoolExecutor handshakeExecutor = this.handshakeExecutor;
+        if (handshakeExecutor != null) {
+            this.handshakeExecutor = null;
+            handshakeExecutor.shutdownNow();
+            long timeout = getExecutorTerminationTimeoutMillis();
+            if (timeout > 0) {
+                try {
+                    handshakeExecutor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+            ((TaskQueue) handshakeExecutor.getQueue()).setParent(null);
+        }
+    }
+
     public void shutdownExecutor() {
         Executor executor = this.executor;
         if (executor != null && internalExecutor) {
@@ -972,6 +1122,19 @@ public abstract class AbstractEndpoint<S,U> {
                 }
                 TaskQueue queue = (TaskQueue) tpe.getQueue();
                 queue.setParent(null);
+            } else if (executor instanceof VirtualThreadExecutor) {
+                VirtualThreadExecutor vte = (VirtualThreadExecutor) executor;
+                vte.shutdown();
+                long timeout = getExecutorTerminationTimeoutMillis();
+                if (timeout > 0) {
+                    try {
+                        if (!vte.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                            getLog().warn(sm.getString("endpoint.warn.executorShutdown", getName()));
+                        }
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                }
             }
         }
     }
@@ -1112,6 +1275,7 @@ public abstract class AbstractEndpoint<S,U> {
      */
     public boolean processSocket(SocketWrapperBase<S> socketWrapper,
             SocketEvent event, boolean dispatch) {
+        boolean handshake = false;
         try {
             if (socketWrapper == null) {
                 return false;
@@ -1126,13 +1290,28 @@ public abstract class AbstractEndpoint<S,U> {
                 sc.reset(socketWrapper, event);
             }
             Executor executor = getExecutor();
-            if (dispatch && executor != null) {
+            ThreadPoolExecutor handshakeExecutor = this.handshakeExecutor;
+            if (dispatch && handshakeExecutor != null &&
+                    (event == SocketEvent.OPEN_READ || event == SocketEvent.OPEN_WRITE) &&
+                    !socketWrapper.isHandshakeComplete()) {
+                handshake = true;
+                sc.setHandshakeDispatch(true);
+                handshakeExecutor.execute(sc);
+            } else if (dispatch && executor != null) {
+                sc.setDispatchTime(System.nanoTime());
                 executor.execute(sc);
             } else {
                 sc.run();
             }
         } catch (RejectedExecutionException ree) {
-            getLog().warn(sm.getString("endpoint.executor.fail", socketWrapper) , ree);
+            if (handshake) {
+                handshakeRejectedCount.increment();
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug(sm.getString("endpoint.handshakeExecutor.fail", socketWrapper), ree);
+                }
+            } else {
+                getLog().warn(sm.getString("endpoint.executor.fail", socketWrapper) , ree);
+            }
             return false;
         } catch (Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -82,6 +82,15 @@ public abstract class AbstractJsseEndpoint<S,U> extends AbstractEndpoint<S,U> {
 
     @Override
     protected void createSSLContext(SSLHostConfig sslHostConfig) throws IllegalArgumentException {
+        SessionTicketKeyManager sessionTicketKeyManager = sslHostConfig.getSessionTicketKeyManager();
+        if (sessionTicketKeyManager != null) {
+            try {
+                sessionTicketKeyManager.load();
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+
         boolean firstCertificate = true;
         for (SSLHostConfigCertificate certificate : sslHostConfig.getCertificates(true)) {
             SSLUtil sslUtil = sslImplementation.getSSLUtil(certificate);
@@ -100,6 +109,10 @@ public abstract class AbstractJsseEndpoint<S,U> extends AbstractEndpoint<S,U> {
 
             certificate.setSslContext(sslContext);
         }
+
+        if (sessionTicketKeyManager != null) {
+            sessionTicketKeyManager.start(getUtilityExecutor());
+        }
     }
 
 
@@ -0,0 +1,215 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether new requests should be rejected based on the time socket
+ * processing tasks spend waiting in the executor queue. The decision uses the
+ * CoDel (Controlled Delay, RFC 8289) algorithm: short bursts that the executor
+ * absorbs are tolerated but, once the queue delay has been above the target
+ * for a whole interval, requests are shed at an increasing rate until the
+ * queue delay drops below the target again. Shedding starts before the queue
+ * and the connection limit are exhausted so the requests that are accepted
+ * continue to be processed with an acceptable latency.
+ * <p>
+ * The queue delay statistics are collected whether or not shedding is
+ * enabled.
+ */
+public class AdmissionController {
+
+    private volatile long target = -1;
+    private volatile long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // CoDel state, guarded by this. firstAboveTime is volatile so the common
+    // case of a delay below the target does not need to synchronize.
+    private volatile long firstAboveTime = 0;
+    private boolean dropping = false;
+    private long dropNext = 0;
+    private int count = 0;
+    private int lastCount = 0;
+
+    private final LongAdder queueDelayCount = new LongAdder();
+    private final LongAdder queueDelayTime = new LongAdder();
+    private final LongAccumulator maxQueueDelay = new LongAccumulator(Math::max, 0);
+    private final LongAdder shedCount = new LongAdder();
+
+
+    /**
+     * @return The target queue delay in milliseconds or a value less than or
+     *         equal to zero if requests are never shed
+     */
+    public long getTarget() {
+        long target = this.target;
+        return target <= 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(target);
+    }
+
+
+    /**
+     * Set the target queue delay. Requests are shed once the time tasks wait in
+     * the executor queue has been above the target for at least the interval.
+     *
+     * @param target The target queue delay in milliseconds. Use a value less
+     *               than or equal to zero to disable shedding.
+     */
+    public void setTarget(long target) {
+        this.target = target <= 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(target);
+    }
+
+
+    /**
+     * @return The interval in milliseconds
+     */
+    public long getInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(interval);
+    }
+
+
+    /**
+     * Set the interval. This is the time the queue delay must be above the
+     * target before shedding starts and the initial time between shed
+     * requests. It should be of the same order as the typical time taken to
+     * process a request.
+     *
+     * @param interval The interval in milliseconds
+     */
+    public void setInterval(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException(
+                    AbstractEndpoint.sm.getString("admissionController.invalidInterval", Long.valueOf(interval)));
+        }
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+
+    /**
+     * Record the time a task waited in the executor queue and decide whether
+     * the task may proceed.
+     *
+     * @param queueDelay The time, in nanoseconds, the task waited in the queue
+     * @param now        The current time from {@link System#nanoTime()}
+     * @param sheddable  Could the task be shed? Tasks that continue the
+     *                       processing of an existing request can not be shed
+     *                       but their queue delay is still taken into account.
+     *
+     * @return <code>true</code> if the task should be shed
+     */
+    public boolean shed(long queueDelay, long now, boolean sheddable) {
+        queueDelayCount.increment();
+        queueDelayTime.add(queueDelay);
+        maxQueueDelay.accumulate(queueDelay);
+
+        long target = this.target;
+        if (target <= 0) {
+            return false;
+        }
+        if (queueDelay < target && firstAboveTime == 0) {
+            // Not dropping (firstAboveTime is always set while dropping)
+            return false;
+        }
+        synchronized (this) {
+            boolean okToDrop = false;
+            long interval = this.interval;
+            if (queueDelay < target) {
+                firstAboveTime = 0;
+            } else if (firstAboveTime == 0) {
+                firstAboveTime = now + interval;
+            } else if (now - firstAboveTime >= 0) {
+                okToDrop = true;
+            }
+
+            if (dropping) {
+                if (!okToDrop) {
+                    dropping = false;
+                } else if (sheddable && now - dropNext >= 0) {
+                    count++;
+                    dropNext = controlLaw(dropNext, interval);
+                    shedCount.increment();
+                    return true;
+                }
+            } else if (okToDrop && sheddable) {
+                dropping = true;
+                // If shedding stopped only recently, resume at close to the
+                // previous rate
+                int delta = count - lastCount;
+                if (delta > 1 && now - dropNext < 16 * interval) {
+                    count = delta;
+                } else {
+                    count = 1;
+                }
+                lastCount = count;
+                dropNext = controlLaw(now, interval);
+                shedCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+
+    private long controlLaw(long t, long interval) {
+        return t + (long) (interval / Math.sqrt(count));
+    }
+
+
+    /**
+     * @return <code>true</code> if the controller is currently shedding
+     *         requests
+     */
+    public synchronized boolean isShedding() {
+        return dropping;
+    }
+
+
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+
+
+    public long getQueueDelayCount() {
+        return queueDelayCount.sum();
+    }
+
+
+    /**
+     * @return The total time, in milliseconds, tasks have waited in the
+     *         executor queue
+     */
+    public long getQueueDelayTime() {
+        return TimeUnit.NANOSECONDS.toMillis(queueDelayTime.sum());
+    }
+
+
+    /**
+     * @return The longest time, in milliseconds, a task has waited in the
+     *         executor queue
+     */
+    public long getMaxQueueDelay() {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueDelay.get());
+    }
+
+
+    public void resetCounters() {
+        queueDelayCount.reset();
+        queueDelayTime.reset();
+        maxQueueDelay.reset();
+        shedCount.reset();
+    }
+}
@@ -29,8 +29,10 @@ import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
+import java.nio.channels.InterruptedByTimeoutException;
 import java.nio.channels.NetworkChannel;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -141,14 +143,12 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
             paused = false;
 
             if (socketProperties.getProcessorCache() != 0) {
-                processorCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
-                        socketProperties.getProcessorCache());
+                processorCache = createCache(socketProperties.getProcessorCache());
             }
             int actualBufferPool =
                     socketProperties.getActualBufferPool(isSSLEnabled() ? getSniParseLimit() * 2 : 0);
             if (actualBufferPool != 0) {
-                nioChannels = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
-                        actualBufferPool);
+                nioChannels = createCache(actualBufferPool);
             }
             // Create worker collection
             if (getExecutor() == null) {
@@ -489,6 +489,20 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
         private boolean writeInterest = false; // Guarded by writeCompletionHandler
         private boolean writeNotify = false;
 
+        private static final CompletionHandler<Long, CompletableFuture<Long>> blockingGatheringWriteCompletionHandler
+            = new CompletionHandler<>() {
+
+            @Override
+            public void completed(Long nBytes, CompletableFuture<Long> result) {
+                result.complete(nBytes);
+            }
+
+            @Override
+            public void failed(Throwable exc, CompletableFuture<Long> result) {
+                result.completeExceptionally(exc);
+            }
+        };
+
         private CompletionHandler<Integer, SendfileData> sendfileHandler
             = new CompletionHandler<>() {
 
@@ -1233,6 +1247,43 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
         }
 
 
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden for NIO2 to write all the buffers with a single gathering
+         * write where possible.
+         *
+         * @param block Ignored since this method is only called in the
+         *              blocking case
+         */
+        @Override
+        protected void doWrite(boolean block, ByteBuffer[] from) throws IOException {
+            // As gathering writes write the buffers in order, all the data has
+            // been written once the last buffer has no data remaining
+            ByteBuffer last = from[from.length - 1];
+            try {
+                do {
+                    CompletableFuture<Long> result = new CompletableFuture<>();
+                    getSocket().write(from, 0, from.length, toTimeout(getWriteTimeout()),
+                            TimeUnit.MILLISECONDS, result, blockingGatheringWriteCompletionHandler);
+                    if (result.get().longValue() < 0) {
+                        throw new EOFException(sm.getString("iob.failedwrite"));
+                    }
+                } while (last.hasRemaining());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedByTimeoutException) {
+                    throw new SocketTimeoutException();
+                } else if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                } else {
+                    throw new IOException(e);
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+
         @Override
         protected void flushBlocking() throws IOException {
             checkError();
@@ -1610,7 +1661,11 @@ public class Nio2Endpoint extends AbstractJsseEndpoint<Nio2Channel,AsynchronousS
                         // if the handshake failed.
                         handshake = -1;
                     } else {
+                        socketWrapper.handshakeStarted();
                         handshake = socketWrapper.getSocket().handshake();
+                        if (handshake == 0) {
+                            socketWrapper.handshakeCompleted();
+                        }
                         // The handshake process reads/writes from/to the
                         // socket. status may therefore be OPEN_WRITE once
                         // the handshake completes. However, the handshake
@@ -28,6 +28,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
 import java.nio.channels.NetworkChannel;
@@ -48,8 +49,11 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.net.ssl.SSLEngine;
 
 import org.apache.juli.logging.Log;
@@ -58,6 +62,7 @@ import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.collections.SynchronizedQueue;
 import org.apache.tomcat.util.collections.SynchronizedStack;
 import org.apache.tomcat.util.compat.JreCompat;
+import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.Acceptor.AcceptorState;
 import org.apache.tomcat.util.net.jsse.JSSESupport;
@@ -66,7 +71,7 @@ import org.apache.tomcat.util.net.jsse.JSSESupport;
  * NIO tailored thread pool, providing the following services:
  * <ul>
  * <li>Socket acceptor thread</li>
- * <li>Socket poller thread</li>
+ * <li>Socket poller threads</li>
  * <li>Worker threads pool</li>
  * </ul>
  *
@@ -99,14 +104,15 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     private volatile CountDownLatch stopLatch = null;
 
     /**
-     * Cache for poller events
+     * Bytebuffer cache, each channel holds a set of buffers (two, except for SSL holds four)
      */
-    private SynchronizedStack<PollerEvent> eventCache;
+    private SynchronizedStack<NioChannel> nioChannels;
 
     /**
-     * Bytebuffer cache, each channel holds a set of buffers (two, except for SSL holds four)
+     * Application buffer pools shared by all channels, if enabled
      */
-    private SynchronizedStack<NioChannel> nioChannels;
+    private volatile SocketBufferPool readBufferPool;
+    private volatile SocketBufferPool writeBufferPool;
 
 
     // ------------------------------------------------------------- Properties
@@ -141,21 +147,37 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
 
     /**
-     * Priority of the poller thread.
+     * Priority of the poller threads.
      */
     private int pollerThreadPriority = Thread.NORM_PRIORITY;
     public void setPollerThreadPriority(int pollerThreadPriority) { this.pollerThreadPriority = pollerThreadPriority; }
     public int getPollerThreadPriority() { return pollerThreadPriority; }
 
 
+    /**
+     * Number of poller threads. Each poller owns its own selector and new
+     * connections are distributed across the pollers in a round-robin manner.
+     */
+    private int pollerThreadCount = 1;
+    public void setPollerThreadCount(int pollerThreadCount) {
+        if (pollerThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("endpoint.nio.invalidPollerThreadCount", Integer.valueOf(pollerThreadCount)));
+        }
+        this.pollerThreadCount = pollerThreadCount;
+    }
+    public int getPollerThreadCount() { return pollerThreadCount; }
+
+
     private long selectorTimeout = 1000;
     public void setSelectorTimeout(long timeout) { this.selectorTimeout = timeout;}
     public long getSelectorTimeout() { return this.selectorTimeout; }
 
     /**
-     * The socket poller.
+     * The socket pollers.
      */
-    private Poller poller = null;
+    private volatile Poller[] pollers = null;
+    private final AtomicInteger pollerRotater = new AtomicInteger(0);
 
 
     // --------------------------------------------------------- Public Methods
@@ -167,10 +189,15 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
      *         for the next request to be received on the socket
      */
     public int getKeepAliveCount() {
-        if (poller == null) {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
             return 0;
         } else {
-            return poller.getKeyCount();
+            int sum = 0;
+            for (Poller poller : pollers) {
+                sum += poller.getKeyCount();
+            }
+            return sum;
         }
     }
 
@@ -196,7 +223,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     public void bind() throws Exception {
         initServerSocket();
 
-        setStopLatch(new CountDownLatch(1));
+        setStopLatch(new CountDownLatch(getPollerThreadCount()));
 
         // Initialize SSL if needed
         initialiseSsl();
@@ -256,33 +283,48 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
             paused = false;
 
             if (socketProperties.getProcessorCache() != 0) {
-                processorCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
-                        socketProperties.getProcessorCache());
-            }
-            if (socketProperties.getEventCache() != 0) {
-                eventCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
-                        socketProperties.getEventCache());
+                processorCache = createCache(socketProperties.getProcessorCache());
             }
             int actualBufferPool =
                     socketProperties.getActualBufferPool(isSSLEnabled() ? getSniParseLimit() * 2 : 0);
             if (actualBufferPool != 0) {
-                nioChannels = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
-                        actualBufferPool);
+                nioChannels = createCache(actualBufferPool);
+            }
+            int appBufferPool = socketProperties.getAppBufferPool();
+            if (appBufferPool != 0) {
+                readBufferPool = new SocketBufferPool("read", socketProperties.getAppReadBufSize(),
+                        socketProperties.getDirectBuffer(), createCache(appBufferPool), appBufferPool);
+                writeBufferPool = new SocketBufferPool("write", socketProperties.getAppWriteBufSize(),
+                        socketProperties.getDirectBuffer(), createCache(appBufferPool), appBufferPool);
+                registerJmx(readBufferPool);
+                registerJmx(writeBufferPool);
             }
 
             // Create worker collection
             if (getExecutor() == null) {
                 createExecutor();
             }
+            createHandshakeExecutor();
 
             initializeConnectionLatch();
 
-            // Start poller thread
-            poller = new Poller();
-            Thread pollerThread = new Thread(poller, getName() + "-Poller");
-            pollerThread.setPriority(threadPriority);
-            pollerThread.setDaemon(true);
-            pollerThread.start();
+            // Start poller threads
+            Poller[] pollers = new Poller[getPollerThreadCount()];
+            for (int i = 0; i < pollers.length; i++) {
+                pollers[i] = new Poller(i);
+            }
+            this.pollers = pollers;
+            for (Poller poller : pollers) {
+                registerJmx(poller);
+                String threadName = getName() + "-Poller";
+                if (pollers.length > 1) {
+                    threadName = threadName + "-" + poller.getIndex();
+                }
+                Thread pollerThread = new Thread(poller, threadName);
+                pollerThread.setPriority(threadPriority);
+                pollerThread.setDaemon(true);
+                pollerThread.start();
+            }
 
             startAcceptorThread();
         }
@@ -300,9 +342,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         if (running) {
             running = false;
             acceptor.stop(10);
-            if (poller != null) {
-                poller.destroy();
-                poller = null;
+            Poller[] pollers = this.pollers;
+            if (pollers != null) {
+                for (Poller poller : pollers) {
+                    poller.destroy();
+                }
+                this.pollers = null;
             }
             try {
                 if (!getStopLatch().await(selectorTimeout + 100, TimeUnit.MILLISECONDS)) {
@@ -312,14 +357,27 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                 log.warn(sm.getString("endpoint.nio.stopLatchAwaitInterrupted"), e);
             }
             shutdownExecutor();
-            if (eventCache != null) {
-                eventCache.clear();
-                eventCache = null;
+            shutdownHandshakeExecutor();
+            if (pollers != null) {
+                for (Poller poller : pollers) {
+                    poller.clearEventCache();
+                    unregisterJmx(poller);
+                }
             }
             if (nioChannels != null) {
                 nioChannels.clear();
                 nioChannels = null;
             }
+            if (readBufferPool != null) {
+                readBufferPool.clear();
+                unregisterJmx(readBufferPool);
+                readBufferPool = null;
+            }
+            if (writeBufferPool != null) {
+                writeBufferPool.clear();
+                unregisterJmx(writeBufferPool);
+                writeBufferPool = null;
+            }
             if (processorCache != null) {
                 processorCache.clear();
                 processorCache = null;
@@ -414,8 +472,93 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     }
 
 
+    /**
+     * Obtain the poller a new connection should be registered with. Pollers
+     * are selected in a round-robin manner.
+     *
+     * @return The poller to use for the next connection or <code>null</code>
+     *         if the endpoint is not running
+     */
     protected Poller getPoller() {
-        return poller;
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return null;
+        }
+        if (pollers.length == 1) {
+            return pollers[0];
+        }
+        int idx = Math.abs(pollerRotater.incrementAndGet() % pollers.length);
+        return pollers[idx];
+    }
+
+
+    private void registerJmx(Poller poller) {
+        if (getDomain() == null) {
+            // Before init the domain is null
+            return;
+        }
+        try {
+            ObjectName pollerOname = new ObjectName(getDomain() + ":type=Poller,ThreadPool=\"" +
+                    getName() + "\",name=" + poller.getIndex());
+            poller.setObjectName(pollerOname);
+            Registry.getRegistry(null, null).registerComponent(poller, pollerOname, null);
+        } catch (MalformedObjectNameException e) {
+            log.warn(sm.getString("endpoint.nio.invalidJmxNamePoller", Integer.valueOf(poller.getIndex())), e);
+        } catch (Exception e) {
+            log.warn(sm.getString("endpoint.jmxRegistrationFailed", poller.getObjectName()), e);
+        }
+    }
+
+
+    private void unregisterJmx(Poller poller) {
+        if (poller.getObjectName() != null) {
+            Registry.getRegistry(null, null).unregisterComponent(poller.getObjectName());
+            poller.setObjectName(null);
+        }
+    }
+
+
+    private void registerJmx(SocketBufferPool bufferPool) {
+        if (getDomain() == null) {
+            // Before init the domain is null
+            return;
+        }
+        try {
+            ObjectName poolOname = new ObjectName(getDomain() + ":type=SocketBufferPool,ThreadPool=\"" +
+                    getName() + "\",name=" + bufferPool.getName());
+            bufferPool.setObjectName(poolOname);
+            Registry.getRegistry(null, null).registerComponent(bufferPool, poolOname, null);
+        } catch (MalformedObjectNameException e) {
+            log.warn(sm.getString("endpoint.nio.invalidJmxNameBufferPool", bufferPool.getName()), e);
+        } catch (Exception e) {
+            log.warn(sm.getString("endpoint.jmxRegistrationFailed", bufferPool.getObjectName()), e);
+        }
+    }
+
+
+    private void unregisterJmx(SocketBufferPool bufferPool) {
+        if (bufferPool.getObjectName() != null) {
+            Registry.getRegistry(null, null).unregisterComponent(bufferPool.getObjectName());
+            bufferPool.setObjectName(null);
+        }
+    }
+
+
+    /**
+     * @return the pool used for the application read buffers or
+     *         <code>null</code> if the buffers are not pooled
+     */
+    public SocketBufferPool getReadBufferPool() {
+        return readBufferPool;
+    }
+
+
+    /**
+     * @return the pool used for the application write buffers or
+     *         <code>null</code> if the buffers are not pooled
+     */
+    public SocketBufferPool getWriteBufferPool() {
+        return writeBufferPool;
     }
 
 
@@ -449,7 +592,8 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                 SocketBufferHandler bufhandler = new SocketBufferHandler(
                         socketProperties.getAppReadBufSize(),
                         socketProperties.getAppWriteBufSize(),
-                        socketProperties.getDirectBuffer());
+                        socketProperties.getDirectBuffer(),
+                        readBufferPool, writeBufferPool);
                 if (isSSLEnabled()) {
                     channel = new SecureNioChannel(bufhandler, this);
                 } else {
@@ -471,7 +615,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
             socketWrapper.setReadTimeout(getConnectionTimeout());
             socketWrapper.setWriteTimeout(getConnectionTimeout());
             socketWrapper.setKeepAliveLeft(NioEndpoint.this.getMaxKeepAliveRequests());
-            poller.register(socketWrapper);
+            socketWrapper.getPoller().register(socketWrapper);
             return true;
         } catch (Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -569,10 +713,16 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
      */
     public class Poller implements Runnable {
 
+        private final int index;
         private Selector selector;
         private final SynchronizedQueue<PollerEvent> events =
                 new SynchronizedQueue<>();
 
+        /**
+         * Cache for poller events
+         */
+        private volatile SynchronizedStack<PollerEvent> eventCache;
+
         private volatile boolean close = false;
         // Optimize expiration handling
         private long nextExpiration = 0;
@@ -581,14 +731,72 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
         private volatile int keyCount = 0;
 
+        // Statistics, exposed via JMX
+        private final AtomicLong wakeupCount = new AtomicLong(0);
+        private volatile long eventCount = 0;
+        private volatile long selectCount = 0;
+
+        private volatile ObjectName oname = null;
+
         public Poller() throws IOException {
+            this(0);
+        }
+
+        public Poller(int index) throws IOException {
+            this.index = index;
             this.selector = Selector.open();
+            if (socketProperties.getEventCache() != 0) {
+                eventCache = createCache(socketProperties.getEventCache());
+            }
         }
 
+        public int getIndex() { return index; }
+
         public int getKeyCount() { return keyCount; }
 
         public Selector getSelector() { return selector; }
 
+        /**
+         * @return the number of keys currently registered with this poller's
+         *         selector
+         */
+        public int getRegisteredKeyCount() {
+            try {
+                return selector.keys().size();
+            } catch (ClosedSelectorException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * @return the number of poller events (registrations and interest
+         *         updates) processed by this poller
+         */
+        public long getEventCount() { return eventCount; }
+
+        /**
+         * @return the number of times this poller's selector has been
+         *         explicitly woken up to process new events
+         */
+        public long getWakeupCount() { return wakeupCount.get(); }
+
+        /**
+         * @return the number of select operations performed by this poller
+         */
+        public long getSelectCount() { return selectCount; }
+
+        public ObjectName getObjectName() { return oname; }
+
+        void setObjectName(ObjectName oname) { this.oname = oname; }
+
+        private void clearEventCache() {
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
+            if (eventCache != null) {
+                eventCache.clear();
+                this.eventCache = null;
+            }
+        }
+
         /**
          * Destroy the poller.
          */
@@ -603,6 +811,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         private void addEvent(PollerEvent event) {
             events.offer(event);
             if (wakeupCounter.incrementAndGet() == 0) {
+                wakeupCount.incrementAndGet();
                 selector.wakeup();
             }
         }
@@ -619,6 +828,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
          */
         public void add(NioSocketWrapper socketWrapper, int interestOps) {
             PollerEvent r = null;
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
             if (eventCache != null) {
                 r = eventCache.pop();
             }
@@ -642,9 +852,11 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         public boolean events() {
             boolean result = false;
 
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
             PollerEvent pe = null;
             for (int i = 0, size = events.size(); i < size && (pe = events.poll()) != null; i++ ) {
                 result = true;
+                eventCount++;
                 NioSocketWrapper socketWrapper = pe.getSocketWrapper();
                 SocketChannel sc = socketWrapper.getSocket().getIOChannel();
                 int interestOps = pe.getInterestOps();
@@ -699,6 +911,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         public void register(final NioSocketWrapper socketWrapper) {
             socketWrapper.interestOps(SelectionKey.OP_READ);//this is what OP_REGISTER turns into.
             PollerEvent event = null;
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
             if (eventCache != null) {
                 event = eventCache.pop();
             }
@@ -732,6 +945,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                         } else {
                             keyCount = selector.select(selectorTimeout);
                         }
+                        selectCount++;
                         wakeupCounter.set(0);
                     }
                     if (close) {
@@ -1049,6 +1263,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     public static class NioSocketWrapper extends SocketWrapperBase<NioChannel> {
 
         private final SynchronizedStack<NioChannel> nioChannels;
+        private final boolean pooledBuffers;
         private final Poller poller;
 
         private int interestOps = 0;
@@ -1073,6 +1288,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                 remotePort = 0;
             }
             nioChannels = endpoint.getNioChannels();
+            pooledBuffers = endpoint.getReadBufferPool() != null;
             poller = endpoint.getPoller();
             socketBufferHandler = channel.getBufHandler();
             readLock = (readPending == null) ? new Object() : readPending;
@@ -1176,6 +1392,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         }
 
 
+        @Override
+        public boolean isHandshakeComplete() {
+            return getSocket().isHandshakeComplete();
+        }
+
+
         @Override
         protected void doClose() {
             if (log.isDebugEnabled()) {
@@ -1187,6 +1409,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                     getSocket().close(true);
                 }
                 if (getEndpoint().running && !getEndpoint().paused) {
+                    if (pooledBuffers) {
+                        // Don't hold pooled buffers in the channel cache
+                        SocketBufferHandler bufHandler = getSocket().getBufHandler();
+                        bufHandler.reset();
+                        bufHandler.release();
+                    }
                     if (nioChannels == null || !nioChannels.push(getSocket())) {
                         getSocket().free();
                     }
@@ -1274,7 +1502,29 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
         @Override
         protected void doWrite(boolean block, ByteBuffer buffer) throws IOException {
-            int n = 0;
+            doWrite(block, buffer, null);
+        }
+
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden for NIO to write all the buffers with a single gathering
+         * write where possible.
+         */
+        @Override
+        protected void doWrite(boolean block, ByteBuffer[] buffers) throws IOException {
+            doWrite(block, buffers[buffers.length - 1], buffers);
+        }
+
+
+        /*
+         * If buffers is non-null, buffer must be the last element of buffers.
+         * As gathering writes write the buffers in order, all the data has
+         * been written once buffer has no data remaining.
+         */
+        private void doWrite(boolean block, ByteBuffer buffer, ByteBuffer[] buffers) throws IOException {
+            long n = 0;
             if (getSocket() == NioChannel.CLOSED_NIO_CHANNEL) {
                 throw new ClosedChannelException();
             }
@@ -1310,7 +1560,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                             throw previousIOException;
                         }
                     }
-                    n = getSocket().write(buffer);
+                    n = write(buffer, buffers);
                     if (n == -1) {
                         throw new EOFException();
                     } else if (n == 0 && (buffer.hasRemaining() || getSocket().getOutboundRemaining() > 0)) {
@@ -1343,7 +1593,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                 } while (buffer.hasRemaining() || getSocket().getOutboundRemaining() > 0);
             } else {
                 do {
-                    n = getSocket().write(buffer);
+                    n = write(buffer, buffers);
                     if (n == -1) {
                         throw new EOFException();
                     }
@@ -1357,6 +1607,15 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         }
 
 
+        private long write(ByteBuffer buffer, ByteBuffer[] buffers) throws IOException {
+            if (buffers == null) {
+                return getSocket().write(buffer);
+            } else {
+                return getSocket().write(buffers);
+            }
+        }
+
+
         @Override
         public void registerReadInterest() {
             if (log.isDebugEnabled()) {
@@ -1630,8 +1889,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
              * in turn can result in unintentionally closing currently active
              * connections.
              */
-            Poller poller = NioEndpoint.this.poller;
-            if (poller == null) {
+            if (NioEndpoint.this.pollers == null) {
                 socketWrapper.close();
                 return;
             }
@@ -1649,7 +1907,11 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                         // if the handshake failed.
                         handshake = -1;
                     } else {
+                        socketWrapper.handshakeStarted();
                         handshake = socketWrapper.getSocket().handshake(event == SocketEvent.OPEN_READ, event == SocketEvent.OPEN_WRITE);
+                        if (handshake == 0) {
+                            socketWrapper.handshakeCompleted();
+                        }
                         // The handshake process reads/writes from/to the
                         // socket. status may therefore be OPEN_WRITE once
                         // the handshake completes. However, the handshake
@@ -1667,7 +1929,13 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
                 } catch (CancelledKeyException ckx) {
                     handshake = -1;
                 }
-                if (handshake == 0) {
+                if (handshake == 0 && isHandshakeDispatch()) {
+                    // The handshake was performed on the handshake executor.
+                    // Process the connection on the main executor.
+                    if (!processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
+                        socketWrapper.close();
+                    }
+                } else if (handshake == 0) {
                     SocketState state = SocketState.OPEN;
                     // Process the request from this socket
                     if (event == null) {
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.security.KeyStore;
 import java.security.UnrecoverableKeyException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -35,6 +36,8 @@ import javax.net.ssl.TrustManagerFactory;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.net.openssl.OpenSSLConf;
+import org.apache.tomcat.util.net.openssl.OpenSSLSessionContext;
+import org.apache.tomcat.util.net.openssl.OpenSSLSessionStats;
 import org.apache.tomcat.util.net.openssl.ciphers.Cipher;
 import org.apache.tomcat.util.net.openssl.ciphers.OpenSSLCipherConfigurationParser;
 import org.apache.tomcat.util.res.StringManager;
@@ -103,6 +106,8 @@ public class SSLHostConfig implements Serializable {
     // Values <0 mean use the implementation default
     private int sessionCacheSize = -1;
     private int sessionTimeout = 86400;
+    private transient SessionTicketKeyManager sessionTicketKeyManager = null;
+    private boolean ocspStapling = false;
     // JSSE
     private String keyManagerAlgorithm = KeyManagerFactory.getDefaultAlgorithm();
     private boolean revocationEnabled = false;
@@ -122,6 +127,8 @@ public class SSLHostConfig implements Serializable {
     private boolean disableSessionTickets = false;
     private boolean insecureRenegotiation = false;
     private OpenSSLConf openSslConf = null;
+    private int sessionTicketKeyCheckInterval = 60;
+    private String sessionTicketKeyFile = null;
 
     public SSLHostConfig() {
         // Set defaults that can't be (easily) set when defining the fields.
@@ -511,6 +518,105 @@ public class SSLHostConfig implements Serializable {
     }
 
 
+    /**
+     * Set the manager for the keys used to encrypt and decrypt TLS session
+     * tickets. This allows the keys to be obtained from a store other than
+     * the file system.
+     *
+     * @param sessionTicketKeyManager The manager to use
+     */
+    public void setSessionTicketKeyManager(SessionTicketKeyManager sessionTicketKeyManager) {
+        this.sessionTicketKeyManager = sessionTicketKeyManager;
+    }
+
+
+    /**
+     * @return The manager for the keys used to encrypt and decrypt TLS session
+     *         tickets or <code>null</code> if the keys are generated by each
+     *         TLS context
+     */
+    public SessionTicketKeyManager getSessionTicketKeyManager() {
+        if (sessionTicketKeyManager == null && sessionTicketKeyFile != null) {
+            sessionTicketKeyManager = new SessionTicketKeyManager(this);
+        }
+        return sessionTicketKeyManager;
+    }
+
+
+    /**
+     * @return The number of times the shared session ticket key has changed
+     *         or -1 if no shared key is used
+     */
+    public long getSessionTicketKeyRotationCount() {
+        SessionTicketKeyManager sessionTicketKeyManager = this.sessionTicketKeyManager;
+        return sessionTicketKeyManager == null ? -1 : sessionTicketKeyManager.getRotationCount();
+    }
+
+
+    /**
+     * @return The number of TLS handshakes that completed successfully or -1
+     *         if the TLS implementation does not provide the statistic
+     */
+    public long getSessionAcceptCount() {
+        long result = -1;
+        for (OpenSSLSessionStats stats : getSessionStats()) {
+            result = Math.max(result, 0) + stats.acceptGood();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of TLS handshakes that resumed a previous session,
+     *         using either the session cache or a session ticket, or -1 if the
+     *         TLS implementation does not provide the statistic
+     */
+    public long getSessionHitCount() {
+        long result = -1;
+        for (OpenSSLSessionStats stats : getSessionStats()) {
+            result = Math.max(result, 0) + stats.hits();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The proportion of successful TLS handshakes that resumed a
+     *         previous session or -1 if the TLS implementation does not
+     *         provide the statistics
+     */
+    public double getSessionHitRatio() {
+        long accepts = getSessionAcceptCount();
+        if (accepts <= 0) {
+            return accepts;
+        }
+        return (double) getSessionHitCount() / accepts;
+    }
+
+
+    private List<OpenSSLSessionStats> getSessionStats() {
+        List<OpenSSLSessionStats> result = new ArrayList<>();
+        for (SSLHostConfigCertificate certificate : certificates) {
+            SSLContext sslContext = certificate.getSslContext();
+            if (sslContext != null &&
+                    sslContext.getServerSessionContext() instanceof OpenSSLSessionContext) {
+                result.add(((OpenSSLSessionContext) sslContext.getServerSessionContext()).stats());
+            }
+        }
+        return result;
+    }
+
+
+    public void setOcspStapling(boolean ocspStapling) {
+        this.ocspStapling = ocspStapling;
+    }
+
+
+    public boolean getOcspStapling() {
+        return ocspStapling;
+    }
+
+
     // ---------------------------------- JSSE specific configuration properties
 
     public void setKeyManagerAlgorithm(String keyManagerAlgorithm) {
@@ -743,6 +849,28 @@ public class SSLHostConfig implements Serializable {
     }
 
 
+    public void setSessionTicketKeyCheckInterval(int sessionTicketKeyCheckInterval) {
+        setProperty("sessionTicketKeyCheckInterval", Type.OPENSSL);
+        this.sessionTicketKeyCheckInterval = sessionTicketKeyCheckInterval;
+    }
+
+
+    public int getSessionTicketKeyCheckInterval() {
+        return sessionTicketKeyCheckInterval;
+    }
+
+
+    public void setSessionTicketKeyFile(String sessionTicketKeyFile) {
+        setProperty("sessionTicketKeyFile", Type.OPENSSL);
+        this.sessionTicketKeyFile = sessionTicketKeyFile;
+    }
+
+
+    public String getSessionTicketKeyFile() {
+        return sessionTicketKeyFile;
+    }
+
+
     // --------------------------------------------------------- Support methods
 
     public static String adjustRelativePath(String path) throws FileNotFoundException {
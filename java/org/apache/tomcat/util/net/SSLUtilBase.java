@@ -264,6 +264,11 @@ public abstract class SSLUtilBase implements SSLUtil {
         if (sslHostConfig.getSessionTimeout() >= 0) {
             sslSessionContext.setSessionTimeout(sslHostConfig.getSessionTimeout());
         }
+
+        SessionTicketKeyManager sessionTicketKeyManager = sslHostConfig.getSessionTicketKeyManager();
+        if (sessionTicketKeyManager != null) {
+            sessionTicketKeyManager.configureSessionContext(sslSessionContext);
+        }
     }
 
 
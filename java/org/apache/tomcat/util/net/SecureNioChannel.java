@@ -55,6 +55,18 @@ public class SecureNioChannel extends NioChannel {
     // various scenarios
     private static final int DEFAULT_NET_BUFFER_SIZE = 16921;
 
+    // Dynamic TLS record sizing. The small record size allows a record to fit
+    // in a single TCP segment with a typical MTU of 1500 bytes once the IP,
+    // TCP and TLS overheads are taken into account.
+    private static final int SMALL_RECORD_SIZE = 1369;
+    private static final int SMALL_RECORD_COUNT = 40;
+    private static final long SMALL_RECORD_IDLE_RESET = 1000000000L;
+    // The amount of plain text that always fits in a single TLS record. TLS
+    // allows records of up to 16384 bytes of plain text but the SSLEngine may
+    // use less to allow for the expansion due to encryption (e.g. JSSE uses
+    // 16367 bytes for TLS 1.3). 256 bytes is the largest expansion permitted.
+    private static final int MAX_RECORD_SIZE = 16384 - 256;
+
     private final NioEndpoint endpoint;
 
     protected ByteBuffer netInBuffer;
@@ -72,6 +84,11 @@ public class SecureNioChannel extends NioChannel {
 
     private final Map<String,List<String>> additionalTlsAttributes = new HashMap<>();
 
+    // Number of small records written since the connection started or was
+    // last idle and the time of the last write for dynamic record sizing
+    private int smallRecords = 0;
+    private long lastWriteTime = 0;
+
     public SecureNioChannel(SocketBufferHandler bufHandler, NioEndpoint endpoint) {
         super(bufHandler);
 
@@ -95,6 +112,8 @@ public class SecureNioChannel extends NioChannel {
         handshakeComplete = false;
         closed = false;
         closing = false;
+        smallRecords = 0;
+        lastWriteTime = 0;
         netInBuffer.clear();
     }
 
@@ -315,14 +334,15 @@ public class SecureNioChannel extends NioChannel {
 
         // Ensure the application buffers (which have to be created earlier) are
         // big enough.
-        getBufHandler().expand(sslEngine.getSession().getApplicationBufferSize());
+        expandBuffers();
         if (netOutBuffer.capacity() < sslEngine.getSession().getApplicationBufferSize()) {
             // Info for now as we may need to increase DEFAULT_NET_BUFFER_SIZE
             log.info(sm.getString("channel.nio.ssl.expandNetOutBuffer",
                     Integer.toString(sslEngine.getSession().getApplicationBufferSize())));
         }
         netInBuffer = ByteBufferUtils.expand(netInBuffer, sslEngine.getSession().getPacketBufferSize());
-        netOutBuffer = ByteBufferUtils.expand(netOutBuffer, sslEngine.getSession().getPacketBufferSize());
+        netOutBuffer = ByteBufferUtils.expand(netOutBuffer, sslEngine.getSession().getPacketBufferSize() *
+                Math.max(1, endpoint.getSocketProperties().getTlsWriteRecords()));
 
         // Set limit and position to expected values
         netOutBuffer.position(0);
@@ -637,7 +657,7 @@ public class SecureNioChannel extends NioChannel {
                     // since the buffer was created.
                     if (dst == getBufHandler().getReadBuffer()) {
                         // This is the normal case for this code
-                        getBufHandler().expand(sslEngine.getSession().getApplicationBufferSize());
+                        expandBuffers();
                         dst = getBufHandler().getReadBuffer();
                     } else if (getAppReadBufHandler() != null && dst == getAppReadBufHandler().getByteBuffer()) {
                         getAppReadBufHandler().expand(sslEngine.getSession().getApplicationBufferSize());
@@ -729,7 +749,7 @@ public class SecureNioChannel extends NioChannel {
                         // The SSL session has increased the required buffer size
                         // since the buffer was created.
                         if (dsts[offset + i] == getBufHandler().getReadBuffer()) {
-                            getBufHandler().expand(sslEngine.getSession().getApplicationBufferSize());
+                            expandBuffers();
                             if (dsts[offset + i] == getBufHandler().getReadBuffer()) {
                                 resized = false;
                             }
@@ -807,18 +827,25 @@ public class SecureNioChannel extends NioChannel {
             // The data buffer is empty, we can reuse the entire buffer.
             netOutBuffer.clear();
 
-            SSLEngineResult result = sslEngine.wrap(src, netOutBuffer);
-            // The number of bytes written
-            int written = result.bytesConsumed();
-            netOutBuffer.flip();
-
-            if (result.getStatus() == Status.OK) {
-                if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
-                    tasks();
+            int written = 0;
+            do {
+                int recordSize = getRecordSize();
+                int limit = src.limit();
+                if (src.remaining() > recordSize) {
+                    src.limit(src.position() + recordSize);
                 }
-            } else {
-                throw new IOException(sm.getString("channel.nio.ssl.wrapFail", result.getStatus()));
-            }
+                SSLEngineResult result;
+                try {
+                    result = sslEngine.wrap(src, netOutBuffer);
+                } finally {
+                    src.limit(limit);
+                }
+                if (!processWrapResult(result)) {
+                    break;
+                }
+                written += result.bytesConsumed();
+            } while (src.hasRemaining() && canWrapRecord());
+            netOutBuffer.flip();
 
             // Force a flush
             flush(netOutBuffer);
@@ -844,11 +871,52 @@ public class SecureNioChannel extends NioChannel {
         // The data buffer is empty, we can reuse the entire buffer.
         netOutBuffer.clear();
 
-        SSLEngineResult result = sslEngine.wrap(srcs, offset, length, netOutBuffer);
-        // The number of bytes written
-        int written = result.bytesConsumed();
+        long written = 0;
+        do {
+            int recordSize = getRecordSize();
+            SSLEngineResult result;
+            if (recordSize == Integer.MAX_VALUE) {
+                result = sslEngine.wrap(srcs, offset, length, netOutBuffer);
+            } else {
+                // Limit the data passed to the engine to the record size
+                int[] limits = new int[length];
+                int allowed = recordSize;
+                for (int i = 0; i < length; i++) {
+                    ByteBuffer src = srcs[offset + i];
+                    limits[i] = src.limit();
+                    int remaining = src.remaining();
+                    if (remaining > allowed) {
+                        src.limit(src.position() + allowed);
+                        remaining = allowed;
+                    }
+                    allowed -= remaining;
+                }
+                try {
+                    result = sslEngine.wrap(srcs, offset, length, netOutBuffer);
+                } finally {
+                    for (int i = 0; i < length; i++) {
+                        srcs[offset + i].limit(limits[i]);
+                    }
+                }
+            }
+            if (!processWrapResult(result)) {
+                break;
+            }
+            written += result.bytesConsumed();
+        } while (hasRemaining(srcs, offset, length) && canWrapRecord());
         netOutBuffer.flip();
 
+        // Force a flush
+        flush(netOutBuffer);
+
+        return written;
+    }
+
+    /*
+     * Returns true if application data was wrapped and more may be wrapped
+     * into the network buffer if there is more to write.
+     */
+    private boolean processWrapResult(SSLEngineResult result) throws IOException {
         if (result.getStatus() == Status.OK) {
             if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
                 tasks();
@@ -856,11 +924,63 @@ public class SecureNioChannel extends NioChannel {
         } else {
             throw new IOException(sm.getString("channel.nio.ssl.wrapFail", result.getStatus()));
         }
+        if (result.bytesConsumed() == 0) {
+            return false;
+        }
+        if (smallRecords < SMALL_RECORD_COUNT && result.bytesConsumed() <= SMALL_RECORD_SIZE) {
+            smallRecords++;
+        }
+        return true;
+    }
 
-        // Force a flush
-        flush(netOutBuffer);
+    private static boolean hasRemaining(ByteBuffer[] srcs, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (srcs[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return written;
+
+    /*
+     * The read buffer must be able to hold the plain text of any record. The
+     * write buffer does not need to be larger than a single record. Limiting
+     * the size it is expanded to means a full write buffer is wrapped into a
+     * single record rather than a full size record followed by a small record
+     * for the remainder.
+     */
+    private void expandBuffers() {
+        int applicationBufferSize = sslEngine.getSession().getApplicationBufferSize();
+        getBufHandler().expand(applicationBufferSize, Math.min(applicationBufferSize, MAX_RECORD_SIZE));
+    }
+
+    /*
+     * Is there space in the network buffer for another full size record?
+     */
+    private boolean canWrapRecord() {
+        return netOutBuffer.remaining() >= sslEngine.getSession().getPacketBufferSize();
+    }
+
+    /*
+     * Returns the maximum number of bytes of application data to place in the
+     * next record.
+     */
+    private int getRecordSize() {
+        if (!endpoint.getSocketProperties().getTlsDynamicRecordSizing()) {
+            return Integer.MAX_VALUE;
+        }
+        long now = System.nanoTime();
+        if (now - lastWriteTime > SMALL_RECORD_IDLE_RESET) {
+            // Start again with small records after the connection has been
+            // idle as the TCP congestion window may have been reduced
+            smallRecords = 0;
+        }
+        lastWriteTime = now;
+        if (smallRecords < SMALL_RECORD_COUNT) {
+            return SMALL_RECORD_SIZE;
+        }
+        return Integer.MAX_VALUE;
     }
 
     @Override
@@ -0,0 +1,277 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSessionContext;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.openssl.OpenSSLSessionContext;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Manages the keys used to encrypt and decrypt TLS session tickets for an
+ * {@link SSLHostConfig}. When every node behind a load balancer uses the same
+ * key, a client can resume its session on any node rather than only on the
+ * node that issued the ticket.
+ * <p>
+ * The key is read from a shared file or directory. A key is 48 bytes (a 16
+ * byte key name, a 16 byte HMAC secret and a 16 byte AES key), stored either
+ * as raw bytes, which is the format used by other servers, or Base64 encoded.
+ * If a directory is configured, the key file whose name sorts last is used.
+ * If the name of a key file, ignoring any extension, is a number it is treated
+ * as the time, in seconds since the epoch, from which the key may be used and
+ * such names are sorted numerically.
+ * This allows the next key to be distributed to all the nodes in advance so
+ * they all switch to it at the same time. The file or directory is checked for
+ * a new key periodically and any new key is applied to the server session
+ * contexts of the host.
+ * <p>
+ * Session ticket keys are only supported by the OpenSSL implementation. Sub
+ * classes may obtain the key from another shared store by overriding
+ * {@link #loadKey()}.
+ */
+public class SessionTicketKeyManager {
+
+    private static final Log log = LogFactory.getLog(SessionTicketKeyManager.class);
+    private static final StringManager sm = StringManager.getManager(SessionTicketKeyManager.class);
+
+    public static final int KEY_LENGTH = 48;
+
+    private final SSLHostConfig sslHostConfig;
+
+    private volatile byte[] key = null;
+    private volatile long rotationCount = 0;
+    private ScheduledFuture<?> checkFuture = null;
+
+
+    public SessionTicketKeyManager(SSLHostConfig sslHostConfig) {
+        this.sslHostConfig = sslHostConfig;
+    }
+
+
+    /**
+     * @return A copy of the current key or <code>null</code> if no key has
+     *         been loaded
+     */
+    public byte[] getKey() {
+        byte[] key = this.key;
+        return key == null ? null : key.clone();
+    }
+
+
+    /**
+     * @return The number of times the key has changed since it was first
+     *         loaded
+     */
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+
+    /**
+     * Load the current key.
+     *
+     * @return <code>true</code> if the key has changed
+     *
+     * @throws IOException If the key cannot be loaded
+     */
+    public synchronized boolean load() throws IOException {
+        byte[] newKey = loadKey();
+        if (newKey == null) {
+            throw new IOException(sm.getString("sessionTicketKeyManager.noKey",
+                    sslHostConfig.getSessionTicketKeyFile()));
+        }
+        if (newKey.length != KEY_LENGTH) {
+            throw new IOException(sm.getString("sessionTicketKeyManager.invalidKeyLength",
+                    Integer.toString(newKey.length), Integer.toString(KEY_LENGTH)));
+        }
+        byte[] oldKey = key;
+        if (Arrays.equals(oldKey, newKey)) {
+            return false;
+        }
+        key = newKey;
+        if (oldKey != null) {
+            rotationCount++;
+        }
+        return true;
+    }
+
+
+    /**
+     * Apply the current key, if any, to the given session context.
+     *
+     * @param sessionContext The server session context to configure
+     */
+    public void configureSessionContext(SSLSessionContext sessionContext) {
+        byte[] key = this.key;
+        if (key != null && sessionContext instanceof OpenSSLSessionContext) {
+            ((OpenSSLSessionContext) sessionContext).setTicketKeys(key);
+        }
+    }
+
+
+    /**
+     * Start checking periodically for a new key. Any previous periodic check
+     * is cancelled.
+     *
+     * @param executor The executor to use to schedule the checks
+     */
+    public synchronized void start(ScheduledExecutorService executor) {
+        stop();
+        int interval = sslHostConfig.getSessionTicketKeyCheckInterval();
+        if (interval > 0) {
+            checkFuture = executor.scheduleWithFixedDelay(
+                    this::check, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     * Stop checking for a new key.
+     */
+    public synchronized void stop() {
+        if (checkFuture != null) {
+            checkFuture.cancel(false);
+            checkFuture = null;
+        }
+    }
+
+
+    /**
+     * Check for a new key and, if there is one, apply it to the server session
+     * contexts of the host.
+     */
+    public void check() {
+        try {
+            if (!load()) {
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn(sm.getString("sessionTicketKeyManager.loadFailed", sslHostConfig.getHostName()), e);
+            return;
+        }
+        for (SSLHostConfigCertificate certificate : sslHostConfig.getCertificates()) {
+            SSLContext sslContext = certificate.getSslContext();
+            if (sslContext != null) {
+                configureSessionContext(sslContext.getServerSessionContext());
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("sessionTicketKeyManager.rotated", sslHostConfig.getHostName()));
+        }
+    }
+
+
+    /**
+     * Obtain the current key from the shared store.
+     *
+     * @return The key or <code>null</code> if no key is available
+     *
+     * @throws IOException If an error occurs reading the key
+     */
+    protected byte[] loadKey() throws IOException {
+        String path = SSLHostConfig.adjustRelativePath(sslHostConfig.getSessionTicketKeyFile());
+        File file = new File(path);
+        if (file.isDirectory()) {
+            file = selectKeyFile(file.listFiles(File::isFile), System.currentTimeMillis());
+            if (file == null) {
+                return null;
+            }
+        }
+        return decodeKey(Files.readAllBytes(file.toPath()));
+    }
+
+
+    static File selectKeyFile(File[] files, long now) {
+        if (files == null) {
+            return null;
+        }
+        File result = null;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(".")) {
+                continue;
+            }
+            long activation = getActivationTime(name);
+            if (activation != -1 && TimeUnit.SECONDS.toMillis(activation) > now) {
+                // Not yet valid
+                continue;
+            }
+            if (result == null || compare(name, result.getName()) > 0) {
+                result = file;
+            }
+        }
+        return result;
+    }
+
+
+    private static int compare(String name1, String name2) {
+        long activation1 = getActivationTime(name1);
+        long activation2 = getActivationTime(name2);
+        if (activation1 != -1 && activation2 != -1 && activation1 != activation2) {
+            return Long.compare(activation1, activation2);
+        }
+        return name1.compareTo(name2);
+    }
+
+
+    /*
+     * Returns the time in seconds since the epoch from which the key may be
+     * used or -1 if the name does not define one.
+     */
+    private static long getActivationTime(String name) {
+        int dot = name.indexOf('.');
+        String base = dot == -1 ? name : name.substring(0, dot);
+        if (base.length() == 0 || base.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < base.length(); i++) {
+            if (!Character.isDigit(base.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(base);
+    }
+
+
+    static byte[] decodeKey(byte[] content) {
+        if (content.length == KEY_LENGTH) {
+            return content;
+        }
+        String encoded = new String(content, StandardCharsets.ISO_8859_1).trim();
+        try {
+            byte[] decoded = Base64.getMimeDecoder().decode(encoded);
+            if (decoded.length == KEY_LENGTH) {
+                return decoded;
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64 encoded
+        }
+        return content;
+    }
+}
@@ -27,6 +27,9 @@ public class SocketBufferHandler {
         @Override
         public void expand(int newSize) {
         }
+        @Override
+        public void expand(int newReadBufferSize, int newWriteBufferSize) {
+        }
         /*
          * Http2AsyncParser$FrameCompletionHandler will return incomplete
          * frame(s) to the buffer. If the previous frame (or concurrent write to
@@ -48,15 +51,48 @@ public class SocketBufferHandler {
 
     private final boolean direct;
 
+    private final SocketBufferPool readBufferPool;
+    private final SocketBufferPool writeBufferPool;
+
     public SocketBufferHandler(int readBufferSize, int writeBufferSize,
             boolean direct) {
+        this(readBufferSize, writeBufferSize, direct, null, null);
+    }
+
+
+    /**
+     * Create a buffer handler. If a pool is provided for a buffer, that buffer
+     * is borrowed from the pool when it is first used and is given back when
+     * {@link #release()} is called while the buffer is empty.
+     *
+     * @param readBufferSize  The size of the read buffer if it is not pooled
+     * @param writeBufferSize The size of the write buffer if it is not pooled
+     * @param direct          Should direct buffers be used if the buffers are
+     *                        not pooled
+     * @param readBufferPool  The pool for the read buffer or <code>null</code>
+     * @param writeBufferPool The pool for the write buffer or
+     *                        <code>null</code>
+     */
+    public SocketBufferHandler(int readBufferSize, int writeBufferSize,
+            boolean direct, SocketBufferPool readBufferPool,
+            SocketBufferPool writeBufferPool) {
         this.direct = direct;
+        this.readBufferPool = readBufferPool;
+        this.writeBufferPool = writeBufferPool;
+        if (readBufferPool == null) {
+            readBuffer = allocate(readBufferSize);
+        }
+        if (writeBufferPool == null) {
+            writeBuffer = allocate(writeBufferSize);
+        }
+    }
+
+
+    private ByteBuffer allocate(int size) {
         if (direct) {
-            readBuffer = ByteBuffer.allocateDirect(readBufferSize);
-            writeBuffer = ByteBuffer.allocateDirect(writeBufferSize);
+            return ByteBuffer.allocateDirect(size);
         } else {
-            readBuffer = ByteBuffer.allocate(readBufferSize);
-            writeBuffer = ByteBuffer.allocate(writeBufferSize);
+            return ByteBuffer.allocate(size);
         }
     }
 
@@ -74,7 +110,11 @@ public class SocketBufferHandler {
     private void setReadBufferConfiguredForWrite(boolean readBufferConFiguredForWrite) {
         // NO-OP if buffer is already in correct state
         if (this.readBufferConfiguredForWrite != readBufferConFiguredForWrite) {
-            if (readBufferConFiguredForWrite) {
+            ByteBuffer readBuffer = this.readBuffer;
+            if (readBuffer == null) {
+                // Nothing borrowed yet. The buffer will be configured when it
+                // is borrowed.
+            } else if (readBufferConFiguredForWrite) {
                 // Switching to write
                 int remaining = readBuffer.remaining();
                 if (remaining == 0) {
@@ -92,11 +132,31 @@ public class SocketBufferHandler {
 
 
     public ByteBuffer getReadBuffer() {
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBuffer == null) {
+            readBuffer = borrowReadBuffer();
+        }
+        return readBuffer;
+    }
+
+
+    private synchronized ByteBuffer borrowReadBuffer() {
+        if (readBuffer == null) {
+            ByteBuffer buffer = readBufferPool.borrowBuffer();
+            if (!readBufferConfiguredForWrite) {
+                buffer.flip();
+            }
+            readBuffer = buffer;
+        }
         return readBuffer;
     }
 
 
     public boolean isReadBufferEmpty() {
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBuffer == null) {
+            return true;
+        }
         if (readBufferConfiguredForWrite) {
             return readBuffer.position() == 0;
         } else {
@@ -106,6 +166,7 @@ public class SocketBufferHandler {
 
 
     public void unReadReadBuffer(ByteBuffer returnedData) {
+        ByteBuffer readBuffer = getReadBuffer();
         if (isReadBufferEmpty()) {
             configureReadBufferForWrite();
             readBuffer.put(returnedData);
@@ -167,7 +228,11 @@ public class SocketBufferHandler {
     private void setWriteBufferConfiguredForWrite(boolean writeBufferConfiguredForWrite) {
         // NO-OP if buffer is already in correct state
         if (this.writeBufferConfiguredForWrite != writeBufferConfiguredForWrite) {
-            if (writeBufferConfiguredForWrite) {
+            ByteBuffer writeBuffer = this.writeBuffer;
+            if (writeBuffer == null) {
+                // Nothing borrowed yet. The buffer will be configured when it
+                // is borrowed.
+            } else if (writeBufferConfiguredForWrite) {
                 // Switching to write
                 int remaining = writeBuffer.remaining();
                 if (remaining == 0) {
@@ -187,6 +252,10 @@ public class SocketBufferHandler {
 
 
     public boolean isWriteBufferWritable() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null) {
+            return true;
+        }
         if (writeBufferConfiguredForWrite) {
             return writeBuffer.hasRemaining();
         } else {
@@ -196,11 +265,31 @@ public class SocketBufferHandler {
 
 
     public ByteBuffer getWriteBuffer() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null) {
+            writeBuffer = borrowWriteBuffer();
+        }
+        return writeBuffer;
+    }
+
+
+    private synchronized ByteBuffer borrowWriteBuffer() {
+        if (writeBuffer == null) {
+            ByteBuffer buffer = writeBufferPool.borrowBuffer();
+            if (!writeBufferConfiguredForWrite) {
+                buffer.flip();
+            }
+            writeBuffer = buffer;
+        }
         return writeBuffer;
     }
 
 
     public boolean isWriteBufferEmpty() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null) {
+            return true;
+        }
         if (writeBufferConfiguredForWrite) {
             return writeBuffer.position() == 0;
         } else {
@@ -210,23 +299,94 @@ public class SocketBufferHandler {
 
 
     public void reset() {
-        readBuffer.clear();
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBuffer != null) {
+            readBuffer.clear();
+        }
         readBufferConfiguredForWrite = true;
-        writeBuffer.clear();
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer != null) {
+            writeBuffer.clear();
+        }
         writeBufferConfiguredForWrite = true;
     }
 
 
     public void expand(int newSize) {
+        expand(newSize, newSize);
+    }
+
+
+    public void expand(int newReadBufferSize, int newWriteBufferSize) {
         configureReadBufferForWrite();
-        readBuffer = ByteBufferUtils.expand(readBuffer, newSize);
+        readBuffer = expand(getReadBuffer(), newReadBufferSize, readBufferPool);
         configureWriteBufferForWrite();
-        writeBuffer = ByteBufferUtils.expand(writeBuffer, newSize);
+        writeBuffer = expand(getWriteBuffer(), newWriteBufferSize, writeBufferPool);
     }
 
-    public void free() {
-        if (direct) {
+
+    private static ByteBuffer expand(ByteBuffer in, int newSize, SocketBufferPool pool) {
+        if (pool == null || in.capacity() >= newSize) {
+            return ByteBufferUtils.expand(in, newSize);
+        }
+        ByteBuffer out;
+        if (in.isDirect()) {
+            out = ByteBuffer.allocateDirect(newSize);
+        } else {
+            out = ByteBuffer.allocate(newSize);
+        }
+        in.flip();
+        out.put(in);
+        // The expanded buffer is not pooled. Give the original one back.
+        pool.returnBuffer(in);
+        return out;
+    }
+
+
+    /**
+     * Give any pooled buffers that are currently empty back to their pool.
+     * This must only be called when no read or write is in progress for the
+     * associated connection, typically when the connection is about to wait
+     * for the next request. Buffers that have been expanded beyond the size
+     * of the pool are retained. This is a NO-OP if the buffers are not pooled.
+     */
+    public synchronized void release() {
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBufferPool != null && readBuffer != null &&
+                readBuffer.capacity() == readBufferPool.getBufferSize() && isReadBufferEmpty()) {
+            this.readBuffer = null;
+            readBufferConfiguredForWrite = true;
+            readBufferPool.returnBuffer(readBuffer);
+        }
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBufferPool != null && writeBuffer != null &&
+                writeBuffer.capacity() == writeBufferPool.getBufferSize() && isWriteBufferEmpty()) {
+            this.writeBuffer = null;
+            writeBufferConfiguredForWrite = true;
+            writeBufferPool.returnBuffer(writeBuffer);
+        }
+    }
+
+
+    public synchronized void free() {
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBufferPool != null) {
+            if (readBuffer != null) {
+                this.readBuffer = null;
+                readBufferConfiguredForWrite = true;
+                readBufferPool.returnBuffer(readBuffer);
+            }
+        } else if (direct) {
             ByteBufferUtils.cleanDirectBuffer(readBuffer);
+        }
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBufferPool != null) {
+            if (writeBuffer != null) {
+                this.writeBuffer = null;
+                writeBufferConfiguredForWrite = true;
+                writeBufferPool.returnBuffer(writeBuffer);
+            }
+        } else if (direct) {
             ByteBufferUtils.cleanDirectBuffer(writeBuffer);
         }
     }
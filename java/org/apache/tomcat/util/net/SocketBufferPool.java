@@ -0,0 +1,197 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.apache.tomcat.util.buf.ByteBufferUtils;
+import org.apache.tomcat.util.collections.SynchronizedStack;
+
+/**
+ * A pool of fixed size application buffers shared by all the connections of
+ * an endpoint. A {@link SocketBufferHandler} created with a pool only borrows
+ * a buffer when it is first needed for a read or a write and gives it back
+ * once the connection is idle, so idle keep-alive connections do not pin
+ * buffers.
+ */
+public class SocketBufferPool {
+
+    private final String name;
+    private final int bufferSize;
+    private final boolean direct;
+    private final int maxIdle;
+    private final SynchronizedStack<ByteBuffer> buffers;
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private volatile ObjectName oname = null;
+
+
+    /**
+     * Create a new pool.
+     *
+     * @param name       The name of the pool, used for JMX
+     * @param bufferSize The capacity of the buffers held by this pool
+     * @param direct     Should the pool create direct buffers
+     * @param buffers    The stack used to hold the idle buffers. The limit of
+     *                   the stack is the maximum number of idle buffers that
+     *                   the pool will retain
+     * @param maxIdle    The limit of <code>buffers</code> or -1 for unlimited
+     */
+    public SocketBufferPool(String name, int bufferSize, boolean direct,
+            SynchronizedStack<ByteBuffer> buffers, int maxIdle) {
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.buffers = buffers;
+        this.maxIdle = maxIdle;
+    }
+
+
+    /**
+     * Obtain a buffer from the pool, creating a new one if the pool is empty.
+     * The buffer is cleared and ready for writing.
+     *
+     * @return a buffer with a capacity of {@link #getBufferSize()}
+     */
+    public ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = buffers.pop();
+        if (buffer == null) {
+            if (direct) {
+                buffer = ByteBuffer.allocateDirect(bufferSize);
+            } else {
+                buffer = ByteBuffer.allocate(bufferSize);
+            }
+            createdCount.incrementAndGet();
+        } else {
+            idleCount.decrementAndGet();
+        }
+        activeCount.incrementAndGet();
+        borrowCount.incrementAndGet();
+        return buffer;
+    }
+
+
+    /**
+     * Return a buffer to the pool. Buffers that were not obtained from this
+     * pool (e.g. because they were expanded after they were borrowed) and
+     * buffers that do not fit in the pool are discarded.
+     *
+     * @param buffer The buffer to return
+     */
+    public void returnBuffer(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            discard(buffer);
+            return;
+        }
+        activeCount.decrementAndGet();
+        buffer.clear();
+        if (buffers.push(buffer)) {
+            idleCount.incrementAndGet();
+        } else {
+            discard(buffer);
+        }
+    }
+
+
+    /**
+     * Discard all the idle buffers held by the pool.
+     */
+    public void clear() {
+        ByteBuffer buffer;
+        while ((buffer = buffers.pop()) != null) {
+            idleCount.decrementAndGet();
+            discard(buffer);
+        }
+    }
+
+
+    private void discard(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            ByteBufferUtils.cleanDirectBuffer(buffer);
+        }
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+
+    /**
+     * @return the number of buffers currently held by the pool
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+
+    /**
+     * @return the number of buffers currently borrowed by connections
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+
+    /**
+     * @return the total number of buffers allocated by the pool
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+
+    /**
+     * @return the total number of times a buffer has been borrowed
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+
+    public ObjectName getObjectName() {
+        return oname;
+    }
+
+
+    public void setObjectName(ObjectName oname) {
+        this.oname = oname;
+    }
+}
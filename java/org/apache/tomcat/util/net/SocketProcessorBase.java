@@ -22,6 +22,11 @@ public abstract class SocketProcessorBase<S> implements Runnable {
 
     protected SocketWrapperBase<S> socketWrapper;
     protected SocketEvent event;
+    // The time this processor was passed to the executor or zero if it is
+    // being run directly
+    private long dispatchTime;
+    // Was this processor passed to the executor for TLS handshakes?
+    private boolean handshakeDispatch;
 
     public SocketProcessorBase(SocketWrapperBase<S> socketWrapper, SocketEvent event) {
         reset(socketWrapper, event);
@@ -32,11 +37,44 @@ public abstract class SocketProcessorBase<S> implements Runnable {
         Objects.requireNonNull(event);
         this.socketWrapper = socketWrapper;
         this.event = event;
+        this.dispatchTime = 0;
+        this.handshakeDispatch = false;
+    }
+
+
+    void setDispatchTime(long dispatchTime) {
+        this.dispatchTime = dispatchTime;
+    }
+
+
+    void setHandshakeDispatch(boolean handshakeDispatch) {
+        this.handshakeDispatch = handshakeDispatch;
+    }
+
+
+    /**
+     * @return {@code true} if this processor is running on the executor for
+     *         TLS handshakes in which case, once the handshake completes, the
+     *         connection should be passed to the main executor for processing
+     */
+    protected boolean isHandshakeDispatch() {
+        return handshakeDispatch;
     }
 
 
     @Override
     public final void run() {
+        // doRun() may recycle this processor so use local copies
+        SocketWrapperBase<S> socketWrapper = this.socketWrapper;
+        boolean shed = false;
+        long now = System.nanoTime();
+        long queueTime = -1;
+        if (dispatchTime != 0) {
+            queueTime = now - dispatchTime;
+            shed = socketWrapper.getEndpoint().getAdmissionController().shed(
+                    queueTime, now, event == SocketEvent.OPEN_READ);
+            dispatchTime = 0;
+        }
         synchronized (socketWrapper) {
             // It is possible that processing may be triggered for read and
             // write at the same time. The sync above makes sure that processing
@@ -46,7 +84,17 @@ public abstract class SocketProcessorBase<S> implements Runnable {
             if (socketWrapper.isClosed()) {
                 return;
             }
-            doRun();
+            socketWrapper.processingStarted(now, queueTime);
+            if (shed) {
+                socketWrapper.setShedRequest(true);
+                try {
+                    doRun();
+                } finally {
+                    socketWrapper.setShedRequest(false);
+                }
+            } else {
+                doRun();
+            }
         }
     }
 
@@ -52,18 +52,52 @@ public class SocketProperties {
      */
     protected int eventCache = 0;
 
+    /**
+     * Use lock-free, striped caches for the SocketProcessor, PollerEvent and
+     * channel caches rather than caches guarded by a single lock.
+     * Default is false
+     */
+    protected boolean stripedCaches = false;
+
     /**
      * Enable/disable direct buffers for the network buffers
      * Default value is disabled
      */
     protected boolean directBuffer = false;
 
+    /**
+     * Enable/disable gathering writes. When enabled, data that does not fit
+     * in the space remaining in the socket write buffer is written to the
+     * network together with the content of the socket write buffer using a
+     * single gathering write rather than being copied into the socket write
+     * buffer.
+     * Default value is disabled
+     */
+    protected boolean gatheringWrites = false;
+
     /**
      * Enable/disable direct buffers for the network buffers for SSL
      * Default value is disabled
      */
     protected boolean directSslBuffer = false;
 
+    /**
+     * Enable/disable dynamic TLS record sizing. When enabled, the first
+     * records written on a new connection, or on a connection that has been
+     * idle, are small enough to fit in a single TCP segment so the client can
+     * start to process the response as soon as the first segment arrives.
+     * Full size records are used once enough data has been written.
+     * Default value is disabled
+     */
+    protected boolean tlsDynamicRecordSizing = false;
+
+    /**
+     * The maximum number of TLS records that may be written to the network
+     * with a single write.
+     * Default value is 1
+     */
+    protected int tlsWriteRecords = 1;
+
     /**
      * Socket receive buffer size in bytes (SO_RCVBUF).
      * JVM default used if not set.
@@ -106,6 +140,16 @@ public class SocketProperties {
      */
     protected int bufferPoolSize = -2;
 
+    /**
+     * Application buffer pool size for the endpoint. When enabled, the
+     * application read and write buffers are shared between connections and
+     * idle connections do not hold any buffers.
+     * -1 means unlimited, 0 means disabled
+     * &gt;0 the max number of idle buffers of each type to keep in the pool.
+     * Default value is 0
+     */
+    protected int appBufferPool = 0;
+
     /**
      * TCP_NO_DELAY option. JVM default used if not set.
      */
@@ -269,6 +313,10 @@ public class SocketProperties {
         }
     }
 
+    public boolean getGatheringWrites() {
+        return gatheringWrites;
+    }
+
     public boolean getDirectBuffer() {
         return directBuffer;
     }
@@ -277,6 +325,14 @@ public class SocketProperties {
         return directSslBuffer;
     }
 
+    public boolean getTlsDynamicRecordSizing() {
+        return tlsDynamicRecordSizing;
+    }
+
+    public int getTlsWriteRecords() {
+        return tlsWriteRecords;
+    }
+
     public boolean getOoBInline() {
         return ooBInline.booleanValue();
     }
@@ -333,6 +389,10 @@ public class SocketProperties {
         return bufferPoolSize;
     }
 
+    public int getAppBufferPool() {
+        return appBufferPool;
+    }
+
     public int getEventCache() {
         return eventCache;
     }
@@ -349,6 +409,10 @@ public class SocketProperties {
         return processorCache;
     }
 
+    public boolean getStripedCaches() {
+        return stripedCaches;
+    }
+
     public long getTimeoutInterval() {
         return timeoutInterval;
     }
@@ -402,6 +466,10 @@ public class SocketProperties {
         this.ooBInline = Boolean.valueOf(ooBInline);
     }
 
+    public void setGatheringWrites(boolean gatheringWrites) {
+        this.gatheringWrites = gatheringWrites;
+    }
+
     public void setDirectBuffer(boolean directBuffer) {
         this.directBuffer = directBuffer;
     }
@@ -410,6 +478,14 @@ public class SocketProperties {
         this.directSslBuffer = directSslBuffer;
     }
 
+    public void setTlsDynamicRecordSizing(boolean tlsDynamicRecordSizing) {
+        this.tlsDynamicRecordSizing = tlsDynamicRecordSizing;
+    }
+
+    public void setTlsWriteRecords(int tlsWriteRecords) {
+        this.tlsWriteRecords = tlsWriteRecords;
+    }
+
     public void setSoLingerOn(boolean soLingerOn) {
         this.soLingerOn = Boolean.valueOf(soLingerOn);
     }
@@ -426,6 +502,10 @@ public class SocketProperties {
         this.eventCache = eventCache;
     }
 
+    public void setAppBufferPool(int appBufferPool) {
+        this.appBufferPool = appBufferPool;
+    }
+
     public void setAppReadBufSize(int appReadBufSize) {
         this.appReadBufSize = appReadBufSize;
     }
@@ -438,6 +518,10 @@ public class SocketProperties {
         this.processorCache = processorCache;
     }
 
+    public void setStripedCaches(boolean stripedCaches) {
+        this.stripedCaches = stripedCaches;
+    }
+
     public void setTimeoutInterval(long timeoutInterval) {
         this.timeoutInterval = timeoutInterval;
     }
@@ -56,6 +56,25 @@ public abstract class SocketWrapperBase<E> {
     private volatile int keepAliveLeft = 100;
     private String negotiatedProtocol = null;
 
+    /*
+     * Set by the SocketProcessor for the duration of the processing of an
+     * OPEN_READ event if the AdmissionController decided to shed the next
+     * request.
+     */
+    private volatile boolean shedRequest = false;
+
+    /*
+     * Timings, in nanoseconds, used to report the time taken by the phases of
+     * the processing of requests. The accept and handshake times are only
+     * reported for the first request on the connection.
+     */
+    private final long acceptTimeNanos = System.nanoTime();
+    private boolean processed = false;
+    private volatile long acceptPhaseNanos = -1;
+    private long handshakeStartNanos = -1;
+    private volatile long handshakePhaseNanos = -1;
+    private volatile long queuePhaseNanos = -1;
+
     /*
      * Following cached for speed / reduced GC
      */
@@ -171,6 +190,90 @@ public abstract class SocketWrapperBase<E> {
         }
     }
 
+    /*
+     * Called each time a container thread starts processing this connection.
+     */
+    void processingStarted(long now, long queueTime) {
+        if (!processed) {
+            processed = true;
+            acceptPhaseNanos = now - acceptTimeNanos;
+        }
+        if (queueTime >= 0) {
+            long current = queuePhaseNanos;
+            queuePhaseNanos = current < 0 ? queueTime : current + queueTime;
+        }
+    }
+
+    void handshakeStarted() {
+        if (handshakeStartNanos == -1) {
+            handshakeStartNanos = System.nanoTime();
+        }
+    }
+
+    void handshakeCompleted() {
+        if (handshakeStartNanos != -1) {
+            handshakePhaseNanos = System.nanoTime() - handshakeStartNanos;
+        }
+    }
+
+    /**
+     * Obtain the time from the connection being accepted to it first being
+     * processed by a container thread. The time is only returned once.
+     *
+     * @return The time in nanoseconds or -1 if not available
+     */
+    public long takeAcceptTime() {
+        long result = acceptPhaseNanos;
+        acceptPhaseNanos = -1;
+        return result;
+    }
+
+    /**
+     * Obtain the time taken by the TLS handshake. The time is only returned
+     * once.
+     *
+     * @return The time in nanoseconds or -1 if not available
+     */
+    public long takeHandshakeTime() {
+        long result = handshakePhaseNanos;
+        handshakePhaseNanos = -1;
+        return result;
+    }
+
+    /**
+     * Obtain the total time the processing of this connection has waited in
+     * the executor queue since this method was last called.
+     *
+     * @return The time in nanoseconds or -1 if processing was not passed to
+     *         the executor since this method was last called
+     */
+    public long takeQueueTime() {
+        long result = queuePhaseNanos;
+        queuePhaseNanos = -1;
+        return result;
+    }
+
+    void setShedRequest(boolean shedRequest) {
+        this.shedRequest = shedRequest;
+    }
+
+    /**
+     * Should the request that has just been read from this connection be
+     * rejected because the endpoint is overloaded? Processors should call this
+     * once the headers of a new request have been read and, if it returns
+     * <code>true</code>, respond immediately with a 503 status code. At most
+     * one request is shed per decision of the {@link AdmissionController}.
+     *
+     * @return <code>true</code> if the request should be rejected
+     */
+    public boolean shedRequest() {
+        if (shedRequest) {
+            shedRequest = false;
+            return true;
+        }
+        return false;
+    }
+
     public String getNegotiatedProtocol() { return negotiatedProtocol; }
     public void setNegotiatedProtocol(String negotiatedProtocol) {
         this.negotiatedProtocol = negotiatedProtocol;
@@ -407,6 +510,16 @@ public abstract class SocketWrapperBase<E> {
         return closed.get();
     }
 
+    /**
+     * @return {@code true} if no TLS handshake is required for this connection
+     *         or the TLS handshake has completed. Implementations that do not
+     *         support performing the handshake on a separate executor always
+     *         return {@code true}.
+     */
+    public boolean isHandshakeComplete() {
+        return true;
+    }
+
 
     /**
      * Writes the provided data to the socket write buffer. If the socket write
@@ -551,6 +664,10 @@ public abstract class SocketWrapperBase<E> {
     protected void writeBlocking(ByteBuffer from) throws IOException {
         if (from.hasRemaining()) {
             socketBufferHandler.configureWriteBufferForWrite();
+            if (useGatheringWrite(from)) {
+                doGatheringWrite(true, from);
+                return;
+            }
             transfer(from, socketBufferHandler.getWriteBuffer());
             while (from.hasRemaining()) {
                 doWrite(true);
@@ -627,7 +744,12 @@ public abstract class SocketWrapperBase<E> {
 
         if (from.hasRemaining() && nonBlockingWriteBuffer.isEmpty()
                 && socketBufferHandler.isWriteBufferWritable()) {
-            writeNonBlockingInternal(from);
+            socketBufferHandler.configureWriteBufferForWrite();
+            if (useGatheringWrite(from)) {
+                doGatheringWrite(false, from);
+            } else {
+                writeNonBlockingInternal(from);
+            }
         }
 
         if (from.hasRemaining()) {
@@ -637,6 +759,55 @@ public abstract class SocketWrapperBase<E> {
     }
 
 
+    /**
+     * Should the provided data be written to the network together with the
+     * current content of the socket write buffer using a gathering write
+     * rather than being copied into the socket write buffer? Expects the socket
+     * write buffer to be configured for write.
+     *
+     * @param from The ByteBuffer containing the data to be written
+     *
+     * @return <code>true</code> if gathering writes are enabled and the data
+     *         will not fit in the space remaining in the socket write buffer
+     */
+    protected boolean useGatheringWrite(ByteBuffer from) {
+        return from.remaining() > socketBufferHandler.getWriteBuffer().remaining() &&
+                endpoint.getSocketProperties().getGatheringWrites();
+    }
+
+
+    /**
+     * Writes the content of the socket write buffer together with the provided
+     * data using a gathering write. Only as much of the provided data as makes
+     * the total written a whole number of socket write buffers is included in
+     * the gathering write. If that is written completely, the remainder is
+     * copied to the socket write buffer so it is written with the data that
+     * follows rather than on its own (e.g. as a small TLS record). Expects the
+     * socket write buffer to be configured for write.
+     *
+     * @param block Should the write be blocking or not?
+     * @param from The ByteBuffer containing the data to be written
+     *
+     * @throws IOException If an IO error occurs during the write
+     */
+    private void doGatheringWrite(boolean block, ByteBuffer from) throws IOException {
+        ByteBuffer writeBuffer = socketBufferHandler.getWriteBuffer();
+        int remainder = (writeBuffer.position() + from.remaining()) % writeBuffer.capacity();
+        int limit = from.limit();
+        from.limit(limit - remainder);
+        socketBufferHandler.configureWriteBufferForRead();
+        try {
+            doWrite(block, new ByteBuffer[] { socketBufferHandler.getWriteBuffer(), from });
+        } finally {
+            from.limit(limit);
+        }
+        if (from.remaining() == remainder && socketBufferHandler.isWriteBufferEmpty()) {
+            socketBufferHandler.configureWriteBufferForWrite();
+            transfer(from, socketBufferHandler.getWriteBuffer());
+        }
+    }
+
+
     /**
      * Separate method so it can be re-used by the socket write buffer to write
      * data to the network
@@ -751,6 +922,33 @@ public abstract class SocketWrapperBase<E> {
     protected abstract void doWrite(boolean block, ByteBuffer from) throws IOException;
 
 
+    /**
+     * Write the contents of the ByteBuffers to the socket, in order. For
+     * blocking writes either then entire contents of the buffers will be
+     * written or an IOException will be thrown. Partial blocking writes will
+     * not occur. A non-blocking write stops at the first buffer that could not
+     * be written completely.
+     * <p>
+     * The default implementation writes each buffer in turn. Implementations
+     * should override this to use a gathering write where the underlying
+     * channel supports it.
+     *
+     * @param block Should the write be blocking or not?
+     * @param from the ByteBuffers containing the data to be written
+     *
+     * @throws IOException If an I/O error such as a timeout occurs during the
+     *                     write
+     */
+    protected void doWrite(boolean block, ByteBuffer[] from) throws IOException {
+        for (ByteBuffer buffer : from) {
+            doWrite(block, buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+        }
+    }
+
+
     public void processSocket(SocketEvent socketStatus, boolean dispatch) {
         endpoint.processSocket(this, socketStatus, dispatch);
     }
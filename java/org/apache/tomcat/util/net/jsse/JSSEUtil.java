@@ -46,6 +46,8 @@ public class JSSEUtil extends SSLUtilBase {
     private static final Log log = LogFactory.getLog(JSSEUtil.class);
     private static final StringManager sm = StringManager.getManager(JSSEUtil.class);
 
+    private static final String ENABLE_STAPLING_PROPERTY = "jdk.tls.server.enableStatusRequestExtension";
+
     private volatile boolean initialized = false;
 
     private volatile Set<String> implementedProtocols;
@@ -92,6 +94,16 @@ public class JSSEUtil extends SSLUtilBase {
     @Override
     public SSLContext createSSLContextInternal(List<String> negotiableProtocols)
             throws NoSuchAlgorithmException {
+        /*
+         * JSSE has no API to enable OCSP stapling for an SSLContext or to
+         * provide the responses to staple. Stapling is enabled for the whole
+         * JVM with a system property and JSSE obtains and caches the responses
+         * itself.
+         */
+        if (sslHostConfig.getOcspStapling() && !Boolean.getBoolean(ENABLE_STAPLING_PROPERTY)) {
+            log.warn(sm.getString("jsseUtil.ocspStaplingDisabled", sslHostConfig.getHostName(),
+                    ENABLE_STAPLING_PROPERTY));
+        }
         return new JSSESSLContext(sslHostConfig.getSslProtocol());
     }
 
@@ -123,4 +123,14 @@ public final class OpenSSLSessionStats {
     public long cacheFull() {
         return SSLContext.sessionCacheFull(context);
     }
+
+    /**
+     * @return The proportion of the successfully established SSL/TLS sessions
+     *         in server mode that resumed a previous session or zero if no
+     *         sessions have been established.
+     */
+    public double hitRatio() {
+        long acceptGood = acceptGood();
+        return acceptGood == 0 ? 0 : (double) hits() / acceptGood;
+    }
 }
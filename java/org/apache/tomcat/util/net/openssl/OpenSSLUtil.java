@@ -70,6 +70,9 @@ public class OpenSSLUtil extends SSLUtilBase {
 
     @Override
     public SSLContext createSSLContextInternal(List<String> negotiableProtocols) throws Exception {
+        if (sslHostConfig.getOcspStapling()) {
+            log.warn(sm.getString("openssl.ocspStaplingUnsupported", sslHostConfig.getHostName()));
+        }
         return new OpenSSLContext(certificate, negotiableProtocols);
     }
 
@@ -71,7 +71,7 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
         if (parent == null || parent.isShutdown()) {
             throw new RejectedExecutionException(sm.getString("taskQueue.notRunning"));
         }
-        return super.offer(o); //forces the item onto the queue, to be used if the task is rejected
+        return enqueue(o); //forces the item onto the queue, to be used if the task is rejected
     }
 
 
@@ -79,29 +79,29 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
     public boolean offer(Runnable o) {
       //we can't do any checks
         if (parent==null) {
-            return super.offer(o);
+            return enqueue(o);
         }
         //we are maxed out on threads, simply queue the object
         if (parent.getPoolSize() == parent.getMaximumPoolSize()) {
-            return super.offer(o);
+            return enqueue(o);
         }
         //we have idle threads, just add it to the queue
         if (parent.getSubmittedCount()<=(parent.getPoolSize())) {
-            return super.offer(o);
+            return enqueue(o);
         }
         //if we have less threads than maximum force creation of a new thread
         if (parent.getPoolSize()<parent.getMaximumPoolSize()) {
             return false;
         }
         //if we reached here, we need to add it to the queue
-        return super.offer(o);
+        return enqueue(o);
     }
 
 
     @Override
     public Runnable poll(long timeout, TimeUnit unit)
             throws InterruptedException {
-        Runnable runnable = super.poll(timeout, unit);
+        Runnable runnable = dequeue(timeout, unit);
         if (runnable == null && parent != null) {
             // the poll timed out, it gives an opportunity to stop the current
             // thread if needed to avoid memory leaks.
@@ -119,7 +119,7 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
             // does not occur with take()
             // but the ThreadPoolExecutor implementation allows this
         }
-        return super.take();
+        return dequeue();
     }
 
     @Override
@@ -131,7 +131,7 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
             // "requirement"
             return forcedRemainingCapacity;
         }
-        return super.remainingCapacity();
+        return queueRemainingCapacity();
     }
 
     public void setForcedRemainingCapacity(int forcedRemainingCapacity) {
@@ -142,4 +142,27 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
         this.forcedRemainingCapacity = DEFAULT_FORCED_REMAINING_CAPACITY;
     }
 
+
+    /*
+     * The methods below provide the underlying queue operations once the
+     * thread pool specific logic has been applied. They allow sub-classes to
+     * use a different data structure to hold the tasks.
+     */
+
+    boolean enqueue(Runnable o) {
+        return super.offer(o);
+    }
+
+    Runnable dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        return super.poll(timeout, unit);
+    }
+
+    Runnable dequeue() throws InterruptedException {
+        return super.take();
+    }
+
+    int queueRemainingCapacity() {
+        return super.remainingCapacity();
+    }
+
 }
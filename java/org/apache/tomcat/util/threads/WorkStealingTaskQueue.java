@@ -0,0 +1,355 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TaskQueue} that holds the tasks in multiple lock-free deques rather
+ * than in a single {@link java.util.concurrent.LinkedBlockingQueue} so that,
+ * with many cores, submitting and taking tasks does not contend on the head
+ * and tail locks of a single queue. The thread pool behaviour of
+ * {@link TaskQueue} - creating new threads up to the maximum before queueing
+ * tasks - is unchanged.
+ * <p>
+ * There is one deque per core. Tasks submitted by a pool thread are added to
+ * the deque for that thread so they are likely to be processed by a thread
+ * that shares the same deque. Tasks submitted by other threads, such as the
+ * Poller, are spread across the deques. A thread takes the oldest task from
+ * its own deque and, if that is empty, steals the oldest task from the other
+ * deques. Tasks are therefore processed in approximately, rather than
+ * strictly, the order they were submitted.
+ * <p>
+ * The number of queued tasks is tracked with a semaphore that threads waiting
+ * for a task block on. The capacity is enforced on a best-effort basis and may
+ * be exceeded slightly when many tasks are submitted concurrently.
+ */
+public class WorkStealingTaskQueue extends TaskQueue {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ConcurrentLinkedDeque<Runnable>[] deques;
+    private final int mask;
+    private final int capacity;
+    // One permit per queued task
+    private final transient Semaphore available = new Semaphore(0);
+
+
+    public WorkStealingTaskQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+
+    public WorkStealingTaskQueue(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * @param capacity The maximum number of tasks to queue
+     * @param shards   The number of deques to use. This will be rounded up to
+     *                     the next power of two.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public WorkStealingTaskQueue(int capacity, int shards) {
+        super(1);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        int size = 1;
+        while (size < shards) {
+            size <<= 1;
+        }
+        deques = new ConcurrentLinkedDeque[size];
+        for (int i = 0; i < size; i++) {
+            deques[i] = new ConcurrentLinkedDeque<>();
+        }
+        mask = size - 1;
+    }
+
+
+    public WorkStealingTaskQueue(Collection<? extends Runnable> c) {
+        this(Integer.MAX_VALUE);
+        addAll(c);
+    }
+
+
+    // ---------------------------------------------------- TaskQueue methods
+
+    @Override
+    boolean enqueue(Runnable o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        if (available.availablePermits() >= capacity) {
+            return false;
+        }
+        deques[submitIndex()].offerLast(o);
+        // Release after adding so a thread that acquires the permit will find
+        // the task
+        available.release();
+        return true;
+    }
+
+
+    @Override
+    Runnable dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!available.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return claim();
+    }
+
+
+    @Override
+    Runnable dequeue() throws InterruptedException {
+        available.acquire();
+        return claim();
+    }
+
+
+    @Override
+    int queueRemainingCapacity() {
+        return Math.max(0, capacity - available.availablePermits());
+    }
+
+
+    /*
+     * Called once a permit has been acquired. There is always at least one
+     * task for each acquired permit so this will find one although it may
+     * have to look more than once if other threads take the tasks it sees
+     * first.
+     */
+    private Runnable claim() {
+        int start = ownIndex();
+        while (true) {
+            for (int i = 0; i <= mask; i++) {
+                Runnable task = deques[(start + i) & mask].pollFirst();
+                if (task != null) {
+                    return task;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+
+    private int ownIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & mask;
+    }
+
+
+    private int submitIndex() {
+        if (Thread.currentThread() instanceof TaskThread) {
+            return ownIndex();
+        }
+        return ThreadLocalRandom.current().nextInt() & mask;
+    }
+
+
+    // ------------------------------------------- BlockingQueue / Collection
+
+    @Override
+    public boolean offer(Runnable o, long timeout, TimeUnit unit) {
+        return offer(o);
+    }
+
+
+    @Override
+    public void put(Runnable o) throws InterruptedException {
+        while (!offer(o)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.sleep(1);
+        }
+    }
+
+
+    @Override
+    public Runnable poll() {
+        if (!available.tryAcquire()) {
+            return null;
+        }
+        return claim();
+    }
+
+
+    @Override
+    public Runnable peek() {
+        for (ConcurrentLinkedDeque<Runnable> deque : deques) {
+            Runnable task = deque.peekFirst();
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        // Obtain the permit for the task first else a thread may acquire it
+        // and then be unable to find the task
+        if (!available.tryAcquire()) {
+            return false;
+        }
+        for (ConcurrentLinkedDeque<Runnable> deque : deques) {
+            if (deque.removeFirstOccurrence(o)) {
+                return true;
+            }
+        }
+        available.release();
+        return false;
+    }
+
+
+    @Override
+    public boolean contains(Object o) {
+        for (ConcurrentLinkedDeque<Runnable> deque : deques) {
+            if (deque.contains(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    public int size() {
+        return available.availablePermits();
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // Remove the next task
+        }
+    }
+
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        Runnable task;
+        while (count < maxElements && (task = poll()) != null) {
+            c.add(task);
+            count++;
+        }
+        return count;
+    }
+
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+
+    @Override
+    public Iterator<Runnable> iterator() {
+        return new Itr(snapshot());
+    }
+
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+
+    private List<Runnable> snapshot() {
+        List<Runnable> result = new ArrayList<>();
+        for (ConcurrentLinkedDeque<Runnable> deque : deques) {
+            result.addAll(deque);
+        }
+        return result;
+    }
+
+
+    /*
+     * Iterates over a snapshot of the queued tasks. Removal removes the task
+     * from the queue if it is still queued.
+     */
+    private class Itr implements Iterator<Runnable> {
+
+        private final Iterator<Runnable> iter;
+        private Runnable last = null;
+
+        Itr(List<Runnable> tasks) {
+            iter = tasks.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public Runnable next() {
+            if (!iter.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = iter.next();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            WorkStealingTaskQueue.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -140,6 +140,18 @@ public class TestRegistration extends TomcatBaseTest {
         };
     }
 
+    private static String[] pollerMBeanNames(String port, String type) {
+        if ("nio".equals(type)) {
+            return new String[] {
+                "Tomcat:type=Poller,ThreadPool="
+                        + ObjectName.quote("http-" + type + "-" + ADDRESS + "-" + port)
+                        + ",name=0",
+            };
+        } else {
+            return new String[] { };
+        }
+    }
+
     /*
      * Test verifying that Tomcat correctly de-registers the MBeans it has
      * registered.
@@ -197,6 +209,7 @@ public class TestRegistration extends TomcatBaseTest {
         expected.addAll(Arrays.asList(hostMBeanNames("localhost")));
         expected.addAll(Arrays.asList(contextMBeanNames("localhost", contextName)));
         expected.addAll(Arrays.asList(connectorMBeanNames("auto-" + index, protocol)));
+        expected.addAll(Arrays.asList(pollerMBeanNames("auto-" + index, protocol)));
         expected.addAll(Arrays.asList(optionalMBeanNames("localhost")));
         expected.addAll(Arrays.asList(requestMBeanNames(
                 "auto-" + index + "-" + getPort(), protocol)));
@@ -0,0 +1,132 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompressionConfigEncoders {
+
+    private static final String ZSTD_ENCODERS = "gzip," + TesterZstdEncoder.class.getName();
+
+
+    @Test
+    public void testDefaultGzip() {
+        Assert.assertEquals("gzip", negotiate("gzip", "br, gzip, zstd"));
+        Assert.assertNull(negotiate("gzip", "br, zstd"));
+    }
+
+
+    @Test
+    public void testServerPreference() {
+        Assert.assertEquals("gzip", negotiate(ZSTD_ENCODERS, "zstd, gzip"));
+        Assert.assertEquals("zstd", negotiate(TesterZstdEncoder.class.getName() + ",gzip", "gzip, zstd"));
+    }
+
+
+    @Test
+    public void testClientPreference() {
+        Assert.assertEquals("zstd", negotiate(ZSTD_ENCODERS, "gzip;q=0.5, zstd"));
+        Assert.assertEquals("zstd", negotiate(ZSTD_ENCODERS, "gzip;q=0.5", "ZSTD;q=0.8"));
+        Assert.assertEquals("zstd", negotiate(ZSTD_ENCODERS, "zstd"));
+        Assert.assertNull(negotiate(ZSTD_ENCODERS, "gzip;q=0, zstd;q=0"));
+    }
+
+
+    @Test
+    public void testInvalidEncoderIgnored() {
+        Assert.assertEquals("gzip", negotiate("org.apache.coyote.DoesNotExist, gzip", "zstd, gzip"));
+        Assert.assertEquals("gzip", negotiate("java.lang.String, gzip", "zstd, gzip"));
+    }
+
+
+    @Test
+    public void testAlreadyEncoded() {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        compressionConfig.setCompression("force");
+        compressionConfig.setCompressionEncoders(ZSTD_ENCODERS);
+        Request request = new Request();
+        request.getMimeHeaders().addValue("accept-encoding").setString("gzip, zstd");
+        Response response = new Response();
+        response.getMimeHeaders().addValue("Content-Encoding").setString("zstd");
+        Assert.assertNull(compressionConfig.getContentEncoder(request, response));
+    }
+
+
+    @Test
+    public void testAdaptiveLevel() {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        Assert.assertEquals(6, compressionConfig.getCurrentCompressionLevel());
+
+        compressionConfig.setMinCompressionLevel(1);
+        compressionConfig.setMaxCompressionLevel(9);
+        Assert.assertEquals(9, compressionConfig.getCompressionLevel(-1));
+        Assert.assertEquals(9, compressionConfig.getCompressionLevel(0.2));
+        Assert.assertEquals(9, compressionConfig.getCompressionLevel(0.5));
+        Assert.assertEquals(5, compressionConfig.getCompressionLevel(0.75));
+        Assert.assertEquals(1, compressionConfig.getCompressionLevel(1.0));
+        Assert.assertEquals(1, compressionConfig.getCompressionLevel(4.0));
+
+        int level = compressionConfig.getCurrentCompressionLevel();
+        Assert.assertTrue(level >= 1 && level <= 9);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new CompressionConfig().setMaxCompressionLevel(10);
+    }
+
+
+    private static String negotiate(String encoders, String... acceptEncodings) {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        // Skip length and MIME type checks
+        compressionConfig.setCompression("force");
+        compressionConfig.setCompressionEncoders(encoders);
+
+        Request request = new Request();
+        for (String acceptEncoding : acceptEncodings) {
+            request.getMimeHeaders().addValue("accept-encoding").setString(acceptEncoding);
+        }
+        Response response = new Response();
+
+        ContentEncoder contentEncoder = compressionConfig.getContentEncoder(request, response);
+        if (contentEncoder == null) {
+            Assert.assertNull(response.getMimeHeaders().getHeader("Content-Encoding"));
+            return null;
+        }
+        Assert.assertEquals(contentEncoder.getEncoding(), response.getMimeHeaders().getHeader("Content-Encoding"));
+        return contentEncoder.getEncoding();
+    }
+
+
+    public static class TesterZstdEncoder implements ContentEncoder {
+
+        @Override
+        public String getEncoding() {
+            return "zstd";
+        }
+
+        @Override
+        public OutputStream createOutputStream(OutputStream out, int level) {
+            return new FilterOutputStream(out);
+        }
+    }
+}
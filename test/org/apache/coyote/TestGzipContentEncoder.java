@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestGzipContentEncoder {
+
+    private static final int OS_INDEX = 9;
+    private static final byte[] DATA;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("Line ").append(i).append(" of some repetitive response body\n");
+        }
+        DATA = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+
+    @Test
+    public void testSameAsGZIPOutputStream() throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(expected, true);
+        gzip.write(DATA, 0, 1000);
+        gzip.flush();
+        gzip.write(DATA, 1000, DATA.length - 1000);
+        gzip.finish();
+        gzip.close();
+
+        GzipContentEncoder encoder = new GzipContentEncoder();
+        // Repeat so pooled Deflaters are re-used
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            OutputStream os = encoder.createOutputStream(actual, 6);
+            os.write(DATA, 0, 1000);
+            os.flush();
+            os.write(DATA, 1000, DATA.length - 1000);
+            os.close();
+            byte[] expectedBytes = expected.toByteArray();
+            byte[] actualBytes = actual.toByteArray();
+            // The operating system header field varies between Java versions
+            actualBytes[OS_INDEX] = expectedBytes[OS_INDEX];
+            Assert.assertArrayEquals(expectedBytes, actualBytes);
+        }
+    }
+
+
+    @Test
+    public void testLevels() throws Exception {
+        GzipContentEncoder encoder = new GzipContentEncoder(1);
+        int fastest = compress(encoder, 1).length;
+        int best = compress(encoder, 9).length;
+        Assert.assertTrue(best <= fastest);
+        Assert.assertArrayEquals(DATA, decompress(compress(encoder, 1)));
+        Assert.assertArrayEquals(DATA, decompress(compress(encoder, 9)));
+    }
+
+
+    @Test
+    public void testEmpty() throws Exception {
+        GzipContentEncoder encoder = new GzipContentEncoder();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        encoder.createOutputStream(baos, 6).close();
+        Assert.assertEquals(0, decompress(baos.toByteArray()).length);
+    }
+
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws Exception {
+        GzipContentEncoder encoder = new GzipContentEncoder();
+        OutputStream os = encoder.createOutputStream(new ByteArrayOutputStream(), 6);
+        os.close();
+        os.write(DATA);
+    }
+
+
+    private static byte[] compress(ContentEncoder encoder, int level) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = encoder.createOutputStream(baos, level)) {
+            os.write(DATA);
+        }
+        return baos.toByteArray();
+    }
+
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
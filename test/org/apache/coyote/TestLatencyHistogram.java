@@ -0,0 +1,85 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBuckets() {
+        int last = -1;
+        for (long value = 0; value < 1L << 42; value = value < 64 ? value + 1 : value + value / 7) {
+            int index = LatencyHistogram.index(value);
+            // Buckets are in order
+            Assert.assertTrue(index >= last);
+            last = index;
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            if (value < 1L << 41) {
+                // The value is within its bucket and the bucket is no wider
+                // than 1/32 of the value
+                Assert.assertTrue(highest >= value);
+                Assert.assertTrue(highest - value <= value / 32);
+                Assert.assertEquals(index, LatencyHistogram.index(highest));
+                if (highest + 1 < 1L << 41) {
+                    Assert.assertEquals(index + 1, LatencyHistogram.index(highest + 1));
+                }
+            }
+        }
+        // Very long durations are recorded in the last bucket
+        Assert.assertEquals(last, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+
+        // 1 to 1000 microseconds
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        histogram.record(-1);
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMax());
+        Assert.assertEquals(500500, histogram.getMean());
+        assertApproximately(500, histogram.getValueAtPercentile(50));
+        assertApproximately(900, histogram.getValueAtPercentile(90));
+        assertApproximately(990, histogram.getValueAtPercentile(99));
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getValueAtPercentile(100));
+        assertApproximately(1, histogram.getValueAtPercentile(0));
+
+        Assert.assertTrue(histogram.getSummary(TimeUnit.MICROSECONDS).startsWith("count=1000, mean=500, p50="));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+
+    private static void assertApproximately(long expectedMicros, long actualNanos) {
+        long expected = TimeUnit.MICROSECONDS.toNanos(expectedMicros);
+        Assert.assertTrue("Expected [" + expected + "] but was [" + actualNanos + "]",
+                actualNanos >= expected && actualNanos - expected <= expected / 32);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.coyote.Request;
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.HttpParser;
+
+/*
+ * Checks that parsing a request with useSwarParser enabled gives exactly the
+ * same result as the standard parser, including for requests that the
+ * alternative parser has to hand back to the standard parser.
+ */
+@RunWith(Parameterized.class)
+public class TestHttp11InputBufferSwar {
+
+    private static final String CRLF = "\r\n";
+
+    @Parameterized.Parameters(name = "{index}: reject[{1}]")
+    public static Collection<Object[]> parameters() {
+        List<String> requests = new ArrayList<>();
+        requests.add("GET /foo?a=b HTTP/1.1" + CRLF +
+                "Host: localhost" + CRLF +
+                "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:95.0) Gecko/20100101 Firefox/95.0" + CRLF +
+                "Accept: */*" + CRLF +
+                "Cookie: JSESSIONID=0123456789ABCDEF0123456789ABCDEF; other=value" + CRLF +
+                CRLF);
+        requests.add("GET /foo HTTP/1.1\nHost: localhost\nX-Lf: only\n\n");
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Trailing: value   " + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Leading:    value" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Leading-Tab:\t value" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Tab: a\tb" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Trailing-Tab: ab \t " + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Fold: a" + CRLF + " b" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Fold: a" + CRLF + "\tb" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "Bad Name: value" + CRLF + "X-Next: ok" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Ctl: a\u0001b" + CRLF + "X-Next: ok" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Del: a\u007fb" + CRLF + "X-Next: ok" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Cr: a\rb" + CRLF + "X-Next: ok" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-CrCr: ab\r\r\n" + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Obs-Text: caf\u00e9 \u00ff\u0080" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-Empty:" + CRLF + "X-Space: " + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + ": no-name" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "X-UPPER-case: Value" + CRLF + CRLF);
+        requests.add("GET  /foo  HTTP/1.1" + CRLF + "Host: localhost" + CRLF + CRLF);
+        requests.add("GET\t/foo\tHTTP/1.1" + CRLF + "Host: localhost" + CRLF + CRLF);
+        requests.add("GET /foo" + CRLF);
+        requests.add("GET /foo?a=b?c HTTP/1.1" + CRLF + CRLF);
+        requests.add("GET /foo? HTTP/1.1" + CRLF + CRLF);
+        requests.add("GET /a{b HTTP/1.1" + CRLF + CRLF);
+        requests.add("GET /a?b{c HTTP/1.1" + CRLF + CRLF);
+        requests.add("G(T /foo HTTP/1.1" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1 " + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1\rX" + CRLF + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "Host: localhost" + CRLF);
+        requests.add("GET /foo HTTP/1.1" + CRLF + "Host: localh");
+        requests.add(CRLF + CRLF + "GET /foo HTTP/1.1" + CRLF + "Host: localhost" + CRLF + CRLF);
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            longValue.append((char) ('a' + (i % 26)));
+            requests.add("POST /foo HTTP/1.1" + CRLF + "X-Long: " + longValue + CRLF +
+                    "X-Long-Ctl: " + longValue + "\u0002" + longValue + CRLF + CRLF);
+        }
+
+        List<Object[]> parameterSets = new ArrayList<>();
+        for (String request : requests) {
+            parameterSets.add(new Object[] { request, Boolean.TRUE });
+            parameterSets.add(new Object[] { request, Boolean.FALSE });
+        }
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public String request;
+
+    @Parameter(1)
+    public boolean rejectIllegalHeader;
+
+
+    @Test
+    public void testSameResult() throws Exception {
+        String expected = parse(false);
+        String actual = parse(true);
+        Assert.assertEquals(expected, actual);
+    }
+
+
+    private String parse(boolean useSwarParser) throws Exception {
+        Request req = new Request();
+        Http11InputBuffer inputBuffer = new Http11InputBuffer(req, 8192, rejectIllegalHeader,
+                new HttpParser(null, null), useSwarParser);
+
+        byte[] bytes = request.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(16384);
+        byteBuffer.put(bytes).flip();
+        Field field = Http11InputBuffer.class.getDeclaredField("byteBuffer");
+        field.setAccessible(true);
+        field.set(inputBuffer, byteBuffer);
+
+        StringBuilder result = new StringBuilder();
+        try {
+            inputBuffer.parseRequestLine(false, 0, 0);
+            result.append("method[").append(req.method()).append("]\n");
+            result.append("uri[").append(req.requestURI()).append("]\n");
+            result.append("query[").append(req.queryString()).append("]\n");
+            result.append("protocol[").append(req.protocol()).append("]\n");
+            if (req.protocol().getLength() > 0) {
+                inputBuffer.parseHeaders();
+            }
+        } catch (Exception e) {
+            result.append("exception[").append(e.getClass().getName()).append(": ");
+            result.append(e.getMessage()).append("]\n");
+        }
+        MimeHeaders headers = req.getMimeHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            result.append("header[").append(headers.getName(i)).append("][");
+            result.append(headers.getValue(i)).append("]\n");
+        }
+        result.append("position[").append(byteBuffer.position()).append("]\n");
+        return result.toString();
+    }
+}
@@ -16,6 +16,14 @@
  */
 package org.apache.coyote.http11;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -23,6 +31,10 @@ import org.apache.catalina.Context;
 import org.apache.catalina.startup.ExpectationClient;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.Response;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.http.FastHttpDateFormat;
+import org.apache.tomcat.util.http.MimeHeaders;
 
 public class TestHttp11OutputBuffer extends TomcatBaseTest {
 
@@ -55,4 +67,150 @@ public class TestHttp11OutputBuffer extends TomcatBaseTest {
         Assert.assertTrue(client.isResponse200());
         Assert.assertTrue(client.isResponseBodyOK());
     }
+
+
+    @Test
+    public void testGatheringWrites() throws Exception {
+        doTestLargeChunkedWrites(true);
+    }
+
+
+    @Test
+    public void testNoGatheringWrites() throws Exception {
+        doTestLargeChunkedWrites(false);
+    }
+
+
+    private void doTestLargeChunkedWrites(boolean gatheringWrites) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty(
+                "socket.gatheringWrites", Boolean.toString(gatheringWrites)));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "mixed", new MixedWriteServlet());
+        ctx.addServletMappingDecoded("/mixed", "mixed");
+
+        tomcat.start();
+
+        ByteChunk bc = new ByteChunk();
+        int rc = getUrl("http://localhost:" + getPort() + "/mixed", bc, null);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertArrayEquals(MixedWriteServlet.getExpectedBody(),
+                Arrays.copyOfRange(bc.getBytes(), bc.getStart(), bc.getEnd()));
+    }
+
+
+    @Test
+    public void testHeaderCacheSameOutput() {
+        Http11OutputBuffer cached = new Http11OutputBuffer(new Response(), 8192);
+        Http11OutputBuffer uncached = new Http11OutputBuffer(new Response(), 8192);
+        uncached.setHeaderCacheEnabled(false);
+
+        String date = FastHttpDateFormat.getCurrentDate();
+        int[] statuses = { 200, 200, 404, 302, 100, 599, 600, 99, 1000 };
+        for (int i = 0; i < 20; i++) {
+            int status = statuses[i % statuses.length];
+            String[] headers = {
+                    "Date", date,
+                    "Content-Type", "text/html;charset=UTF-8",
+                    "X-Frame-Options", "DENY",
+                    "ETag", "W/\"" + i + "\"",
+                    "X-Ctl", "a\u0000b\tc\u007fd\u001fe",
+                    "X-Latin-1", "caf\u00e9",
+                    "X-Repeat-" + (i % 3), "value-" + (i % 2) };
+            Assert.assertArrayEquals(writeHead(uncached, status, headers, 42),
+                    writeHead(cached, status, headers, 42));
+        }
+    }
+
+
+    @Test
+    public void testHeaderCacheSameLimit() {
+        String[] headers = { "Server", "Apache-Coyote/1.1", "X-Frame-Options", "SAMEORIGIN" };
+        for (int size = 1; size < 80; size++) {
+            Http11OutputBuffer cached = new Http11OutputBuffer(new Response(), size);
+            Http11OutputBuffer uncached = new Http11OutputBuffer(new Response(), size);
+            uncached.setHeaderCacheEnabled(false);
+            for (int i = 0; i < 3; i++) {
+                byte[] expected = writeHeadOrNull(uncached, headers);
+                byte[] actual = writeHeadOrNull(cached, headers);
+                Assert.assertArrayEquals("Buffer size [" + size + "]", expected, actual);
+            }
+        }
+    }
+
+
+    private static byte[] writeHeadOrNull(Http11OutputBuffer outputBuffer, String[] headers) {
+        try {
+            return writeHead(outputBuffer, 200, headers, -1);
+        } catch (HeadersTooLargeException e) {
+            return null;
+        }
+    }
+
+
+    private static byte[] writeHead(Http11OutputBuffer outputBuffer, int status, String[] headers,
+            long contentLength) {
+        outputBuffer.resetHeaderBuffer();
+        Response response = outputBuffer.response;
+        response.recycle();
+        response.setStatus(status);
+        MimeHeaders mimeHeaders = response.getMimeHeaders();
+        for (int i = 0; i < headers.length; i += 2) {
+            mimeHeaders.addValue(headers[i]).setString(headers[i + 1]);
+        }
+        if (contentLength > -1) {
+            mimeHeaders.addValue("Content-Length").setLong(contentLength);
+        }
+        outputBuffer.sendStatus();
+        for (int i = 0; i < mimeHeaders.size(); i++) {
+            outputBuffer.sendHeader(mimeHeaders.getName(i), mimeHeaders.getValue(i));
+        }
+        outputBuffer.endHeaders();
+        return Arrays.copyOf(outputBuffer.headerBuffer.array(), outputBuffer.headerBuffer.position());
+    }
+
+
+    /*
+     * Writes a mixture of small writes that will be buffered and large writes
+     * that will not fit in the socket write buffer.
+     */
+    private static class MixedWriteServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int[] WRITE_SIZES = { 10, 100000, 20, 3, 50000, 8192, 8193, 1, 200000 };
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws IOException {
+            resp.setContentType("application/octet-stream");
+            OutputStream os = resp.getOutputStream();
+            int offset = 0;
+            for (int size : WRITE_SIZES) {
+                os.write(getBytes(offset, size));
+                offset += size;
+                // Force each write through to the socket
+                os.flush();
+            }
+        }
+
+        private static byte[] getBytes(int offset, int size) {
+            byte[] result = new byte[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = (byte) ('a' + ((offset + i) % 26));
+            }
+            return result;
+        }
+
+        static byte[] getExpectedBody() {
+            int total = 0;
+            for (int size : WRITE_SIZES) {
+                total += size;
+            }
+            return getBytes(0, total);
+        }
+    }
 }
@@ -17,6 +17,8 @@
 package org.apache.coyote.http11;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,10 +34,16 @@ import java.net.SocketAddress;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import jakarta.servlet.AsyncContext;
 import jakarta.servlet.DispatcherType;
@@ -48,20 +56,29 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
 import org.apache.catalina.startup.SimpleHttpClient;
 import org.apache.catalina.startup.TesterServlet;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.catalina.valves.AbstractAccessLogValve;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ActionCode;
+import org.apache.coyote.CompressionCache;
 import org.apache.tomcat.util.buf.B2CConverter;
 import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.util.descriptor.web.SecurityCollection;
 import org.apache.tomcat.util.descriptor.web.SecurityConstraint;
 import org.apache.tomcat.util.http.parser.TokenList;
+import org.apache.tomcat.util.modeler.Registry;
 
 public class TestHttp11Processor extends TomcatBaseTest {
 
@@ -359,7 +376,19 @@ public class TestHttp11Processor extends TomcatBaseTest {
 
     @Test
     public void testPipeliningBug64974() throws Exception {
+        doTestPipeliningBug64974(false);
+    }
+
+
+    @Test
+    public void testPipeliningBug64974Batched() throws Exception {
+        doTestPipeliningBug64974(true);
+    }
+
+
+    private void doTestPipeliningBug64974(boolean batch) throws Exception {
         Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", Boolean.toString(batch)));
 
         // No file system docBase required
         Context ctx = tomcat.addContext("", null);
@@ -400,6 +429,323 @@ public class TestHttp11Processor extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testPipeliningBatched() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", "true"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+        Tomcat.addServlet(ctx, "EchoBodyServlet", new EchoBodyServlet());
+        ctx.addServletMappingDecoded("/echo", "EchoBodyServlet");
+
+        tomcat.start();
+
+        String get =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+        String post =
+                "POST /echo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                "Content-Length: 5" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF +
+                "Hello";
+        // Blank lines between requests are ignored
+        String request = get + get + SimpleHttpClient.CRLF + get + post + get + get;
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {request});
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        String[] expected = { "OK", "OK", "OK", "Hello", "OK", "OK" };
+        for (String body : expected) {
+            client.readResponse(true);
+            Assert.assertTrue(client.isResponse200());
+            Assert.assertEquals(body, client.getResponseBody());
+        }
+    }
+
+
+    @Test
+    public void testPipeliningBatchedCloseNow() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", "true"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/*", "TesterServlet");
+        ctx.getPipeline().addValve(new CloseNowValve());
+
+        tomcat.start();
+
+        String get =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+        String close =
+                "GET /close HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {get + get + close});
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        // The responses completed before the connection was closed must be
+        // written
+        for (int i = 0; i < 2; i++) {
+            client.readResponse(true);
+            Assert.assertTrue(client.isResponse200());
+            Assert.assertEquals("OK", client.getResponseBody());
+        }
+    }
+
+
+    private static class CloseNowValve extends ValveBase {
+
+        @Override
+        public void invoke(Request request, Response response) throws IOException, ServletException {
+            if ("/close".equals(request.getRequestURI())) {
+                response.getCoyoteResponse().action(ActionCode.CLOSE_NOW, null);
+            } else {
+                getNext().invoke(request, response);
+            }
+        }
+    }
+
+
+    @Test
+    public void testPipeliningBatchedAsync() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", "true"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+        CountDownLatch latch = new CountDownLatch(1);
+        Wrapper w = Tomcat.addServlet(ctx, "AsyncLatchServlet", new AsyncLatchServlet(latch));
+        w.setAsyncSupported(true);
+        ctx.addServletMappingDecoded("/async", "AsyncLatchServlet");
+
+        tomcat.start();
+
+        String get =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+        String async =
+                "GET /async HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {get + async});
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        // The first response must be written when the second request enters
+        // async mode rather than when the async request completes
+        client.readResponse(true);
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+
+        latch.countDown();
+        client.readResponse(true);
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("Async", client.getResponseBody());
+    }
+
+
+    private static class AsyncLatchServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch latch;
+
+        AsyncLatchServlet(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            AsyncContext ac = req.startAsync();
+            ac.start(() -> {
+                try {
+                    latch.await();
+                    ac.getResponse().setContentType("text/plain");
+                    ac.getResponse().getWriter().print("Async");
+                } catch (InterruptedException | IOException e) {
+                    // Ignore. The test will fail.
+                }
+                ac.complete();
+            });
+        }
+    }
+
+
+    @Test
+    public void testLoadShedding() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        // With NIO2 reads usually complete on threads of the channel group
+        // rather than being dispatched to the executor by the endpoint
+        Assume.assumeFalse("The queue delay is not measured for most NIO2 reads",
+                connector.getProtocolHandlerClassName().contains("Nio2"));
+        // A single thread so requests queue behind the slow servlet
+        Assert.assertTrue(connector.setProperty("maxThreads", "1"));
+        Assert.assertTrue(connector.setProperty("loadSheddingTarget", "1"));
+        Assert.assertTrue(connector.setProperty("loadSheddingInterval", "1"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "SlowServlet", new SlowServlet());
+        ctx.addServletMappingDecoded("/slow", "SlowServlet");
+
+        tomcat.start();
+
+        int count = 6;
+        int[] rcs = new int[count];
+        Thread[] threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    rcs[index] = getUrl("http://localhost:" + getPort() + "/slow", new ByteChunk(), null);
+                } catch (IOException ioe) {
+                    rcs[index] = -1;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int ok = 0;
+        int shed = 0;
+        for (int rc : rcs) {
+            if (rc == HttpServletResponse.SC_OK) {
+                ok++;
+            } else if (rc == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                shed++;
+            }
+        }
+        Assert.assertEquals(count, ok + shed);
+        Assert.assertTrue(ok > 0);
+        Assert.assertTrue(shed > 0);
+    }
+
+
+    @Test
+    public void testRequestPhaseTimes() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+
+        CapturingAccessLogValve accessLog = new CapturingAccessLogValve();
+        accessLog.setPattern("%{accept}L %{handshake}L %{parse}L %{service}L %{write}L %{unknown}L");
+        tomcat.getHost().getPipeline().addValve(accessLog);
+
+        tomcat.start();
+
+        String request =
+                "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF;
+
+        Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {request});
+        client.setUseContentLength(true);
+        client.connect();
+        for (int i = 0; i < 2; i++) {
+            client.sendRequest();
+            client.readResponse(true);
+            Assert.assertTrue(client.isResponse200());
+        }
+
+        // The access log is written after the response has been sent
+        int count = 0;
+        while (accessLog.entries.size() < 2 && count < 100) {
+            Thread.sleep(50);
+            count++;
+        }
+        String[] first = accessLog.entries.poll().split(" ");
+        String[] second = accessLog.entries.poll().split(" ");
+
+        // Accept and handshake only apply to the first request. There is no
+        // TLS handshake for this connection.
+        Assert.assertTrue(Long.parseLong(first[0]) >= 0);
+        Assert.assertEquals("-", second[0]);
+        Assert.assertEquals("-", first[1]);
+        Assert.assertEquals("-", second[1]);
+        for (int i = 2; i < 5; i++) {
+            Assert.assertTrue(Long.parseLong(first[i]) >= 0);
+            Assert.assertTrue(Long.parseLong(second[i]) >= 0);
+        }
+        Assert.assertEquals("???", first[5]);
+
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) tomcat.getConnector().getProtocolHandler();
+        MBeanServer mbeanServer = Registry.getRegistry(null, null).getMBeanServer();
+        ObjectName name = protocol.getGlobalRequestProcessorMBeanName();
+        String phaseLatencies = (String) mbeanServer.getAttribute(name, "phaseLatencies");
+        Assert.assertTrue(phaseLatencies, phaseLatencies.contains("accept: count=1,"));
+        Assert.assertTrue(phaseLatencies, phaseLatencies.contains("handshake: count=0,"));
+        Assert.assertTrue(phaseLatencies, phaseLatencies.contains("service: count=2,"));
+        Long p99 = (Long) mbeanServer.invoke(name, "getPhaseLatency",
+                new Object[] { "service", Double.valueOf(99) },
+                new String[] { String.class.getName(), "double" });
+        Assert.assertTrue(p99.longValue() >= 0);
+    }
+
+
+    private static class CapturingAccessLogValve extends AbstractAccessLogValve {
+
+        private final ConcurrentLinkedQueue<String> entries = new ConcurrentLinkedQueue<>();
+
+        @Override
+        protected void log(CharArrayWriter message) {
+            entries.add(message.toString());
+        }
+    }
+
+
+    private static class SlowServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().print("OK");
+        }
+    }
+
+
     @Test
     public void testChunking11NoContentLength() throws Exception {
         Tomcat tomcat = getTomcatInstance();
@@ -1942,4 +2288,70 @@ public class TestHttp11Processor extends TomcatBaseTest {
         Assert.assertTrue(client.isResponse200());
         Assert.assertTrue(client.getResponseBody().contains("test - data"));
     }
+
+
+    @Test
+    public void testCompressionCache() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "etag", new WeakETagServlet());
+        ctx.addServletMappingDecoded("/etag", "etag");
+
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("compression", "on"));
+        Assert.assertTrue(connector.setProperty("compressionCacheSize", "1048576"));
+
+        tomcat.start();
+
+        Map<String,List<String>> reqHead = new HashMap<>();
+        reqHead.put("Accept-Encoding", List.of("gzip"));
+
+        byte[] first = null;
+        for (int i = 0; i < 3; i++) {
+            ByteChunk bc = new ByteChunk();
+            Map<String,List<String>> resHead = new HashMap<>();
+            int rc = getUrl("http://localhost:" + getPort() + "/etag", bc, reqHead, resHead);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+            Assert.assertEquals("gzip", resHead.get("Content-Encoding").get(0));
+            byte[] body = Arrays.copyOfRange(bc.getBytes(), bc.getStart(), bc.getEnd());
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                Assert.assertEquals(WeakETagServlet.BODY, new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            if (first == null) {
+                first = body;
+            } else {
+                Assert.assertArrayEquals(first, body);
+            }
+        }
+
+        CompressionCache cache = ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).getCompressionCache();
+        Assert.assertEquals(1, cache.getEntryCount());
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+
+    private static class WeakETagServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String BODY;
+
+        static {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                sb.append("Line ").append(i).append('\n');
+            }
+            BODY = sb.toString();
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setHeader("ETag", "W/\"1\"");
+            resp.getWriter().print(BODY);
+        }
+    }
 }
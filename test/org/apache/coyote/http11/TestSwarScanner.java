@@ -0,0 +1,98 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSwarScanner {
+
+    @Test
+    public void testIndexOfControlAllBytes() {
+        // Every byte value at every offset within a word, with and without a
+        // later control character, compared with a simple loop
+        for (int value = 0; value < 256; value++) {
+            for (int offset = 0; offset < 24; offset++) {
+                byte[] buf = new byte[32];
+                fill(buf, (byte) 'a');
+                buf[offset] = (byte) value;
+                doTestIndexOfControl(buf, 0, buf.length);
+                doTestIndexOfControl(buf, 1, buf.length - 3);
+                buf[offset + 5] = '\r';
+                doTestIndexOfControl(buf, 0, buf.length);
+            }
+        }
+    }
+
+
+    @Test
+    public void testIndexOfControlNotFound() {
+        byte[] buf = new byte[19];
+        fill(buf, (byte) 0x80);
+        Assert.assertEquals(-1, SwarScanner.indexOfControl(buf, 0, buf.length));
+        buf[18] = '\n';
+        Assert.assertEquals(-1, SwarScanner.indexOfControl(buf, 0, 18));
+        Assert.assertEquals(18, SwarScanner.indexOfControl(buf, 0, 19));
+    }
+
+
+    @Test
+    public void testIndexOfAllBytes() {
+        for (int value = 0; value < 256; value++) {
+            for (int offset = 0; offset < 24; offset++) {
+                byte[] buf = new byte[32];
+                for (int i = 0; i < buf.length; i++) {
+                    // Include bytes either side of the target value
+                    buf[i] = (byte) (value + (i % 3) - 1);
+                }
+                buf[offset] = (byte) value;
+                for (int i = offset + 1; i < buf.length; i++) {
+                    if (buf[i] == (byte) value) {
+                        buf[i]++;
+                    }
+                }
+                for (int i = 0; i < offset; i++) {
+                    if (buf[i] == (byte) value) {
+                        buf[i]--;
+                    }
+                }
+                Assert.assertEquals(offset, SwarScanner.indexOf(buf, 0, buf.length, (byte) value));
+                Assert.assertEquals(-1, SwarScanner.indexOf(buf, 0, offset, (byte) value));
+            }
+        }
+    }
+
+
+    private static void doTestIndexOfControl(byte[] buf, int start, int end) {
+        int expected = -1;
+        for (int i = start; i < end; i++) {
+            int b = buf[i] & 0xFF;
+            if (b < 0x20 || b == 0x7F) {
+                expected = i;
+                break;
+            }
+        }
+        Assert.assertEquals(expected, SwarScanner.indexOfControl(buf, start, end));
+    }
+
+
+    private static void fill(byte[] buf, byte b) {
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = b;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+
+/**
+ * Compares the throughput and the number of write system calls for chunked
+ * responses with and without gathering writes. The system call count is read
+ * from /proc/self/io and is therefore only available on Linux. It covers the
+ * whole JVM, including the client, so only the difference between the two
+ * tests is meaningful.
+ */
+public class TesterGatheringWritePerformance extends TomcatBaseTest {
+
+    private static final int WARM_UP = 200;
+    private static final int REQUESTS = 2000;
+    private static final int CHUNK_SIZE = 32 * 1024;
+    private static final int CHUNKS = 8;
+
+    @Test
+    public void testGatheringWrites() throws Exception {
+        doTest(true);
+    }
+
+
+    @Test
+    public void testNoGatheringWrites() throws Exception {
+        doTest(false);
+    }
+
+
+    private void doTest(boolean gatheringWrites) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty(
+                "socket.gatheringWrites", Boolean.toString(gatheringWrites)));
+        // All requests use a single connection
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxKeepAliveRequests", "-1"));
+
+        // No file system docBase required
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "chunks", new ChunkServlet());
+        ctx.addServletMappingDecoded("/chunks", "chunks");
+        tomcat.start();
+
+        try (Socket socket = new Socket("localhost", getPort())) {
+            OutputStream os = socket.getOutputStream();
+            ResponseReader reader = new ResponseReader(socket.getInputStream());
+
+            for (int i = 0; i < WARM_UP; i++) {
+                doRequest(os, reader);
+            }
+
+            long syscwBefore = getWriteSyscalls();
+            long bytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                bytes += doRequest(os, reader);
+            }
+            long duration = System.nanoTime() - start;
+            long syscwAfter = getWriteSyscalls();
+
+            System.out.println("gatheringWrites [" + gatheringWrites + "]: " + REQUESTS +
+                    " requests in " + (duration / 1000000) + "ms, " +
+                    (bytes * 1000 / duration) + "MB/s, " + (REQUESTS * 1000000000L / duration) +
+                    " requests/s, write syscalls per request [" +
+                    (syscwBefore < 0 ? "n/a" : Double.toString(
+                            (double) (syscwAfter - syscwBefore) / REQUESTS)) + "]");
+        }
+    }
+
+
+    private static long doRequest(OutputStream os, ResponseReader reader) throws IOException {
+        os.write("GET /chunks HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        os.flush();
+
+        String line = reader.readLine();
+        Assert.assertTrue(line, line.startsWith("HTTP/1.1 200"));
+        // Skip headers
+        while (reader.readLine().length() > 0) {
+            // Skip
+        }
+
+        long total = 0;
+        int size;
+        do {
+            size = Integer.parseInt(reader.readLine(), 16);
+            reader.skip(size);
+            total += size;
+            // CRLF after chunk data or trailer
+            reader.readLine();
+        } while (size > 0);
+        Assert.assertEquals(CHUNK_SIZE * CHUNKS, total);
+        return total;
+    }
+
+
+    /*
+     * Reads in bulk so the client keeps up with the server.
+     */
+    private static class ResponseReader {
+
+        private final InputStream is;
+        private final byte[] buf = new byte[256 * 1024];
+        private int pos = 0;
+        private int limit = 0;
+
+        ResponseReader(InputStream is) {
+            this.is = is;
+        }
+
+        private void fill() throws IOException {
+            limit = is.read(buf);
+            if (limit < 0) {
+                throw new IOException("EOF");
+            }
+            pos = 0;
+        }
+
+        String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos == limit) {
+                    fill();
+                }
+                byte b = buf[pos++];
+                if (b == '\n') {
+                    return sb.toString();
+                }
+                if (b != '\r') {
+                    sb.append((char) b);
+                }
+            }
+        }
+
+        void skip(int len) throws IOException {
+            while (len > 0) {
+                if (pos == limit) {
+                    fill();
+                }
+                int thisTime = Math.min(len, limit - pos);
+                pos += thisTime;
+                len -= thisTime;
+            }
+        }
+    }
+
+
+    /*
+     * Linux only. Returns the number of write system calls made by this
+     * process or -1 if it could not be determined.
+     */
+    private static long getWriteSyscalls() {
+        Path io = Paths.get("/proc/self/io");
+        if (!Files.isReadable(io)) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(io, StandardCharsets.US_ASCII);
+            for (String line : lines) {
+                if (line.startsWith("syscw:")) {
+                    return Long.parseLong(line.substring(6).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Ignore
+        }
+        return -1;
+    }
+
+
+    private static class ChunkServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws IOException {
+            resp.setContentType("application/octet-stream");
+            // Each write is sent as a single chunk
+            resp.setBufferSize(CHUNK_SIZE);
+            OutputStream os = resp.getOutputStream();
+            for (int i = 0; i < CHUNKS; i++) {
+                os.write(chunk);
+            }
+        }
+    }
+}
@@ -16,13 +16,21 @@
  */
 package org.apache.coyote.http11.filters;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.GzipContentEncoder;
+import org.apache.coyote.Request;
 import org.apache.coyote.Response;
 
 /**
@@ -81,4 +89,199 @@ public class TestGzipOutputFilter {
         // most of the data should have been flushed out
         Assert.assertTrue(dataFound.length >= (dataExpected.length - 20));
     }
+
+
+    @Test
+    public void testCompressionCache() throws Exception {
+        CompressionCache cache = new CompressionCache(1024 * 1024);
+        byte[] body = body('a', 10000);
+
+        byte[] first = write(cache, "W/\"1\"", body);
+        Assert.assertArrayEquals(body, decompress(first));
+        Assert.assertEquals(1, cache.getEntryCount());
+        Assert.assertEquals(0, cache.getHitCount());
+
+        byte[] second = write(cache, "W/\"1\"", body);
+        Assert.assertArrayEquals(first, second);
+        Assert.assertEquals(1, cache.getHitCount());
+
+        // Different ETag
+        Assert.assertArrayEquals(body, decompress(write(cache, "W/\"2\"", body)));
+        Assert.assertEquals(2, cache.getEntryCount());
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+
+    @Test
+    public void testCompressionCacheDifferentBody() throws Exception {
+        CompressionCache cache = new CompressionCache(1024 * 1024);
+        write(cache, "W/\"1\"", body('a', 10000));
+
+        // Same length, different content
+        byte[] body = body('b', 10000);
+        Assert.assertArrayEquals(body, decompress(write(cache, "W/\"1\"", body)));
+        // Shorter
+        body = body('c', 5000);
+        Assert.assertArrayEquals(body, decompress(write(cache, "W/\"1\"", body)));
+        // Longer
+        body = body('d', 20000);
+        Assert.assertArrayEquals(body, decompress(write(cache, "W/\"1\"", body)));
+        // The cache holds the most recent body
+        Assert.assertArrayEquals(body, decompress(write(cache, "W/\"1\"", body)));
+        Assert.assertEquals(4, cache.getHitCount());
+        Assert.assertEquals(1, cache.getEntryCount());
+    }
+
+
+    @Test
+    public void testCompressionCacheSameCrc() throws Exception {
+        CompressionCache cache = new CompressionCache(1024 * 1024);
+        byte[] original = body('a', 10000);
+        write(cache, "W/\"1\"", original);
+
+        // Same length and CRC-32, different content
+        byte[] body = body('b', 10000);
+        forgeCrc(body, crc(original));
+        Assert.assertEquals(crc(original), crc(body));
+        Assert.assertArrayEquals(body, decompress(write(cache, "W/\"1\"", body)));
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+
+
+    @Test
+    public void testRecycleIncompleteResponse() throws Exception {
+        Response res = new Response();
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+
+        GzipOutputFilter gf = new GzipOutputFilter();
+        GzipContentEncoder encoder = new GzipContentEncoder();
+        gf.setContentEncoder(encoder, 6);
+        tob.addFilter(gf);
+        tob.addActiveFilter(gf);
+
+        byte[] body = body('a', 10000);
+        tob.doWrite(ByteBuffer.wrap(body));
+        tob.flush();
+        int written = tob.toByteArray().length;
+
+        // The response is abandoned. Nothing more may be written.
+        tob.nextRequest();
+        Assert.assertEquals(written, tob.toByteArray().length);
+
+        // The filter, and the Deflater returned to the pool, can be re-used
+        gf.setContentEncoder(encoder, 6);
+        tob.addActiveFilter(gf);
+        tob.doWrite(ByteBuffer.wrap(body));
+        tob.end();
+        byte[] all = tob.toByteArray();
+        Assert.assertArrayEquals(body, decompress(Arrays.copyOfRange(all, written, all.length)));
+    }
+
+
+    @Test
+    public void testCompressionCacheNoETag() throws Exception {
+        CompressionCache cache = new CompressionCache(1024 * 1024);
+        byte[] body = body('a', 10000);
+        Assert.assertArrayEquals(body, decompress(write(cache, null, body)));
+        Assert.assertArrayEquals(body, decompress(write(cache, null, body)));
+        Assert.assertEquals(0, cache.getEntryCount());
+    }
+
+
+    private static byte[] write(CompressionCache cache, String eTag, byte[] body) throws Exception {
+        Request req = new Request();
+        Response res = new Response();
+        req.setResponse(res);
+        req.method().setString("GET");
+        req.serverName().setString("localhost");
+        req.requestURI().setString("/test");
+        res.setStatus(200);
+        if (eTag != null) {
+            res.getMimeHeaders().addValue("ETag").setString(eTag);
+        }
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+
+        GzipOutputFilter gf = new GzipOutputFilter();
+        gf.setContentEncoder(new GzipContentEncoder(), 6);
+        gf.setCompressionCache(cache);
+        tob.addFilter(gf);
+        tob.addActiveFilter(gf);
+
+        // Write in several parts with a flush
+        int half = body.length / 2;
+        tob.doWrite(ByteBuffer.wrap(body, 0, half));
+        tob.flush();
+        tob.doWrite(ByteBuffer.wrap(body, half, body.length - half));
+        tob.end();
+        return tob.toByteArray();
+    }
+
+
+    private static byte[] body(char c, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((i % 64 == 0) ? '\n' : c);
+        }
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+
+    /*
+     * Changes the last four bytes so the CRC-32 of the data is the given
+     * value. The CRC-32 is affine in the bits of the data so the bits to flip
+     * are found by solving a system of linear equations over GF(2).
+     */
+    private static void forgeCrc(byte[] data, long target) {
+        int offset = data.length - 4;
+        long base = crc(data);
+        long[] rows = new long[32];
+        for (int bit = 0; bit < 32; bit++) {
+            data[offset + bit / 8] ^= (byte) (1 << (bit % 8));
+            // Low 32 bits: effect on the CRC, high 32 bits: the flipped bit
+            rows[bit] = (crc(data) ^ base) | (1L << (32 + bit));
+            data[offset + bit / 8] ^= (byte) (1 << (bit % 8));
+        }
+        // Gaussian elimination
+        for (int col = 0; col < 32; col++) {
+            int pivot = col;
+            while ((rows[pivot] & (1L << col)) == 0) {
+                pivot++;
+            }
+            long tmp = rows[pivot];
+            rows[pivot] = rows[col];
+            rows[col] = tmp;
+            for (int row = 0; row < 32; row++) {
+                if (row != col && (rows[row] & (1L << col)) != 0) {
+                    rows[row] ^= rows[col];
+                }
+            }
+        }
+        long diff = base ^ target;
+        for (int col = 0; col < 32; col++) {
+            if ((diff & (1L << col)) != 0) {
+                long flips = rows[col] >>> 32;
+                for (int bit = 0; bit < 32; bit++) {
+                    if ((flips & (1L << bit)) != 0) {
+                        data[offset + bit / 8] ^= (byte) (1 << (bit % 8));
+                    }
+                }
+            }
+        }
+    }
+
+
+    private static byte[] decompress(byte[] compressed) throws Exception {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        }
+    }
 }
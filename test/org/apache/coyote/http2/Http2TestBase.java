@@ -55,6 +55,7 @@ import org.apache.tomcat.util.codec.binary.Base64;
 import org.apache.tomcat.util.compat.JrePlatform;
 import org.apache.tomcat.util.http.FastHttpDateFormat;
 import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.Priority;
 import org.apache.tomcat.util.net.TesterSupport;
 
 /**
@@ -885,6 +886,27 @@ public abstract class Http2TestBase extends TomcatBaseTest {
     }
 
 
+    void sendPriorityUpdate(int streamId, int urgency, boolean incremental) throws IOException {
+        String fieldValue = "u=" + urgency + (incremental ? ", i" : "");
+        byte[] fieldValueBytes = fieldValue.getBytes(StandardCharsets.US_ASCII);
+        byte[] priorityUpdateFrame = new byte[13 + fieldValueBytes.length];
+
+        // length
+        ByteUtil.setThreeBytes(priorityUpdateFrame, 0, 4 + fieldValueBytes.length);
+        // type
+        priorityUpdateFrame[3] = FrameType.PRIORITY_UPDATE.getIdByte();
+        // No flags
+        // Stream ID is zero
+
+        // Payload
+        ByteUtil.set31Bits(priorityUpdateFrame, 9, streamId);
+        System.arraycopy(fieldValueBytes, 0, priorityUpdateFrame, 13, fieldValueBytes.length);
+
+        os.write(priorityUpdateFrame);
+        os.flush();
+    }
+
+
     void sendSettings(int streamId, boolean ack, SettingValue... settings) throws IOException {
         // length
         int settingsCount;
@@ -1068,6 +1090,13 @@ public abstract class Http2TestBase extends TomcatBaseTest {
         }
 
 
+        @Override
+        public void priorityUpdate(int prioritizedStreamID, Priority p) {
+            trace.append(prioritizedStreamID + "-PriorityUpdate-[" + p.getUrgency() + "]-[" +
+                    p.getIncremental() + "]\n");
+        }
+
+
         @Override
         public void emitHeader(String name, String value) {
             if ("date".equals(name)) {
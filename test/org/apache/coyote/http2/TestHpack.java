@@ -17,6 +17,7 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.util.Locale;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -70,6 +71,102 @@ public class TestHpack {
         Assert.assertEquals("value2", headers2.getHeader("header2"));
     }
 
+    @Test
+    public void testEncodeWithBlockCache() throws Exception {
+        HpackEncoder encoder = new HpackEncoder(4);
+        HpackDecoder decoder = new HpackDecoder();
+        MimeHeaders decoded = new MimeHeaders();
+        decoder.setHeaderEmitter(new HeadersListener(decoded));
+        ByteBuffer output = ByteBuffer.allocate(512);
+
+        int[] sizes = new int[3];
+        for (int i = 0; i < 3; i++) {
+            MimeHeaders headers = createResponseHeaders("text/html", Integer.toString(100 + i));
+            output.clear();
+            Assert.assertEquals(HpackEncoder.State.COMPLETE, encoder.encode(headers, output));
+            output.flip();
+            sizes[i] = output.remaining();
+            decoded.recycle();
+            // New header block
+            decoder.setHeaderEmitter(new HeadersListener(decoded));
+            decoder.decode(output);
+            assertHeadersEqual(headers, decoded);
+        }
+        // First response populates the table, the others re-use it
+        Assert.assertTrue(sizes[1] < sizes[0]);
+        Assert.assertEquals(sizes[1], sizes[2]);
+
+        // A new value changes the table so any cached blocks must not be used
+        for (String contentType : new String[] { "text/plain", "text/html", "text/plain" }) {
+            MimeHeaders headers = createResponseHeaders(contentType, "100");
+            output.clear();
+            encoder.encode(headers, output);
+            output.flip();
+            decoded.recycle();
+            // New header block
+            decoder.setHeaderEmitter(new HeadersListener(decoded));
+            decoder.decode(output);
+            assertHeadersEqual(headers, decoded);
+        }
+
+        // As must a change of table size
+        encoder.setMaxTableSize(64);
+        MimeHeaders headers = createResponseHeaders("text/html", "100");
+        output.clear();
+        encoder.encode(headers, output);
+        output.flip();
+        decoded.recycle();
+        // New header block
+        decoder.setHeaderEmitter(new HeadersListener(decoded));
+        decoder.decode(output);
+        assertHeadersEqual(headers, decoded);
+    }
+
+    @Test
+    public void testEncodeWithBlockCacheUnderflow() throws Exception {
+        HpackEncoder encoder = new HpackEncoder(4);
+        HpackDecoder decoder = new HpackDecoder();
+        MimeHeaders decoded = new MimeHeaders();
+        decoder.setHeaderEmitter(new HeadersListener(decoded));
+        MimeHeaders headers = createResponseHeaders("text/html", "100");
+
+        // Too small for the whole block so the headers are encoded in parts
+        ByteBuffer output = ByteBuffer.allocate(64);
+        ByteBuffer all = ByteBuffer.allocate(512);
+        HpackEncoder.State state;
+        do {
+            output.clear();
+            state = encoder.encode(headers, output);
+            output.flip();
+            all.put(output);
+        } while (state == HpackEncoder.State.UNDERFLOW);
+        all.flip();
+        decoder.decode(all);
+        assertHeadersEqual(headers, decoded);
+    }
+
+    private static MimeHeaders createResponseHeaders(String contentType, String contentLength) {
+        MimeHeaders headers = new MimeHeaders();
+        headers.setValue(":status").setString("200");
+        headers.setValue("Content-Type").setString(contentType);
+        headers.setValue("Content-Length").setString(contentLength);
+        headers.setValue("Cache-Control").setString("no-cache");
+        headers.setValue("X-Content-Type-Options").setString("nosniff");
+        headers.setValue("Date").setString("Fri, 16 Oct 2026 12:00:00 GMT");
+        headers.setValue("X-Frame-Options").setString("SAMEORIGIN");
+        return headers;
+    }
+
+    private static void assertHeadersEqual(MimeHeaders expected, MimeHeaders actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            // The order of the fields must be retained
+            String name = expected.getName(i).toString().toLowerCase(Locale.ENGLISH);
+            Assert.assertEquals(name, actual.getName(i).toString());
+            Assert.assertEquals(name, expected.getValue(i).toString(), actual.getValue(i).toString());
+        }
+    }
+
     private static class HeadersListener implements HpackDecoder.HeaderEmitter {
         private final MimeHeaders headers;
         public HeadersListener(MimeHeaders headers) {
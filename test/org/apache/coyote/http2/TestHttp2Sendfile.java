@@ -0,0 +1,120 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+
+/*
+ * Checks that static resources served with sendfile are written correctly when
+ * the file is mapped in segments and several DATA frames are written at once.
+ */
+@RunWith(Parameterized.class)
+public class TestHttp2Sendfile extends Http2TestBase {
+
+    // Deliberately not a multiple of the frame or segment sizes
+    private static final int FILE_SIZE = 1000003;
+
+    @Parameterized.Parameters(name = "{index}: maxMappedSize[{0}], maxWriteSize[{1}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        parameterSets.add(new Object[] {
+                Integer.valueOf(Http2Protocol.DEFAULT_SENDFILE_MAX_MAPPED_SIZE),
+                Integer.valueOf(Http2Protocol.DEFAULT_SENDFILE_MAX_WRITE_SIZE) });
+        parameterSets.add(new Object[] { Integer.valueOf(100000), Integer.valueOf(40000) });
+        parameterSets.add(new Object[] { Integer.valueOf(30000), Integer.valueOf(1000000) });
+        parameterSets.add(new Object[] { Integer.valueOf(1000000), Integer.valueOf(100) });
+        return parameterSets;
+    }
+
+
+    private final int maxMappedSize;
+    private final int maxWriteSize;
+
+
+    public TestHttp2Sendfile(int maxMappedSize, int maxWriteSize) {
+        this.maxMappedSize = maxMappedSize;
+        this.maxWriteSize = maxWriteSize;
+    }
+
+
+    @Test
+    public void testLargeFile() throws Exception {
+        File docBase = new File(getTemporaryDirectory(), "h2sendfile");
+        Assert.assertTrue(docBase.mkdirs() || docBase.isDirectory());
+        addDeleteOnTearDown(docBase);
+        try (OutputStream os = new FileOutputStream(new File(docBase, "large.bin"))) {
+            byte[] data = new byte[FILE_SIZE];
+            for (int i = 0; i < FILE_SIZE; i++) {
+                data[i] = (byte) ('a' + i % 26);
+            }
+            os.write(data);
+        }
+
+        enableHttp2();
+        http2Protocol.setSendfileMaxMappedSize(maxMappedSize);
+        http2Protocol.setSendfileMaxWriteSize(maxWriteSize);
+
+        Tomcat tomcat = getTomcatInstance();
+
+        Context ctxt = tomcat.addContext("", docBase.getAbsolutePath());
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "default", new DefaultServlet());
+        ctxt.addServletMappingDecoded("/", "default");
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        // Reset connection window size after initial response
+        sendWindowUpdate(0, SimpleServlet.CONTENT_LENGTH);
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        buildGetRequest(frameHeader, headersPayload, null, 3, "/large.bin");
+        writeFrame(frameHeader, headersPayload);
+
+        // Large enough for the whole file
+        sendWindowUpdate(0, FILE_SIZE);
+        sendWindowUpdate(3, FILE_SIZE);
+
+        while (!output.getTrace().endsWith("3-EndOfStream\n")) {
+            parser.readFrame(true);
+        }
+
+        Assert.assertTrue(output.getTrace(),
+                output.getTrace().contains("3-Header-[content-length]-[" + FILE_SIZE + "]"));
+        Assert.assertEquals(FILE_SIZE, output.getBytesRead());
+    }
+}
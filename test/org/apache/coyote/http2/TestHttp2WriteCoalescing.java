@@ -0,0 +1,238 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+
+@RunWith(Parameterized.class)
+public class TestHttp2WriteCoalescing extends Http2TestBase {
+
+    private static final int STREAMS = 20;
+
+    @Parameterized.Parameters(name = "{index}: writeCoalescing[{0}], useAsyncIO[{1}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        for (Boolean writeCoalescing : booleans) {
+            for (Boolean useAsyncIO : booleans) {
+                parameterSets.add(new Object[] { writeCoalescing, useAsyncIO });
+            }
+        }
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public boolean writeCoalescing;
+
+    @Parameter(1)
+    public boolean useAsyncIO;
+
+    private final HeadersServlet headersServlet = new HeadersServlet();
+
+
+    @Test
+    public void testConcurrentStreams() throws Exception {
+        enableHttp2();
+        configureWriteCoalescing();
+        configureAndStartWebApplication();
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        Http2WriteStatistics writeStatistics = http2Protocol.getWriteStatistics();
+        // HEADERS and DATA for the initial response
+        Assert.assertTrue(writeStatistics.getFramesWritten() >= 2);
+        // With write coalescing and useAsyncIO="false" the network write is
+        // counted when the Poller processes the write event which may be
+        // after the client has read the response
+        int count = 0;
+        while (writeStatistics.getSocketWrites() == 0 && count < 50) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertTrue(writeStatistics.getSocketWrites() > 0);
+        Assert.assertTrue(writeStatistics.getBytesWritten() > SimpleServlet.CONTENT_LENGTH);
+        // h2c
+        Assert.assertEquals(0, writeStatistics.getTlsRecords());
+        writeStatistics.reset();
+
+        // Make sure the connection window is not the limiting factor
+        sendWindowUpdate(0, STREAMS * SimpleServlet.CONTENT_LENGTH);
+        for (int i = 0; i < STREAMS; i++) {
+            sendSimpleGetRequest(3 + i * 2);
+        }
+
+        int complete = 0;
+        while (complete < STREAMS) {
+            parser.readFrame(true);
+            if (output.getTrace().endsWith("-EndOfStream\n")) {
+                complete++;
+            }
+        }
+        Assert.assertEquals(STREAMS * SimpleServlet.CONTENT_LENGTH, output.getBytesRead());
+
+        // At least one HEADERS and one DATA frame per stream
+        Assert.assertTrue(writeStatistics.getFramesWritten() >= STREAMS * 2);
+        Assert.assertTrue(writeStatistics.getFramesWritten() >= STREAMS * 2);
+        if (!writeCoalescing) {
+            Assert.assertEquals(0, writeStatistics.getCoalescedWrites());
+        }
+    }
+
+
+    /*
+     * The HEADERS frame must reach the client without waiting for anything
+     * else to be written to the connection.
+     */
+    @Test
+    public void testHeadersOnly() throws Exception {
+        startWithServlets();
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        buildGetRequest(frameHeader, headersPayload, null, 3, "/headers");
+        writeFrame(frameHeader, headersPayload);
+
+        output.clearTrace();
+        do {
+            parser.readFrame(true);
+        } while (!output.getTrace().endsWith("-HeadersEnd\n"));
+        Assert.assertTrue(output.getTrace(), output.getTrace().startsWith("3-HeadersStart\n3-Header-[:status]-[204]\n"));
+        headersServlet.latch.countDown();
+
+        readUntilEndOfStream();
+    }
+
+
+    /*
+     * The trailer fields are written with a HEADERS frame after the last DATA
+     * frame.
+     */
+    @Test
+    public void testTrailers() throws Exception {
+        startWithServlets();
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        buildGetRequest(frameHeader, headersPayload, null, 3, "/trailer");
+        writeFrame(frameHeader, headersPayload);
+
+        readUntilEndOfStream();
+        Assert.assertTrue(output.getTrace(), output.getTrace().contains("3-Body-" + TrailerServlet.BODY.length()));
+        Assert.assertTrue(output.getTrace(), output.getTrace().endsWith("3-HeadersStart\n" +
+                "3-Header-[" + TRAILER_HEADER_NAME + "]-[" + TRAILER_HEADER_VALUE + "]\n" +
+                "3-HeadersEnd\n3-EndOfStream\n"));
+    }
+
+
+    private void startWithServlets() throws Exception {
+        enableHttp2();
+        configureWriteCoalescing();
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctxt = tomcat.addContext("", null);
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "headers", headersServlet);
+        ctxt.addServletMappingDecoded("/headers", "headers");
+        Tomcat.addServlet(ctxt, "trailer", new TrailerServlet());
+        ctxt.addServletMappingDecoded("/trailer", "trailer");
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+    }
+
+
+    private void configureWriteCoalescing() {
+        http2Protocol.setWriteCoalescing(writeCoalescing);
+        Assert.assertTrue(getTomcatInstance().getConnector().setProperty(
+                "useAsyncIO", Boolean.toString(useAsyncIO)));
+    }
+
+
+    private void readUntilEndOfStream() throws Exception {
+        output.clearTrace();
+        do {
+            parser.readFrame(true);
+        } while (!output.getTrace().endsWith("-EndOfStream\n"));
+    }
+
+
+    /*
+     * Writes the response headers and then blocks until the client has
+     * received them.
+     */
+    private static class HeadersServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            resp.flushBuffer();
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+        }
+    }
+
+
+    private static class TrailerServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String BODY = "Body before trailers";
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setTrailerFields(() -> Collections.singletonMap(TRAILER_HEADER_NAME, TRAILER_HEADER_VALUE));
+            resp.getWriter().print(BODY);
+        }
+    }
+}
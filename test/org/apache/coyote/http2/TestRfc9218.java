@@ -0,0 +1,99 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRfc9218 extends Http2TestBase {
+
+    @Test
+    public void testPriorityHeader() throws Exception {
+        doTestPriority(false);
+    }
+
+
+    @Test
+    public void testPriorityUpdateFrame() throws Exception {
+        doTestPriority(true);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidScheduler() {
+        new Http2Protocol().setStreamScheduler("fifo");
+    }
+
+
+    private void doTestPriority(boolean useFrame) throws Exception {
+        enableHttp2();
+        http2Protocol.setStreamScheduler(Http2Protocol.STREAM_SCHEDULER_RFC9218);
+        configureAndStartWebApplication();
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        // The initial response used some of the connection window
+        int connectionWindow = ConnectionSettingsBase.DEFAULT_INITIAL_WINDOW_SIZE - SimpleServlet.CONTENT_LENGTH;
+
+        // Stream 3 (default urgency) uses all of the connection window
+        sendLargeGetRequest(3);
+        parser.readFrame(true);
+        while (output.getBytesRead() < connectionWindow) {
+            parser.readFrame(true);
+        }
+        Assert.assertEquals(connectionWindow, output.getBytesRead());
+
+        // Stream 5 is then blocked behind stream 3
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        List<Header> headers = new ArrayList<>();
+        headers.add(new Header(":method", "GET"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", "/large"));
+        headers.add(new Header(":authority", "localhost:" + getPort()));
+        if (!useFrame) {
+            // Higher priority than stream 3
+            headers.add(new Header("priority", "u=1"));
+        }
+        buildGetRequest(frameHeader, headersPayload, null, headers, 5);
+        writeFrame(frameHeader, headersPayload);
+        parser.readFrame(true);
+        Assert.assertTrue(output.getTrace(), output.getTrace().contains("5-HeadersStart"));
+
+        if (useFrame) {
+            // Lower priority than stream 5
+            sendPriorityUpdate(3, 6, false);
+        }
+
+        // Give stream 5 time to join the backlog
+        Thread.sleep(500);
+
+        // Each small increment should go entirely to stream 5
+        output.clearTrace();
+        for (int i = 0; i < 4; i++) {
+            sendWindowUpdate(0, 1024);
+            parser.readFrame(true);
+        }
+        Assert.assertEquals("5-Body-1024\n5-Body-1024\n5-Body-1024\n5-Body-1024\n", output.getTrace());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+
+/*
+ * Measures the latency of small, high priority responses on a connection that
+ * is also carrying bulk downloads. The client only ever grants the server a
+ * small connection flow control window (as a client on a slow network would)
+ * so the server has to decide which stream to allocate it to.
+ */
+@RunWith(Parameterized.class)
+public class TesterHttp2StreamSchedulerPerformance extends Http2TestBase {
+
+    private static final int BULK_STREAMS = 2;
+    private static final int BULK_SIZE = 32 * 1024 * 1024;
+    private static final int SMALL_REQUESTS = 200;
+    private static final int CONNECTION_WINDOW_INCREMENT = 16 * 1024;
+
+    @Parameterized.Parameters(name = "{index}: streamScheduler[{0}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        parameterSets.add(new Object[] { Http2Protocol.STREAM_SCHEDULER_RFC7540 });
+        parameterSets.add(new Object[] { Http2Protocol.STREAM_SCHEDULER_RFC9218 });
+        return parameterSets;
+    }
+
+
+    private final String streamScheduler;
+    private int nextStreamId = 3;
+    private long unacknowledged = 0;
+
+
+    public TesterHttp2StreamSchedulerPerformance(String streamScheduler) {
+        this.streamScheduler = streamScheduler;
+    }
+
+
+    @Test
+    public void testSmallStreamLatency() throws Exception {
+        enableHttp2(200);
+        http2Protocol.setStreamScheduler(streamScheduler);
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctxt = tomcat.addContext("", null);
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "bulk", new BulkServlet());
+        ctxt.addServletMappingDecoded("/bulk", "bulk");
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+        output.clearTrace();
+        // Restore the connection window used by the initial response
+        sendWindowUpdate(0, SimpleServlet.CONTENT_LENGTH);
+
+        Set<String> bulkStreams = new HashSet<>();
+        for (int i = 0; i < BULK_STREAMS; i++) {
+            bulkStreams.add(startBulkStream());
+        }
+
+        long[] latencies = new long[SMALL_REQUESTS];
+        for (int i = 0; i < SMALL_REQUESTS; i++) {
+            int streamId = nextStreamId;
+            nextStreamId += 2;
+            String endOfStream = "\n" + streamId + "-EndOfStream\n";
+
+            long start = System.nanoTime();
+            sendRequest(streamId, "/simple", "u=0");
+            boolean complete = false;
+            while (!complete) {
+                parser.readFrame(true);
+                String trace = output.getTrace();
+                complete = ("\n" + trace).contains(endOfStream);
+                // Replace any bulk streams that have completed
+                for (String bulkStream : bulkStreams.toArray(new String[0])) {
+                    if (("\n" + trace).contains("\n" + bulkStream + "-EndOfStream\n")) {
+                        bulkStreams.remove(bulkStream);
+                        bulkStreams.add(startBulkStream());
+                    }
+                }
+                replenishConnectionWindow();
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(latencies);
+        System.out.println("Stream scheduler [" + streamScheduler + "], small response latency: p50 [" +
+                latencies[SMALL_REQUESTS / 2] / 1000 + "us], p90 [" +
+                latencies[SMALL_REQUESTS * 9 / 10] / 1000 + "us], p99 [" +
+                latencies[SMALL_REQUESTS * 99 / 100] / 1000 + "us], max [" +
+                latencies[SMALL_REQUESTS - 1] / 1000 + "us]");
+    }
+
+
+    private String startBulkStream() throws IOException {
+        int streamId = nextStreamId;
+        nextStreamId += 2;
+        sendRequest(streamId, "/bulk", null);
+        // The stream window is never the limiting factor
+        sendWindowUpdate(streamId, BULK_SIZE);
+        return Integer.toString(streamId);
+    }
+
+
+    private void sendRequest(int streamId, String path, String priority) throws IOException {
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+        List<Header> headers = new ArrayList<>();
+        headers.add(new Header(":method", "GET"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", path));
+        headers.add(new Header(":authority", "localhost:" + getPort()));
+        if (priority != null) {
+            headers.add(new Header("priority", priority));
+        }
+        buildGetRequest(frameHeader, headersPayload, null, headers, streamId);
+        writeFrame(frameHeader, headersPayload);
+    }
+
+
+    private void replenishConnectionWindow() throws IOException {
+        unacknowledged += output.getBytesRead();
+        output.clearTrace();
+        if (unacknowledged >= CONNECTION_WINDOW_INCREMENT) {
+            sendWindowUpdate(0, (int) unacknowledged);
+            unacknowledged = 0;
+        }
+    }
+
+
+    private static class BulkServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("application/octet-stream");
+            resp.setContentLengthLong(BULK_SIZE);
+            byte[] data = new byte[8192];
+            OutputStream os = resp.getOutputStream();
+            for (int written = 0; written < BULK_SIZE; written += data.length) {
+                os.write(data);
+            }
+        }
+    }
+}
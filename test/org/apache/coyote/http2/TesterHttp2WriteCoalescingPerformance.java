@@ -0,0 +1,132 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+
+/*
+ * Many concurrent streams on one connection, each writing its response as a
+ * series of small, flushed chunks.
+ */
+@RunWith(Parameterized.class)
+public class TesterHttp2WriteCoalescingPerformance extends Http2TestBase {
+
+    private static final int ROUNDS = 10;
+    private static final int STREAMS = 50;
+    private static final int CHUNKS = 32;
+    private static final int CHUNK_SIZE = 1024;
+
+    @Parameterized.Parameters(name = "{index}: writeCoalescing[{0}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        parameterSets.add(new Object[] { Boolean.FALSE });
+        parameterSets.add(new Object[] { Boolean.TRUE });
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public boolean writeCoalescing;
+
+
+    @Test
+    public void testSmallChunks() throws Exception {
+        enableHttp2();
+        http2Protocol.setWriteCoalescing(writeCoalescing);
+        http2Protocol.setMaxConcurrentStreamExecution(STREAMS);
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctxt = tomcat.addContext("", null);
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "chunked", new ChunkedServlet());
+        ctxt.addServletMappingDecoded("/chunked", "chunked");
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        int streamId = 3;
+        long start = 0;
+        // One extra round to warm up
+        for (int round = 0; round <= ROUNDS; round++) {
+            if (round == 1) {
+                http2Protocol.getWriteStatistics().reset();
+                start = System.nanoTime();
+            }
+            sendWindowUpdate(0, STREAMS * CHUNKS * CHUNK_SIZE);
+            for (int i = 0; i < STREAMS; i++) {
+                byte[] frameHeader = new byte[9];
+                ByteBuffer headersPayload = ByteBuffer.allocate(128);
+                buildGetRequest(frameHeader, headersPayload, null, streamId, "/chunked");
+                writeFrame(frameHeader, headersPayload);
+                streamId += 2;
+            }
+            int complete = 0;
+            while (complete < STREAMS) {
+                parser.readFrame(true);
+                if (output.getTrace().endsWith("-EndOfStream\n")) {
+                    complete++;
+                }
+                output.clearTrace();
+            }
+        }
+        long duration = System.nanoTime() - start;
+
+        Http2WriteStatistics writeStatistics = http2Protocol.getWriteStatistics();
+        System.out.println("writeCoalescing [" + writeCoalescing + "], duration [" + duration / 1000000 +
+                "ms], frames [" + writeStatistics.getFramesWritten() + "], socket writes [" +
+                writeStatistics.getSocketWrites() + "], coalesced [" + writeStatistics.getCoalescedWrites() +
+                "], frames per write [" + writeStatistics.getFramesPerSocketWrite() + "]");
+    }
+
+
+    private static class ChunkedServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("application/octet-stream");
+            resp.setContentLength(CHUNKS * CHUNK_SIZE);
+            byte[] data = new byte[CHUNK_SIZE];
+            OutputStream os = resp.getOutputStream();
+            for (int i = 0; i < CHUNKS; i++) {
+                os.write(data);
+                os.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.buf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAsn1Writer {
+
+    @Test
+    public void testLengths() {
+        int[] lengths = { 0, 1, 127, 128, 255, 256, 300, 65535, 65536, 70000 };
+        for (int length : lengths) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) i;
+            }
+            byte[] encoded = Asn1Writer.writeOctetString(data);
+            Asn1Parser parser = new Asn1Parser(encoded);
+            parser.parseTag(0x04);
+            // Checks that the length covers the remainder of the input
+            parser.parseFullLength();
+            byte[] parsed = new byte[length];
+            parser.parseBytes(parsed);
+            Assert.assertArrayEquals("Length [" + length + "]", data, parsed);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.buf;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStringCache {
+
+    private final StringCache stringCache = new StringCache();
+
+    @Before
+    public void setUp() {
+        stringCache.setCacheSize(16);
+        stringCache.setByteEnabled(true);
+        stringCache.setCharEnabled(true);
+        stringCache.reset();
+    }
+
+
+    @After
+    public void tearDown() {
+        stringCache.setByteEnabled(false);
+        stringCache.setCharEnabled(false);
+        stringCache.setCacheSize(200);
+    }
+
+
+    @Test
+    public void testByteHit() {
+        ByteChunk bc = byteChunk("xx/index.html", 2);
+        String first = bc.toString();
+        String second = byteChunk("/index.htmlyyy", 0, 11).toString();
+
+        Assert.assertEquals("/index.html", first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(2, stringCache.getAccessCountLong());
+        Assert.assertEquals(1, stringCache.getHitCountLong());
+        Assert.assertEquals(0.5, stringCache.getHitRate(), 0.0001);
+        Assert.assertEquals(1, stringCache.getByteEntryCount());
+    }
+
+
+    @Test
+    public void testByteCharset() {
+        byte[] bytes = "caf\u00c3\u00a9".getBytes(StandardCharsets.ISO_8859_1);
+        ByteChunk bc = new ByteChunk();
+        bc.setBytes(bytes, 0, bytes.length);
+        bc.setCharset(StandardCharsets.ISO_8859_1);
+        Assert.assertEquals("caf\u00c3\u00a9", bc.toString());
+
+        bc = new ByteChunk();
+        bc.setBytes(bytes, 0, bytes.length);
+        bc.setCharset(StandardCharsets.UTF_8);
+        Assert.assertEquals("caf\u00e9", bc.toString());
+        Assert.assertEquals(0, stringCache.getHitCountLong());
+    }
+
+
+    @Test
+    public void testCharHit() {
+        CharChunk cc = new CharChunk();
+        cc.setChars("a=b&name=value".toCharArray(), 4, 4);
+        String first = cc.toString();
+        cc.setChars("name".toCharArray(), 0, 4);
+        String second = cc.toString();
+
+        Assert.assertEquals("name", first);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, stringCache.getHitCountLong());
+        Assert.assertEquals(1, stringCache.getCharEntryCount());
+        Assert.assertEquals(0, stringCache.getByteEntryCount());
+    }
+
+
+    @Test
+    public void testMaxStringSize() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 128; i++) {
+            sb.append('a');
+        }
+        String value = sb.toString();
+        Assert.assertEquals(value, byteChunk(value, 0).toString());
+        Assert.assertEquals(value, byteChunk(value, 0).toString());
+        Assert.assertEquals(0, stringCache.getAccessCountLong());
+        Assert.assertEquals(0, stringCache.getByteEntryCount());
+    }
+
+
+    @Test
+    public void testFrequentValuesRetained() {
+        // No more than the size of a set so they can't compete with each other
+        String[] frequent = new String[4];
+        for (int i = 0; i < frequent.length; i++) {
+            frequent[i] = "/frequent/" + i;
+        }
+        for (int round = 0; round < 10; round++) {
+            for (String value : frequent) {
+                byteChunk(value, 0).toString();
+            }
+        }
+
+        // A stream of values that are only ever used once must not displace
+        // the frequently used values
+        for (int i = 0; i < 10000; i++) {
+            byteChunk("/once/" + i, 0).toString();
+        }
+
+        long hits = stringCache.getHitCountLong();
+        for (String value : frequent) {
+            byteChunk(value, 0).toString();
+        }
+        Assert.assertEquals(hits + frequent.length, stringCache.getHitCountLong());
+        Assert.assertTrue(stringCache.getByteEntryCount() <= 16);
+    }
+
+
+    @Test
+    public void testNewFrequentValueAdmitted() {
+        for (int i = 0; i < 1000; i++) {
+            byteChunk("/once/" + i, 0).toString();
+        }
+        long evictions = stringCache.getEvictionCount();
+        for (int i = 0; i < 5; i++) {
+            byteChunk("/popular", 0).toString();
+        }
+        Assert.assertTrue(stringCache.getHitCountLong() > 0);
+        Assert.assertTrue(stringCache.getEvictionCount() > evictions);
+    }
+
+
+    @Test
+    public void testDisabled() {
+        stringCache.setByteEnabled(false);
+        String first = byteChunk("/index.html", 0).toString();
+        String second = byteChunk("/index.html", 0).toString();
+        Assert.assertEquals(first, second);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(0, stringCache.getAccessCountLong());
+    }
+
+
+    private static ByteChunk byteChunk(String s, int start) {
+        return byteChunk(s, start, s.length() - start);
+    }
+
+
+    private static ByteChunk byteChunk(String s, int start, int length) {
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+        ByteChunk bc = new ByteChunk();
+        bc.setBytes(bytes, start, length);
+        return bc;
+    }
+}
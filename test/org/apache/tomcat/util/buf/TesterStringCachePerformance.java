@@ -0,0 +1,100 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.buf;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Compares converting URIs, header values and parameter names to Strings with
+ * and without the String cache. Most of the values are repeated frequently, as
+ * they are for a typical web application, but one in sixteen is taken from a
+ * much larger set of values that are rarely repeated.
+ */
+public class TesterStringCachePerformance {
+
+    private static final int WARM_UP = 200000;
+    private static final int ITERATIONS = 2000000;
+
+    private static final String[] REPEATED = new String[] {
+            "/", "/index.html", "/app/dashboard", "/api/v1/orders", "/static/css/site.css",
+            "/static/js/app.js", "keep-alive", "gzip, deflate, br", "text/html", "application/json",
+            "en-GB,en-US;q=0.9,en;q=0.8", "same-origin", "navigate", "document", "id", "page", "sort" };
+
+    private static final int RARE_COUNT = 100000;
+
+
+    @Test
+    public void testToString() {
+        byte[][] repeated = new byte[REPEATED.length][];
+        for (int i = 0; i < REPEATED.length; i++) {
+            repeated[i] = REPEATED[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+        byte[][] rare = new byte[RARE_COUNT][];
+        for (int i = 0; i < RARE_COUNT; i++) {
+            rare[i] = ("/item/" + i).getBytes(StandardCharsets.ISO_8859_1);
+        }
+        ByteChunk bc = new ByteChunk();
+        bc.setCharset(StandardCharsets.UTF_8);
+        StringCache stringCache = new StringCache();
+
+        long uncached = 0;
+        long cached = 0;
+        // Alternate so both code paths are compiled before the final timings
+        for (int i = 0; i < 3; i++) {
+            stringCache.setByteEnabled(false);
+            uncached = run(repeated, rare, bc);
+
+            stringCache.setByteEnabled(true);
+            stringCache.reset();
+            cached = run(repeated, rare, bc);
+        }
+
+        System.out.println("Uncached " + (uncached / ITERATIONS) + "ns/toString, cached " +
+                (cached / ITERATIONS) + "ns/toString, hit rate " + stringCache.getHitRate());
+    }
+
+
+    private static long run(byte[][] repeated, byte[][] rare, ByteChunk bc) {
+        int length = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            length += toString(repeated, rare, bc, i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            length += toString(repeated, rare, bc, i);
+        }
+        long time = System.nanoTime() - start;
+        if (length == 0) {
+            throw new IllegalStateException();
+        }
+        return time;
+    }
+
+
+    private static int toString(byte[][] repeated, byte[][] rare, ByteChunk bc, int i) {
+        byte[] value;
+        if ((i & 0xF) == 0) {
+            value = rare[(i >>> 4) % rare.length];
+        } else {
+            value = repeated[i % repeated.length];
+        }
+        bc.setBytes(value, 0, value.length);
+        return bc.toString().length();
+    }
+}
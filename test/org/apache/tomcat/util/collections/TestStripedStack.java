@@ -0,0 +1,133 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStripedStack {
+
+    @Test
+    public void testPopEmpty() {
+        StripedStack<Object> stack = new StripedStack<>();
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testPushPop() {
+        StripedStack<Object> stack = new StripedStack<>(2, -1, 4, 2);
+
+        Set<Object> pushed = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Fill the stripes and the overflow stack
+        for (int i = 0; i < 100; i++) {
+            Object o = new Object();
+            pushed.add(o);
+            Assert.assertTrue(stack.push(o));
+        }
+
+        Set<Object> popped = Collections.newSetFromMap(new IdentityHashMap<>());
+        Object o;
+        while ((o = stack.pop()) != null) {
+            Assert.assertTrue(popped.add(o));
+        }
+        Assert.assertEquals(pushed, popped);
+    }
+
+    @Test
+    public void testLimit() {
+        StripedStack<Object> stack = new StripedStack<>(2, 5, 4, 16);
+
+        int count = 0;
+        while (stack.push(new Object())) {
+            count++;
+            Assert.assertTrue(count <= 5);
+        }
+        Assert.assertEquals(5, count);
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertNotNull(stack.pop());
+        }
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testLimitZero() {
+        StripedStack<Object> stack = new StripedStack<>(2, 0);
+        Assert.assertFalse(stack.push(new Object()));
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testClear() {
+        StripedStack<Object> stack = new StripedStack<>(2, -1, 2, 2);
+        for (int i = 0; i < 10; i++) {
+            stack.push(new Object());
+        }
+        stack.clear();
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testStealFromOtherStripe() throws Exception {
+        StripedStack<Object> stack = new StripedStack<>(2, 64, 64, 1);
+        Object o = new Object();
+        // Push from a different thread (and most likely a different stripe)
+        Thread t = new Thread(() -> stack.push(o));
+        t.start();
+        t.join();
+        Assert.assertSame(o, stack.pop());
+        Assert.assertNull(stack.pop());
+    }
+
+    @Test
+    public void testConcurrentNoDuplicates() throws Exception {
+        final StripedStack<Object> stack = new StripedStack<>(8, 32, 4, 4);
+        final int threadCount = 8;
+        final int iterations = 100000;
+        final Set<Object> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final boolean[] failed = new boolean[1];
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    Object obj = stack.pop();
+                    if (obj == null) {
+                        obj = new Object();
+                    }
+                    // The same object must never be handed out twice
+                    if (!inUse.add(obj)) {
+                        failed[0] = true;
+                    }
+                    inUse.remove(obj);
+                    stack.push(obj);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertFalse(failed[0]);
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.tomcat.util.http;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
@@ -107,4 +108,74 @@ public class TestMimeHeaders {
         }
         Assert.assertFalse(names.hasMoreElements());
     }
+
+    @Test
+    public void testWellKnownHeaderIgnoresCase() {
+        MimeHeaders mh = new MimeHeaders();
+        byte[] bytes = "CONTENT-type: text/plain".getBytes(StandardCharsets.ISO_8859_1);
+
+        mh.addValue(bytes, 0, 12).setString("text/plain");
+        mh.addValue("X-Custom").setString("custom");
+        mh.addValue("Host").setString("localhost");
+
+        Assert.assertEquals("text/plain", mh.getHeader("content-type"));
+        Assert.assertEquals("text/plain", mh.getHeader("Content-Type"));
+        Assert.assertEquals("text/plain", mh.getHeader("cOnTeNt-TyPe"));
+        Assert.assertEquals("localhost", mh.getHeader("HOST"));
+        Assert.assertEquals("custom", mh.getHeader("x-custom"));
+        Assert.assertEquals(2, mh.findHeader("host", 0));
+        Assert.assertEquals(2, mh.findHeader("host", 2));
+        Assert.assertEquals(-1, mh.findHeader("host", 3));
+        Assert.assertNull(mh.getHeader("content-length"));
+        // Same length as a well known header name with non-ASCII characters
+        // that must not be confused with it
+        Assert.assertNull(mh.getHeader("\u0168ost"));
+        Assert.assertNull(mh.getHeader("\u0168\u016f\u0173\u0174"));
+    }
+
+    @Test
+    public void testWellKnownHeaderMultipleValues() {
+        MimeHeaders mh = new MimeHeaders();
+
+        mh.addValue("Accept").setString("text/html");
+        mh.addValue("x-accept").setString("other");
+        mh.addValue("accept").setString("text/plain");
+
+        Enumeration<String> values = mh.values("ACCEPT");
+        Assert.assertEquals("text/html", values.nextElement());
+        Assert.assertEquals("text/plain", values.nextElement());
+        Assert.assertFalse(values.hasMoreElements());
+
+        try {
+            mh.getUniqueValue("accept");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+
+        mh.setValue("Accept").setString("*/*");
+        Assert.assertEquals(2, mh.size());
+        Assert.assertEquals("*/*", mh.getUniqueValue("accept").toString());
+
+        mh.removeHeader("accept");
+        Assert.assertEquals(1, mh.size());
+        Assert.assertEquals("other", mh.getHeader("x-accept"));
+    }
+
+    @Test
+    public void testWellKnownHeaderRecycleAndDuplicate() throws Exception {
+        MimeHeaders mh = new MimeHeaders();
+        mh.addValue("Cookie").setString("a=b");
+        mh.recycle();
+        // Re-uses the recycled field
+        mh.addValue("x-other").setString("value");
+        Assert.assertNull(mh.getHeader("cookie"));
+        Assert.assertEquals("value", mh.getHeader("x-other"));
+
+        mh.addValue("User-Agent").setString("test");
+        MimeHeaders copy = new MimeHeaders();
+        copy.duplicate(mh);
+        Assert.assertEquals("test", copy.getHeader("user-agent"));
+        Assert.assertEquals("value", copy.getHeader("X-Other"));
+    }
 }
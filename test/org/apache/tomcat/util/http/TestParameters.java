@@ -240,6 +240,27 @@ public class TestParameters {
 
     }
 
+    @Test
+    public void testLazyDecodesOnDemand() {
+        byte[] data = "a=%41&b=%42".getBytes(StandardCharsets.ISO_8859_1);
+
+        Parameters p = new Parameters();
+        p.setLazy(true);
+        p.setCharset(StandardCharsets.UTF_8);
+        p.processParameters(data, 0, data.length);
+
+        // Names and values are decoded in place so nothing should have been
+        // decoded yet
+        Assert.assertEquals("a=%41&b=%42", new String(data, StandardCharsets.ISO_8859_1));
+
+        Assert.assertEquals("B", p.getParameter("b"));
+        Assert.assertEquals("a=%41&b=B42", new String(data, StandardCharsets.ISO_8859_1));
+        Assert.assertFalse(p.isParseFailed());
+
+        p.recycle();
+        Assert.assertNull(p.getParameter("b"));
+    }
+
     private void validateParameters(Parameter[] parameters, Parameters p) {
         Enumeration<String> names = p.getParameterNames();
 
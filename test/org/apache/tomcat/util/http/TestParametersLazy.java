@@ -0,0 +1,142 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/*
+ * Checks that lazy parameter parsing gives exactly the same results as eager
+ * parameter parsing.
+ */
+@RunWith(Parameterized.class)
+public class TestParametersLazy {
+
+    private static final String[] PROBES = new String[] {
+            "a", "b", "c", "a b", "a+b", "A", "", "caf\u00e9", "\u00ff", "\ufb6b", "\ufffd", "/", "missing" };
+
+    @Parameterized.Parameters(name = "{index}: query[{0}] body[{1}] charset[{2}] limit[{3}]")
+    public static Collection<Object[]> parameters() {
+        List<String> inputs = new ArrayList<>();
+        inputs.add(null);
+        inputs.add("");
+        inputs.add("a=1");
+        inputs.add("a=1&b=2&a=3");
+        inputs.add("a&b=&=c&&c=%41%42");
+        inputs.add("a+b=x+y&a%20b=z&a%2Bb=w");
+        inputs.add("caf%C3%A9=%E2%82%AC&%FF=%FF&%C3=%C3");
+        inputs.add("a=%4&b=2");
+        inputs.add("a=%ZZ&b=2");
+        inputs.add("a%=1&b=2");
+        inputs.add("a=1%");
+        inputs.add("%2F=%2f&%61=%62");
+        inputs.add("a==b&a=b=c");
+        inputs.add("A=1&a=2");
+
+        List<Object[]> parameterSets = new ArrayList<>();
+        for (String query : inputs) {
+            for (String body : inputs) {
+                for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1 }) {
+                    parameterSets.add(new Object[] { query, body, charset, Integer.valueOf(-1) });
+                }
+            }
+            parameterSets.add(new Object[] { query, "a=1&b=2&c=3", StandardCharsets.UTF_8, Integer.valueOf(2) });
+        }
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public String query;
+
+    @Parameter(1)
+    public String body;
+
+    @Parameter(2)
+    public Charset charset;
+
+    @Parameter(3)
+    public int limit;
+
+
+    @Test
+    public void testSameResult() {
+        Assert.assertEquals(parse(false, false), parse(true, false));
+    }
+
+
+    @Test
+    public void testSameResultWithAddedParameters() {
+        Assert.assertEquals(parse(false, true), parse(true, true));
+    }
+
+
+    private String parse(boolean lazy, boolean addParameters) {
+        Parameters p = new Parameters();
+        p.setLazy(lazy);
+        p.setLimit(limit);
+        p.setCharset(charset);
+        p.setQueryStringCharset(charset);
+        if (query != null) {
+            MessageBytes queryMB = MessageBytes.newInstance();
+            byte[] bytes = query.getBytes(StandardCharsets.ISO_8859_1);
+            queryMB.setBytes(bytes, 0, bytes.length);
+            p.setQuery(queryMB);
+        }
+        p.handleQueryParameters();
+        if (body != null) {
+            byte[] bytes = ("xx" + body + "yy").getBytes(StandardCharsets.ISO_8859_1);
+            p.processParameters(bytes, 2, bytes.length - 4);
+        }
+        StringBuilder result = new StringBuilder();
+        if (addParameters) {
+            try {
+                p.addParameter("b", "added");
+                p.addParameter("new", "added");
+            } catch (IllegalStateException ise) {
+                result.append("ise\n");
+            }
+        }
+
+        // Look up the probes first so names are compared before decoding
+        for (String probe : PROBES) {
+            result.append("probe[").append(probe).append("][").append(p.getParameter(probe));
+            result.append("][").append(Arrays.toString(p.getParameterValues(probe))).append("]\n");
+        }
+        Enumeration<String> names = p.getParameterNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            result.append("name[").append(name).append("][").append(p.getParameter(name));
+            result.append("][").append(Arrays.toString(p.getParameterValues(name))).append("]\n");
+        }
+        result.append("failed[").append(p.getParseFailedReason()).append("]\n");
+        result.append(p.toString());
+        return result.toString();
+    }
+}
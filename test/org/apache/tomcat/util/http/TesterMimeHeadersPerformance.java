@@ -0,0 +1,134 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/**
+ * Compares header look ups using the IDs of well known headers with the
+ * case-insensitive comparison of every header name that was used before. Each
+ * iteration adds the headers of a header-heavy request, as the HTTP/1.1 parser
+ * does, and then performs the look ups Tomcat makes while processing a request
+ * plus some typical application look ups.
+ */
+public class TesterMimeHeadersPerformance {
+
+    private static final int WARM_UP = 200000;
+    private static final int ITERATIONS = 2000000;
+
+    private static final String[] REQUEST_HEADERS = new String[] {
+            "host", "connection", "sec-ch-ua", "sec-ch-ua-mobile", "sec-ch-ua-platform",
+            "upgrade-insecure-requests", "user-agent", "accept", "sec-fetch-site",
+            "sec-fetch-mode", "sec-fetch-user", "sec-fetch-dest", "referer",
+            "accept-encoding", "accept-language", "cookie", "x-forwarded-for",
+            "x-forwarded-proto", "x-request-id", "traceparent" };
+
+    private static final String[] LOOKUPS = new String[] {
+            // Http11Processor, Request and CompressionConfig
+            "expect", "user-agent", "transfer-encoding", "content-length", "content-type",
+            "connection", "host", "accept-encoding", "upgrade",
+            // Typical application / framework look ups
+            "Accept", "Accept-Language", "Authorization", "Cookie", "If-Modified-Since",
+            "If-None-Match", "Origin", "X-Request-ID", "X-Forwarded-For" };
+
+    private static final byte[] BUFFER;
+    private static final int[] STARTS = new int[REQUEST_HEADERS.length];
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < REQUEST_HEADERS.length; i++) {
+            STARTS[i] = sb.length();
+            sb.append(REQUEST_HEADERS[i]);
+        }
+        BUFFER = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+
+    @Test
+    public void testLookups() {
+        MimeHeaders headers = new MimeHeaders();
+
+        int found = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            found += doWellKnown(headers);
+            found += doNameComparison(headers);
+        }
+        Assert.assertEquals(WARM_UP * 2 * 9, found);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            doWellKnown(headers);
+        }
+        long wellKnown = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            doNameComparison(headers);
+        }
+        long nameComparison = System.nanoTime() - start;
+
+        System.out.println(REQUEST_HEADERS.length + " headers, " + LOOKUPS.length +
+                " look ups: well known IDs " + (wellKnown / ITERATIONS) +
+                "ns/request, name comparison " + (nameComparison / ITERATIONS) + "ns/request");
+    }
+
+
+    private static int doWellKnown(MimeHeaders headers) {
+        addHeaders(headers);
+        int found = 0;
+        for (String lookup : LOOKUPS) {
+            if (headers.getValue(lookup) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+
+    private static int doNameComparison(MimeHeaders headers) {
+        addHeaders(headers);
+        int found = 0;
+        for (String lookup : LOOKUPS) {
+            // The implementation of MimeHeaders.getValue(String) prior to the
+            // use of IDs for well known headers
+            MessageBytes result = null;
+            for (int i = 0; i < headers.size(); i++) {
+                if (headers.getName(i).equalsIgnoreCase(lookup)) {
+                    result = headers.getValue(i);
+                    break;
+                }
+            }
+            if (result != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+
+    private static void addHeaders(MimeHeaders headers) {
+        headers.recycle();
+        for (int i = 0; i < REQUEST_HEADERS.length; i++) {
+            headers.addValue(BUFFER, STARTS[i], REQUEST_HEADERS[i].length());
+        }
+    }
+}
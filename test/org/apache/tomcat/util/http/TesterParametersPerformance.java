@@ -17,6 +17,7 @@
 package org.apache.tomcat.util.http;
 
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
@@ -59,6 +60,54 @@ public class TesterParametersPerformance {
         return System.nanoTime() - start;
     }
 
+    /*
+     * Compares eager and lazy parsing of a large form where the application
+     * only reads a few of the parameters, reporting the time taken and the
+     * bytes allocated (excluding the form itself) by each.
+     */
+    @Test
+    public void testLazyLargeForm() {
+        LogManager.getLogManager().getLogger("").setLevel(Level.OFF);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append("field").append(i).append("=some+value+%2B+").append(i);
+        }
+        byte[] form = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        for (int i = 0; i < 5; i++) {
+            doTestLargeForm(form, false);
+            doTestLargeForm(form, true);
+        }
+        System.out.println("Form of " + form.length + " bytes: eager " + doTestLargeForm(form, false));
+        System.out.println("Form of " + form.length + " bytes: lazy  " + doTestLargeForm(form, true));
+    }
+
+    private String doTestLargeForm(byte[] form, boolean lazy) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // The parser modifies the form as it decodes it
+        byte[] data = form.clone();
+
+        long allocatedStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        Parameters p = new Parameters();
+        p.setLazy(lazy);
+        p.setLimit(-1);
+        p.setCharset(StandardCharsets.UTF_8);
+        p.processParameters(data, 0, data.length);
+        Assert.assertEquals("some value + 5", p.getParameter("field5"));
+        Assert.assertEquals("some value + 99999", p.getParameter("field99999"));
+        Assert.assertNull(p.getParameter("missing"));
+        long time = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedStart;
+
+        return (time / 1000000) + "ms, " + (allocated / 1024) + "kB allocated";
+    }
+
     private byte[] createParams(byte[] input, int len) {
         byte[] result = new byte[len * 4 - 1];
 
@@ -0,0 +1,159 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAdmissionController {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+
+    @Test
+    public void testDisabled() {
+        AdmissionController controller = new AdmissionController();
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            now += MS;
+            Assert.assertFalse(controller.shed(1000 * MS, now, true));
+        }
+        Assert.assertEquals(0, controller.getShedCount());
+        Assert.assertEquals(1000, controller.getQueueDelayCount());
+        Assert.assertEquals(1000 * 1000, controller.getQueueDelayTime());
+        Assert.assertEquals(1000, controller.getMaxQueueDelay());
+    }
+
+
+    @Test
+    public void testBelowTarget() {
+        AdmissionController controller = createController();
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            now += MS;
+            Assert.assertFalse(controller.shed(4 * MS, now, true));
+        }
+        Assert.assertFalse(controller.isShedding());
+        Assert.assertEquals(0, controller.getShedCount());
+    }
+
+
+    @Test
+    public void testShortBurst() {
+        AdmissionController controller = createController();
+        long now = 0;
+        // Above the target for less than the interval
+        for (int i = 0; i < 99; i++) {
+            now += MS;
+            Assert.assertFalse(controller.shed(50 * MS, now, true));
+        }
+        now += MS;
+        Assert.assertFalse(controller.shed(1 * MS, now, true));
+        for (int i = 0; i < 99; i++) {
+            now += MS;
+            Assert.assertFalse(controller.shed(50 * MS, now, true));
+        }
+        Assert.assertEquals(0, controller.getShedCount());
+    }
+
+
+    @Test
+    public void testOverload() {
+        AdmissionController controller = createController();
+        long now = 0;
+        long firstShed = -1;
+        int shedCount = 0;
+        int shedInFirstInterval = 0;
+        int shedInLastInterval = 0;
+        for (int i = 0; i < 1000; i++) {
+            now += MS;
+            if (controller.shed(50 * MS, now, true)) {
+                if (firstShed == -1) {
+                    firstShed = now;
+                }
+                shedCount++;
+                if (now - firstShed < 100 * MS) {
+                    shedInFirstInterval++;
+                } else if (now > 900 * MS) {
+                    shedInLastInterval++;
+                }
+            }
+        }
+        // Shedding starts once the delay has been above the target for an
+        // interval
+        Assert.assertEquals(101 * MS, firstShed);
+        Assert.assertTrue(controller.isShedding());
+        Assert.assertEquals(shedCount, controller.getShedCount());
+        // The rate of shedding increases while the delay remains high
+        Assert.assertTrue(shedInLastInterval > shedInFirstInterval);
+
+        // Shedding stops as soon as the delay drops below the target
+        now += MS;
+        Assert.assertFalse(controller.shed(1 * MS, now, true));
+        Assert.assertFalse(controller.isShedding());
+        for (int i = 0; i < 50; i++) {
+            now += MS;
+            Assert.assertFalse(controller.shed(4 * MS, now, true));
+        }
+        Assert.assertEquals(shedCount, controller.getShedCount());
+    }
+
+
+    @Test
+    public void testNotSheddable() {
+        AdmissionController controller = createController();
+        long now = 0;
+        for (int i = 0; i < 500; i++) {
+            now += MS;
+            Assert.assertFalse(controller.shed(50 * MS, now, false));
+        }
+        // The delay of tasks that could not be shed is still taken into
+        // account
+        now += MS;
+        Assert.assertTrue(controller.shed(50 * MS, now, true));
+        Assert.assertEquals(1, controller.getShedCount());
+    }
+
+
+    @Test
+    public void testResetCounters() {
+        AdmissionController controller = createController();
+        controller.shed(50 * MS, MS, true);
+        controller.resetCounters();
+        Assert.assertEquals(0, controller.getQueueDelayCount());
+        Assert.assertEquals(0, controller.getQueueDelayTime());
+        Assert.assertEquals(0, controller.getMaxQueueDelay());
+        Assert.assertEquals(0, controller.getShedCount());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidInterval() {
+        AdmissionController controller = new AdmissionController();
+        controller.setInterval(0);
+    }
+
+
+    private static AdmissionController createController() {
+        AdmissionController controller = new AdmissionController();
+        controller.setTarget(5);
+        controller.setInterval(100);
+        return controller;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.Asn1Writer;
+import org.apache.tomcat.util.net.jsse.JSSEImplementation;
+
+/*
+ * Uses a servlet as a stand-in OCSP responder. The responses it returns are
+ * not signed by the CA as the signature is not checked by the server or by the
+ * client used for the test.
+ */
+public class TestOcspStapling extends TomcatBaseTest {
+
+    private static final DateTimeFormatter GENERALIZED_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    // id-pkix-ocsp-basic
+    private static final byte[] OID_BASIC_RESPONSE =
+            { 0x2B, 0x06, 0x01, 0x05, 0x05, 0x07, 0x30, 0x01, 0x01 };
+    // sha256WithRSAEncryption
+    private static final byte[] OID_SHA256_RSA =
+            { 0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x0B };
+
+
+    @After
+    public void clearStaplingProperties() {
+        System.clearProperty("jdk.tls.server.enableStatusRequestExtension");
+        System.clearProperty("jdk.tls.stapling.responderURI");
+        System.clearProperty("jdk.tls.stapling.responderOverride");
+    }
+
+
+    @Test
+    public void testJsseStapling() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("", null);
+        TesterResponder responder = new TesterResponder();
+        Tomcat.addServlet(ctx, "ocsp", responder);
+        ctx.addServletMappingDecoded("/ocsp/*", "ocsp");
+
+        // The responder uses a second, plain text, connector. Requests sent
+        // using GET include the base64 encoded request in the path.
+        Connector responderConnector = new Connector();
+        responderConnector.setPort(0);
+        responderConnector.setEncodedSolidusHandling("passthrough");
+        tomcat.getService().addConnector(responderConnector);
+
+        TesterSupport.initSsl(tomcat);
+        String sslImplementationName = (String) tomcat.getConnector().getProperty("sslImplementationName");
+        Assume.assumeTrue(sslImplementationName == null ||
+                JSSEImplementation.class.getName().equals(sslImplementationName));
+        tomcat.getConnector().findSslHostConfigs()[0].setOcspStapling(true);
+
+        // Read by JSSE when the SSLContext is created
+        System.setProperty("jdk.tls.server.enableStatusRequestExtension", "true");
+
+        tomcat.start();
+
+        // The port of the responder is only known once Tomcat has started. JSSE
+        // reads these when the first handshake that staples a response starts.
+        System.setProperty("jdk.tls.stapling.responderURI",
+                "http://localhost:" + responderConnector.getLocalPort() + "/ocsp");
+        System.setProperty("jdk.tls.stapling.responderOverride", "true");
+
+        byte[] stapled = getStapledResponse(getPort());
+        Assert.assertEquals(1, responder.requestCount.get());
+        Assert.assertArrayEquals(responder.lastResponse, stapled);
+
+        // JSSE caches the response
+        stapled = getStapledResponse(getPort());
+        Assert.assertEquals(1, responder.requestCount.get());
+        Assert.assertArrayEquals(responder.lastResponse, stapled);
+    }
+
+
+    private static byte[] getStapledResponse(int port) throws Exception {
+        SSLContext sc = SSLContext.getInstance("TLS");
+        sc.init(null, new TesterSupport.TrustAllCerts[] { new TesterSupport.TrustAllCerts() }, null);
+        try (SSLSocket socket = (SSLSocket) sc.getSocketFactory().createSocket("localhost", port)) {
+            socket.startHandshake();
+            List<byte[]> responses = ((ExtendedSSLSession) socket.getSession()).getStatusResponses();
+            Assert.assertFalse(responses.isEmpty());
+            return responses.get(0);
+        }
+    }
+
+
+    /*
+     * Returns the content of the first DER encoded element.
+     */
+    private static byte[] getContent(byte[] der) {
+        int pos = 1;
+        int len = der[pos++] & 0xFF;
+        if (len > 0x7F) {
+            int lenLen = len & 0x7F;
+            len = 0;
+            for (int i = 0; i < lenLen; i++) {
+                len = (len << 8) | (der[pos++] & 0xFF);
+            }
+        }
+        return Arrays.copyOfRange(der, pos, pos + len);
+    }
+
+
+    private static byte[] getCertId(byte[] request) {
+        // OCSPRequest -> TBSRequest -> requestList -> Request -> CertID
+        byte[] value = request;
+        for (int i = 0; i < 5; i++) {
+            value = getContent(value);
+        }
+        return value;
+    }
+
+
+    private static byte[] writeTime(long time) {
+        return Asn1Writer.writeTag((byte) 0x18,
+                GENERALIZED_TIME.format(Instant.ofEpochMilli(time)).getBytes(StandardCharsets.US_ASCII));
+    }
+
+
+    private static byte[] createResponse(byte[] certId, long thisUpdate, long nextUpdate) {
+        byte[] singleResponse = Asn1Writer.writeSequence(
+                Asn1Writer.writeTag((byte) 0x30, certId),
+                // good
+                new byte[] { (byte) 0x80, 0x00 },
+                writeTime(thisUpdate),
+                Asn1Writer.writeTag((byte) 0xA0, writeTime(nextUpdate)));
+        byte[] responseData = Asn1Writer.writeSequence(
+                Asn1Writer.writeTag((byte) 0xA2, Asn1Writer.writeOctetString(new byte[20])),
+                writeTime(thisUpdate),
+                Asn1Writer.writeSequence(singleResponse));
+        byte[] basicResponse = Asn1Writer.writeSequence(
+                responseData,
+                Asn1Writer.writeSequence(Asn1Writer.writeTag((byte) 0x06, OID_SHA256_RSA),
+                        Asn1Writer.writeTag((byte) 0x05, new byte[0])),
+                Asn1Writer.writeTag((byte) 0x03, new byte[257]));
+        return Asn1Writer.writeSequence(
+                Asn1Writer.writeTag((byte) 0x0A, new byte[] { 0 }),
+                Asn1Writer.writeTag((byte) 0xA0, Asn1Writer.writeSequence(
+                        Asn1Writer.writeTag((byte) 0x06, OID_BASIC_RESPONSE),
+                        Asn1Writer.writeOctetString(basicResponse))));
+    }
+
+
+    private static class TesterResponder extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger requestCount = new AtomicInteger();
+        private volatile byte[] lastResponse;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            String uri = req.getRequestURI();
+            String encoded = URLDecoder.decode(uri.substring(uri.indexOf('/', 1) + 1), StandardCharsets.UTF_8);
+            respond(Base64.getDecoder().decode(encoded), resp);
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            Assert.assertEquals("application/ocsp-request", req.getContentType());
+            respond(req.getInputStream().readAllBytes(), resp);
+        }
+
+        private void respond(byte[] request, HttpServletResponse resp) throws IOException {
+            requestCount.incrementAndGet();
+            long now = System.currentTimeMillis();
+            byte[] response = createResponse(getCertId(request),
+                    now - TimeUnit.MINUTES.toMillis(1), now + TimeUnit.DAYS.toMillis(1));
+            lastResponse = response;
+            resp.setContentType("application/ocsp-response");
+            resp.setContentLength(response.length);
+            resp.getOutputStream().write(response);
+        }
+    }
+}
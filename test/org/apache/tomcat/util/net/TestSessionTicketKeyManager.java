@@ -0,0 +1,161 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.startup.ExpandWar;
+
+public class TestSessionTicketKeyManager {
+
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("ticketkeys");
+    }
+
+
+    @After
+    public void tearDown() {
+        ExpandWar.delete(tempDir.toFile());
+    }
+
+
+    @Test
+    public void testRawKeyFile() throws Exception {
+        byte[] key = createKey(1);
+        Path file = tempDir.resolve("ticket.key");
+        Files.write(file, key);
+
+        SessionTicketKeyManager manager = createManager(file);
+        Assert.assertTrue(manager.load());
+        Assert.assertArrayEquals(key, manager.getKey());
+        // Unchanged
+        Assert.assertFalse(manager.load());
+        Assert.assertEquals(0, manager.getRotationCount());
+    }
+
+
+    @Test
+    public void testBase64KeyFile() throws Exception {
+        byte[] key = createKey(2);
+        Path file = tempDir.resolve("ticket.key");
+        Files.write(file, (Base64.getEncoder().encodeToString(key) + "\n").getBytes(StandardCharsets.US_ASCII));
+
+        SessionTicketKeyManager manager = createManager(file);
+        Assert.assertTrue(manager.load());
+        Assert.assertArrayEquals(key, manager.getKey());
+    }
+
+
+    @Test(expected=IOException.class)
+    public void testInvalidKeyLength() throws Exception {
+        Path file = tempDir.resolve("ticket.key");
+        Files.write(file, new byte[32]);
+        createManager(file).load();
+    }
+
+
+    @Test
+    public void testRotation() throws Exception {
+        Path file = tempDir.resolve("ticket.key");
+        Files.write(file, createKey(1));
+
+        SessionTicketKeyManager manager = createManager(file);
+        manager.load();
+        Files.write(file, createKey(2));
+        manager.check();
+        Assert.assertArrayEquals(createKey(2), manager.getKey());
+        Assert.assertEquals(1, manager.getRotationCount());
+
+        // An invalid key is ignored and the current key retained
+        Files.write(file, new byte[10]);
+        manager.check();
+        Assert.assertArrayEquals(createKey(2), manager.getKey());
+        Assert.assertEquals(1, manager.getRotationCount());
+    }
+
+
+    @Test
+    public void testDirectory() throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        Files.write(tempDir.resolve((now - 7200) + ".key"), createKey(1));
+        Files.write(tempDir.resolve((now - 3600) + ".key"), createKey(2));
+        // Not yet valid
+        Files.write(tempDir.resolve((now + 3600) + ".key"), createKey(3));
+        Files.write(tempDir.resolve(".hidden"), createKey(4));
+
+        SessionTicketKeyManager manager = createManager(tempDir);
+        manager.load();
+        Assert.assertArrayEquals(createKey(2), manager.getKey());
+    }
+
+
+    @Test
+    public void testSelectKeyFile() {
+        File[] files = new File[] { new File("9"), new File("10"), new File("11.key") };
+        // Numeric names are compared numerically
+        Assert.assertEquals("10", SessionTicketKeyManager.selectKeyFile(files, 10500).getName());
+        Assert.assertEquals("11.key", SessionTicketKeyManager.selectKeyFile(files, 11000).getName());
+        Assert.assertEquals("9", SessionTicketKeyManager.selectKeyFile(files, 9000).getName());
+        Assert.assertNull(SessionTicketKeyManager.selectKeyFile(files, 1000));
+
+        files = new File[] { new File("a.key"), new File("c.key"), new File("b.key") };
+        Assert.assertEquals("c.key", SessionTicketKeyManager.selectKeyFile(files, 0).getName());
+    }
+
+
+    @Test
+    public void testSslHostConfig() {
+        SSLHostConfig sslHostConfig = new SSLHostConfig();
+        Assert.assertNull(sslHostConfig.getSessionTicketKeyManager());
+        Assert.assertEquals(-1, sslHostConfig.getSessionTicketKeyRotationCount());
+        // No OpenSSL contexts
+        Assert.assertEquals(-1, sslHostConfig.getSessionAcceptCount());
+        Assert.assertEquals(-1, sslHostConfig.getSessionHitRatio(), 0);
+
+        sslHostConfig.setSessionTicketKeyFile(tempDir.toString());
+        Assert.assertNotNull(sslHostConfig.getSessionTicketKeyManager());
+        Assert.assertEquals(0, sslHostConfig.getSessionTicketKeyRotationCount());
+    }
+
+
+    private static SessionTicketKeyManager createManager(Path path) {
+        SSLHostConfig sslHostConfig = new SSLHostConfig();
+        sslHostConfig.setSessionTicketKeyFile(path.toString());
+        return sslHostConfig.getSessionTicketKeyManager();
+    }
+
+
+    private static byte[] createKey(int value) {
+        byte[] key = new byte[SessionTicketKeyManager.KEY_LENGTH];
+        Arrays.fill(key, (byte) value);
+        return key;
+    }
+}
@@ -29,6 +29,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameter;
 
+import org.apache.tomcat.util.collections.SynchronizedStack;
+
 
 @RunWith(Parameterized.class)
 public class TestSocketBufferHandler {
@@ -48,6 +50,97 @@ public class TestSocketBufferHandler {
     public boolean direct;
 
 
+    @Test
+    public void testPooledBuffersBorrowedOnUse() {
+        SocketBufferPool pool = createPool();
+        SocketBufferHandler sbh = new SocketBufferHandler(8, 8, direct, pool, pool);
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertTrue(sbh.isReadBufferEmpty());
+        Assert.assertTrue(sbh.isWriteBufferEmpty());
+        Assert.assertEquals(0, pool.getActiveCount());
+
+        sbh.configureReadBufferForRead();
+        Assert.assertEquals(0, sbh.getReadBuffer().remaining());
+        Assert.assertEquals(1, pool.getActiveCount());
+        sbh.getWriteBuffer();
+        Assert.assertEquals(2, pool.getActiveCount());
+
+        sbh.release();
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(2, pool.getIdleCount());
+
+        // Buffers are re-used
+        sbh.getReadBuffer();
+        sbh.getWriteBuffer();
+        Assert.assertEquals(2, pool.getCreatedCount());
+        Assert.assertEquals(4, pool.getBorrowCount());
+    }
+
+
+    @Test
+    public void testPooledBuffersRetainedWhenNotEmpty() {
+        SocketBufferPool pool = createPool();
+        SocketBufferHandler sbh = new SocketBufferHandler(8, 8, direct, pool, pool);
+
+        sbh.configureReadBufferForWrite();
+        sbh.getReadBuffer().put(getBytes("AB"));
+        sbh.release();
+        Assert.assertEquals(1, pool.getActiveCount());
+
+        sbh.unReadReadBuffer(ByteBuffer.wrap(getBytes("WXYZ")));
+        validate(sbh, "WXYZAB");
+
+        sbh.release();
+        Assert.assertEquals(0, pool.getActiveCount());
+    }
+
+
+    @Test
+    public void testPooledBuffersExpand() {
+        SocketBufferPool pool = createPool();
+        SocketBufferHandler sbh = new SocketBufferHandler(8, 8, direct, pool, pool);
+
+        sbh.configureReadBufferForWrite();
+        sbh.getReadBuffer().put(getBytes("AB"));
+        sbh.expand(16);
+        // The original buffers are returned and the expanded ones are kept
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(16, sbh.getReadBuffer().capacity());
+        validate(sbh, "AB");
+
+        sbh.release();
+        Assert.assertEquals(16, sbh.getReadBuffer().capacity());
+
+        sbh.free();
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+    }
+
+
+    @Test
+    public void testExpandDifferentSizes() {
+        SocketBufferHandler sbh = new SocketBufferHandler(8, 8, direct);
+
+        sbh.configureWriteBufferForWrite();
+        sbh.getWriteBuffer().put(getBytes("AB"));
+        sbh.expand(32, 16);
+        Assert.assertEquals(32, sbh.getReadBuffer().capacity());
+        Assert.assertEquals(16, sbh.getWriteBuffer().capacity());
+        Assert.assertEquals(2, sbh.getWriteBuffer().position());
+
+        // Buffers are never made smaller
+        sbh.expand(8, 8);
+        Assert.assertEquals(32, sbh.getReadBuffer().capacity());
+        Assert.assertEquals(16, sbh.getWriteBuffer().capacity());
+    }
+
+
+    private SocketBufferPool createPool() {
+        return new SocketBufferPool("test", 8, direct, new SynchronizedStack<>(), -1);
+    }
+
+
     @Test
     public void testReturnWhenEmpty() {
         SocketBufferHandler sbh = new SocketBufferHandler(8, 8, direct);
@@ -0,0 +1,85 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.modeler.Registry;
+
+public class TestSslHandshakeExecutor extends TomcatBaseTest {
+
+    private static final int REQUEST_COUNT = 5;
+
+    @Test
+    public void testHandshakeExecutor() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        Assume.assumeFalse("Handshakes are only offloaded by the NIO connector",
+                connector.getProtocolHandlerClassName().contains("Nio2"));
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "simple", new TesterSupport.SimpleServlet());
+        ctx.addServletMappingDecoded("/", "simple");
+
+        TesterSupport.initSsl(tomcat);
+        Assert.assertTrue(connector.setProperty("handshakeThreads", "1"));
+        Assert.assertTrue(connector.setProperty("handshakeQueueSize", "10"));
+
+        tomcat.start();
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] { new TesterSupport.TrustAllCerts() }, null);
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            try (SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(
+                    "localhost", getPort())) {
+                OutputStream os = socket.getOutputStream();
+                os.write(("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                os.flush();
+                InputStream is = socket.getInputStream();
+                String response = new String(is.readAllBytes(), StandardCharsets.ISO_8859_1);
+                Assert.assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            }
+        }
+
+        MBeanServer mbeanServer = Registry.getRegistry(null, null).getMBeanServer();
+        Set<ObjectName> names = mbeanServer.queryNames(new ObjectName("Tomcat:type=ThreadPool,*"), null);
+        Assert.assertEquals(1, names.size());
+        ObjectName name = names.iterator().next();
+        long completed = ((Long) mbeanServer.getAttribute(name, "handshakeCompletedCount")).longValue();
+        Assert.assertTrue(completed >= REQUEST_COUNT);
+        Assert.assertEquals(Long.valueOf(0), mbeanServer.getAttribute(name, "handshakeRejectedCount"));
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+
+/*
+ * Checks the size of the TLS records written by the NIO connector by passing
+ * the connection through a proxy that parses the record headers.
+ */
+@RunWith(Parameterized.class)
+public class TestSslRecordSizing extends TomcatBaseTest {
+
+    @Parameterized.Parameters(name = "{index}: gatheringWrites[{0}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        parameterSets.add(new Object[] { Boolean.FALSE });
+        parameterSets.add(new Object[] { Boolean.TRUE });
+        return parameterSets;
+    }
+
+    private static final int BODY_SIZE = 512 * 1024;
+    private static final int SMALL_RECORD_LIMIT = 1500;
+    private static final int FULL_RECORD_SIZE = 16384;
+
+    @Parameter(0)
+    public boolean gatheringWrites;
+
+
+    @Test
+    public void testDefault() throws Exception {
+        List<Integer> records = doTest(false, 1);
+        // Only the headers and possibly the end of the body use small records
+        Assert.assertTrue(records.toString(), countSmall(records) < 5);
+    }
+
+
+    @Test
+    public void testDynamicRecordSizing() throws Exception {
+        List<Integer> records = doTest(true, 1);
+        Assert.assertTrue(records.toString(), countSmall(records) >= 40);
+        Assert.assertTrue(records.toString(), records.size() - countSmall(records) > 0);
+        // Full size records are only used once the small records have been
+        // written. Records written during the handshake (e.g. TLS 1.3 session
+        // tickets) are not counted.
+        int small = 0;
+        for (Integer record : records) {
+            if (record.intValue() <= SMALL_RECORD_LIMIT) {
+                small++;
+            } else if (record.intValue() > FULL_RECORD_SIZE) {
+                Assert.assertTrue(records.toString(), small >= 40);
+                break;
+            }
+        }
+    }
+
+
+    @Test
+    public void testDynamicRecordSizingCoalesced() throws Exception {
+        List<Integer> records = doTest(true, 8);
+        Assert.assertTrue(records.toString(), countSmall(records) >= 40);
+        Assert.assertTrue(records.toString(), records.size() - countSmall(records) > 0);
+    }
+
+
+    private List<Integer> doTest(boolean dynamicRecordSizing, int writeRecords) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        Assume.assumeFalse("TLS record sizing is only supported by the NIO connector",
+                connector.getProtocolHandlerClassName().contains("Nio2"));
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "body", new BodyServlet());
+        ctx.addServletMappingDecoded("/", "body");
+
+        TesterSupport.initSsl(tomcat);
+        Assert.assertTrue(connector.setProperty("socket.gatheringWrites", Boolean.toString(gatheringWrites)));
+        Assert.assertTrue(connector.setProperty("socket.tlsDynamicRecordSizing",
+                Boolean.toString(dynamicRecordSizing)));
+        Assert.assertTrue(connector.setProperty("socket.tlsWriteRecords", Integer.toString(writeRecords)));
+
+        tomcat.start();
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] { new TesterSupport.TrustAllCerts() }, null);
+
+        try (RecordProxy proxy = new RecordProxy(getPort())) {
+            proxy.start();
+            try (SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(
+                    "localhost", proxy.getPort())) {
+                OutputStream os = socket.getOutputStream();
+                os.write(("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                os.flush();
+                byte[] response = socket.getInputStream().readAllBytes();
+                validateResponse(response);
+            }
+            return proxy.getApplicationDataRecords();
+        }
+    }
+
+
+    private static void validateResponse(byte[] response) {
+        String text = new String(response, StandardCharsets.ISO_8859_1);
+        Assert.assertTrue(text.substring(0, Math.min(100, text.length())), text.startsWith("HTTP/1.1 200"));
+        int bodyStart = text.indexOf("\r\n\r\n") + 4;
+        Assert.assertEquals(BODY_SIZE, response.length - bodyStart);
+        for (int i = 0; i < BODY_SIZE; i++) {
+            Assert.assertEquals("Body differs at [" + i + "]", expected(i), response[bodyStart + i]);
+        }
+    }
+
+
+    private static byte expected(int i) {
+        return (byte) ('A' + i % 26);
+    }
+
+
+    private static int countSmall(List<Integer> records) {
+        int result = 0;
+        for (Integer record : records) {
+            if (record.intValue() <= SMALL_RECORD_LIMIT) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+
+    private static class BodyServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            byte[] body = new byte[BODY_SIZE];
+            for (int i = 0; i < BODY_SIZE; i++) {
+                body[i] = expected(i);
+            }
+            resp.setContentType("application/octet-stream");
+            resp.setContentLength(BODY_SIZE);
+            resp.getOutputStream().write(body);
+        }
+    }
+
+
+    /*
+     * Forwards a single connection to the server and records the length of
+     * each application data record sent by the server.
+     */
+    private static class RecordProxy implements AutoCloseable {
+
+        private static final int APPLICATION_DATA = 23;
+
+        private final int serverPort;
+        private final ServerSocket serverSocket;
+        private final List<Integer> records = Collections.synchronizedList(new ArrayList<>());
+        private volatile Thread toClient;
+
+        RecordProxy(int serverPort) throws IOException {
+            this.serverPort = serverPort;
+            this.serverSocket = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        void start() {
+            Thread acceptor = new Thread(this::run, "RecordProxy-Acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        List<Integer> getApplicationDataRecords() throws InterruptedException {
+            Thread toClient = this.toClient;
+            if (toClient != null) {
+                toClient.join(10000);
+            }
+            synchronized (records) {
+                return new ArrayList<>(records);
+            }
+        }
+
+        private void run() {
+            try {
+                Socket client = serverSocket.accept();
+                Socket server = new Socket("localhost", serverPort);
+                Thread toServer = new Thread(() -> copy(client, server), "RecordProxy-ToServer");
+                toServer.setDaemon(true);
+                toServer.start();
+                Thread toClient = new Thread(() -> parse(server, client), "RecordProxy-ToClient");
+                toClient.setDaemon(true);
+                this.toClient = toClient;
+                toClient.start();
+            } catch (IOException ioe) {
+                // Test will fail
+            }
+        }
+
+        private static void copy(Socket from, Socket to) {
+            byte[] buf = new byte[8192];
+            try {
+                InputStream is = from.getInputStream();
+                OutputStream os = to.getOutputStream();
+                int read;
+                while ((read = is.read(buf)) > 0) {
+                    os.write(buf, 0, read);
+                    os.flush();
+                }
+                to.shutdownOutput();
+            } catch (IOException ioe) {
+                // Connection closed
+            }
+        }
+
+        private void parse(Socket from, Socket to) {
+            try {
+                DataInputStream is = new DataInputStream(from.getInputStream());
+                OutputStream os = to.getOutputStream();
+                byte[] header = new byte[5];
+                while (true) {
+                    try {
+                        is.readFully(header);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    int length = ((header[3] & 0xFF) << 8) | (header[4] & 0xFF);
+                    byte[] payload = new byte[length];
+                    is.readFully(payload);
+                    if (header[0] == APPLICATION_DATA) {
+                        records.add(Integer.valueOf(length));
+                    }
+                    os.write(header);
+                    os.write(payload);
+                    os.flush();
+                }
+                to.shutdownOutput();
+            } catch (IOException ioe) {
+                // Connection closed
+            } finally {
+                try {
+                    to.close();
+                    from.close();
+                } catch (IOException ioe) {
+                    // Ignore
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
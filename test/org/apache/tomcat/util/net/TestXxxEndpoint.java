@@ -16,12 +16,22 @@
  */
 package org.apache.tomcat.util.net;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.Assert;
 import org.junit.Assume;
@@ -30,6 +40,7 @@ import org.junit.Test;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.util.compat.JreCompat;
 
 /**
@@ -111,4 +122,113 @@ public class TestXxxEndpoint extends TomcatBaseTest {
 
         Assert.assertTrue((new String(response.array(), 0, response.position()).startsWith("HTTP/1.1 200")));
     }
+
+    @Test
+    public void testMultiplePollers() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+        Assume.assumeTrue("Multiple pollers are only supported by NIO",
+                c.getProtocolHandlerClassName().contains("NioProtocol"));
+
+        Assert.assertTrue(c.setProperty("pollerThreadCount", "4"));
+        tomcat.start();
+
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> onames = mbeanServer.queryNames(new ObjectName("Tomcat:type=Poller,*"), null);
+        Assert.assertEquals(4, onames.size());
+
+        // Keep the connections open so they remain registered with a poller
+        Socket[] sockets = new Socket[8];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket("localhost", getPort());
+                OutputStream os = sockets[i].getOutputStream();
+                os.write("GET /missing HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                os.flush();
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(sockets[i].getInputStream(), StandardCharsets.ISO_8859_1));
+                Assert.assertTrue(reader.readLine().startsWith("HTTP/1.1 404"));
+            }
+
+            // Connections are distributed across the pollers in turn
+            for (ObjectName oname : onames) {
+                Assert.assertEquals(Integer.valueOf(2), mbeanServer.getAttribute(oname, "registeredKeyCount"));
+                Assert.assertTrue(((Long) mbeanServer.getAttribute(oname, "eventCount")).longValue() >= 2);
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+
+        tomcat.getConnector().stop();
+        onames = mbeanServer.queryNames(new ObjectName("Tomcat:type=Poller,*"), null);
+        Assert.assertEquals(0, onames.size());
+    }
+
+    @Test
+    public void testAppBufferPool() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+        Assume.assumeTrue("Application buffer pools are only supported by NIO",
+                c.getProtocolHandlerClassName().contains("NioProtocol"));
+
+        Assert.assertTrue(c.setProperty("socket.appBufferPool", "100"));
+        tomcat.start();
+
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> onames = mbeanServer.queryNames(
+                new ObjectName("Tomcat:type=SocketBufferPool,name=read,*"), null);
+        Assert.assertEquals(1, onames.size());
+        ObjectName readPool = onames.iterator().next();
+
+        // Keep the connections open but idle
+        Socket[] sockets = new Socket[8];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket("localhost", getPort());
+                OutputStream os = sockets[i].getOutputStream();
+                os.write("GET /missing HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                os.flush();
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(sockets[i].getInputStream(), StandardCharsets.ISO_8859_1));
+                Assert.assertTrue(reader.readLine().startsWith("HTTP/1.1 404"));
+            }
+
+            // Idle keep-alive connections should not hold any buffers
+            int count = 0;
+            while (((Integer) mbeanServer.getAttribute(readPool, "activeCount")).intValue() > 0 && count < 50) {
+                Thread.sleep(100);
+                count++;
+            }
+            Assert.assertEquals(Integer.valueOf(0), mbeanServer.getAttribute(readPool, "activeCount"));
+            Assert.assertTrue(((Integer) mbeanServer.getAttribute(readPool, "idleCount")).intValue() > 0);
+            Assert.assertTrue(((Long) mbeanServer.getAttribute(readPool, "borrowCount")).longValue() >= 8);
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+
+        tomcat.getConnector().stop();
+        Assert.assertFalse(mbeanServer.isRegistered(readPool));
+    }
+
+    @Test
+    public void testUseVirtualThreads() throws Exception {
+        Assume.assumeTrue("Virtual threads require Java 21", JreCompat.isJre21Available());
+
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+        Assert.assertTrue(c.setProperty("useVirtualThreads", "true"));
+        tomcat.start();
+
+        ByteChunk bc = new ByteChunk();
+        int rc = getUrl("http://localhost:" + getPort() + "/missing", bc, null);
+        Assert.assertEquals(404, rc);
+    }
 }
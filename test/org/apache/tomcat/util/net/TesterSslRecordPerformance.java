@@ -0,0 +1,165 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+
+/*
+ * Compares the time to first byte and the throughput of TLS responses with the
+ * different TLS record options of the NIO connector.
+ */
+public class TesterSslRecordPerformance extends TomcatBaseTest {
+
+    private static final int REQUESTS = 200;
+    private static final int SMALL_BODY = 8 * 1024;
+    private static final int LARGE_BODY = 4 * 1024 * 1024;
+
+    @Test
+    public void testDefault() throws Exception {
+        doTest(false, 1);
+    }
+
+
+    @Test
+    public void testCoalescing() throws Exception {
+        doTest(false, 4);
+    }
+
+
+    @Test
+    public void testDynamicRecordSizing() throws Exception {
+        doTest(true, 1);
+    }
+
+
+    @Test
+    public void testDynamicRecordSizingCoalescing() throws Exception {
+        doTest(true, 4);
+    }
+
+
+    private void doTest(boolean dynamicRecordSizing, int writeRecords) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        Assume.assumeFalse("TLS record options are only supported by the NIO connector",
+                connector.getProtocolHandlerClassName().contains("Nio2"));
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "body", new BodyServlet());
+        ctx.addServletMappingDecoded("/", "body");
+
+        TesterSupport.initSsl(tomcat);
+        Assert.assertTrue(connector.setProperty("socket.appWriteBufSize", "16384"));
+        Assert.assertTrue(connector.setProperty("socket.tlsDynamicRecordSizing",
+                Boolean.toString(dynamicRecordSizing)));
+        Assert.assertTrue(connector.setProperty("socket.tlsWriteRecords", Integer.toString(writeRecords)));
+
+        tomcat.start();
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] { new TesterSupport.TrustAllCerts() }, null);
+
+        // Warm up
+        for (int i = 0; i < REQUESTS / 10; i++) {
+            request(sslContext, SMALL_BODY);
+        }
+        request(sslContext, LARGE_BODY);
+
+        // Time to first byte of a new connection, excluding the handshake
+        long ttfbTotal = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            ttfbTotal += request(sslContext, SMALL_BODY)[0];
+        }
+
+        // Throughput of a large response
+        long bulkTotal = 0;
+        for (int i = 0; i < 10; i++) {
+            bulkTotal += request(sslContext, LARGE_BODY)[1];
+        }
+
+        System.out.println("dynamicRecordSizing [" + dynamicRecordSizing + "], writeRecords [" +
+                writeRecords + "]: mean time to first byte [" + ttfbTotal / REQUESTS / 1000 +
+                "]us, throughput [" + (10L * LARGE_BODY * 1000) / bulkTotal + "]MB/s");
+    }
+
+
+    /*
+     * Returns the time to the first byte of the response and the time to the
+     * last byte, both in nanoseconds and measured from the request being sent.
+     */
+    private long[] request(SSLContext sslContext, int size) throws IOException {
+        try (SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(
+                "localhost", getPort())) {
+            socket.startHandshake();
+            OutputStream os = socket.getOutputStream();
+            InputStream is = socket.getInputStream();
+            byte[] buf = new byte[16384];
+
+            long start = System.nanoTime();
+            os.write(("GET /?size=" + size + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            os.flush();
+            int read = is.read(buf);
+            long firstByte = System.nanoTime() - start;
+            long total = 0;
+            while (read > 0) {
+                total += read;
+                read = is.read(buf);
+            }
+            long lastByte = System.nanoTime() - start;
+            Assert.assertTrue(total > size);
+            return new long[] { firstByte, lastByte };
+        }
+    }
+
+
+    private static class BodyServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            int size = Integer.parseInt(req.getParameter("size"));
+            byte[] body = new byte[size];
+            resp.setContentType("application/octet-stream");
+            resp.setContentLength(size);
+            resp.getOutputStream().write(body);
+        }
+    }
+}
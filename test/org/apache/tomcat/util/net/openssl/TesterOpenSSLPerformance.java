@@ -0,0 +1,188 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.openssl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.core.AprLifecycleListener;
+import org.apache.catalina.core.StandardServer;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.net.TesterSupport;
+
+/*
+ * Compares the cost of full TLS handshakes and the throughput of bulk
+ * encryption for the JSSE implementation and the OpenSSL implementation that
+ * uses the tomcat-native library. The OpenSSL implementation is skipped if the
+ * library is not available.
+ */
+@RunWith(Parameterized.class)
+public class TesterOpenSSLPerformance extends TomcatBaseTest {
+
+    private static final int HANDSHAKES = 500;
+    private static final int BULK_REQUESTS = 20;
+    private static final int BULK_SIZE = 8 * 1024 * 1024;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        parameterSets.add(new Object[] {
+                "JSSE", Boolean.FALSE, "org.apache.tomcat.util.net.jsse.JSSEImplementation"});
+        parameterSets.add(new Object[] {
+                "OpenSSL", Boolean.TRUE, OpenSSLImplementation.class.getName()});
+
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public String connectorName;
+
+    @Parameter(1)
+    public boolean needApr;
+
+    @Parameter(2)
+    public String sslImplementationName;
+
+
+    @Test
+    public void testHandshake() throws Exception {
+        SSLContext sslContext = start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < HANDSHAKES; i++) {
+            request(sslContext, 0, true);
+        }
+        long duration = System.nanoTime() - start;
+
+        System.out.println(connectorName + ": [" + HANDSHAKES + "] full handshakes in [" +
+                duration / 1000000 + "]ms, [" + HANDSHAKES * 1000000000L / duration + "] per second");
+    }
+
+
+    @Test
+    public void testBulk() throws Exception {
+        SSLContext sslContext = start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BULK_REQUESTS; i++) {
+            request(sslContext, BULK_SIZE, false);
+        }
+        long duration = System.nanoTime() - start;
+
+        System.out.println(connectorName + ": [" + BULK_REQUESTS + "] responses of [" + BULK_SIZE +
+                "] bytes in [" + duration / 1000000 + "]ms, [" +
+                ((long) BULK_REQUESTS * BULK_SIZE * 1000) / duration + "]MB/s");
+    }
+
+
+    private SSLContext start() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "body", new BodyServlet());
+        ctx.addServletMappingDecoded("/", "body");
+
+        TesterSupport.initSsl(tomcat);
+        Assert.assertTrue(tomcat.getConnector().setProperty("sslImplementationName", sslImplementationName));
+
+        if (needApr) {
+            AprLifecycleListener listener = new AprLifecycleListener();
+            Assume.assumeTrue(AprLifecycleListener.isAprAvailable());
+            StandardServer server = (StandardServer) tomcat.getServer();
+            server.addLifecycleListener(listener);
+        }
+
+        tomcat.start();
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] { new TesterSupport.TrustAllCerts() }, null);
+
+        // Warm up
+        for (int i = 0; i < HANDSHAKES / 10; i++) {
+            request(sslContext, 1024, true);
+        }
+
+        return sslContext;
+    }
+
+
+    private void request(SSLContext sslContext, int size, boolean fullHandshake) throws IOException {
+        try (SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(
+                "localhost", getPort())) {
+            OutputStream os = socket.getOutputStream();
+            os.write(("GET /?size=" + size + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            os.flush();
+            InputStream is = socket.getInputStream();
+            byte[] buf = new byte[16384];
+            long total = 0;
+            int read;
+            while ((read = is.read(buf)) > 0) {
+                total += read;
+            }
+            Assert.assertTrue(total > size);
+            if (fullHandshake) {
+                // Prevent the session from being resumed
+                socket.getSession().invalidate();
+            }
+        }
+    }
+
+
+    private static class BodyServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            int size = Integer.parseInt(req.getParameter("size"));
+            byte[] body = new byte[16384];
+            resp.setContentType("application/octet-stream");
+            resp.setContentLength(size);
+            OutputStream os = resp.getOutputStream();
+            while (size > 0) {
+                int len = Math.min(size, body.length);
+                os.write(body, 0, len);
+                size -= len;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.tomcat.util.compat.JreCompat;
+
+public class TestVirtualThreadExecutor {
+
+    @Test
+    public void testExecuteAndShutdown() throws Exception {
+        Assume.assumeTrue("Virtual threads require Java 21", JreCompat.isJre21Available());
+
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("test-virt-");
+
+        int taskCount = 1000;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(taskCount);
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < taskCount; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+                count.incrementAndGet();
+                done.countDown();
+            });
+        }
+
+        // All the tasks block at the same time without a thread pool limit
+        Assert.assertEquals(taskCount, executor.getActiveCount());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertFalse(executor.isTerminated());
+
+        try {
+            executor.execute(() -> {});
+            Assert.fail();
+        } catch (RejectedExecutionException expected) {
+            // Expected
+        }
+
+        release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(taskCount, count.get());
+        Assert.assertEquals(taskCount, executor.getCompletedTaskCount());
+    }
+
+
+    @Test
+    public void testNotSupported() {
+        Assume.assumeFalse(JreCompat.isJre21Available());
+        try {
+            new VirtualThreadExecutor("test-virt-");
+            Assert.fail();
+        } catch (UnsupportedOperationException expected) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWorkStealingTaskQueue {
+
+    @Test
+    public void testQueueOperations() throws Exception {
+        WorkStealingTaskQueue queue = new WorkStealingTaskQueue(3, 4);
+        Runnable r1 = new NoOp();
+        Runnable r2 = new NoOp();
+        Runnable r3 = new NoOp();
+
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertNull(queue.poll());
+        Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        Assert.assertTrue(queue.offer(r1));
+        Assert.assertTrue(queue.offer(r2));
+        Assert.assertTrue(queue.offer(r3));
+        // Full
+        Assert.assertFalse(queue.offer(new NoOp()));
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(0, queue.remainingCapacity());
+        Assert.assertEquals(3, queue.toArray().length);
+        Assert.assertTrue(queue.contains(r2));
+
+        Assert.assertTrue(queue.remove(r2));
+        Assert.assertFalse(queue.remove(r2));
+        Assert.assertFalse(queue.contains(r2));
+        Assert.assertEquals(2, queue.size());
+
+        Runnable r = queue.take();
+        Assert.assertTrue(r == r1 || r == r3);
+        Assert.assertNotNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(3, queue.remainingCapacity());
+
+        queue.offer(r1);
+        queue.offer(r2);
+        List<Runnable> drained = new ArrayList<>();
+        Assert.assertEquals(2, queue.drainTo(drained));
+        Assert.assertTrue(drained.contains(r1));
+        Assert.assertTrue(drained.contains(r2));
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+
+    @Test
+    public void testTakeBlocks() throws Exception {
+        WorkStealingTaskQueue queue = new WorkStealingTaskQueue();
+        Runnable task = new NoOp();
+        CountDownLatch taken = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            try {
+                if (queue.take() == task) {
+                    taken.countDown();
+                }
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        });
+        t.start();
+        Assert.assertFalse(taken.await(100, TimeUnit.MILLISECONDS));
+        queue.offer(task);
+        Assert.assertTrue(taken.await(5, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testThreadsCreatedBeforeQueueing() throws Exception {
+        WorkStealingTaskQueue queue = new WorkStealingTaskQueue();
+        ThreadPoolExecutor executor = createExecutor(queue, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(10);
+        try {
+            for (int i = 0; i < 10; i++) {
+                executor.execute(() -> {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                });
+            }
+            // Each task triggered the creation of a thread rather than being
+            // queued
+            Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(10, executor.getPoolSize());
+            Assert.assertTrue(queue.isEmpty());
+
+            // Now the pool is at the maximum, tasks are queued
+            executor.execute(new NoOp());
+            Assert.assertEquals(1, queue.size());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+
+    @Test
+    public void testManyProducers() throws Exception {
+        final int producers = 8;
+        final int tasksPerProducer = 20000;
+        WorkStealingTaskQueue queue = new WorkStealingTaskQueue();
+        ThreadPoolExecutor executor = createExecutor(queue, 4);
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers * tasksPerProducer);
+        Runnable task = () -> {
+            count.incrementAndGet();
+            done.countDown();
+        };
+        try {
+            Thread[] threads = new Thread[producers];
+            for (int i = 0; i < producers; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < tasksPerProducer; j++) {
+                        executor.execute(task);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(producers * tasksPerProducer, count.get());
+            Assert.assertTrue(queue.isEmpty());
+        } finally {
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+
+    @Test(expected=RejectedExecutionException.class)
+    public void testRejectWhenFull() {
+        WorkStealingTaskQueue queue = new WorkStealingTaskQueue(1);
+        ThreadPoolExecutor executor = createExecutor(queue, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Runnable blocking = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            };
+            executor.execute(blocking);
+            executor.execute(blocking);
+            executor.execute(blocking);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+
+    private static ThreadPoolExecutor createExecutor(TaskQueue queue, int maxThreads) {
+        TaskThreadFactory tf = new TaskThreadFactory("test-exec-", true, Thread.NORM_PRIORITY);
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, queue, tf);
+        queue.setParent(executor);
+        return executor;
+    }
+
+
+    private static class NoOp implements Runnable {
+        @Override
+        public void run() {
+            // NO-OP
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+import org.apache.tomcat.unittest.TesterThreadedPerformance;
+
+/**
+ * Compares the throughput of the thread pool with the default task queue and
+ * with the work stealing task queue when many threads submit short tasks, as
+ * the Pollers and container threads do under load with many cores.
+ */
+public class TesterTaskQueuePerformance {
+
+    private static final int PRODUCER_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int TASKS_PER_PRODUCER = 1000000;
+    private static final int MAX_THREADS = 200;
+
+    @Test
+    public void testTaskQueue() throws Exception {
+        doTest("TaskQueue", new TaskQueue());
+    }
+
+
+    @Test
+    public void testWorkStealingTaskQueue() throws Exception {
+        doTest("WorkStealingTaskQueue", new WorkStealingTaskQueue());
+    }
+
+
+    private static void doTest(String name, TaskQueue taskqueue) throws Exception {
+        TaskThreadFactory tf = new TaskThreadFactory("perf-exec-", true, Thread.NORM_PRIORITY);
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(10, MAX_THREADS, 60, TimeUnit.SECONDS, taskqueue, tf);
+        taskqueue.setParent(executor);
+        executor.prestartAllCoreThreads();
+
+        CountDownLatch done = new CountDownLatch(PRODUCER_COUNT * TASKS_PER_PRODUCER);
+        Runnable task = done::countDown;
+
+        TesterThreadedPerformance test = new TesterThreadedPerformance(
+                PRODUCER_COUNT, TASKS_PER_PRODUCER, () -> new Producer(executor, task));
+        long start = System.nanoTime();
+        test.doTest();
+        done.await();
+        long duration = System.nanoTime() - start;
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        long total = (long) PRODUCER_COUNT * TASKS_PER_PRODUCER;
+        System.out.println(name + ": " + PRODUCER_COUNT + " producers, " + total + " tasks in " +
+                TimeUnit.NANOSECONDS.toMillis(duration) + "ms, " +
+                (total * 1000000000L / duration) + " tasks/s, largest pool size " +
+                executor.getLargestPoolSize());
+    }
+
+
+    private static class Producer implements IntConsumer {
+
+        private final ThreadPoolExecutor executor;
+        private final Runnable task;
+
+        Producer(ThreadPoolExecutor executor, Runnable task) {
+            this.executor = executor;
+            this.task = task;
+        }
+
+        @Override
+        public void accept(int value) {
+            executor.execute(task);
+        }
+    }
+}
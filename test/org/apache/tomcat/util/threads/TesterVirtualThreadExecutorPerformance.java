@@ -0,0 +1,155 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.tomcat.util.compat.JreCompat;
+
+/**
+ * Compares the throughput and the resident memory of a platform thread pool
+ * configured as per the connector defaults and with a large maxThreads against
+ * the virtual thread executor when the tasks block (e.g. for JDBC or remote
+ * calls). Run each test in a separate JVM for meaningful memory figures.
+ */
+public class TesterVirtualThreadExecutorPerformance {
+
+    private static final int TASK_COUNT = 100000;
+    private static final long BLOCK_MILLIS = 20;
+
+    @Test
+    public void testPlatformThreads200() throws Exception {
+        doTest("Platform threads (maxThreads=200)", createThreadPool(200));
+    }
+
+
+    @Test
+    public void testPlatformThreads800() throws Exception {
+        doTest("Platform threads (maxThreads=800)", createThreadPool(800));
+    }
+
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        Assume.assumeTrue("Virtual threads require Java 21", JreCompat.isJre21Available());
+        doTest("Virtual threads", new VirtualThreadExecutor("perf-virt-"));
+    }
+
+
+    private static ExecutorService createThreadPool(int maxThreads) {
+        TaskQueue taskqueue = new TaskQueue();
+        TaskThreadFactory tf = new TaskThreadFactory("perf-exec-", true, Thread.NORM_PRIORITY);
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(10, maxThreads, 60, TimeUnit.SECONDS, taskqueue, tf);
+        taskqueue.setParent(executor);
+        return executor;
+    }
+
+
+    private static void doTest(String name, ExecutorService executor) throws Exception {
+        long rssBefore = getRss();
+        CountDownLatch done = new CountDownLatch(TASK_COUNT);
+        RssSampler sampler = new RssSampler();
+        sampler.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TASK_COUNT; i++) {
+            executor.execute(() -> {
+                try {
+                    // Simulate a blocking call
+                    Thread.sleep(BLOCK_MILLIS);
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long duration = System.nanoTime() - start;
+
+        sampler.interrupt();
+        sampler.join();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.println(name + ": " + TASK_COUNT + " tasks in " +
+                TimeUnit.NANOSECONDS.toMillis(duration) + "ms, " +
+                (TASK_COUNT * 1000000000L / duration) + " tasks/s, RSS before [" +
+                (rssBefore / 1024) + "MB], peak RSS [" + (sampler.getMaxRss() / 1024) + "MB]");
+    }
+
+
+    /*
+     * Linux only. Returns the resident set size in kB or -1 if it could not be
+     * determined.
+     */
+    private static long getRss() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(status, StandardCharsets.US_ASCII);
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Ignore
+        }
+        return -1;
+    }
+
+
+    private static class RssSampler extends Thread {
+
+        private volatile long maxRss = -1;
+
+        RssSampler() {
+            setDaemon(true);
+        }
+
+        public long getMaxRss() {
+            return maxRss;
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                maxRss = Math.max(maxRss, getRss());
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            maxRss = Math.max(maxRss, getRss());
+        }
+    }
+}